@@ -0,0 +1,588 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Used to call the event methods of listeners annotated with
+ * {@link ThreadedListener} off of the thread that called the event.
+ * <p>
+ * Rather than starting a new thread for every event, events are handed to an
+ * executor. By default, this is a shared pool with a fixed amount of threads,
+ * which are stopped when they have been idle for a while. Events that are
+ * {@link ThreadedListener#ordered() ordered} are first placed in a serial
+ * queue for the key they were dispatched with, usually the address of the
+ * peer they are for. Only one event from each serial queue is handled at a
+ * time, so the events of a single peer are handled in the order they were
+ * called, while the events of different peers are handled in parallel.
+ * <p>
+ * The amount of events waiting to be handled is limited by the
+ * {@link #getCapacity() capacity} of the dispatcher. Once it has been
+ * reached, new events are handled according to the
+ * {@link EventRejectionPolicy rejection policy} of the dispatcher.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ * @see ThreadedListener
+ */
+public final class EventDispatcher {
+
+	/**
+	 * A thread of the default pool of an event dispatcher.
+	 *
+	 * @author Trent "Whirvis" Summerlin
+	 * @since JRakNet v2.11.9
+	 */
+	private static final class EventThread extends Thread {
+
+		private final String prefix;
+		private final int index;
+		private String listenerName;
+
+		/**
+		 * Creates an event thread.
+		 *
+		 * @param runnable
+		 *            the runnable of the thread.
+		 * @param prefix
+		 *            the prefix of the thread name.
+		 * @param index
+		 *            the index of the thread.
+		 */
+		private EventThread(Runnable runnable, String prefix, int index) {
+			super(runnable, prefix + "-Event-Thread-" + index);
+			this.prefix = prefix;
+			this.index = index;
+			this.listenerName = "Event";
+			this.setDaemon(true);
+		}
+
+		/**
+		 * Renames the thread after the listener it is about to call, if it
+		 * was not already named after it.
+		 *
+		 * @param listenerName
+		 *            the name of the listener.
+		 */
+		private void rename(String listenerName) {
+			if (!this.listenerName.equals(listenerName)) {
+				this.listenerName = listenerName;
+				this.setName(prefix + (listenerName.length() > 0 ? "-" : "") + listenerName + "-Thread-" + index);
+			}
+		}
+
+	}
+
+	/**
+	 * The queue of events waiting to be handled for a single key.
+	 *
+	 * @author Trent "Whirvis" Summerlin
+	 * @since JRakNet v2.11.9
+	 */
+	private final class SerialQueue implements Runnable {
+
+		private final Object key;
+		private final ConcurrentLinkedQueue<Runnable> tasks;
+		private boolean scheduled;
+
+		/**
+		 * Creates a serial queue.
+		 *
+		 * @param key
+		 *            the key of the queue.
+		 */
+		private SerialQueue(Object key) {
+			this.key = key;
+			this.tasks = new ConcurrentLinkedQueue<Runnable>();
+		}
+
+		@Override
+		public void run() {
+			for (int i = 0; i < SERIAL_BATCH_SIZE; i++) {
+				Runnable task = tasks.poll();
+				if (task == null) {
+					break;
+				}
+				task.run();
+			}
+
+			/*
+			 * The queue is only ever marked as no longer scheduled and removed
+			 * while holding the lock for its key. This ensures a new queue for
+			 * the same key cannot be created and run while this one is still
+			 * handling its last event, which would break the order.
+			 */
+			boolean[] reschedule = new boolean[1];
+			serialQueues.compute(key, (k, queue) -> {
+				if (!tasks.isEmpty()) {
+					reschedule[0] = true;
+					return queue;
+				}
+				this.scheduled = false;
+				return queue == this ? null : queue;
+			});
+			if (reschedule[0] == true) {
+				execute(this);
+			}
+		}
+
+	}
+
+	/**
+	 * The default amount of threads in the pool of an event dispatcher.
+	 */
+	public static final int DEFAULT_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The default amount of events that can be waiting to be handled at once.
+	 */
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/**
+	 * The amount of time in seconds an idle thread of the default pool is
+	 * kept alive for.
+	 */
+	private static final long KEEP_ALIVE_TIME = 60L;
+
+	/**
+	 * The maximum amount of events handled from a serial queue before the
+	 * thread is handed back to the pool, so that a busy peer does not starve
+	 * the others.
+	 */
+	private static final int SERIAL_BATCH_SIZE = 64;
+
+	private final Logger logger;
+	private final String name;
+	private final AtomicInteger threadIndex;
+	private final ConcurrentHashMap<Object, SerialQueue> serialQueues;
+	private final AtomicInteger queueDepth;
+	private final AtomicInteger largestQueueDepth;
+	private final AtomicLong completedEvents;
+	private final AtomicLong rejectedEvents;
+	private final AtomicLong callerRunEvents;
+	private final AtomicLong overflowEvents;
+	private ThreadPoolExecutor pool;
+	private int threadCount;
+	private volatile Executor executor;
+	private volatile int capacity;
+	private volatile EventRejectionPolicy rejectionPolicy;
+
+	/**
+	 * Creates an event dispatcher.
+	 *
+	 * @param name
+	 *            the name of the dispatcher, used as the prefix for the names
+	 *            of the threads of its default pool.
+	 * @throws NullPointerException
+	 *             if the <code>name</code> is <code>null</code>.
+	 */
+	public EventDispatcher(String name) throws NullPointerException {
+		if (name == null) {
+			throw new NullPointerException("Name cannot be null");
+		}
+		this.logger = LogManager.getLogger(EventDispatcher.class.getSimpleName() + "-" + name);
+		this.name = name;
+		this.threadIndex = new AtomicInteger();
+		this.serialQueues = new ConcurrentHashMap<Object, SerialQueue>();
+		this.queueDepth = new AtomicInteger();
+		this.largestQueueDepth = new AtomicInteger();
+		this.completedEvents = new AtomicLong();
+		this.rejectedEvents = new AtomicLong();
+		this.callerRunEvents = new AtomicLong();
+		this.overflowEvents = new AtomicLong();
+		this.threadCount = DEFAULT_THREAD_COUNT;
+		this.capacity = DEFAULT_CAPACITY;
+		this.rejectionPolicy = EventRejectionPolicy.CALLER_RUNS;
+	}
+
+	/**
+	 * Returns the name of the dispatcher.
+	 *
+	 * @return the name of the dispatcher.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the executor that handles the events.
+	 * <p>
+	 * If no executor has been set, this is the default pool of the
+	 * dispatcher, which is created the first time it is needed.
+	 *
+	 * @return the executor that handles the events.
+	 */
+	public Executor getExecutor() {
+		Executor executor = this.executor;
+		if (executor != null) {
+			return executor;
+		}
+		return this.getPool();
+	}
+
+	/**
+	 * Sets the executor that handles the events.
+	 * <p>
+	 * The executor is expected to run the tasks given to it asynchronously.
+	 * If it rejects a task, the task is run on the thread that called the
+	 * event instead. The executor is not shut down by the dispatcher, that is
+	 * the responsibility of whoever created it.
+	 *
+	 * @param executor
+	 *            the executor, <code>null</code> to use the default pool of
+	 *            the dispatcher.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+		logger.debug("Set executor to " + (executor != null ? executor.getClass().getName() : "default pool"));
+	}
+
+	/**
+	 * Returns the amount of threads in the default pool.
+	 *
+	 * @return the amount of threads in the default pool.
+	 */
+	public synchronized int getThreadCount() {
+		return this.threadCount;
+	}
+
+	/**
+	 * Sets the amount of threads in the default pool. Idle threads are
+	 * stopped after a while, so this is the most threads that will be
+	 * running at once.
+	 *
+	 * @param threadCount
+	 *            the amount of threads.
+	 * @throws IllegalArgumentException
+	 *             if the <code>threadCount</code> is less than or equal to
+	 *             <code>0</code>.
+	 */
+	public synchronized void setThreadCount(int threadCount) throws IllegalArgumentException {
+		if (threadCount <= 0) {
+			throw new IllegalArgumentException("Thread count must be greater than 0");
+		}
+		this.threadCount = threadCount;
+		if (pool != null) {
+			if (threadCount > pool.getMaximumPoolSize()) {
+				pool.setMaximumPoolSize(threadCount);
+				pool.setCorePoolSize(threadCount);
+			} else {
+				pool.setCorePoolSize(threadCount);
+				pool.setMaximumPoolSize(threadCount);
+			}
+		}
+		logger.debug("Set thread count to " + threadCount);
+	}
+
+	/**
+	 * Returns the amount of events that can be waiting to be handled at once.
+	 *
+	 * @return the amount of events that can be waiting to be handled at once.
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Sets the amount of events that can be waiting to be handled at once.
+	 * Once this many events are waiting, new events are handled according to
+	 * the {@link #getRejectionPolicy() rejection policy}.
+	 *
+	 * @param capacity
+	 *            the amount of events that can be waiting.
+	 * @throws IllegalArgumentException
+	 *             if the <code>capacity</code> is less than or equal to
+	 *             <code>0</code>.
+	 */
+	public void setCapacity(int capacity) throws IllegalArgumentException {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be greater than 0");
+		}
+		this.capacity = capacity;
+		logger.debug("Set capacity to " + capacity);
+	}
+
+	/**
+	 * Returns the rejection policy, used when the dispatcher is at capacity.
+	 *
+	 * @return the rejection policy.
+	 */
+	public EventRejectionPolicy getRejectionPolicy() {
+		return this.rejectionPolicy;
+	}
+
+	/**
+	 * Sets the rejection policy, used when the dispatcher is at capacity.
+	 *
+	 * @param rejectionPolicy
+	 *            the rejection policy.
+	 * @throws NullPointerException
+	 *             if the <code>rejectionPolicy</code> is <code>null</code>.
+	 */
+	public void setRejectionPolicy(EventRejectionPolicy rejectionPolicy) throws NullPointerException {
+		if (rejectionPolicy == null) {
+			throw new NullPointerException("Rejection policy cannot be null");
+		}
+		this.rejectionPolicy = rejectionPolicy;
+		logger.debug("Set rejection policy to " + rejectionPolicy);
+	}
+
+	/**
+	 * Returns the amount of events waiting to be handled, including those
+	 * that are currently being handled.
+	 *
+	 * @return the amount of events waiting to be handled.
+	 */
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	/**
+	 * Returns the highest amount of events that have been waiting to be
+	 * handled at once.
+	 *
+	 * @return the highest amount of events that have been waiting to be
+	 *         handled at once.
+	 */
+	public int getLargestQueueDepth() {
+		return largestQueueDepth.get();
+	}
+
+	/**
+	 * Returns the amount of keys that currently have events waiting to be
+	 * handled in order.
+	 *
+	 * @return the amount of serial queues.
+	 */
+	public int getSerialQueueCount() {
+		return serialQueues.size();
+	}
+
+	/**
+	 * Returns the amount of events that have been handled, either by the
+	 * executor or by the thread that called them.
+	 *
+	 * @return the amount of events that have been handled.
+	 */
+	public long getCompletedEvents() {
+		return completedEvents.get();
+	}
+
+	/**
+	 * Returns the amount of events that were discarded as the dispatcher was
+	 * at capacity.
+	 *
+	 * @return the amount of events that were discarded.
+	 */
+	public long getRejectedEvents() {
+		return rejectedEvents.get();
+	}
+
+	/**
+	 * Returns the amount of events that were handled on the thread that
+	 * called them, either as the dispatcher was at capacity or as the executor
+	 * rejected them.
+	 *
+	 * @return the amount of events handled on the thread that called them.
+	 */
+	public long getCallerRunEvents() {
+		return callerRunEvents.get();
+	}
+
+	/**
+	 * Returns the amount of ordered events that were queued even though the
+	 * dispatcher was at capacity. With the
+	 * {@link EventRejectionPolicy#CALLER_RUNS CALLER_RUNS} policy, this
+	 * happens when another thread is already handling the events for the same
+	 * key, as handling the event on the thread that called it would break the
+	 * order of the events.
+	 *
+	 * @return the amount of events queued past capacity.
+	 */
+	public long getOverflowEvents() {
+		return overflowEvents.get();
+	}
+
+	/**
+	 * Dispatches an event.
+	 *
+	 * @param key
+	 *            the key of the serial queue the event is placed in, usually
+	 *            the address of the peer it is for. If this is
+	 *            <code>null</code>, the event is handed to the executor
+	 *            directly and can be handled in any order.
+	 * @param listenerName
+	 *            the {@link ThreadedListener#name() name} of the listener,
+	 *            used to name the thread handling the event.
+	 * @param task
+	 *            the task that handles the event.
+	 * @return <code>true</code> if the event has been or will be handled,
+	 *         <code>false</code> if it was discarded.
+	 * @throws NullPointerException
+	 *             if the <code>listenerName</code> or <code>task</code> are
+	 *             <code>null</code>.
+	 */
+	public boolean dispatch(Object key, String listenerName, Runnable task) throws NullPointerException {
+		if (listenerName == null) {
+			throw new NullPointerException("Listener name cannot be null");
+		} else if (task == null) {
+			throw new NullPointerException("Task cannot be null");
+		}
+
+		// Make sure there is room for the event
+		int depth = queueDepth.incrementAndGet();
+		boolean full = depth > capacity;
+		if (full == true && rejectionPolicy == EventRejectionPolicy.DISCARD) {
+			queueDepth.decrementAndGet();
+			long rejected = rejectedEvents.incrementAndGet();
+			if (rejected == 1 || (rejected & 0x3FF) == 0) {
+				logger.warn("Discarded event as there are already " + capacity + " events waiting to be handled (" + rejected + " discarded so far)");
+			}
+			return false;
+		}
+		int largest = largestQueueDepth.get();
+		while (depth > largest && !largestQueueDepth.compareAndSet(largest, depth)) {
+			largest = largestQueueDepth.get();
+		}
+
+		// Hand the event to the executor
+		Runnable event = () -> {
+			try {
+				Thread thread = Thread.currentThread();
+				if (thread instanceof EventThread) {
+					((EventThread) thread).rename(listenerName);
+				}
+				task.run();
+			} catch (Throwable throwable) {
+				logger.error("Listener " + listenerName + " threw an exception while handling an event", throwable);
+			} finally {
+				queueDepth.decrementAndGet();
+				completedEvents.incrementAndGet();
+			}
+		};
+		if (key == null) {
+			if (full == true) {
+				callerRunEvents.incrementAndGet();
+				event.run();
+			} else {
+				this.execute(event);
+			}
+			return true;
+		}
+		boolean[] schedule = new boolean[1];
+		SerialQueue serialQueue = serialQueues.compute(key, (k, queue) -> {
+			if (queue == null) {
+				queue = new SerialQueue(k);
+			}
+			queue.tasks.add(event);
+			if (queue.scheduled == false) {
+				queue.scheduled = true;
+				schedule[0] = true;
+			}
+			return queue;
+		});
+		if (schedule[0] == true) {
+			if (full == true) {
+				/*
+				 * No other thread is handling the events for this key, so the
+				 * current thread takes over the queue and handles them itself.
+				 * The event stays behind any events for the same key that are
+				 * still waiting, as they are all in the same queue.
+				 */
+				callerRunEvents.incrementAndGet();
+				serialQueue.run();
+			} else {
+				this.execute(serialQueue);
+			}
+		} else if (full == true) {
+			/*
+			 * Another thread is already handling the events for this key.
+			 * Running the event now would have it skip ahead of the events
+			 * queued before it, and waiting for that thread could deadlock if
+			 * it is waiting on the current thread. Instead, the event is
+			 * queued past capacity.
+			 */
+			overflowEvents.incrementAndGet();
+		}
+		return true;
+	}
+
+	/**
+	 * Hands a task to the executor, running it on the current thread if the
+	 * executor rejects it.
+	 *
+	 * @param task
+	 *            the task.
+	 */
+	private void execute(Runnable task) {
+		try {
+			this.getExecutor().execute(task);
+		} catch (RejectedExecutionException e) {
+			callerRunEvents.incrementAndGet();
+			task.run();
+		}
+	}
+
+	/**
+	 * Returns the default pool of the dispatcher, creating it if it does not
+	 * exist yet.
+	 *
+	 * @return the default pool.
+	 */
+	private synchronized ThreadPoolExecutor getPool() {
+		if (pool == null) {
+			this.pool = new ThreadPoolExecutor(threadCount, threadCount, KEEP_ALIVE_TIME, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					runnable -> new EventThread(runnable, name, threadIndex.incrementAndGet()));
+			pool.allowCoreThreadTimeOut(true);
+			logger.debug("Created default pool with " + threadCount + " threads");
+		}
+		return this.pool;
+	}
+
+	@Override
+	public String toString() {
+		return "EventDispatcher [name=" + name + ", capacity=" + capacity + ", rejectionPolicy=" + rejectionPolicy + ", queueDepth=" + queueDepth.get()
+				+ ", largestQueueDepth=" + largestQueueDepth.get() + ", completedEvents=" + completedEvents.get() + ", rejectedEvents=" + rejectedEvents.get()
+				+ ", callerRunEvents=" + callerRunEvents.get() + ", overflowEvents=" + overflowEvents.get() + "]";
+	}
+
+}
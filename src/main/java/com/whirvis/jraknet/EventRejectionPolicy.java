@@ -0,0 +1,61 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet;
+
+/**
+ * Determines what an {@link EventDispatcher} does with an event when there
+ * are already as many events waiting to be handled as its
+ * {@link EventDispatcher#getCapacity() capacity} allows.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public enum EventRejectionPolicy {
+
+	/**
+	 * The event is handled on the thread that called it, as if the listener
+	 * was not annotated with {@link ThreadedListener}. This slows down the
+	 * thread calling events until the listeners catch up, without ever
+	 * losing an event.
+	 * <p>
+	 * Ordered events never skip ahead of the events for the same peer that
+	 * are still waiting. If another thread is already handling the events
+	 * for the peer, the event is queued behind them past capacity instead.
+	 */
+	CALLER_RUNS,
+
+	/**
+	 * The event is discarded, and is never handled by the listener. This
+	 * keeps the thread calling events from ever being held back by the
+	 * listeners, at the cost of losing events when they fall behind.
+	 */
+	DISCARD;
+
+}
@@ -35,7 +35,6 @@ import java.math.BigInteger;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
-import java.util.Arrays;
 import java.util.UUID;
 
 import com.whirvis.jraknet.stream.PacketDataInputStream;
@@ -315,7 +314,7 @@ public class Packet {
 	 *             the packet.
 	 */
 	public final int readUnsignedTriadLE() throws IndexOutOfBoundsException {
-		return this.readTriad() & 0xFFFFFF;
+		return this.readTriadLE() & 0xFFFFFF;
 	}
 
 	/**
@@ -1323,15 +1322,17 @@ public class Packet {
 
 	/**
 	 * Returns the packet as a <code>byte[]</code>.
+	 * <p>
+	 * The data is copied out of the buffer regardless of its type, so this
+	 * works for direct and composite buffers as well as for slices of other
+	 * buffers.
 	 * 
-	 * @return the packet as a <code>byte[]</code>, <code>null</code> if the
-	 *         buffer being used within the packet is a direct buffer.
+	 * @return the packet as a <code>byte[]</code>.
 	 */
 	public byte[] array() {
-		if (buffer.isDirect()) {
-			return null;
-		}
-		return Arrays.copyOfRange(buffer.array(), 0, buffer.writerIndex());
+		byte[] data = new byte[buffer.writerIndex()];
+		buffer.getBytes(0, data);
+		return data;
 	}
 
 	/**
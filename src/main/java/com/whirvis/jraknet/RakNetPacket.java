@@ -1103,6 +1103,50 @@ public class RakNetPacket extends Packet {
 		this.supportsDecoding = isMethodOverriden(this.getClass(), RakNetPacket.class, DECODE_METHOD_NAME);
 	}
 
+	/**
+	 * Creates a RakNet packet that is written to the specified buffer.
+	 * <p>
+	 * This allows for packets to be encoded directly into buffers that have
+	 * been allocated ahead of time, such as pooled direct buffers, rather than
+	 * into a new buffer that grows as it is written to.
+	 * 
+	 * @param id
+	 *            the ID of the packet.
+	 * @param buffer
+	 *            the buffer to write to. The ID is written to it right away.
+	 * @throws NullPointerException
+	 *             if the <code>buffer</code> is <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             if the <code>id</code> is not in between <code>0-255</code>.
+	 */
+	public RakNetPacket(int id, ByteBuf buffer) throws NullPointerException, IllegalArgumentException {
+		super(checkBuffer(buffer));
+		if (id < 0x00 || id > 0xFF) {
+			throw new IllegalArgumentException("ID must be in between 0-255");
+		}
+		this.writeUnsignedByte(this.id = (short) id);
+		this.supportsEncoding = isMethodOverriden(this.getClass(), RakNetPacket.class, ENCODE_METHOD_NAME);
+		this.supportsDecoding = isMethodOverriden(this.getClass(), RakNetPacket.class, DECODE_METHOD_NAME);
+	}
+
+	/**
+	 * Makes sure a buffer given to a RakNet packet to be written to is not
+	 * <code>null</code>, as a <code>null</code> buffer would otherwise have a
+	 * new one be created in its place.
+	 * 
+	 * @param buffer
+	 *            the buffer.
+	 * @return the buffer.
+	 * @throws NullPointerException
+	 *             if the <code>buffer</code> is <code>null</code>.
+	 */
+	private static ByteBuf checkBuffer(ByteBuf buffer) throws NullPointerException {
+		if (buffer == null) {
+			throw new NullPointerException("Buffer cannot be null");
+		}
+		return buffer;
+	}
+
 	/**
 	 * Creates a RakNet packet.
 	 * 
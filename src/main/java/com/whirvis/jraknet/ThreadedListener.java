@@ -39,7 +39,14 @@ import java.lang.annotation.Target;
  * RakNetServerListener}, {@link com.whirvis.jraknet.client.RakNetClientListener
  * RakNetClientListener}, or a
  * {@link com.whirvis.jraknet.discovery.DiscoveryListener DiscoveryListener}
- * wishes to have its' event methods called on their own dedicated thread.
+ * wishes to have its' event methods called off of the thread that called the
+ * event.
+ * <p>
+ * The event methods are called by the {@link EventDispatcher} of whatever
+ * called the event, which hands them to a shared pool of threads rather than
+ * starting a new thread for every event. Unless the listener is not
+ * {@link #ordered() ordered}, the events for each peer are handled in the
+ * order they were called.
  * 
  * @author Trent "Whirvis" Summerlin
  * @since JRakNet v2.11.0
@@ -49,7 +56,9 @@ import java.lang.annotation.Target;
 public @interface ThreadedListener {
 
 	/**
-	 * Returns the name that will be used for the threaded event method.
+	 * Returns the name that will be used for the threaded event method. This
+	 * is used to name the thread while it calls the event methods of the
+	 * listener.
 	 * <p>
 	 * By default, this value is simply "Event".
 	 * 
@@ -57,4 +66,19 @@ public @interface ThreadedListener {
 	 */
 	String name() default "Event";
 
+	/**
+	 * Returns whether or not the events for each peer must be handled in the
+	 * order they were called.
+	 * <p>
+	 * By default, this value is <code>true</code>. Events that are not
+	 * ordered can be handled by any idle thread as soon as they are called,
+	 * which can improve throughput for listeners that do not care about the
+	 * order of events.
+	 * 
+	 * @return <code>true</code> if the events for each peer must be handled in
+	 *         order, <code>false</code> otherwise.
+	 * @since JRakNet v2.11.9
+	 */
+	boolean ordered() default true;
+
 }
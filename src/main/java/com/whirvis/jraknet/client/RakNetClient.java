@@ -42,6 +42,8 @@ import java.util.function.Consumer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.whirvis.jraknet.EventDispatcher;
+import com.whirvis.jraknet.InvalidChannelException;
 import com.whirvis.jraknet.Packet;
 import com.whirvis.jraknet.RakNet;
 import com.whirvis.jraknet.RakNetException;
@@ -49,9 +51,16 @@ import com.whirvis.jraknet.RakNetPacket;
 import com.whirvis.jraknet.ThreadedListener;
 import com.whirvis.jraknet.client.peer.PeerFactory;
 import com.whirvis.jraknet.discovery.DiscoveredServer;
+import com.whirvis.jraknet.peer.DeliveryReceipt;
+import com.whirvis.jraknet.peer.PayloadCompressor;
+import com.whirvis.jraknet.peer.PeerScheduler;
+import com.whirvis.jraknet.peer.Priority;
 import com.whirvis.jraknet.peer.RakNetPeerMessenger;
+import com.whirvis.jraknet.peer.RakNetPeer;
 import com.whirvis.jraknet.peer.RakNetServerPeer;
 import com.whirvis.jraknet.peer.RakNetState;
+import com.whirvis.jraknet.peer.StreamSinkFactory;
+import com.whirvis.jraknet.protocol.ConnectionType;
 import com.whirvis.jraknet.protocol.Reliability;
 import com.whirvis.jraknet.protocol.login.ConnectionRequest;
 import com.whirvis.jraknet.protocol.message.EncapsulatedPacket;
@@ -98,7 +107,7 @@ public class RakNetClient implements RakNetPeerMessenger, RakNetClientListener {
 	private final Logger logger;
 	private final long timestamp;
 	private final ConcurrentLinkedQueue<RakNetClientListener> listeners;
-	private int eventThreadCount;
+	private final EventDispatcher eventDispatcher;
 	private InetSocketAddress serverAddress;
 	private Bootstrap bootstrap;
 	private RakNetClientHandler handler;
@@ -109,7 +118,15 @@ public class RakNetClient implements RakNetPeerMessenger, RakNetClientListener {
 	private int highestMaximumTransferUnitSize;
 	private PeerFactory peerFactory;
 	private volatile RakNetServerPeer peer;
-	private Thread peerThread;
+	private volatile boolean corked;
+	private volatile long coalescingDelay;
+	private volatile int immediateChannels;
+	private volatile boolean transferUnitProbing;
+	private volatile boolean pooledMessages;
+	private volatile PayloadCompressor compressor;
+	private volatile StreamSinkFactory streamSinkFactory;
+	private volatile long bandwidthLimit;
+	private volatile PeerScheduler<RakNetServerPeer> scheduler;
 
 	/**
 	 * Creates a RakNet client.
@@ -126,6 +143,8 @@ public class RakNetClient implements RakNetPeerMessenger, RakNetClientListener {
 		this.logger = LogManager.getLogger(RakNetClient.class.getSimpleName() + "[" + Long.toHexString(guid).toUpperCase() + "]");
 		this.timestamp = System.currentTimeMillis();
 		this.listeners = new ConcurrentLinkedQueue<RakNetClientListener>();
+		this.eventDispatcher = new EventDispatcher(RakNetClient.class.getSimpleName());
+		this.bandwidthLimit = RakNetPeer.UNLIMITED_BANDWIDTH;
 		if (this.getClass() != RakNetClient.class && RakNetClientListener.class.isAssignableFrom(this.getClass())) {
 			this.addSelfListener();
 		}
@@ -327,18 +346,78 @@ public class RakNetClient implements RakNetPeerMessenger, RakNetClientListener {
 		if (event == null) {
 			throw new NullPointerException("Event cannot be null");
 		}
+		this.callEvent0(null, event);
+	}
+
+	/**
+	 * Calls an event that hands a packet to the listeners.
+	 * <p>
+	 * The packet buffer is retained for every listener annotated with
+	 * {@link ThreadedListener}, and released once that listener has finished
+	 * handling the event. This keeps the packet readable on the listener's
+	 * own thread even if the buffer is released by the caller as soon as this
+	 * method returns, as is the case for split packets that have been
+	 * stitched back together.
+	 * 
+	 * @param packet
+	 *            the packet handed to the listeners.
+	 * @param event
+	 *            the event to call.
+	 * @throws NullPointerException
+	 *             if the <code>packet</code> or <code>event</code> are
+	 *             <code>null</code>.
+	 * @see RakNetClientListener
+	 */
+	public final void callEvent(Packet packet, Consumer<? super RakNetClientListener> event) throws NullPointerException {
+		if (packet == null) {
+			throw new NullPointerException("Packet cannot be null");
+		} else if (event == null) {
+			throw new NullPointerException("Event cannot be null");
+		}
+		this.callEvent0(packet, event);
+	}
+
+	/**
+	 * Returns the event dispatcher of the client, used to call the event methods
+	 * of listeners annotated with {@link ThreadedListener}. This can be used
+	 * to configure how these events are handled, and to keep track of how
+	 * many are waiting to be handled.
+	 * 
+	 * @return the event dispatcher of the client.
+	 */
+	public final EventDispatcher getEventDispatcher() {
+		return this.eventDispatcher;
+	}
+
+	/**
+	 * Calls an event.
+	 * 
+	 * @param packet
+	 *            the packet handed to the listeners, <code>null</code> if
+	 *            there is none.
+	 * @param event
+	 *            the event to call.
+	 */
+	private void callEvent0(Packet packet, Consumer<? super RakNetClientListener> event) {
 		logger.trace("Called event of class " + event.getClass().getName() + " for " + listeners.size() + " listeners");
 		for (RakNetClientListener listener : listeners) {
 			if (listener.getClass().isAnnotationPresent(ThreadedListener.class)) {
 				ThreadedListener threadedListener = listener.getClass().getAnnotation(ThreadedListener.class);
-				new Thread(RakNetClient.class.getSimpleName() + (threadedListener.name().length() > 0 ? "-" : "") + threadedListener.name() + "-Thread-" + ++eventThreadCount) {
-
-					@Override
-					public void run() {
+				if (packet != null) {
+					packet.buffer().retain();
+				}
+				boolean dispatched = eventDispatcher.dispatch(threadedListener.ordered() == true ? this : null, threadedListener.name(), () -> {
+					try {
 						event.accept(listener);
+					} finally {
+						if (packet != null) {
+							packet.release();
+						}
 					}
-
-				}.start();
+				});
+				if (dispatched == false && packet != null) {
+					packet.release();
+				}
 			} else {
 				event.accept(listener);
 			}
@@ -562,11 +641,340 @@ public class RakNetClient implements RakNetPeerMessenger, RakNetClientListener {
 	 *             if the client is not connected to a server.
 	 */
 	@Override
-	public final EncapsulatedPacket sendMessage(Reliability reliability, int channel, Packet packet) throws IllegalStateException {
+	public final EncapsulatedPacket sendMessage(Priority priority, Reliability reliability, int channel, Packet packet) throws IllegalStateException {
+		if (!this.isConnected()) {
+			throw new IllegalStateException("Cannot send messages while not connected to a server");
+		}
+		return peer.sendMessage(priority, reliability, channel, packet);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws IllegalStateException
+	 *             if the client is not connected to a server.
+	 */
+	@Override
+	public final DeliveryReceipt sendMessageWithReceipt(Priority priority, Reliability reliability, int channel, Packet packet) throws IllegalStateException {
 		if (!this.isConnected()) {
 			throw new IllegalStateException("Cannot send messages while not connected to a server");
 		}
-		return peer.sendMessage(reliability, channel, packet);
+		return peer.sendMessageWithReceipt(priority, reliability, channel, packet);
+	}
+
+	/**
+	 * Returns whether or not the client is corked.
+	 * 
+	 * @return <code>true</code> if the client is corked, <code>false</code>
+	 *         otherwise.
+	 * @see #cork()
+	 */
+	public final boolean isCorked() {
+		return this.corked;
+	}
+
+	/**
+	 * Corks the client.
+	 * <p>
+	 * While the client is corked, messages sent to the server are only added
+	 * to the send queue. They will not be packed into datagrams and sent until
+	 * either {@link #flush()} or {@link #uncork()} are called. The client will
+	 * stay corked across connections until it is uncorked.
+	 * 
+	 * @see RakNetServerPeer#cork()
+	 */
+	public final void cork() {
+		this.corked = true;
+		RakNetServerPeer peer = this.peer;
+		if (peer != null) {
+			peer.cork();
+		}
+	}
+
+	/**
+	 * Uncorks the client and flushes the messages that were held back while
+	 * it was corked.
+	 * 
+	 * @see RakNetServerPeer#uncork()
+	 */
+	public final void uncork() {
+		this.corked = false;
+		RakNetServerPeer peer = this.peer;
+		if (peer != null) {
+			peer.uncork();
+		}
+	}
+
+	/**
+	 * Flushes the messages waiting to be sent to the server.
+	 * 
+	 * @see RakNetServerPeer#flush()
+	 */
+	public final void flush() {
+		RakNetServerPeer peer = this.peer;
+		if (peer != null) {
+			peer.flush();
+		}
+	}
+
+	/**
+	 * Returns the amount of time in milliseconds messages can wait in the send
+	 * queue for more messages to fill up a datagram.
+	 * 
+	 * @return the coalescing delay.
+	 */
+	public final long getCoalescingDelay() {
+		return this.coalescingDelay;
+	}
+
+	/**
+	 * Sets the amount of time in milliseconds messages can wait in the send
+	 * queue for more messages to fill up a datagram.
+	 * 
+	 * @param coalescingDelay
+	 *            the coalescing delay. A delay of <code>0</code> will have
+	 *            messages be sent on the next update.
+	 * @throws IllegalArgumentException
+	 *             if the <code>coalescingDelay</code> is negative.
+	 * @see RakNetServerPeer#setCoalescingDelay(long)
+	 */
+	public final void setCoalescingDelay(long coalescingDelay) throws IllegalArgumentException {
+		if (coalescingDelay < 0) {
+			throw new IllegalArgumentException("Coalescing delay cannot be negative");
+		}
+		this.coalescingDelay = coalescingDelay;
+		RakNetServerPeer peer = this.peer;
+		if (peer != null) {
+			peer.setCoalescingDelay(coalescingDelay);
+		}
+	}
+
+	/**
+	 * Returns whether or not messages sent on the specified channel are sent
+	 * immediately.
+	 * 
+	 * @param channel
+	 *            the channel.
+	 * @return <code>true</code> if messages sent on the <code>channel</code>
+	 *         are sent immediately, <code>false</code> otherwise.
+	 * @throws InvalidChannelException
+	 *             if the <code>channel</code> is greater than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 * @see RakNetServerPeer#isImmediateChannel(int)
+	 */
+	public final boolean isImmediateChannel(int channel) throws InvalidChannelException {
+		if (channel < 0 || channel >= RakNet.CHANNEL_COUNT) {
+			throw new InvalidChannelException(channel);
+		}
+		return (immediateChannels & (1 << channel)) != 0;
+	}
+
+	/**
+	 * Enables or disables immediate sending for messages sent to the server on
+	 * the specified channel. This applies
+	 * to the current connection, as well as every connection made afterwards.
+	 * 
+	 * @param channel
+	 *            the channel.
+	 * @param immediate
+	 *            <code>true</code> if messages sent on the
+	 *            <code>channel</code> should be sent immediately,
+	 *            <code>false</code> otherwise.
+	 * @throws InvalidChannelException
+	 *             if the <code>channel</code> is greater than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 * @see RakNetServerPeer#setImmediateChannel(int, boolean)
+	 */
+	public final synchronized void setImmediateChannel(int channel, boolean immediate) throws InvalidChannelException {
+		if (channel < 0 || channel >= RakNet.CHANNEL_COUNT) {
+			throw new InvalidChannelException(channel);
+		}
+		boolean updated = this.isImmediateChannel(channel) != immediate;
+		if (immediate == true) {
+			this.immediateChannels |= 1 << channel;
+		} else {
+			this.immediateChannels &= ~(1 << channel);
+		}
+		RakNetServerPeer peer = this.peer;
+		if (peer != null) {
+			peer.setImmediateChannel(channel, immediate);
+		}
+		if (updated == true) {
+			logger.info((immediate == true ? "Enabled" : "Disabled") + " immediate sending on channel " + channel);
+		}
+	}
+
+	/**
+	 * Returns the maximum amount of bytes the client can send per second.
+	 * 
+	 * @return the bandwidth limit in bytes per second,
+	 *         {@value RakNetPeer#UNLIMITED_BANDWIDTH} if the bandwidth is not
+	 *         limited.
+	 */
+	public final long getBandwidthLimit() {
+		return this.bandwidthLimit;
+	}
+
+	/**
+	 * Sets the maximum amount of bytes the client can send per second.
+	 * 
+	 * @param bytesPerSecond
+	 *            the bandwidth limit in bytes per second. A value of
+	 *            {@value RakNetPeer#UNLIMITED_BANDWIDTH} will remove the limit.
+	 * @throws IllegalArgumentException
+	 *             if the <code>bytesPerSecond</code> is less than
+	 *             <code>1</code> and is not equal to
+	 *             {@value RakNetPeer#UNLIMITED_BANDWIDTH}.
+	 * @see RakNetServerPeer#setBandwidthLimit(long)
+	 */
+	public final void setBandwidthLimit(long bytesPerSecond) throws IllegalArgumentException {
+		if (bytesPerSecond < 1 && bytesPerSecond != RakNetPeer.UNLIMITED_BANDWIDTH) {
+			throw new IllegalArgumentException("Bandwidth limit must be greater than 0 or " + RakNetPeer.UNLIMITED_BANDWIDTH + " for unlimited bandwidth");
+		}
+		this.bandwidthLimit = bytesPerSecond;
+		RakNetServerPeer peer = this.peer;
+		if (peer != null) {
+			peer.setBandwidthLimit(bytesPerSecond);
+		}
+	}
+
+	/**
+	 * Enables/disables path MTU probing for the server. This applies to the
+	 * current connection, as well as every connection made afterwards.
+	 * <p>
+	 * When enabled, the maximum transfer unit used for the server can be
+	 * raised above the one agreed upon when connecting, up to the largest
+	 * maximum transfer unit size of the client.
+	 * 
+	 * @param enabled
+	 *            <code>true</code> to enable path MTU probing,
+	 *            <code>false</code> to disable it.
+	 * @see RakNetServerPeer#enableTransferUnitProbing(boolean)
+	 */
+	public final void enableTransferUnitProbing(boolean enabled) {
+		boolean updated = this.transferUnitProbing != enabled;
+		this.transferUnitProbing = enabled;
+		RakNetServerPeer peer = this.peer;
+		if (peer != null) {
+			peer.enableTransferUnitProbing(enabled);
+		}
+		if (updated == true) {
+			logger.info((enabled ? "Enabled" : "Disabled") + " path MTU probing");
+		}
+	}
+
+	/**
+	 * Returns whether or not path MTU probing is enabled for the server.
+	 * 
+	 * @return <code>true</code> if path MTU probing is enabled,
+	 *         <code>false</code> otherwise.
+	 */
+	public final boolean transferUnitProbingEnabled() {
+		return this.transferUnitProbing;
+	}
+
+	/**
+	 * Enables/disables pooled messages for the server. This applies to the
+	 * current connection, as well as every connection made afterwards.
+	 * <p>
+	 * When enabled, split packets that were stitched back together are handed
+	 * to the listeners without being copied first, and are released once the
+	 * listeners return. This saves a copy for every large message received,
+	 * but listeners must retain or copy the packets they keep around.
+	 * 
+	 * @param enabled
+	 *            <code>true</code> to enable pooled messages,
+	 *            <code>false</code> to disable them.
+	 * @see RakNetServerPeer#enablePooledMessages(boolean)
+	 * @see RakNetClientListener#handleMessage(RakNetClient, RakNetServerPeer,
+	 *      RakNetPacket, int)
+	 */
+	public final void enablePooledMessages(boolean enabled) {
+		boolean updated = this.pooledMessages != enabled;
+		this.pooledMessages = enabled;
+		RakNetServerPeer peer = this.peer;
+		if (peer != null) {
+			peer.enablePooledMessages(enabled);
+		}
+		if (updated == true) {
+			logger.info((enabled ? "Enabled" : "Disabled") + " pooled messages");
+		}
+	}
+
+	/**
+	 * Returns whether or not pooled messages are enabled for the server.
+	 * 
+	 * @return <code>true</code> if pooled messages are enabled,
+	 *         <code>false</code> otherwise.
+	 */
+	public final boolean pooledMessagesEnabled() {
+		return this.pooledMessages;
+	}
+
+	/**
+	 * Returns the compressor used for servers that support payload
+	 * compression.
+	 * 
+	 * @return the compressor, <code>null</code> if payload compression is
+	 *         disabled.
+	 */
+	public final PayloadCompressor getPayloadCompressor() {
+		return this.compressor;
+	}
+
+	/**
+	 * Sets the compressor used for servers that support payload compression.
+	 * <p>
+	 * When set, the client advertises payload compression to every server it
+	 * connects to afterwards. Messages are only compressed if the server
+	 * advertises compatible payload compression itself, meaning vanilla
+	 * servers are unaffected. The current connection keeps using what was
+	 * negotiated when it was made.
+	 * 
+	 * @param compressor
+	 *            the compressor, <code>null</code> to disable payload
+	 *            compression.
+	 * @see PayloadCompressor#advertise(ConnectionType)
+	 */
+	public final void setPayloadCompressor(PayloadCompressor compressor) {
+		boolean updated = this.compressor != compressor;
+		this.compressor = compressor;
+		if (updated == true) {
+			logger.info((compressor != null ? "Enabled" : "Disabled") + " payload compression");
+		}
+	}
+
+	/**
+	 * Returns the factory used to create the sinks for streams sent by the
+	 * server.
+	 * 
+	 * @return the factory, <code>null</code> if streams are refused.
+	 */
+	public final StreamSinkFactory getStreamSinkFactory() {
+		return this.streamSinkFactory;
+	}
+
+	/**
+	 * Sets the factory used to create the sinks for streams sent by the
+	 * server. This applies to the current connection, as well as every
+	 * connection made afterwards. If there is no factory, every stream sent
+	 * by the server is refused.
+	 * 
+	 * @param streamSinkFactory
+	 *            the factory, <code>null</code> to refuse streams.
+	 * @see RakNetServerPeer#sendStream(int, java.nio.channels.ReadableByteChannel,
+	 *      long)
+	 */
+	public final void setStreamSinkFactory(StreamSinkFactory streamSinkFactory) {
+		boolean updated = this.streamSinkFactory != streamSinkFactory;
+		this.streamSinkFactory = streamSinkFactory;
+		RakNetServerPeer peer = this.peer;
+		if (peer != null) {
+			peer.setStreamSinkFactory(streamSinkFactory);
+		}
+		if (updated == true) {
+			logger.info((streamSinkFactory != null ? "Enabled" : "Disabled") + " receiving streams from the server");
+		}
 	}
 
 	/**
@@ -663,12 +1071,46 @@ public class RakNetClient implements RakNetPeerMessenger, RakNetClientListener {
 			if (sender.equals(peerFactory.getAddress())) {
 				RakNetServerPeer peer = peerFactory.assemble(packet);
 				if (peer != null) {
+					peer.setCoalescingDelay(coalescingDelay);
+					for (int i = 0; i < RakNet.CHANNEL_COUNT; i++) {
+						peer.setImmediateChannel(i, this.isImmediateChannel(i));
+					}
+					peer.setBandwidthLimit(bandwidthLimit);
+					peer.setMaximumTransferUnitLimit(Math.max(highestMaximumTransferUnitSize, peer.getInitialTransferUnit()));
+					peer.enableTransferUnitProbing(transferUnitProbing);
+					peer.enablePooledMessages(pooledMessages);
+					peer.setStreamSinkFactory(streamSinkFactory);
+					if (corked == true) {
+						peer.cork();
+					}
 					this.peer = peer;
 					this.peerFactory = null;
 				}
 			}
 		} else if (peer != null) {
-			peer.handleInternal(packet);
+			PeerScheduler<RakNetServerPeer> scheduler = this.scheduler;
+			if (scheduler == null) {
+				peer.handleInternal(packet);
+			} else {
+				/*
+				 * Hand the packet off to the scheduler thread, so all of the
+				 * protocol processing for the peer is done by a single thread.
+				 * The buffer is retained here, as the handler releases the
+				 * datagram as soon as this method returns.
+				 */
+				RakNetServerPeer peer = this.peer;
+				ByteBuf content = packet.buffer().retainedDuplicate();
+				content.readerIndex(0);
+				scheduler.execute(() -> {
+					try {
+						peer.handleInternal(new RakNetPacket(content));
+					} catch (Throwable cause) {
+						this.handleHandlerException(sender, cause);
+					} finally {
+						content.release();
+					}
+				});
+			}
 		}
 		logger.trace("Handled " + RakNetPacket.getName(packet) + " packet from " + sender);
 	}
@@ -762,37 +1204,21 @@ public class RakNetClient implements RakNetPeerMessenger, RakNetClientListener {
 		peer.sendMessage(Reliability.RELIABLE_ORDERED, connectionRequest);
 		logger.debug("Sent connection request to server");
 
-		// Create and start peer update thread
+		// Create and start peer scheduler
 		RakNetClient client = this;
-		this.peerThread = new Thread(RakNetClient.class.getSimpleName() + "-Peer-Thread-" + Long.toHexString(guid).toUpperCase()) {
-
-			@Override
-			public void run() {
-				while (peer != null && !this.isInterrupted()) {
-					try {
-						Thread.sleep(0, 1); // Lower CPU usage
-					} catch (InterruptedException e) {
-						this.interrupt(); // Interrupted during sleep
-						continue;
-					}
-					if (peer != null) {
-						if (!peer.isDisconnected()) {
-							try {
-								peer.update();
-							} catch (Throwable throwable) {
-								client.callEvent(listener -> listener.onPeerException(client, peer, throwable));
-								if (!peer.isDisconnected()) {
-									client.disconnect(throwable);
-								}
-							}
-						}
-					}
+		this.scheduler = new PeerScheduler<RakNetServerPeer>(RakNetClient.class.getSimpleName() + "-Peer-Thread-" + Long.toHexString(guid).toUpperCase(), peer -> {
+			try {
+				peer.update();
+			} catch (Throwable throwable) {
+				client.callEvent(listener -> listener.onPeerException(client, peer, throwable));
+				if (!peer.isDisconnected()) {
+					client.disconnect(throwable);
 				}
 			}
-
-		};
-		peerThread.start();
-		logger.debug("Created and started peer update thread");
+		});
+		scheduler.start();
+		scheduler.add(peer);
+		logger.debug("Created and started peer scheduler");
 		logger.info("Connected to server with address " + address);
 	}
 
@@ -884,14 +1310,29 @@ public class RakNetClient implements RakNetPeerMessenger, RakNetClientListener {
 			throw new IllegalStateException("Client is not connected to a server");
 		}
 
-		// Disconnect peer and interrupt thread
-		peerThread.interrupt();
-		this.peerThread = null;
+		/*
+		 * Disconnect the peer on the scheduler thread, as it could be
+		 * handling a packet from the peer at this very moment, and then
+		 * shutdown the scheduler.
+		 */
+		PeerScheduler<RakNetServerPeer> scheduler = this.scheduler;
 		RakNetServerPeer peer = this.peer;
-		if (!peer.isDisconnected()) {
-			peer.disconnect();
-			this.peer = null;
+		Runnable disconnect = () -> {
+			if (scheduler != null) {
+				scheduler.remove(peer);
+			}
+			if (!peer.isDisconnected()) {
+				peer.disconnect();
+				this.peer = null;
+			}
+		};
+		if (scheduler != null) {
+			scheduler.invoke(disconnect);
+			scheduler.shutdown();
+		} else {
+			disconnect.run();
 		}
+		this.scheduler = null;
 		logger.info("Disconnected from server with address " + peer.getAddress() + (reason != null ? " with reason \"" + reason + "\"" : ""));
 		this.callEvent(listener -> listener.onDisconnect(this, serverAddress, peer, reason == null ? "Disconnected" : reason));
 
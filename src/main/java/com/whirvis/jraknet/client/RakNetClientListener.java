@@ -130,9 +130,38 @@ public interface RakNetClientListener {
 	public default void onLoss(RakNetClient client, RakNetServerPeer peer, Record record, EncapsulatedPacket packet) {
 	}
 
+	/**
+	 * Called when the server has become writable or is no longer writable.
+	 * <p>
+	 * A server that is no longer writable has more unsent and unacknowledged
+	 * data than its high water mark allows. The client should stop producing
+	 * messages for it until it has become writable again.
+	 * 
+	 * @param client
+	 *            the client.
+	 * @param peer
+	 *            the server whose writability changed.
+	 * @param writable
+	 *            <code>true</code> if the server has become writable,
+	 *            <code>false</code> if it is no longer writable.
+	 * @see RakNetServerPeer#isWritable()
+	 */
+	public default void onWritabilityChanged(RakNetClient client, RakNetServerPeer peer, boolean writable) {
+	}
+
 	/**
 	 * Called when a packet from the server has been received and is ready to be
 	 * handled.
+	 * <p>
+	 * The packet belongs to the listener and can be kept around for as long
+	 * as needed, unless pooled messages have been enabled through
+	 * {@link RakNetClient#enablePooledMessages(boolean)}. In that case, the
+	 * buffer of a split packet that was stitched back together is released
+	 * once this method returns. To keep the packet around for longer, either
+	 * retain its buffer or copy it.
+	 * Listeners annotated with {@link com.whirvis.jraknet.ThreadedListener
+	 * ThreadedListener} can read the packet until they return, as the buffer
+	 * is retained for them until then.
 	 * 
 	 * @param client
 	 *            the client.
@@ -41,6 +41,7 @@ import com.whirvis.jraknet.RakNet;
 import com.whirvis.jraknet.RakNetPacket;
 import com.whirvis.jraknet.client.MaximumTransferUnit;
 import com.whirvis.jraknet.client.RakNetClient;
+import com.whirvis.jraknet.peer.PayloadCompressor;
 import com.whirvis.jraknet.peer.RakNetServerPeer;
 import com.whirvis.jraknet.protocol.ConnectionType;
 import com.whirvis.jraknet.protocol.connection.ConnectionBanned;
@@ -101,6 +102,7 @@ public final class PeerFactory {
 	private long serverGuid;
 	private int maximumTransferUnit;
 	private ConnectionType connectionType;
+	private PayloadCompressor compressor;
 
 	/**
 	 * Creates a peer factory.
@@ -233,12 +235,17 @@ public final class PeerFactory {
 			throw new ServerOfflineException(client, address);
 		}
 
+		// Advertise payload compression if it is enabled
+		this.compressor = client.getPayloadCompressor();
+		ConnectionType clientConnectionType = (compressor != null ? compressor.advertise(ConnectionType.JRAKNET) : null);
+
 		// Send open connection request two until a response is received
 		while (availableAttempts-- > 0 && factoryState < STATE_PEER_ASSEMBLED && throwable == null) {
 			OpenConnectionRequestTwo connectionRequestTwo = new OpenConnectionRequestTwo();
 			connectionRequestTwo.clientGuid = client.getGloballyUniqueId();
 			connectionRequestTwo.serverAddress = this.address;
 			connectionRequestTwo.maximumTransferUnit = this.maximumTransferUnit;
+			connectionRequestTwo.connectionType = clientConnectionType;
 			connectionRequestTwo.encode();
 			if (!connectionRequestTwo.failed()) {
 				client.sendNettyMessage(connectionRequestTwo, address);
@@ -328,7 +335,11 @@ public final class PeerFactory {
 					client.callEvent(listener -> listener.onConnect(client, address, connectionType));
 					logger.debug("Created server peer using globally unique ID " + Long.toHexString(serverGuid).toUpperCase() + " and maximum transfer unit with size of "
 							+ maximumTransferUnit + " bytes (" + (maximumTransferUnit * 8) + " bits) for server address " + address);
-					return new RakNetServerPeer(client, address, serverGuid, maximumTransferUnit, connectionType, channel);
+					RakNetServerPeer peer = new RakNetServerPeer(client, address, serverGuid, maximumTransferUnit, connectionType, channel);
+					if (compressor != null && compressor.isSupportedBy(connectionType)) {
+						peer.setPayloadCompressor(compressor);
+					}
+					return peer;
 				} else if (packet.getId() == ID_ALREADY_CONNECTED) {
 					throw new AlreadyConnectedException(client, address);
 				} else if (packet.getId() == ID_NO_FREE_INCOMING_CONNECTIONS) {
@@ -42,6 +42,7 @@ import java.util.function.Consumer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.whirvis.jraknet.EventDispatcher;
 import com.whirvis.jraknet.RakNet;
 import com.whirvis.jraknet.ThreadedListener;
 import com.whirvis.jraknet.identifier.Identifier;
@@ -89,7 +90,7 @@ public final class Discovery {
 	private static final long PING_ID = UUID.randomUUID().getLeastSignificantBits();
 
 	protected static DiscoveryMode discoveryMode = DiscoveryMode.ALL_CONNECTIONS;
-	protected static int eventThreadCount;
+	protected static final EventDispatcher EVENT_DISPATCHER = new EventDispatcher(Discovery.class.getSimpleName());
 	protected static final ConcurrentLinkedQueue<DiscoveryListener> LISTENERS = new ConcurrentLinkedQueue<DiscoveryListener>();
 	protected static final ConcurrentHashMap<InetSocketAddress, Boolean> DISCOVERY_ADDRESSES = new ConcurrentHashMap<InetSocketAddress, Boolean>();
 	protected static final ConcurrentHashMap<InetSocketAddress, DiscoveredServer> DISCOVERED = new ConcurrentHashMap<InetSocketAddress, DiscoveredServer>();
@@ -200,6 +201,18 @@ public final class Discovery {
 		}
 	}
 
+	/**
+	 * Returns the event dispatcher of the discovery system, used to call the
+	 * event methods of listeners annotated with {@link ThreadedListener}.
+	 * This can be used to configure how these events are handled, and to keep
+	 * track of how many are waiting to be handled.
+	 * 
+	 * @return the event dispatcher of the discovery system.
+	 */
+	public static EventDispatcher getEventDispatcher() {
+		return EVENT_DISPATCHER;
+	}
+
 	/**
 	 * Calls an event.
 	 * 
@@ -217,14 +230,7 @@ public final class Discovery {
 		for (DiscoveryListener listener : LISTENERS) {
 			if (listener.getClass().isAnnotationPresent(ThreadedListener.class)) {
 				ThreadedListener threadedListener = listener.getClass().getAnnotation(ThreadedListener.class);
-				new Thread(Discovery.class.getSimpleName() + (threadedListener.name().length() > 0 ? "-" : "") + threadedListener.name() + "-Thread-" + ++eventThreadCount) {
-
-					@Override
-					public void run() {
-						event.accept(listener);
-					}
-
-				}.start();
+				EVENT_DISPATCHER.dispatch(threadedListener.ordered() == true ? Discovery.class : null, threadedListener.name(), () -> event.accept(listener));
 			} else {
 				event.accept(listener);
 			}
@@ -65,6 +65,11 @@ import io.netty.channel.socket.nio.NioDatagramChannel;
  */
 public final class DiscoveryThread extends Thread {
 
+	/**
+	 * The interval at which pings are broadcasted to discovery addresses.
+	 */
+	public static final long PING_BROADCAST_INTERVAL = 1000L;
+
 	private final Logger logger;
 	private final Bootstrap bootstrap;
 	private final NioEventLoopGroup group;
@@ -112,12 +117,6 @@ public final class DiscoveryThread extends Thread {
 				 */
 				throw new IllegalStateException("Discovery thread must be this while running, are there multiple discovery threads running?");
 			}
-			try {
-				Thread.sleep(0, 1); // Save CPU usage
-			} catch (InterruptedException e) {
-				this.interrupt(); // Interrupted during sleep
-				continue;
-			}
 			long currentTime = System.currentTimeMillis();
 
 			// Forget servers that have taken too long to respond back
@@ -137,7 +136,7 @@ public final class DiscoveryThread extends Thread {
 			}
 
 			// Broadcast ping to local and external servers
-			if (currentTime - lastPingBroadcast > 1000L) {
+			if (currentTime - lastPingBroadcast > PING_BROADCAST_INTERVAL) {
 				UnconnectedPing ping = Discovery.getDiscoveryMode() == DiscoveryMode.OPEN_CONNECTIONS ? new UnconnectedPingOpenConnections() : new UnconnectedPing();
 				ping.timestamp = Discovery.getTimestamp();
 				ping.pingId = Discovery.getPingId();
@@ -153,6 +152,22 @@ public final class DiscoveryThread extends Thread {
 				logger.trace("Sent unconnected ping to " + Discovery.DISCOVERY_ADDRESSES.size() + " server" + (Discovery.DISCOVERY_ADDRESSES.size() == 1 ? "" : "s"));
 				this.lastPingBroadcast = currentTime;
 			}
+
+			/*
+			 * Sleep until either the next ping broadcast or until the next
+			 * discovered server would time out, whichever comes first. There
+			 * is nothing to do in between, so there is no reason to wake up
+			 * any earlier than that.
+			 */
+			long sleepTime = lastPingBroadcast + PING_BROADCAST_INTERVAL + 1L - currentTime;
+			for (DiscoveredServer discovered : Discovery.DISCOVERED.values()) {
+				sleepTime = Math.min(sleepTime, DiscoveredServer.SERVER_TIMEOUT_MILLIS - discovered.getTimestamp());
+			}
+			try {
+				Thread.sleep(Math.max(sleepTime, 1L));
+			} catch (InterruptedException e) {
+				this.interrupt(); // Interrupted during sleep
+			}
 		}
 
 		/*
@@ -0,0 +1,213 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+/**
+ * Used to keep track of how well the messages sent to and received from a
+ * {@link RakNetPeer} compress, and how much time is spent doing so.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ * @see PayloadCompressor
+ */
+public final class CompressionMetrics {
+
+	private long compressedMessages;
+	private long incompressibleMessages;
+	private long bytesBeforeCompression;
+	private long bytesAfterCompression;
+	private long compressionTime;
+	private long decompressedMessages;
+	private long bytesBeforeDecompression;
+	private long bytesAfterDecompression;
+	private long decompressionTime;
+
+	/**
+	 * Returns the amount of messages that were sent compressed.
+	 *
+	 * @return the amount of messages that were sent compressed.
+	 */
+	public synchronized long getCompressedMessages() {
+		return this.compressedMessages;
+	}
+
+	/**
+	 * Returns the amount of messages that were sent as they were, as they
+	 * would not have gotten any smaller by compressing them.
+	 *
+	 * @return the amount of messages that could not be compressed.
+	 */
+	public synchronized long getIncompressibleMessages() {
+		return this.incompressibleMessages;
+	}
+
+	/**
+	 * Returns the total size of the messages that were sent compressed,
+	 * before they were compressed.
+	 *
+	 * @return the size of the messages before compression in bytes.
+	 */
+	public synchronized long getBytesBeforeCompression() {
+		return this.bytesBeforeCompression;
+	}
+
+	/**
+	 * Returns the total size of the messages that were sent compressed, after
+	 * they were compressed.
+	 *
+	 * @return the size of the messages after compression in bytes.
+	 */
+	public synchronized long getBytesAfterCompression() {
+		return this.bytesAfterCompression;
+	}
+
+	/**
+	 * Returns the compression ratio of the messages sent. This is how many
+	 * times larger the messages were before they were compressed.
+	 *
+	 * @return the compression ratio of the messages sent, <code>1.0</code> if
+	 *         no messages have been compressed.
+	 */
+	public synchronized double getCompressionRatio() {
+		if (bytesAfterCompression <= 0) {
+			return 1.0D;
+		}
+		return (double) bytesBeforeCompression / (double) bytesAfterCompression;
+	}
+
+	/**
+	 * Returns the total time spent compressing messages, including messages
+	 * that ended up being incompressible.
+	 *
+	 * @return the time spent compressing messages in nanoseconds.
+	 */
+	public synchronized long getCompressionTime() {
+		return this.compressionTime;
+	}
+
+	/**
+	 * Returns the amount of compressed messages that were received and
+	 * decompressed.
+	 *
+	 * @return the amount of messages that were decompressed.
+	 */
+	public synchronized long getDecompressedMessages() {
+		return this.decompressedMessages;
+	}
+
+	/**
+	 * Returns the total size of the compressed messages received, before they
+	 * were decompressed.
+	 *
+	 * @return the size of the messages before decompression in bytes.
+	 */
+	public synchronized long getBytesBeforeDecompression() {
+		return this.bytesBeforeDecompression;
+	}
+
+	/**
+	 * Returns the total size of the compressed messages received, after they
+	 * were decompressed.
+	 *
+	 * @return the size of the messages after decompression in bytes.
+	 */
+	public synchronized long getBytesAfterDecompression() {
+		return this.bytesAfterDecompression;
+	}
+
+	/**
+	 * Returns the compression ratio of the messages received.
+	 *
+	 * @return the compression ratio of the messages received,
+	 *         <code>1.0</code> if no messages have been decompressed.
+	 */
+	public synchronized double getDecompressionRatio() {
+		if (bytesBeforeDecompression <= 0) {
+			return 1.0D;
+		}
+		return (double) bytesAfterDecompression / (double) bytesBeforeDecompression;
+	}
+
+	/**
+	 * Returns the total time spent decompressing messages.
+	 *
+	 * @return the time spent decompressing messages in nanoseconds.
+	 */
+	public synchronized long getDecompressionTime() {
+		return this.decompressionTime;
+	}
+
+	/**
+	 * Called when a message has been compressed before being sent.
+	 *
+	 * @param before
+	 *            the size of the message before compression in bytes.
+	 * @param after
+	 *            the size of the message after compression in bytes, or
+	 *            <code>-1</code> if it was incompressible.
+	 * @param time
+	 *            the time spent compressing the message in nanoseconds.
+	 */
+	synchronized void onCompress(int before, int after, long time) {
+		if (after < 0) {
+			this.incompressibleMessages++;
+		} else {
+			this.compressedMessages++;
+			this.bytesBeforeCompression += before;
+			this.bytesAfterCompression += after;
+		}
+		this.compressionTime += time;
+	}
+
+	/**
+	 * Called when a compressed message has been received and decompressed.
+	 *
+	 * @param before
+	 *            the size of the message before decompression in bytes.
+	 * @param after
+	 *            the size of the message after decompression in bytes.
+	 * @param time
+	 *            the time spent decompressing the message in nanoseconds.
+	 */
+	synchronized void onDecompress(int before, int after, long time) {
+		this.decompressedMessages++;
+		this.bytesBeforeDecompression += before;
+		this.bytesAfterDecompression += after;
+		this.decompressionTime += time;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "CompressionMetrics [compressedMessages=" + compressedMessages + ", incompressibleMessages=" + incompressibleMessages + ", compressionRatio="
+				+ this.getCompressionRatio() + ", compressionTime=" + compressionTime + ", decompressedMessages=" + decompressedMessages + ", decompressionRatio="
+				+ this.getDecompressionRatio() + ", decompressionTime=" + decompressionTime + "]";
+	}
+
+}
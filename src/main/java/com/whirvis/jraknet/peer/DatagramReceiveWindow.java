@@ -0,0 +1,309 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.util.ArrayList;
+
+import com.whirvis.jraknet.protocol.message.acknowledge.Record;
+
+/**
+ * Used to keep track of the sequence numbers of received
+ * {@link com.whirvis.jraknet.protocol.message.CustomPacket CUSTOM} packets.
+ * <p>
+ * The window is a bitmap over the last {@value #WINDOW_SIZE} sequence numbers,
+ * anchored at the highest sequence number that has been received. This allows
+ * for datagrams that arrive late due to reordering to still be handled, while
+ * datagrams that have already been received are discarded. The sequence
+ * numbers that have been skipped over are considered holes, which are reported
+ * through the {@link #flushHoles()} method so that they can be sent in a
+ * {@link com.whirvis.jraknet.protocol.message.acknowledge.NotAcknowledgedPacket
+ * NACK} packet. Since the NACK packet can itself be lost, the holes that are
+ * still open some time later are reported one more time through the
+ * {@link #flushRetries()} method.
+ * <p>
+ * Datagrams older than the window cannot be told apart from duplicates, and
+ * are considered {@link #isStale(int) stale}.
+ * <p>
+ * Sequence numbers are compared using {@link SequenceNumber serial number
+ * arithmetic}, allowing for the window to keep sliding forward as they wrap
+ * around.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class DatagramReceiveWindow {
+
+	/**
+	 * The amount of sequence numbers the window keeps track of.
+	 */
+	public static final int WINDOW_SIZE = 1024;
+
+	private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+	private final long[] received;
+	private int highest;
+	private int holeCursor;
+	private long holeTime;
+	private int retryStart;
+	private int retryEnd;
+	private long retryTime;
+
+	/**
+	 * Creates a datagram receive window.
+	 */
+	public DatagramReceiveWindow() {
+		this.received = new long[WINDOW_SIZE >>> 6];
+		this.highest = -1;
+		this.holeTime = -1;
+		this.retryTime = -1;
+	}
+
+	/**
+	 * Returns the highest sequence number that has been received.
+	 *
+	 * @return the highest sequence number that has been received,
+	 *         <code>-1</code> if none have been received yet.
+	 */
+	public synchronized int getHighest() {
+		return this.highest;
+	}
+
+	/**
+	 * Returns the time the oldest hole that has yet to be returned by
+	 * {@link #flushHoles()} was found.
+	 *
+	 * @return the time the oldest hole that has yet to be returned was found,
+	 *         <code>-1</code> if there are none.
+	 */
+	public synchronized long getHoleTime() {
+		return this.holeTime;
+	}
+
+	/**
+	 * Returns the time the holes that have yet to be returned by
+	 * {@link #flushRetries()} were first returned by {@link #flushHoles()}.
+	 *
+	 * @return the time the holes that have yet to be reported again were
+	 *         first reported, <code>-1</code> if there are none.
+	 */
+	public synchronized long getRetryTime() {
+		return this.retryTime;
+	}
+
+	/**
+	 * Returns whether or not the specified sequence number is older than the
+	 * window.
+	 * <p>
+	 * There is no way of knowing whether or not a datagram this old has
+	 * already been received, so it is never handled by {@link #receive(int)}.
+	 * It can still contain reliable messages that were never received, which
+	 * are told apart from duplicates by their message index instead.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number.
+	 * @return <code>true</code> if the sequence number is older than the
+	 *         window, <code>false</code> otherwise.
+	 */
+	public synchronized boolean isStale(int sequenceNumber) {
+		return highest >= 0 && SequenceNumber.difference(sequenceNumber, highest) <= -WINDOW_SIZE;
+	}
+
+	/**
+	 * Returns whether or not the bit for the specified sequence number is set.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number.
+	 * @return <code>true</code> if the bit is set, <code>false</code>
+	 *         otherwise.
+	 */
+	private boolean isSet(int sequenceNumber) {
+		return (received[(sequenceNumber & WINDOW_MASK) >>> 6] & (1L << sequenceNumber)) != 0;
+	}
+
+	/**
+	 * Marks the specified sequence number as received.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number.
+	 * @return <code>true</code> if the datagram should be handled,
+	 *         <code>false</code> if it is a duplicate or if it is
+	 *         {@link #isStale(int) stale}.
+	 */
+	public synchronized boolean receive(int sequenceNumber) {
+		int offset = SequenceNumber.difference(sequenceNumber, highest);
+		if (offset > 0) {
+			// Clear the bits of the sequence numbers entering the window
+			if (offset >= WINDOW_SIZE) {
+				for (int i = 0; i < received.length; i++) {
+					received[i] = 0L;
+				}
+			} else {
+				for (int i = 1; i <= offset; i++) {
+					int entering = SequenceNumber.add(highest, i);
+					received[(entering & WINDOW_MASK) >>> 6] &= ~(1L << entering);
+				}
+			}
+			if (offset > 1 && holeTime < 0) {
+				this.holeTime = System.currentTimeMillis();
+			}
+			this.highest = sequenceNumber;
+		} else if (offset <= -WINDOW_SIZE) {
+			return false; // Too old to tell
+		} else if (this.isSet(sequenceNumber)) {
+			return false; // Duplicate
+		}
+		received[(sequenceNumber & WINDOW_MASK) >>> 6] |= 1L << sequenceNumber;
+		return true;
+	}
+
+	/**
+	 * Returns the holes that have been found since the last time this method
+	 * was called.
+	 * <p>
+	 * A hole is a sequence number lower than the highest sequence number
+	 * received that has not yet been received itself. Each hole is only
+	 * returned once by this method, as the sender is responsible for resending
+	 * the datagram after being notified. Holes that have fallen out of the
+	 * window before being returned are never returned.
+	 *
+	 * @return the holes in condensed records, <code>null</code> if there are
+	 *         no new holes.
+	 */
+	public synchronized Record[] flushHoles() {
+		if (highest < 0) {
+			return null; // Nothing received yet
+		}
+		int start = SequenceNumber.add(highest, 1 - WINDOW_SIZE);
+		if (SequenceNumber.difference(holeCursor, start) > 0 && SequenceNumber.difference(holeCursor, highest) <= 0) {
+			start = holeCursor; // Skip the holes that were already returned
+		}
+		this.holeCursor = highest;
+		this.holeTime = -1;
+		Record[] holes = this.findHoles(start, highest);
+		if (holes != null) {
+			/*
+			 * Remember the holes so they can be reported again if the NACK
+			 * packet was lost. If some holes are already waiting to be
+			 * reported again, the new ones are simply added to them.
+			 */
+			if (retryTime < 0) {
+				this.retryStart = start;
+				this.retryTime = System.currentTimeMillis();
+			}
+			this.retryEnd = highest;
+		}
+		return holes;
+	}
+
+	/**
+	 * Returns the holes that were returned by {@link #flushHoles()} and are
+	 * still open, so that they can be reported one more time.
+	 * <p>
+	 * The sender resends a lost datagram with a new sequence number, so a
+	 * hole that the sender was notified of stays open forever. As such, each
+	 * hole is only ever returned by this method once, with the sender simply
+	 * ignoring the holes it has already resent.
+	 *
+	 * @return the holes that are still open in condensed records,
+	 *         <code>null</code> if there are none.
+	 */
+	public synchronized Record[] flushRetries() {
+		if (retryTime < 0) {
+			return null; // Nothing to report again
+		}
+		this.retryTime = -1;
+		int start = SequenceNumber.add(highest, 1 - WINDOW_SIZE);
+		if (SequenceNumber.difference(retryStart, start) > 0) {
+			start = retryStart; // Still within the window
+		}
+		return this.findHoles(start, retryEnd);
+	}
+
+	/**
+	 * Returns the holes within the specified range.
+	 * <p>
+	 * Since records cannot wrap around, a run of holes that does is returned
+	 * as two separate records.
+	 *
+	 * @param start
+	 *            the first sequence number to check, inclusive.
+	 * @param end
+	 *            the last sequence number to check, exclusive.
+	 * @return the holes in condensed records, <code>null</code> if there are
+	 *         none.
+	 */
+	private Record[] findHoles(int start, int end) {
+		ArrayList<Record> holes = null;
+		int holeStart = -1;
+		for (int i = start; SequenceNumber.difference(i, end) < 0; i = SequenceNumber.next(i)) {
+			if (i == 0 && holeStart >= 0) {
+				holes = addHole(holes, holeStart, SequenceNumber.MASK);
+				holeStart = -1;
+			}
+			if (!this.isSet(i)) {
+				if (holeStart < 0) {
+					holeStart = i;
+				}
+			} else if (holeStart >= 0) {
+				holes = addHole(holes, holeStart, i - 1);
+				holeStart = -1;
+			}
+		}
+		if (holeStart >= 0) {
+			holes = addHole(holes, holeStart, SequenceNumber.add(end, -1));
+		}
+		return holes != null ? holes.toArray(new Record[holes.size()]) : null;
+	}
+
+	/**
+	 * Adds a run of holes to the specified list, creating it if needed.
+	 *
+	 * @param holes
+	 *            the list of holes, may be <code>null</code>.
+	 * @param start
+	 *            the first hole, inclusive.
+	 * @param end
+	 *            the last hole, inclusive.
+	 * @return the list of holes.
+	 */
+	private static ArrayList<Record> addHole(ArrayList<Record> holes, int start, int end) {
+		if (holes == null) {
+			holes = new ArrayList<Record>();
+		}
+		holes.add(start == end ? new Record(start) : new Record(start, end));
+		return holes;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "DatagramReceiveWindow [highest=" + highest + ", holeCursor=" + holeCursor + "]";
+	}
+
+}
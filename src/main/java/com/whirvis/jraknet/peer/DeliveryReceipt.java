@@ -0,0 +1,234 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.whirvis.jraknet.protocol.Reliability;
+
+/**
+ * A receipt for a message sent to a {@link RakNetPeer}, used to find out if
+ * and when it was delivered.
+ * <p>
+ * The receipt rides along with the message itself, and every split packet it
+ * was broken up into, as they are sent and resent in datagrams. Once every
+ * datagram that carried a piece of the message has been acknowledged by the
+ * peer, the {@link #getFuture() future} of the receipt is completed. This
+ * means the application no longer has to match acknowledgement events to the
+ * messages it sent itself.
+ * <p>
+ * If the message can no longer be delivered, the future is instead completed
+ * exceptionally with a {@link DeliveryFailedException}. For messages with a
+ * {@link Reliability#isReliable() reliable} reliability this only happens if
+ * the peer disconnects before they are delivered, as lost pieces are resent.
+ * For unreliable messages, this also happens as soon as any piece of it is
+ * lost.
+ * <p>
+ * The future is completed on the thread that updates the peer. Any work done
+ * in response to it that could block should be done asynchronously, lest it
+ * hold back the peer and every other peer updated by the same thread.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class DeliveryReceipt {
+
+	private final Reliability reliability;
+	private final int channel;
+	private final int size;
+	private final CompletableFuture<DeliveryReceipt> future;
+	private int fragmentCount;
+	private int acknowledgedCount;
+	private long acknowledgedBytes;
+
+	/**
+	 * Creates a delivery receipt.
+	 *
+	 * @param reliability
+	 *            the reliability of the message.
+	 * @param channel
+	 *            the channel the message was sent on.
+	 * @param size
+	 *            the size of the message in bytes.
+	 */
+	DeliveryReceipt(Reliability reliability, int channel, int size) {
+		this.reliability = reliability;
+		this.channel = channel;
+		this.size = size;
+		this.future = new CompletableFuture<DeliveryReceipt>();
+		this.fragmentCount = 1;
+	}
+
+	/**
+	 * Returns the reliability of the message.
+	 *
+	 * @return the reliability of the message.
+	 */
+	public Reliability getReliability() {
+		return this.reliability;
+	}
+
+	/**
+	 * Returns the channel the message was sent on.
+	 *
+	 * @return the channel the message was sent on.
+	 */
+	public int getChannel() {
+		return this.channel;
+	}
+
+	/**
+	 * Returns the size of the message as it was sent. If the message was
+	 * compressed, this is its size after compression.
+	 *
+	 * @return the size of the message in bytes.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the amount of pieces the message was sent in. This is the
+	 * amount of split packets it was broken up into, or <code>1</code> if it
+	 * was not split.
+	 *
+	 * @return the amount of pieces the message was sent in.
+	 */
+	public synchronized int getFragmentCount() {
+		return this.fragmentCount;
+	}
+
+	/**
+	 * Sets the amount of pieces the message was sent in.
+	 *
+	 * @param fragmentCount
+	 *            the amount of pieces the message was sent in.
+	 */
+	synchronized void setFragmentCount(int fragmentCount) {
+		this.fragmentCount = fragmentCount;
+	}
+
+	/**
+	 * Returns the amount of pieces of the message that have been acknowledged.
+	 *
+	 * @return the amount of pieces of the message that have been
+	 *         acknowledged.
+	 */
+	public synchronized int getAcknowledgedCount() {
+		return this.acknowledgedCount;
+	}
+
+	/**
+	 * Returns the amount of bytes of the message that have been acknowledged.
+	 * This can be used to keep track of the progress of a large transfer.
+	 *
+	 * @return the amount of bytes of the message that have been acknowledged.
+	 */
+	public synchronized long getAcknowledgedBytes() {
+		return this.acknowledgedBytes;
+	}
+
+	/**
+	 * Returns the future that is completed once the message has been
+	 * delivered, or completed exceptionally with a
+	 * {@link DeliveryFailedException} if it could not be.
+	 *
+	 * @return the future of the receipt.
+	 */
+	public CompletableFuture<DeliveryReceipt> getFuture() {
+		return this.future;
+	}
+
+	/**
+	 * Returns whether or not the message has either been delivered or failed
+	 * to be delivered.
+	 *
+	 * @return <code>true</code> if the message has either been delivered or
+	 *         failed to be delivered, <code>false</code> if it is still on
+	 *         its way.
+	 */
+	public boolean isDone() {
+		return future.isDone();
+	}
+
+	/**
+	 * Returns whether or not the message has been delivered.
+	 *
+	 * @return <code>true</code> if the message has been delivered,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isDelivered() {
+		return future.isDone() && !future.isCompletedExceptionally();
+	}
+
+	/**
+	 * Called when a piece of the message has been acknowledged.
+	 *
+	 * @param bytes
+	 *            the size of the piece in bytes.
+	 * @return <code>true</code> if this was the last piece and the receipt
+	 *         has been completed, <code>false</code> otherwise.
+	 */
+	boolean acknowledge(int bytes) {
+		synchronized (this) {
+			if (future.isDone()) {
+				return false;
+			}
+			this.acknowledgedCount++;
+			this.acknowledgedBytes += bytes;
+			if (acknowledgedCount < fragmentCount) {
+				return false;
+			}
+		}
+		return future.complete(this);
+	}
+
+	/**
+	 * Called when the message can no longer be delivered.
+	 *
+	 * @param reason
+	 *            the reason the message can no longer be delivered.
+	 * @return <code>true</code> if the receipt has been completed
+	 *         exceptionally, <code>false</code> if it was already complete.
+	 */
+	boolean fail(String reason) {
+		if (future.isDone()) {
+			return false;
+		}
+		return future.completeExceptionally(new DeliveryFailedException(this, reason));
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "DeliveryReceipt [reliability=" + reliability + ", channel=" + channel + ", size=" + size + ", fragmentCount=" + fragmentCount + ", acknowledgedCount="
+				+ acknowledgedCount + ", acknowledgedBytes=" + acknowledgedBytes + ", done=" + future.isDone() + "]";
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.util.ArrayList;
+
+/**
+ * A limit on the amount of bytes that can be sent by a group of peers
+ * combined, such as every client connected to a server.
+ * <p>
+ * Every peer sharing the budget is given a share of it, which is a
+ * {@link TokenBucket} with an equal part of the total rate. As long as a peer
+ * has tokens left in its share, it is able to send regardless of what the
+ * other peers are doing, meaning a peer sending a large amount of data cannot
+ * starve the others. When a peer has used up its share, it can borrow any
+ * tokens the other peers have left unused from the bucket of the budget
+ * itself. Bytes sent out of a share are also taken out of the bucket of the
+ * budget, so the peers as a whole cannot go over its rate.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class EgressBudget {
+
+	private final TokenBucket bucket;
+	private final ArrayList<TokenBucket> shares;
+
+	/**
+	 * Creates an egress budget.
+	 *
+	 * @param rate
+	 *            the rate in bytes per second.
+	 * @param burst
+	 *            the burst size in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>rate</code> or <code>burst</code> are less than
+	 *             <code>1</code>.
+	 */
+	public EgressBudget(long rate, long burst) throws IllegalArgumentException {
+		this.bucket = new TokenBucket(rate, burst);
+		this.shares = new ArrayList<TokenBucket>();
+	}
+
+	/**
+	 * Returns the rate of the budget.
+	 *
+	 * @return the rate in bytes per second.
+	 */
+	public long getRate() {
+		return bucket.getRate();
+	}
+
+	/**
+	 * Returns the burst size of the budget.
+	 *
+	 * @return the burst size in bytes.
+	 */
+	public long getBurst() {
+		return bucket.getBurst();
+	}
+
+	/**
+	 * Sets the rate and burst size of the budget. The shares of the budget are
+	 * updated to match.
+	 *
+	 * @param rate
+	 *            the rate in bytes per second.
+	 * @param burst
+	 *            the burst size in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>rate</code> or <code>burst</code> are less than
+	 *             <code>1</code>.
+	 */
+	public synchronized void setRate(long rate, long burst) throws IllegalArgumentException {
+		bucket.setRate(rate, burst);
+		this.rebalance();
+	}
+
+	/**
+	 * Returns the amount of shares the budget is split into.
+	 *
+	 * @return the amount of shares the budget is split into.
+	 */
+	public synchronized int getShareCount() {
+		return shares.size();
+	}
+
+	/**
+	 * Creates a new share of the budget. The rate of every other share is
+	 * lowered to make room for it.
+	 *
+	 * @return the share.
+	 */
+	public synchronized TokenBucket createShare() {
+		TokenBucket share = new TokenBucket(1L, 1L);
+		shares.add(share);
+		this.rebalance();
+		return share;
+	}
+
+	/**
+	 * Removes a share of the budget. The rate of every other share is raised
+	 * to take its place.
+	 *
+	 * @param share
+	 *            the share.
+	 * @return <code>true</code> if the share was removed, <code>false</code>
+	 *         if it was not a share of the budget.
+	 */
+	public synchronized boolean removeShare(TokenBucket share) {
+		if (shares.remove(share)) {
+			this.rebalance();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Splits the rate and burst size of the budget evenly between its shares.
+	 */
+	private void rebalance() {
+		if (shares.isEmpty()) {
+			return;
+		}
+		long rate = Math.max(1L, bucket.getRate() / shares.size());
+		long burst = Math.max(1L, bucket.getBurst() / shares.size());
+		for (TokenBucket share : shares) {
+			share.setRate(rate, burst);
+		}
+	}
+
+	/**
+	 * Returns whether or not a datagram can be sent using the specified share.
+	 *
+	 * @param share
+	 *            the share.
+	 * @param currentTime
+	 *            the current time.
+	 * @return <code>true</code> if either the share has tokens left or there
+	 *         are unused tokens to borrow, <code>false</code> otherwise.
+	 */
+	public boolean isAvailable(TokenBucket share, long currentTime) {
+		return share.isAvailable(currentTime) || bucket.isAvailable(currentTime);
+	}
+
+	/**
+	 * Returns the amount of time until a datagram can be sent using the
+	 * specified share.
+	 *
+	 * @param share
+	 *            the share.
+	 * @param currentTime
+	 *            the current time.
+	 * @return the amount of time in milliseconds until a datagram can be sent,
+	 *         <code>0</code> if one can be sent now.
+	 */
+	public long getTimeUntilAvailable(TokenBucket share, long currentTime) {
+		return Math.min(share.getTimeUntilAvailable(currentTime), bucket.getTimeUntilAvailable(currentTime));
+	}
+
+	/**
+	 * Takes tokens out of the budget for a datagram that is being sent using
+	 * the specified share.
+	 *
+	 * @param share
+	 *            the share.
+	 * @param size
+	 *            the size of the datagram in bytes.
+	 * @param currentTime
+	 *            the current time.
+	 */
+	public void consume(TokenBucket share, int size, long currentTime) {
+		if (share.isAvailable(currentTime)) {
+			share.consume(size, currentTime);
+		}
+		bucket.consume(size, currentTime);
+	}
+
+	@Override
+	public String toString() {
+		return "EgressBudget [bucket=" + bucket + ", shares=" + this.getShareCount() + "]";
+	}
+
+}
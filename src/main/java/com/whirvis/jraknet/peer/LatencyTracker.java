@@ -0,0 +1,336 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.util.Arrays;
+
+/**
+ * Used to keep track of the latency of a {@link RakNetPeer}.
+ * <p>
+ * The timestamps of the
+ * {@link com.whirvis.jraknet.protocol.status.ConnectedPing CONNECTED_PING}
+ * packets that have yet to be answered are kept in a small primitive ring. When
+ * a {@link com.whirvis.jraknet.protocol.status.ConnectedPong CONNECTED_PONG}
+ * packet arrives, the timestamp it echoes back is looked up in the ring and
+ * the round trip time is calculated from it. This allows for multiple pings to
+ * be outstanding at once without the samples getting mixed up. Any pings sent
+ * before the one that was answered are considered lost and forgotten.
+ * <p>
+ * Each sample updates an exponentially weighted moving average of the latency,
+ * so it follows current conditions rather than the lifetime of the peer, and
+ * the jitter, which is the smoothed difference between consecutive samples.
+ * Samples are also recorded in a histogram with logarithmic buckets, which
+ * allows for percentiles to be calculated with a precision of about six
+ * percent. The histogram only covers the last
+ * {@value #HISTOGRAM_WINDOW_SIZE} to <code>2 * </code>
+ * {@value #HISTOGRAM_WINDOW_SIZE} samples, so it also follows current
+ * conditions.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class LatencyTracker {
+
+	/**
+	 * The maximum amount of pings that can be waiting for a response at once.
+	 * Once this is reached, the oldest ping is forgotten whenever a new one is
+	 * sent.
+	 */
+	public static final int MAX_OUTSTANDING_PINGS = 16;
+
+	/**
+	 * The amount of samples in each window of the histogram.
+	 */
+	public static final int HISTOGRAM_WINDOW_SIZE = 256;
+
+	/**
+	 * The highest latency the histogram can record in milliseconds. Higher
+	 * samples are recorded as this value.
+	 */
+	public static final long HISTOGRAM_MAXIMUM = (1L << 16) - 1;
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKET_HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+	private static final int HISTOGRAM_LENGTH = bucketIndex(HISTOGRAM_MAXIMUM) + 1;
+	private static final double EWMA_WEIGHT = 8.0D;
+	private static final double JITTER_WEIGHT = 16.0D;
+
+	/**
+	 * Returns the index of the histogram bucket for the specified value.
+	 *
+	 * @param value
+	 *            the value, which must be in between <code>0</code> and
+	 *            {@value #HISTOGRAM_MAXIMUM}.
+	 * @return the index of the histogram bucket.
+	 */
+	private static int bucketIndex(long value) {
+		int magnitude = Math.max(0, 63 - Long.numberOfLeadingZeros(value | ((1L << SUB_BUCKET_BITS) - 1)) - (SUB_BUCKET_BITS - 1));
+		return magnitude * SUB_BUCKET_HALF_COUNT + (int) (value >>> magnitude);
+	}
+
+	/**
+	 * Returns the highest value that is recorded in the histogram bucket with
+	 * the specified index.
+	 *
+	 * @param index
+	 *            the index of the histogram bucket.
+	 * @return the highest value that is recorded in the bucket.
+	 */
+	private static long highestValue(int index) {
+		int magnitude = Math.max(0, index / SUB_BUCKET_HALF_COUNT - 1);
+		long subBucket = index - magnitude * SUB_BUCKET_HALF_COUNT;
+		return ((subBucket + 1) << magnitude) - 1;
+	}
+
+	private final long[] pings;
+	private int pingHead;
+	private int pingCount;
+	private long samples;
+	private long lastLatency;
+	private double averageLatency;
+	private long lowestLatency;
+	private long highestLatency;
+	private double jitter;
+	private int[] currentWindow;
+	private int[] previousWindow;
+	private int currentWindowSize;
+
+	/**
+	 * Creates a latency tracker.
+	 */
+	public LatencyTracker() {
+		this.pings = new long[MAX_OUTSTANDING_PINGS];
+		this.currentWindow = new int[HISTOGRAM_LENGTH];
+		this.previousWindow = new int[HISTOGRAM_LENGTH];
+		this.reset();
+	}
+
+	/**
+	 * Returns the amount of pings waiting for a response.
+	 *
+	 * @return the amount of pings waiting for a response.
+	 */
+	public synchronized int getOutstandingPings() {
+		return this.pingCount;
+	}
+
+	/**
+	 * Returns the amount of samples that have been taken.
+	 *
+	 * @return the amount of samples that have been taken.
+	 */
+	public synchronized long getSamples() {
+		return this.samples;
+	}
+
+	/**
+	 * Returns the last latency sample.
+	 *
+	 * @return the last latency sample in milliseconds, <code>-1</code> if no
+	 *         samples have been taken yet.
+	 */
+	public synchronized long getLastLatency() {
+		return this.lastLatency;
+	}
+
+	/**
+	 * Returns the exponentially weighted moving average of the latency.
+	 *
+	 * @return the average latency in milliseconds, <code>-1</code> if no
+	 *         samples have been taken yet.
+	 */
+	public synchronized long getAverageLatency() {
+		return Math.round(averageLatency);
+	}
+
+	/**
+	 * Returns the lowest latency sample.
+	 *
+	 * @return the lowest latency sample in milliseconds, <code>-1</code> if no
+	 *         samples have been taken yet.
+	 */
+	public synchronized long getLowestLatency() {
+		return this.lowestLatency;
+	}
+
+	/**
+	 * Returns the highest latency sample.
+	 *
+	 * @return the highest latency sample in milliseconds, <code>-1</code> if
+	 *         no samples have been taken yet.
+	 */
+	public synchronized long getHighestLatency() {
+		return this.highestLatency;
+	}
+
+	/**
+	 * Returns the jitter, which is the smoothed difference between consecutive
+	 * latency samples.
+	 *
+	 * @return the jitter in milliseconds, <code>-1</code> if no samples have
+	 *         been taken yet.
+	 */
+	public synchronized long getJitter() {
+		return Math.round(jitter);
+	}
+
+	/**
+	 * Returns the specified percentile of the recent latency samples.
+	 *
+	 * @param percentile
+	 *            the percentile, in between <code>0</code> and
+	 *            <code>100</code>.
+	 * @return the latency in milliseconds that the specified percentage of
+	 *         recent samples were at or below, <code>-1</code> if no samples
+	 *         have been taken yet.
+	 * @throws IllegalArgumentException
+	 *             if the <code>percentile</code> is not in between
+	 *             <code>0</code> and <code>100</code>.
+	 */
+	public synchronized long getPercentile(double percentile) throws IllegalArgumentException {
+		if (percentile < 0.0D || percentile > 100.0D) {
+			throw new IllegalArgumentException("Percentile must be in between 0 and 100");
+		}
+		long total = 0;
+		for (int i = 0; i < HISTOGRAM_LENGTH; i++) {
+			total += currentWindow[i] + previousWindow[i];
+		}
+		if (total <= 0) {
+			return -1L;
+		}
+		long target = Math.max(1L, (long) Math.ceil(percentile / 100.0D * total));
+		long counted = 0;
+		for (int i = 0; i < HISTOGRAM_LENGTH; i++) {
+			counted += currentWindow[i] + previousWindow[i];
+			if (counted >= target) {
+				return Math.min(highestValue(i), highestLatency);
+			}
+		}
+		return this.highestLatency;
+	}
+
+	/**
+	 * Called when a ping has been sent.
+	 *
+	 * @param timestamp
+	 *            the timestamp of the ping.
+	 */
+	public synchronized void onPing(long timestamp) {
+		if (pingCount >= pings.length) {
+			this.pingHead = (pingHead + 1) % pings.length; // Forget oldest
+			this.pingCount--;
+		}
+		pings[(pingHead + pingCount) % pings.length] = timestamp;
+		this.pingCount++;
+	}
+
+	/**
+	 * Called when a pong has been received.
+	 * <p>
+	 * If the echoed timestamp belongs to an outstanding ping, the round trip
+	 * time is recorded as a sample and the ping is forgotten, alongside every
+	 * ping that was sent before it.
+	 *
+	 * @param timestamp
+	 *            the timestamp of the ping echoed back by the pong.
+	 * @param currentTimestamp
+	 *            the current timestamp, using the same clock as the ping
+	 *            timestamps.
+	 * @return <code>true</code> if a sample was recorded, <code>false</code>
+	 *         if the pong did not belong to an outstanding ping.
+	 */
+	public synchronized boolean onPong(long timestamp, long currentTimestamp) {
+		for (int i = 0; i < pingCount; i++) {
+			if (pings[(pingHead + i) % pings.length] == timestamp) {
+				this.pingHead = (pingHead + i + 1) % pings.length;
+				this.pingCount -= i + 1;
+				this.record(Math.max(currentTimestamp - timestamp, 0L));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Records a latency sample.
+	 *
+	 * @param latency
+	 *            the latency sample in milliseconds.
+	 */
+	private void record(long latency) {
+		if (samples++ <= 0) {
+			this.averageLatency = latency;
+			this.lowestLatency = latency;
+			this.highestLatency = latency;
+			this.jitter = 0.0D;
+		} else {
+			this.averageLatency += (latency - averageLatency) / EWMA_WEIGHT;
+			this.lowestLatency = Math.min(lowestLatency, latency);
+			this.highestLatency = Math.max(highestLatency, latency);
+			this.jitter += (Math.abs(latency - lastLatency) - jitter) / JITTER_WEIGHT;
+		}
+		this.lastLatency = latency;
+
+		// Record in histogram, rotating windows once full
+		if (currentWindowSize >= HISTOGRAM_WINDOW_SIZE) {
+			int[] oldest = this.previousWindow;
+			Arrays.fill(oldest, 0);
+			this.previousWindow = currentWindow;
+			this.currentWindow = oldest;
+			this.currentWindowSize = 0;
+		}
+		currentWindow[bucketIndex(Math.min(latency, HISTOGRAM_MAXIMUM))]++;
+		this.currentWindowSize++;
+	}
+
+	/**
+	 * Forgets all outstanding pings and samples.
+	 */
+	public synchronized void reset() {
+		this.pingHead = 0;
+		this.pingCount = 0;
+		this.samples = 0;
+		this.lastLatency = -1L;
+		this.averageLatency = -1.0D;
+		this.lowestLatency = -1L;
+		this.highestLatency = -1L;
+		this.jitter = -1.0D;
+		Arrays.fill(currentWindow, 0);
+		Arrays.fill(previousWindow, 0);
+		this.currentWindowSize = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LatencyTracker [samples=" + samples + ", lastLatency=" + lastLatency + ", averageLatency=" + this.getAverageLatency() + ", jitter=" + this.getJitter() + ", lowestLatency="
+				+ lowestLatency + ", highestLatency=" + highestLatency + ", outstandingPings=" + pingCount + "]";
+	}
+
+}
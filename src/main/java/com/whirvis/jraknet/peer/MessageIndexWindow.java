@@ -0,0 +1,250 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+/**
+ * Used to keep track of the message indexes of received reliable packets.
+ * <p>
+ * Rather than storing every message index that has been received, only the
+ * lowest message index that has not yet been received is stored, alongside a
+ * bitmap of the message indexes that have been received after it. As the holes
+ * in front of the window are filled in, the window slides forward. This allows
+ * for both the insertion and lookup of a message index to be done in constant
+ * time without any allocation, unless the window must grow to make room for an
+ * index far ahead of the lowest missing index.
+ * <p>
+ * Message indexes are compared using {@link SequenceNumber serial number
+ * arithmetic}, allowing for the window to keep sliding forward as they wrap
+ * around. This is also why the window can never be larger than
+ * {@value SequenceNumber#MAXIMUM_WINDOW} message indexes.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class MessageIndexWindow {
+
+	/**
+	 * The default initial capacity of the window in message indexes.
+	 */
+	public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+	/**
+	 * The default maximum capacity of the window in message indexes.
+	 */
+	public static final int DEFAULT_MAXIMUM_CAPACITY = 1 << 20;
+
+	private final int maximumCapacity;
+	private long[] bitmap;
+	private int mask;
+	private int base;
+
+	/**
+	 * Creates a message index window.
+	 *
+	 * @param initialCapacity
+	 *            the initial capacity of the window in message indexes. This
+	 *            will be rounded up to the nearest power of two.
+	 * @param maximumCapacity
+	 *            the capacity the window will never grow past. This will be
+	 *            rounded up to the nearest power of two, and can be no greater
+	 *            than {@value SequenceNumber#MAXIMUM_WINDOW}.
+	 * @throws IllegalArgumentException
+	 *             if the <code>initialCapacity</code> is less than
+	 *             <code>1</code> or greater than the
+	 *             <code>maximumCapacity</code>.
+	 */
+	public MessageIndexWindow(int initialCapacity, int maximumCapacity) throws IllegalArgumentException {
+		if (initialCapacity < 1) {
+			throw new IllegalArgumentException("Initial capacity must be greater than 0");
+		} else if (initialCapacity > maximumCapacity) {
+			throw new IllegalArgumentException("Initial capacity cannot be greater than the maximum capacity");
+		}
+		int capacity = roundCapacity(initialCapacity);
+		this.maximumCapacity = roundCapacity(maximumCapacity);
+		this.bitmap = new long[capacity >>> 6];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Creates a message index window with an initial capacity of
+	 * {@value #DEFAULT_INITIAL_CAPACITY} and a maximum capacity of
+	 * {@value #DEFAULT_MAXIMUM_CAPACITY}.
+	 */
+	public MessageIndexWindow() {
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_MAXIMUM_CAPACITY);
+	}
+
+	/**
+	 * Rounds the specified capacity up to the nearest power of two that is
+	 * also a multiple of <code>64</code>.
+	 *
+	 * @param capacity
+	 *            the capacity.
+	 * @return the rounded capacity.
+	 */
+	private static int roundCapacity(int capacity) {
+		int rounded = 64;
+		while (rounded < capacity && rounded < SequenceNumber.MAXIMUM_WINDOW) {
+			rounded <<= 1;
+		}
+		return rounded;
+	}
+
+	/**
+	 * Returns the lowest message index that has not yet been received.
+	 * <p>
+	 * Every message index lower than this has been received.
+	 *
+	 * @return the lowest message index that has not yet been received.
+	 */
+	public synchronized int getBase() {
+		return this.base;
+	}
+
+	/**
+	 * Returns the current capacity of the window in message indexes.
+	 *
+	 * @return the current capacity of the window in message indexes.
+	 */
+	public synchronized int getCapacity() {
+		return bitmap.length << 6;
+	}
+
+	/**
+	 * Returns whether or not the specified message index has been received.
+	 *
+	 * @param index
+	 *            the message index.
+	 * @return <code>true</code> if the <code>index</code> has been received,
+	 *         <code>false</code> otherwise.
+	 */
+	public synchronized boolean contains(int index) {
+		int offset = SequenceNumber.difference(index, base);
+		if (offset < 0) {
+			return true; // Below the window, already received
+		} else if (offset > mask) {
+			return false; // Past the window, not yet received
+		}
+		return (bitmap[(index & mask) >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Marks the specified message index as received.
+	 * <p>
+	 * If the index is further ahead of the lowest missing index than the
+	 * maximum capacity allows, the window is forced forward to make room for
+	 * it. The message indexes it skips over are then considered received, as
+	 * the holes they leave behind are too old to ever be filled.
+	 *
+	 * @param index
+	 *            the message index.
+	 * @return <code>true</code> if the <code>index</code> had not yet been
+	 *         received, <code>false</code> if it is a duplicate.
+	 */
+	public synchronized boolean add(int index) {
+		int offset = SequenceNumber.difference(index, base);
+		if (offset < 0) {
+			return false; // Below the window, already received
+		} else if (offset > mask) {
+			this.grow(offset);
+			if (offset > mask) {
+				this.skip(offset - mask);
+			}
+		}
+		int word = (index & mask) >>> 6;
+		long bit = 1L << index;
+		if ((bitmap[word] & bit) != 0) {
+			return false; // Duplicate
+		}
+		bitmap[word] |= bit;
+
+		// Slide the window forward over the filled holes
+		while ((bitmap[(base & mask) >>> 6] & (1L << base)) != 0) {
+			bitmap[(base & mask) >>> 6] &= ~(1L << base);
+			this.base = SequenceNumber.next(base);
+		}
+		return true;
+	}
+
+	/**
+	 * Grows the window until it can fit the specified offset, or until it has
+	 * reached its maximum capacity.
+	 *
+	 * @param offset
+	 *            the offset from the lowest missing index.
+	 */
+	private void grow(int offset) {
+		int capacity = bitmap.length << 6;
+		int newCapacity = capacity;
+		while (newCapacity <= offset && newCapacity < maximumCapacity) {
+			newCapacity <<= 1;
+		}
+		if (newCapacity == capacity) {
+			return; // Already at maximum capacity
+		}
+		long[] newBitmap = new long[newCapacity >>> 6];
+		int newMask = newCapacity - 1;
+		for (int i = 0; i < capacity; i++) {
+			int index = SequenceNumber.add(base, i);
+			if ((bitmap[(index & mask) >>> 6] & (1L << index)) != 0) {
+				newBitmap[(index & newMask) >>> 6] |= 1L << index;
+			}
+		}
+		this.bitmap = newBitmap;
+		this.mask = newMask;
+	}
+
+	/**
+	 * Forces the window forward by the specified amount of message indexes,
+	 * clearing the bits of the indexes that fall out of it.
+	 *
+	 * @param count
+	 *            the amount of message indexes to skip.
+	 */
+	private void skip(int count) {
+		if (count > mask) {
+			this.base = SequenceNumber.add(base, count);
+			for (int i = 0; i < bitmap.length; i++) {
+				bitmap[i] = 0L;
+			}
+			return;
+		}
+		for (int i = 0; i < count; i++) {
+			bitmap[(base & mask) >>> 6] &= ~(1L << base);
+			this.base = SequenceNumber.next(base);
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "MessageIndexWindow [base=" + base + ", capacity=" + this.getCapacity() + "]";
+	}
+
+}
@@ -0,0 +1,310 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A stream of data being sent to a {@link RakNetPeer}.
+ * <p>
+ * Rather than holding all of the data as a single message, the data of a
+ * stream is read from its source one chunk at a time, and only as room frees
+ * up in the congestion window of the peer. Each chunk fits in a single
+ * datagram, so there is no limit on how large a stream can be, and a stream
+ * of any size is sent in constant memory.
+ * <p>
+ * The {@link #getFuture() future} of the stream is completed once every
+ * chunk has been acknowledged by the peer. If the stream is aborted, either
+ * because it was {@link #cancel() cancelled}, the source could not be read
+ * from, the peer refused it or the peer disconnected, the future is instead
+ * completed exceptionally with a {@link StreamAbortedException}. Either way,
+ * the source is closed once it is no longer needed.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ * @see RakNetPeer#sendStream(int, ReadableByteChannel, long)
+ */
+public final class OutgoingStream {
+
+	private final RakNetPeer peer;
+	private final int streamId;
+	private final int channel;
+	private final long length;
+	private final ReadableByteChannel source;
+	private final CompletableFuture<OutgoingStream> future;
+	private ByteBuffer buffer;
+	private long bytesSent;
+	private long bytesAcknowledged;
+	private int unacknowledged;
+	private boolean ended;
+	private volatile boolean cancelled;
+	long nextReadTime;
+
+	/**
+	 * Creates an outgoing stream.
+	 *
+	 * @param peer
+	 *            the peer the stream is being sent to.
+	 * @param streamId
+	 *            the ID of the stream.
+	 * @param channel
+	 *            the channel the stream is being sent on.
+	 * @param length
+	 *            the length of the stream in bytes, or <code>-1</code> if it
+	 *            is unknown.
+	 * @param source
+	 *            the source of the data.
+	 */
+	OutgoingStream(RakNetPeer peer, int streamId, int channel, long length, ReadableByteChannel source) {
+		this.peer = peer;
+		this.streamId = streamId;
+		this.channel = channel;
+		this.length = length;
+		this.source = source;
+		this.future = new CompletableFuture<OutgoingStream>();
+	}
+
+	/**
+	 * Returns the peer the stream is being sent to.
+	 *
+	 * @return the peer the stream is being sent to.
+	 */
+	public RakNetPeer getPeer() {
+		return this.peer;
+	}
+
+	/**
+	 * Returns the ID of the stream.
+	 *
+	 * @return the ID of the stream.
+	 */
+	public int getStreamId() {
+		return this.streamId;
+	}
+
+	/**
+	 * Returns the channel the stream is being sent on.
+	 *
+	 * @return the channel the stream is being sent on.
+	 */
+	public int getChannel() {
+		return this.channel;
+	}
+
+	/**
+	 * Returns the length of the stream.
+	 *
+	 * @return the length of the stream in bytes, or <code>-1</code> if it is
+	 *         unknown.
+	 */
+	public long getLength() {
+		return this.length;
+	}
+
+	/**
+	 * Returns the amount of bytes that have been read from the source and
+	 * sent.
+	 *
+	 * @return the amount of bytes that have been sent.
+	 */
+	public synchronized long getBytesSent() {
+		return this.bytesSent;
+	}
+
+	/**
+	 * Returns the amount of bytes that have been acknowledged by the peer.
+	 * This can be used to keep track of the progress of the stream.
+	 *
+	 * @return the amount of bytes that have been acknowledged.
+	 */
+	public synchronized long getBytesAcknowledged() {
+		return this.bytesAcknowledged;
+	}
+
+	/**
+	 * Returns the future that is completed once all of the data of the stream
+	 * has been delivered, or completed exceptionally with a
+	 * {@link StreamAbortedException} if the stream was aborted.
+	 *
+	 * @return the future of the stream.
+	 */
+	public CompletableFuture<OutgoingStream> getFuture() {
+		return this.future;
+	}
+
+	/**
+	 * Returns whether or not the stream has either been delivered or aborted.
+	 *
+	 * @return <code>true</code> if the stream has either been delivered or
+	 *         aborted, <code>false</code> if it is still being sent.
+	 */
+	public boolean isDone() {
+		return future.isDone();
+	}
+
+	/**
+	 * Cancels the stream. No more data is read from the source, and the peer
+	 * is told to discard the stream.
+	 */
+	public void cancel() {
+		if (!future.isDone()) {
+			this.cancelled = true;
+			peer.wake();
+		}
+	}
+
+	/**
+	 * Returns whether or not the stream has been cancelled.
+	 *
+	 * @return <code>true</code> if the stream has been cancelled,
+	 *         <code>false</code> otherwise.
+	 */
+	boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	/**
+	 * Returns the source of the data.
+	 *
+	 * @return the source of the data.
+	 */
+	ReadableByteChannel getSource() {
+		return this.source;
+	}
+
+	/**
+	 * Returns the buffer chunks are read into, cleared and limited to the
+	 * specified size. The buffer is only reallocated when the size changes,
+	 * which happens if the maximum transfer unit of the peer changes.
+	 *
+	 * @param size
+	 *            the size of the next chunk.
+	 * @return the buffer.
+	 */
+	ByteBuffer getBuffer(int size) {
+		if (buffer == null || buffer.capacity() < size) {
+			this.buffer = ByteBuffer.allocate(size);
+		}
+		buffer.clear();
+		buffer.limit(size);
+		return this.buffer;
+	}
+
+	/**
+	 * Called when a chunk of the stream has been sent.
+	 *
+	 * @param receipt
+	 *            the receipt of the chunk.
+	 * @param bytes
+	 *            the amount of bytes of data in the chunk.
+	 */
+	void onSent(DeliveryReceipt receipt, int bytes) {
+		synchronized (this) {
+			this.bytesSent += bytes;
+			this.unacknowledged++;
+		}
+		receipt.getFuture().whenComplete((delivered, cause) -> {
+			if (cause != null) {
+				this.fail(cause.getMessage());
+			} else {
+				this.onAcknowledged(bytes);
+			}
+		});
+	}
+
+	/**
+	 * Called when a chunk of the stream has been acknowledged.
+	 *
+	 * @param bytes
+	 *            the amount of bytes of data in the chunk.
+	 */
+	private void onAcknowledged(int bytes) {
+		synchronized (this) {
+			this.unacknowledged--;
+			this.bytesAcknowledged += bytes;
+			if (ended == false || unacknowledged > 0) {
+				return;
+			}
+		}
+		future.complete(this);
+	}
+
+	/**
+	 * Called once all of the data of the stream has been read and sent. The
+	 * stream is complete once everything sent has been acknowledged.
+	 */
+	void onEnd() {
+		this.closeSource();
+		synchronized (this) {
+			this.ended = true;
+			if (unacknowledged > 0) {
+				return;
+			}
+		}
+		future.complete(this);
+	}
+
+	/**
+	 * Called when the stream has been aborted.
+	 *
+	 * @param reason
+	 *            the reason the stream was aborted.
+	 * @return <code>true</code> if the stream has been completed
+	 *         exceptionally, <code>false</code> if it was already complete.
+	 */
+	boolean fail(String reason) {
+		this.closeSource();
+		if (future.isDone()) {
+			return false;
+		}
+		return future.completeExceptionally(new StreamAbortedException(this, reason));
+	}
+
+	/**
+	 * Closes the source of the data.
+	 */
+	private void closeSource() {
+		try {
+			source.close();
+		} catch (IOException e) {
+			// No more data will be read from it
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "OutgoingStream [streamId=" + streamId + ", channel=" + channel + ", length=" + length + ", bytesSent=" + bytesSent + ", bytesAcknowledged="
+				+ bytesAcknowledged + ", unacknowledged=" + unacknowledged + ", ended=" + ended + ", done=" + future.isDone() + "]";
+	}
+
+}
@@ -0,0 +1,450 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.whirvis.jraknet.Packet;
+import com.whirvis.jraknet.RakNetPacket;
+import com.whirvis.jraknet.protocol.ConnectionType;
+
+/**
+ * Compresses and decompresses the payloads of messages sent between two
+ * JRakNet peers.
+ * <p>
+ * Compression is negotiated through the metadata of the
+ * {@link ConnectionType} each side sends while connecting. A side that wants
+ * to use compression {@link #advertise(ConnectionType) advertises} it, and a
+ * peer only has its messages compressed if the other side has advertised it
+ * with the same preset dictionary. Vanilla peers never advertise compression,
+ * meaning they will never be sent a compressed message.
+ * <p>
+ * Once negotiated, messages that are at least the {@link #getThreshold()
+ * threshold} in size are compressed using <code>DEFLATE</code> before they are
+ * split up and sent. A compressed message is sent with the ID
+ * {@value #ID_COMPRESSED}, followed by the size of the original message and
+ * the compressed data. Messages that do not get smaller when compressed are
+ * sent as they are.
+ * <p>
+ * The {@link Deflater} and {@link Inflater} instances used are pooled, as they
+ * hold onto native memory that is costly to allocate for every message. A
+ * single compressor can be shared by any amount of peers and threads.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class PayloadCompressor {
+
+	/**
+	 * The ID of a compressed message. This is the ID of the otherwise unused
+	 * {@link RakNetPacket#ID_RESERVED_3 RESERVED_3} packet, and is only ever
+	 * sent to peers that have advertised compression.
+	 */
+	public static final short ID_COMPRESSED = RakNetPacket.ID_RESERVED_3;
+
+	/**
+	 * The metadata key used to advertise compression.
+	 */
+	public static final String METADATA_COMPRESSION = "jraknet-compression";
+
+	/**
+	 * The metadata key used to advertise the checksum of the preset
+	 * dictionary.
+	 */
+	public static final String METADATA_DICTIONARY = "jraknet-compression-dictionary";
+
+	/**
+	 * The name of the compression algorithm.
+	 */
+	public static final String ALGORITHM = "deflate";
+
+	/**
+	 * The default size in bytes a message must be for it to be compressed.
+	 */
+	public static final int DEFAULT_THRESHOLD = 512;
+
+	/**
+	 * The default maximum size in bytes of a message after it has been
+	 * decompressed.
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * The maximum amount of deflaters and inflaters each kept in the pool.
+	 */
+	public static final int MAX_POOLED = 64;
+
+	private final int level;
+	private final byte[] dictionary;
+	private final String dictionaryChecksum;
+	private final ConcurrentLinkedQueue<Deflater> deflaters;
+	private final ConcurrentLinkedQueue<Inflater> inflaters;
+	private final AtomicInteger pooledDeflaters;
+	private final AtomicInteger pooledInflaters;
+	private volatile int threshold;
+	private volatile int maximumSize;
+
+	/**
+	 * Creates a payload compressor.
+	 *
+	 * @param level
+	 *            the compression level, from <code>0</code> to <code>9</code>
+	 *            or {@link Deflater#DEFAULT_COMPRESSION}.
+	 * @param dictionary
+	 *            the preset dictionary, <code>null</code> for none. Both
+	 *            sides must use the same dictionary for compression to be
+	 *            negotiated. A good dictionary holds the strings most likely
+	 *            to appear in messages, with the most common ones at the end.
+	 * @throws IllegalArgumentException
+	 *             if the <code>level</code> is invalid.
+	 */
+	public PayloadCompressor(int level, byte[] dictionary) throws IllegalArgumentException {
+		if ((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level " + level);
+		}
+		this.level = level;
+		if (dictionary != null && dictionary.length > 0) {
+			this.dictionary = dictionary.clone();
+			Adler32 checksum = new Adler32();
+			checksum.update(this.dictionary);
+			this.dictionaryChecksum = Long.toHexString(checksum.getValue());
+		} else {
+			this.dictionary = null;
+			this.dictionaryChecksum = null;
+		}
+		this.deflaters = new ConcurrentLinkedQueue<Deflater>();
+		this.inflaters = new ConcurrentLinkedQueue<Inflater>();
+		this.pooledDeflaters = new AtomicInteger();
+		this.pooledInflaters = new AtomicInteger();
+		this.threshold = DEFAULT_THRESHOLD;
+		this.maximumSize = DEFAULT_MAXIMUM_SIZE;
+	}
+
+	/**
+	 * Creates a payload compressor with the default compression level and no
+	 * preset dictionary.
+	 */
+	public PayloadCompressor() {
+		this(Deflater.DEFAULT_COMPRESSION, null);
+	}
+
+	/**
+	 * Returns the compression level.
+	 *
+	 * @return the compression level.
+	 */
+	public int getLevel() {
+		return this.level;
+	}
+
+	/**
+	 * Returns whether or not a preset dictionary is used.
+	 *
+	 * @return <code>true</code> if a preset dictionary is used,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean hasDictionary() {
+		return dictionary != null;
+	}
+
+	/**
+	 * Returns the size a message must be for it to be compressed.
+	 *
+	 * @return the threshold in bytes.
+	 */
+	public int getThreshold() {
+		return this.threshold;
+	}
+
+	/**
+	 * Sets the size a message must be for it to be compressed. Small messages
+	 * rarely get smaller when compressed, so compressing them is a waste of
+	 * time.
+	 *
+	 * @param threshold
+	 *            the threshold in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>threshold</code> is less than <code>1</code>.
+	 */
+	public void setThreshold(int threshold) throws IllegalArgumentException {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("Threshold must be greater than 0");
+		}
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Returns the maximum size of a message after it has been decompressed.
+	 *
+	 * @return the maximum size in bytes.
+	 */
+	public int getMaximumSize() {
+		return this.maximumSize;
+	}
+
+	/**
+	 * Sets the maximum size of a message after it has been decompressed.
+	 * Compressed messages claiming to be larger than this are discarded, so a
+	 * peer cannot make the other side allocate an unbounded amount of memory
+	 * by sending a tiny compressed message.
+	 *
+	 * @param maximumSize
+	 *            the maximum size in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>maximumSize</code> is less than
+	 *             <code>1</code>.
+	 */
+	public void setMaximumSize(int maximumSize) throws IllegalArgumentException {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be greater than 0");
+		}
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Returns a copy of the specified connection type that advertises
+	 * compression with the settings of this compressor in its metadata.
+	 *
+	 * @param connectionType
+	 *            the connection type.
+	 * @return the connection type advertising compression.
+	 * @throws NullPointerException
+	 *             if the <code>connectionType</code> is <code>null</code>.
+	 */
+	public ConnectionType advertise(ConnectionType connectionType) throws NullPointerException {
+		if (connectionType == null) {
+			throw new NullPointerException("Connection type cannot be null");
+		}
+		HashMap<String, String> metadata = connectionType.getMetaData();
+		metadata.put(METADATA_COMPRESSION, ALGORITHM);
+		if (dictionaryChecksum != null) {
+			metadata.put(METADATA_DICTIONARY, dictionaryChecksum);
+		} else {
+			metadata.remove(METADATA_DICTIONARY);
+		}
+		return new ConnectionType(connectionType.getUUID(), connectionType.getName(), connectionType.getLanguage(), connectionType.getVersion(), metadata);
+	}
+
+	/**
+	 * Returns whether or not the specified connection type has advertised
+	 * compression that is compatible with this compressor.
+	 *
+	 * @param connectionType
+	 *            the connection type of the other side.
+	 * @return <code>true</code> if the other side can receive messages
+	 *         compressed by this compressor, <code>false</code> otherwise.
+	 */
+	public boolean isSupportedBy(ConnectionType connectionType) {
+		if (connectionType == null || connectionType.isVanilla()) {
+			return false;
+		}
+		return ALGORITHM.equals(connectionType.getMetaData(METADATA_COMPRESSION))
+				&& Objects.equals(dictionaryChecksum, connectionType.getMetaData(METADATA_DICTIONARY));
+	}
+
+	/**
+	 * Compresses a message.
+	 *
+	 * @param packet
+	 *            the message to compress.
+	 * @return the compressed message, <code>null</code> if the message would
+	 *         not get any smaller by compressing it.
+	 * @throws NullPointerException
+	 *             if the <code>packet</code> is <code>null</code>.
+	 */
+	public RakNetPacket compress(Packet packet) throws NullPointerException {
+		if (packet == null) {
+			throw new NullPointerException("Packet cannot be null");
+		}
+		byte[] input = packet.array();
+		byte[] output = new byte[input.length];
+		int length = 0;
+		Deflater deflater = this.borrowDeflater();
+		try {
+			if (dictionary != null) {
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(input);
+			deflater.finish();
+			while (!deflater.finished() && length < output.length) {
+				length += deflater.deflate(output, length, output.length - length);
+			}
+			if (!deflater.finished()) {
+				return null; // No smaller than the original
+			}
+		} finally {
+			this.releaseDeflater(deflater);
+		}
+
+		// Only use the compressed message if it is smaller with its header
+		RakNetPacket compressed = new RakNetPacket(ID_COMPRESSED);
+		compressed.writeUnsignedVarInt(input.length);
+		if (compressed.size() + length >= input.length) {
+			compressed.release();
+			return null;
+		}
+		compressed.buffer().writeBytes(output, 0, length);
+		return compressed;
+	}
+
+	/**
+	 * Decompresses a message.
+	 *
+	 * @param packet
+	 *            the compressed message, with its ID already read.
+	 * @return the decompressed message.
+	 * @throws NullPointerException
+	 *             if the <code>packet</code> is <code>null</code>.
+	 * @throws DataFormatException
+	 *             if the compressed data is malformed, the decompressed
+	 *             message is larger than the {@link #getMaximumSize() maximum
+	 *             size}, or it is another compressed message.
+	 */
+	public RakNetPacket decompress(RakNetPacket packet) throws NullPointerException, DataFormatException {
+		if (packet == null) {
+			throw new NullPointerException("Packet cannot be null");
+		}
+		long size = 0;
+		try {
+			size = packet.readUnsignedVarInt();
+		} catch (IndexOutOfBoundsException e) {
+			throw new DataFormatException("Missing decompressed size");
+		}
+		if (size < 1 || size > maximumSize) {
+			throw new DataFormatException("Decompressed size of " + size + " bytes is not in between 1 and " + maximumSize + " bytes");
+		}
+		byte[] input = packet.read(packet.remaining());
+		byte[] output = new byte[(int) size];
+		int length = 0;
+		Inflater inflater = this.borrowInflater();
+		try {
+			inflater.setInput(input);
+			while (length < output.length) {
+				int inflated = inflater.inflate(output, length, output.length - length);
+				if (inflated > 0) {
+					length += inflated;
+				} else if (inflater.needsDictionary()) {
+					if (dictionary == null) {
+						throw new DataFormatException("Missing preset dictionary");
+					}
+					inflater.setDictionary(dictionary);
+				} else if (inflater.finished() || inflater.needsInput()) {
+					break; // Out of data
+				}
+			}
+			if (length == output.length && !inflater.finished() && inflater.inflate(new byte[1]) > 0) {
+				throw new DataFormatException("Decompressed message is larger than " + size + " bytes");
+			} else if (length != output.length || !inflater.finished()) {
+				throw new DataFormatException("Decompressed message is smaller than " + size + " bytes");
+			}
+		} finally {
+			this.releaseInflater(inflater);
+		}
+		if ((output[0] & 0xFF) == ID_COMPRESSED) {
+			throw new DataFormatException("Compressed messages cannot be nested");
+		}
+		return new RakNetPacket(output);
+	}
+
+	/**
+	 * Takes a deflater from the pool, or creates a new one if the pool is
+	 * empty.
+	 *
+	 * @return the deflater.
+	 */
+	private Deflater borrowDeflater() {
+		Deflater deflater = deflaters.poll();
+		if (deflater == null) {
+			return new Deflater(level);
+		}
+		pooledDeflaters.decrementAndGet();
+		return deflater;
+	}
+
+	/**
+	 * Returns a deflater to the pool, or frees it if the pool is full.
+	 *
+	 * @param deflater
+	 *            the deflater.
+	 */
+	private void releaseDeflater(Deflater deflater) {
+		deflater.reset();
+		if (pooledDeflaters.incrementAndGet() <= MAX_POOLED) {
+			deflaters.offer(deflater);
+		} else {
+			pooledDeflaters.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Takes an inflater from the pool, or creates a new one if the pool is
+	 * empty.
+	 *
+	 * @return the inflater.
+	 */
+	private Inflater borrowInflater() {
+		Inflater inflater = inflaters.poll();
+		if (inflater == null) {
+			return new Inflater();
+		}
+		pooledInflaters.decrementAndGet();
+		return inflater;
+	}
+
+	/**
+	 * Returns an inflater to the pool, or frees it if the pool is full.
+	 *
+	 * @param inflater
+	 *            the inflater.
+	 */
+	private void releaseInflater(Inflater inflater) {
+		inflater.reset();
+		if (pooledInflaters.incrementAndGet() <= MAX_POOLED) {
+			inflaters.offer(inflater);
+		} else {
+			pooledInflaters.decrementAndGet();
+			inflater.end();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PayloadCompressor [level=" + level + ", dictionaryChecksum=" + dictionaryChecksum + ", threshold=" + threshold + ", maximumSize=" + maximumSize + "]";
+	}
+
+}
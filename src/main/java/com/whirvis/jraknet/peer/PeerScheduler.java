@@ -0,0 +1,571 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Used to update {@link RakNetPeer peers} only when they have something to do.
+ * <p>
+ * Rather than updating every peer as fast as possible, each peer is placed in a
+ * hashed timing wheel according to the next time it needs to be updated, be it
+ * to send a ping, to resend lost packets, or to check if it has timed out.
+ * Peers that have queued messages to send or that have received new packets
+ * are placed in a dirty queue, which causes the scheduler to wake up and
+ * update them right away. Otherwise, the scheduler thread is parked until the
+ * earliest deadline in the wheel and uses no CPU time in between. The cost of
+ * each tick scales with the amount of peers due for an update, rather than the
+ * total amount of peers.
+ * <p>
+ * The scheduler thread can also be given tasks to run through the
+ * {@link #execute(Runnable)} method. This is used to handle packets received
+ * by a peer on the same thread that updates it, so that the state of the peer
+ * is only ever modified by a single thread.
+ *
+ * @param <T>
+ *            the type of peer being scheduled.
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class PeerScheduler<T extends RakNetPeer> {
+
+	/**
+	 * Used to store the position of a peer in the timing wheel.
+	 *
+	 * @author Trent "Whirvis" Summerlin
+	 * @since JRakNet v2.11.9
+	 */
+	private static final class Node<T> {
+
+		private final T peer;
+		private long deadline;
+		private int slot;
+		private Node<T> previous;
+		private Node<T> next;
+
+		/**
+		 * Creates a timing wheel node.
+		 *
+		 * @param peer
+		 *            the peer.
+		 */
+		private Node(T peer) {
+			this.peer = peer;
+			this.slot = -1;
+		}
+
+	}
+
+	/**
+	 * The amount of time in milliseconds each slot of the timing wheel
+	 * represents.
+	 */
+	public static final long TICK_DURATION = 5L;
+
+	/**
+	 * The amount of slots in the timing wheel.
+	 */
+	public static final int WHEEL_SIZE = 512;
+
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+	private final Logger logger;
+	private final String name;
+	private final Consumer<? super T> updater;
+	private final ConcurrentLinkedQueue<Runnable> tasks;
+	private final ConcurrentLinkedQueue<RakNetPeer> dirty;
+	private final HashMap<RakNetPeer, Node<T>> nodes;
+	private final Node<T>[] wheel;
+	private long lastTick;
+	private volatile Thread thread;
+	private volatile boolean running;
+	private volatile boolean terminated;
+
+	/**
+	 * Creates a peer scheduler.
+	 *
+	 * @param name
+	 *            the name of the scheduler thread.
+	 * @param updater
+	 *            the function used to update a peer. This is expected to call
+	 *            {@link RakNetPeer#update()} and to handle any exceptions that
+	 *            it throws.
+	 * @throws NullPointerException
+	 *             if the <code>name</code> or <code>updater</code> are
+	 *             <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public PeerScheduler(String name, Consumer<? super T> updater) throws NullPointerException {
+		if (name == null) {
+			throw new NullPointerException("Name cannot be null");
+		} else if (updater == null) {
+			throw new NullPointerException("Updater cannot be null");
+		}
+		this.logger = LogManager.getLogger(PeerScheduler.class.getSimpleName() + "-" + name);
+		this.name = name;
+		this.updater = updater;
+		this.tasks = new ConcurrentLinkedQueue<Runnable>();
+		this.dirty = new ConcurrentLinkedQueue<RakNetPeer>();
+		this.nodes = new HashMap<RakNetPeer, Node<T>>();
+		this.wheel = new Node[WHEEL_SIZE];
+	}
+
+	/**
+	 * Returns whether or not the scheduler is running.
+	 *
+	 * @return <code>true</code> if the scheduler is running,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * Starts the scheduler.
+	 *
+	 * @throws IllegalStateException
+	 *             if the scheduler is already running.
+	 */
+	public synchronized void start() throws IllegalStateException {
+		if (running == true) {
+			throw new IllegalStateException("Scheduler is already running");
+		}
+		this.running = true;
+		this.terminated = false;
+		this.lastTick = System.currentTimeMillis() / TICK_DURATION;
+		this.thread = new Thread(this::run, name);
+		thread.start();
+		logger.debug("Started scheduler");
+	}
+
+	/**
+	 * Stops the scheduler.
+	 * <p>
+	 * This does not wait for the scheduler thread to finish, as it is possible
+	 * for this method to be called by the scheduler thread itself.
+	 */
+	public synchronized void shutdown() {
+		if (running == false) {
+			return; // Already shutdown
+		}
+		this.running = false;
+		LockSupport.unpark(thread);
+		logger.debug("Shutdown scheduler");
+	}
+
+	/**
+	 * Returns whether or not the current thread is the scheduler thread.
+	 *
+	 * @return <code>true</code> if the current thread is the scheduler thread,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isSchedulerThread() {
+		return Thread.currentThread() == this.thread;
+	}
+
+	/**
+	 * Runs the specified task on the scheduler thread.
+	 * <p>
+	 * Tasks are run in the order they were submitted, before any peers are
+	 * updated during the same tick.
+	 *
+	 * @param task
+	 *            the task to run.
+	 * @throws NullPointerException
+	 *             if the <code>task</code> is <code>null</code>.
+	 */
+	public void execute(Runnable task) throws NullPointerException {
+		if (task == null) {
+			throw new NullPointerException("Task cannot be null");
+		}
+		tasks.add(task);
+		if (terminated == true) {
+			/*
+			 * The scheduler thread has already run its remaining tasks for
+			 * the last time, so nobody else is going to run this one.
+			 */
+			this.runTasks();
+			return;
+		}
+		Thread thread = this.thread;
+		if (thread != null && Thread.currentThread() != thread) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * Runs the specified task on the scheduler thread and waits for it to
+	 * finish.
+	 * <p>
+	 * If this method is called by the scheduler thread itself, or if the
+	 * scheduler thread has already terminated, the task is run right away on
+	 * the current thread instead.
+	 *
+	 * @param task
+	 *            the task to run.
+	 * @throws NullPointerException
+	 *             if the <code>task</code> is <code>null</code>.
+	 * @throws RuntimeException
+	 *             if the task throws an exception, it is rethrown on the
+	 *             current thread.
+	 */
+	public void invoke(Runnable task) throws NullPointerException, RuntimeException {
+		if (task == null) {
+			throw new NullPointerException("Task cannot be null");
+		} else if (Thread.currentThread() == this.thread || terminated == true) {
+			task.run();
+			return;
+		}
+		FutureTask<Void> future = new FutureTask<Void>(task, null);
+		this.execute(future);
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					future.get();
+					return;
+				} catch (InterruptedException e) {
+					interrupted = true; // Task must finish before returning
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new RuntimeException(cause);
+				}
+			}
+		} finally {
+			if (interrupted == true) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Adds a peer to the scheduler.
+	 *
+	 * @param peer
+	 *            the peer to add.
+	 * @throws NullPointerException
+	 *             if the <code>peer</code> is <code>null</code>.
+	 * @throws IllegalStateException
+	 *             if the <code>peer</code> has already been added to a
+	 *             scheduler.
+	 */
+	public void add(T peer) throws NullPointerException, IllegalStateException {
+		if (peer == null) {
+			throw new NullPointerException("Peer cannot be null");
+		} else if (peer.scheduler != null) {
+			throw new IllegalStateException("Peer has already been added to a scheduler");
+		}
+		peer.scheduler = this;
+		this.wake(peer);
+	}
+
+	/**
+	 * Removes a peer from the scheduler.
+	 * <p>
+	 * If the peer does not belong to this scheduler, this method does nothing.
+	 *
+	 * @param peer
+	 *            the peer to remove.
+	 */
+	public void remove(T peer) {
+		if (peer != null && peer.scheduler == this) {
+			peer.scheduler = null;
+			this.enqueue(peer); // Let thread unlink the peer
+		}
+	}
+
+	/**
+	 * Notifies the scheduler that the next update time of the specified peer
+	 * may have changed.
+	 * <p>
+	 * If the peer is due for an update, it will be updated right away.
+	 * Otherwise, it will be moved to the correct position in the timing wheel.
+	 *
+	 * @param peer
+	 *            the peer.
+	 */
+	void wake(RakNetPeer peer) {
+		if (peer.scheduler == this) {
+			this.enqueue(peer);
+		}
+	}
+
+	/**
+	 * Places the specified peer into the dirty queue and unparks the scheduler
+	 * thread if the peer was not already queued.
+	 *
+	 * @param peer
+	 *            the peer.
+	 */
+	private void enqueue(RakNetPeer peer) {
+		if (peer.dirty.compareAndSet(false, true)) {
+			dirty.add(peer);
+			Thread thread = this.thread;
+			if (thread != null && Thread.currentThread() != thread) {
+				LockSupport.unpark(thread);
+			}
+		}
+	}
+
+	/**
+	 * Links the node into the slot of the timing wheel for its deadline.
+	 *
+	 * @param node
+	 *            the node.
+	 */
+	private void link(Node<T> node) {
+		long tick = (node.deadline + TICK_DURATION - 1) / TICK_DURATION;
+		if (tick <= lastTick) {
+			tick = lastTick + 1; // Slot for current tick was already visited
+		}
+		node.slot = (int) (tick & WHEEL_MASK);
+		node.previous = null;
+		node.next = wheel[node.slot];
+		if (node.next != null) {
+			node.next.previous = node;
+		}
+		wheel[node.slot] = node;
+	}
+
+	/**
+	 * Unlinks the node from the timing wheel.
+	 *
+	 * @param node
+	 *            the node.
+	 */
+	private void unlink(Node<T> node) {
+		if (node.slot < 0) {
+			return; // Not linked
+		}
+		if (node.previous != null) {
+			node.previous.next = node.next;
+		} else {
+			wheel[node.slot] = node.next;
+		}
+		if (node.next != null) {
+			node.next.previous = node.previous;
+		}
+		node.previous = null;
+		node.next = null;
+		node.slot = -1;
+	}
+
+	/**
+	 * Returns the earliest deadline of the peers in the timing wheel.
+	 * <p>
+	 * The slots are scanned in the order they will be visited. A slot can
+	 * also hold peers whose deadlines are one or more rotations away, so the
+	 * scan only stops once it finds a deadline that falls within the slot it
+	 * is currently looking at. Peers due for an update soon are therefore
+	 * found after scanning only a few slots.
+	 *
+	 * @return the earliest deadline, {@link Long#MAX_VALUE} if there are no
+	 *         peers in the timing wheel.
+	 */
+	private long getEarliestDeadline() {
+		long earliest = Long.MAX_VALUE;
+		for (long tick = lastTick + 1; tick <= lastTick + WHEEL_SIZE; tick++) {
+			for (Node<T> node = wheel[(int) (tick & WHEEL_MASK)]; node != null; node = node.next) {
+				earliest = Math.min(earliest, node.deadline);
+			}
+			if (earliest <= tick * TICK_DURATION) {
+				break; // Nothing in a later slot can be due sooner
+			}
+		}
+		return earliest;
+	}
+
+	/**
+	 * Updates the peer of the specified node if it is due for an update, and
+	 * then moves it to the correct position in the timing wheel.
+	 *
+	 * @param node
+	 *            the node.
+	 * @param currentTime
+	 *            the current time.
+	 */
+	private void process(Node<T> node, long currentTime) {
+		T peer = node.peer;
+		this.unlink(node);
+		if (peer.scheduler != this || peer.isDisconnected()) {
+			nodes.remove(peer);
+			return; // Peer no longer belongs to this scheduler
+		}
+		long deadline = peer.getNextUpdateTime();
+		if (deadline <= currentTime) {
+			try {
+				updater.accept(peer);
+			} catch (Throwable throwable) {
+				logger.error("Failed to update peer " + peer.getAddress(), throwable);
+			}
+			if (peer.scheduler != this || peer.isDisconnected()) {
+				nodes.remove(peer);
+				return; // Peer was removed during update
+			}
+			deadline = peer.getNextUpdateTime();
+			if (deadline <= currentTime) {
+				/*
+				 * The peer still has work to do, such as more messages in the
+				 * send queue. Place it at the back of the dirty queue so other
+				 * peers get a chance to be updated first.
+				 */
+				this.enqueue(peer);
+				return;
+			}
+		}
+		node.deadline = deadline;
+		this.link(node);
+	}
+
+	/**
+	 * The main loop of the scheduler thread.
+	 */
+	private void run() {
+		ArrayList<Node<T>> due = new ArrayList<Node<T>>();
+		while (running == true) {
+			// Run submitted tasks
+			Runnable task = null;
+			int taskCount = tasks.size();
+			while (taskCount-- > 0 && (task = tasks.poll()) != null) {
+				try {
+					task.run();
+				} catch (Throwable throwable) {
+					logger.error("Failed to run task", throwable);
+				}
+			}
+			long currentTime = System.currentTimeMillis();
+
+			// Update peers in the dirty queue
+			RakNetPeer dirtyPeer = null;
+			int dirtyCount = dirty.size();
+			while (dirtyCount-- > 0 && (dirtyPeer = dirty.poll()) != null) {
+				dirtyPeer.dirty.set(false);
+				Node<T> node = nodes.get(dirtyPeer);
+				if (node == null) {
+					if (dirtyPeer.scheduler != this) {
+						continue; // Removed before it was ever scheduled
+					}
+					@SuppressWarnings("unchecked")
+					T peer = (T) dirtyPeer;
+					node = new Node<T>(peer);
+					nodes.put(peer, node);
+				}
+				this.process(node, currentTime);
+			}
+
+			// Update peers whose deadlines have passed
+			long tick = currentTime / TICK_DURATION;
+			long ticks = Math.min(tick - lastTick, WHEEL_SIZE);
+			for (long i = 0; i < ticks; i++) {
+				int slot = (int) ((tick - i) & WHEEL_MASK);
+				for (Node<T> node = wheel[slot]; node != null; node = node.next) {
+					if (node.deadline <= currentTime) {
+						due.add(node);
+					}
+				}
+			}
+			this.lastTick = Math.max(tick, lastTick);
+			for (Node<T> node : due) {
+				this.process(node, currentTime);
+			}
+			due.clear();
+
+			/*
+			 * Sleep until the tick of the earliest deadline or until woken
+			 * up. Peers that get something to do sooner, or tasks that are
+			 * submitted in the meantime, unpark the thread themselves.
+			 */
+			if (running == true && dirty.isEmpty() && tasks.isEmpty()) {
+				long deadline = this.getEarliestDeadline();
+				if (deadline == Long.MAX_VALUE) {
+					LockSupport.park(this);
+				} else {
+					long wakeTick = Math.max((deadline + TICK_DURATION - 1) / TICK_DURATION, lastTick + 1);
+					long sleepTime = wakeTick * TICK_DURATION - System.currentTimeMillis();
+					if (sleepTime > 0) {
+						LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(sleepTime));
+					}
+				}
+			}
+		}
+
+		// Release all peers
+		for (Node<T> node : nodes.values()) {
+			this.unlink(node);
+		}
+		nodes.clear();
+		dirty.clear();
+
+		/*
+		 * Tasks that were submitted but never ran may be holding onto
+		 * resources that they are responsible for releasing, so they are run
+		 * one last time rather than being thrown away. Any task submitted
+		 * after this point is run by the thread submitting it.
+		 */
+		this.terminated = true;
+		this.runTasks();
+		logger.debug("Terminated scheduler thread");
+	}
+
+	/**
+	 * Runs every task that has been submitted to the scheduler.
+	 */
+	private void runTasks() {
+		Runnable task = null;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Throwable throwable) {
+				logger.error("Failed to run task", throwable);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PeerScheduler [name=" + name + ", running=" + running + "]";
+	}
+
+}
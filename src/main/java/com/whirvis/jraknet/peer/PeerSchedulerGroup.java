@@ -0,0 +1,231 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.net.InetSocketAddress;
+import java.util.function.Consumer;
+
+/**
+ * Used to spread {@link RakNetPeer peers} across multiple
+ * {@link PeerScheduler schedulers}.
+ * <p>
+ * Each peer is pinned to a single scheduler, chosen by the hash of its
+ * address. Since the address of a peer is known as soon as a datagram is
+ * received from it, the datagram can be handed off to the scheduler that owns
+ * the peer right away. This way, all of the decoding, acknowledgement
+ * handling, reassembly, and send scheduling for a peer is done by a single
+ * thread, while the work for all peers as a whole is spread across every
+ * scheduler thread.
+ *
+ * @param <T>
+ *            the type of peer being scheduled.
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class PeerSchedulerGroup<T extends RakNetPeer> {
+
+	/**
+	 * The default amount of scheduler threads, which is equal to the amount of
+	 * processors available to the JVM.
+	 */
+	public static final int DEFAULT_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+	private final PeerScheduler<T>[] schedulers;
+
+	/**
+	 * Creates a peer scheduler group.
+	 *
+	 * @param name
+	 *            the base name of the scheduler threads.
+	 * @param threadCount
+	 *            the amount of scheduler threads.
+	 * @param updater
+	 *            the function used to update a peer. This is expected to call
+	 *            {@link RakNetPeer#update()} and to handle any exceptions that
+	 *            it throws.
+	 * @throws NullPointerException
+	 *             if the <code>name</code> or <code>updater</code> are
+	 *             <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             if the <code>threadCount</code> is less than <code>1</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public PeerSchedulerGroup(String name, int threadCount, Consumer<? super T> updater) throws NullPointerException, IllegalArgumentException {
+		if (name == null) {
+			throw new NullPointerException("Name cannot be null");
+		} else if (threadCount < 1) {
+			throw new IllegalArgumentException("Thread count must be greater than 0");
+		}
+		this.schedulers = new PeerScheduler[threadCount];
+		for (int i = 0; i < schedulers.length; i++) {
+			schedulers[i] = new PeerScheduler<T>(name + "-" + i, updater);
+		}
+	}
+
+	/**
+	 * Returns the amount of scheduler threads.
+	 *
+	 * @return the amount of scheduler threads.
+	 */
+	public int getThreadCount() {
+		return schedulers.length;
+	}
+
+	/**
+	 * Starts all of the schedulers.
+	 *
+	 * @throws IllegalStateException
+	 *             if the schedulers are already running.
+	 */
+	public void start() throws IllegalStateException {
+		for (PeerScheduler<T> scheduler : schedulers) {
+			scheduler.start();
+		}
+	}
+
+	/**
+	 * Stops all of the schedulers.
+	 */
+	public void shutdown() {
+		for (PeerScheduler<T> scheduler : schedulers) {
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the scheduler that owns the peer with the specified address.
+	 *
+	 * @param address
+	 *            the address of the peer.
+	 * @return the scheduler that owns the peer with the specified address.
+	 * @throws NullPointerException
+	 *             if the <code>address</code> is <code>null</code>.
+	 */
+	public PeerScheduler<T> getScheduler(InetSocketAddress address) throws NullPointerException {
+		if (address == null) {
+			throw new NullPointerException("Address cannot be null");
+		}
+		int hash = address.hashCode();
+		hash ^= (hash >>> 16);
+		return schedulers[(hash & 0x7FFFFFFF) % schedulers.length];
+	}
+
+	/**
+	 * Adds a peer to the scheduler that owns its address.
+	 *
+	 * @param peer
+	 *            the peer to add.
+	 * @throws NullPointerException
+	 *             if the <code>peer</code> is <code>null</code>.
+	 * @throws IllegalStateException
+	 *             if the <code>peer</code> has already been added to a
+	 *             scheduler.
+	 */
+	public void add(T peer) throws NullPointerException, IllegalStateException {
+		if (peer == null) {
+			throw new NullPointerException("Peer cannot be null");
+		}
+		this.getScheduler(peer.getAddress()).add(peer);
+	}
+
+	/**
+	 * Removes a peer from the scheduler that owns its address.
+	 *
+	 * @param peer
+	 *            the peer to remove.
+	 */
+	public void remove(T peer) {
+		if (peer != null) {
+			this.getScheduler(peer.getAddress()).remove(peer);
+		}
+	}
+
+	/**
+	 * Runs the specified task on the scheduler thread that owns the peer with
+	 * the specified address.
+	 *
+	 * @param address
+	 *            the address of the peer.
+	 * @param task
+	 *            the task to run.
+	 * @throws NullPointerException
+	 *             if the <code>address</code> or <code>task</code> are
+	 *             <code>null</code>.
+	 */
+	public void execute(InetSocketAddress address, Runnable task) throws NullPointerException {
+		this.getScheduler(address).execute(task);
+	}
+
+	/**
+	 * Runs the specified task on the scheduler thread that owns the peer with
+	 * the specified address and waits for it to finish.
+	 * <p>
+	 * If the current thread is the thread of another scheduler in the group,
+	 * the task is only submitted and this method does not wait for it. Two
+	 * scheduler threads waiting on each other would otherwise never finish.
+	 *
+	 * @param address
+	 *            the address of the peer.
+	 * @param task
+	 *            the task to run.
+	 * @throws NullPointerException
+	 *             if the <code>address</code> or <code>task</code> are
+	 *             <code>null</code>.
+	 * @throws RuntimeException
+	 *             if the task throws an exception while it is being waited
+	 *             for, it is rethrown on the current thread.
+	 * @see PeerScheduler#invoke(Runnable)
+	 */
+	public void invoke(InetSocketAddress address, Runnable task) throws NullPointerException, RuntimeException {
+		PeerScheduler<T> owner = this.getScheduler(address);
+		if (!owner.isSchedulerThread() && this.isSchedulerThread()) {
+			owner.execute(task);
+		} else {
+			owner.invoke(task);
+		}
+	}
+
+	/**
+	 * Returns whether or not the current thread is the thread of any of the
+	 * schedulers in the group.
+	 *
+	 * @return <code>true</code> if the current thread is the thread of a
+	 *         scheduler in the group, <code>false</code> otherwise.
+	 */
+	public boolean isSchedulerThread() {
+		for (PeerScheduler<T> scheduler : schedulers) {
+			if (scheduler.isSchedulerThread()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
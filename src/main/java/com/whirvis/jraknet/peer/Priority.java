@@ -0,0 +1,77 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+/**
+ * Represents the priority of a message waiting to be sent by a
+ * {@link RakNetPeer}. Priorities determine the order messages are taken out of
+ * the send queue, they are never sent to the peer.
+ * <p>
+ * Messages of a higher priority are always sent before messages of a lower
+ * priority. Messages of the same priority are shared fairly between the
+ * channels they were sent on, so a large transfer on one channel cannot hold
+ * back the messages on another. Keep in mind that sending
+ * {@link com.whirvis.jraknet.protocol.Reliability#RELIABLE_ORDERED ORDERED}
+ * messages on the same channel with different priorities will cause the ones
+ * that overtake the others to be held back by the other side until the
+ * messages before them arrive.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public enum Priority {
+
+	/**
+	 * The message will be sent before all other messages. As long as the
+	 * congestion window has room for it, it is also sent as soon as it is
+	 * queued rather than on the next update. This should be reserved for
+	 * messages that are both small and time critical.
+	 */
+	IMMEDIATE,
+
+	/**
+	 * The message will be sent before all messages other than those with the
+	 * {@link #IMMEDIATE} priority.
+	 */
+	HIGH,
+
+	/**
+	 * The message will be sent before all messages with the {@link #LOW}
+	 * priority. This is the priority used when none is specified.
+	 */
+	MEDIUM,
+
+	/**
+	 * The message will only be sent when no messages of a higher priority are
+	 * waiting to be sent. This is best suited for bulk transfers.
+	 */
+	LOW;
+
+}
@@ -128,27 +128,32 @@ public final class RakNetClientPeer extends RakNetPeer {
 				this.timestamp = System.currentTimeMillis() - newIncomingConnection.clientTimestamp;
 				this.setState(RakNetState.LOGGED_IN);
 				this.getLogger().info("Client with globally unique ID " + Long.toHexString(this.getGloballyUniqueId()).toUpperCase() + " has logged in");
-				server.callEvent(listener -> listener.onLogin(server, this));
+				server.callEvent(this.getAddress(), listener -> listener.onLogin(server, this));
 			} else {
 				server.disconnect(this, "Failed to login (" + newIncomingConnection.getClass().getSimpleName() + " failed to decode)");
 			}
 		} else if (packet.getId() == ID_DISCONNECTION_NOTIFICATION) {
 			server.disconnect(this, "Client disconnected");
 		} else if (packet.getId() >= ID_USER_PACKET_ENUM) {
-			server.callEvent(listener -> listener.handleMessage(server, this, packet, channel));
+			server.callEvent(this.getAddress(), packet, listener -> listener.handleMessage(server, this, packet, channel));
 		} else {
-			server.callEvent(listener -> listener.handleUnknownMessage(server, this, packet, channel));
+			server.callEvent(this.getAddress(), packet, listener -> listener.handleUnknownMessage(server, this, packet, channel));
 		}
 	}
 
 	@Override
 	public void onAcknowledge(Record record, EncapsulatedPacket packet) {
-		server.callEvent(listener -> listener.onAcknowledge(server, this, record, packet));
+		server.callEvent(this.getAddress(), listener -> listener.onAcknowledge(server, this, record, packet));
 	}
 
 	@Override
 	public void onNotAcknowledge(Record record, EncapsulatedPacket packet) {
-		server.callEvent(listener -> listener.onLoss(server, this, record, packet));
+		server.callEvent(this.getAddress(), listener -> listener.onLoss(server, this, record, packet));
+	}
+
+	@Override
+	public void onWritabilityChanged(boolean writable) {
+		server.callEvent(this.getAddress(), listener -> listener.onWritabilityChanged(server, this, writable));
 	}
 
 }
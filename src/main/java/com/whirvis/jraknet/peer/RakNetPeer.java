@@ -31,13 +31,23 @@ package com.whirvis.jraknet.peer;
 
 import static com.whirvis.jraknet.RakNetPacket.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -47,11 +57,15 @@ import com.whirvis.jraknet.Packet;
 import com.whirvis.jraknet.RakNet;
 import com.whirvis.jraknet.RakNetPacket;
 import com.whirvis.jraknet.map.concurrent.ConcurrentIntMap;
+import com.whirvis.jraknet.peer.SentDatagramWindow.SentDatagram;
+import com.whirvis.jraknet.peer.congestion.CongestionControl;
+import com.whirvis.jraknet.peer.congestion.CubicCongestionControl;
 import com.whirvis.jraknet.protocol.ConnectionType;
 import com.whirvis.jraknet.protocol.Reliability;
 import com.whirvis.jraknet.protocol.message.CustomFourPacket;
 import com.whirvis.jraknet.protocol.message.CustomPacket;
 import com.whirvis.jraknet.protocol.message.EncapsulatedPacket;
+import com.whirvis.jraknet.protocol.message.StreamPacket;
 import com.whirvis.jraknet.protocol.message.acknowledge.AcknowledgedPacket;
 import com.whirvis.jraknet.protocol.message.acknowledge.NotAcknowledgedPacket;
 import com.whirvis.jraknet.protocol.message.acknowledge.Record;
@@ -59,6 +73,8 @@ import com.whirvis.jraknet.protocol.status.ConnectedPing;
 import com.whirvis.jraknet.protocol.status.ConnectedPong;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.socket.DatagramPacket;
 
@@ -71,73 +87,66 @@ import io.netty.channel.socket.DatagramPacket;
 public abstract class RakNetPeer implements RakNetPeerMessenger {
 
 	/**
-	 * Used to store the message index for received reliable packets in a
-	 * condensed fashion.
-	 * 
-	 * @author Trent "Whirvis" Summerlin
-	 * @since JRakNet v2.11.0
+	 * The default maximum amount of chunks a single encapsulated packet can be
+	 * split into.
+	 * <p>
+	 * This can be changed in a peer specifically via the
+	 * {@link com.whirvis.jraknet.peer.RakNetPeer#setMaximumSplitCount(int)
+	 * RakNetPeer.setMaximumSplitCount(int)} method.
 	 */
-	private static class ConcurrentMessageIndexList {
-
-		private ArrayList<Record> indexes;
-
-		/**
-		 * Constructs a <code>ConcurrentMesageIndexList</code>.
-		 */
-		public ConcurrentMessageIndexList() {
-			this.indexes = new ArrayList<Record>();
-		}
-
-		/**
-		 * Adds the specified message index to the list.
-		 * 
-		 * @param index
-		 *            the index to add.
-		 */
-		public synchronized void add(int index) {
-			indexes.add(new Record(index));
-			Record[] condensed = Record.condense(indexes);
-			indexes.clear();
-			for (Record record : condensed) {
-				indexes.add(record);
-			}
-		}
-
-		/**
-		 * Returns whether or not the list contains the specified message index.
-		 * 
-		 * @param index
-		 *            the index.
-		 * @return <code>true</code> if the list contains the
-		 *         <code>index</code>.
-		 */
-		public synchronized boolean contains(int index) {
-			for (Record record : indexes) {
-				if ((record.isRanged() && record.getIndex() >= index && record.getIndex() <= index) || record.getIndex() == index) {
-					return true;
-				}
-			}
-			return false;
-		}
+	public static final int MAX_SPLIT_COUNT = 4096;
 
-	}
+	/**
+	 * The default maximum amount of split packets that can be waiting to be
+	 * stitched back together at once.
+	 * <p>
+	 * This can be changed in a peer specifically via the
+	 * {@link com.whirvis.jraknet.peer.RakNetPeer#setMaximumSplits(int)
+	 * RakNetPeer.setMaximumSplits(int)} method.
+	 */
+	public static final int MAX_SPLITS_PER_QUEUE = 16;
 
 	/**
-	 * The maximum amount of chunks a single encapsulated packet can be split
-	 * into.
+	 * The default maximum amount of memory in bytes that can be used by the
+	 * chunks of split packets waiting to be stitched back together.
+	 * <p>
+	 * This can be changed in a peer specifically via the
+	 * {@link com.whirvis.jraknet.peer.RakNetPeer#setSplitMemoryBudget(long)
+	 * RakNetPeer.setSplitMemoryBudget(long)} method.
 	 */
-	public static final int MAX_SPLIT_COUNT = 128;
+	public static final long SPLIT_MEMORY_BUDGET = 8L * 1024L * 1024L;
 
 	/**
-	 * The maximum amount of split packets can be in the split handle queue.
+	 * The default amount of time in milliseconds a split packet can go
+	 * without receiving any of its chunks before it is discarded.
+	 * <p>
+	 * This can be changed in a peer specifically via the
+	 * {@link com.whirvis.jraknet.peer.RakNetPeer#setSplitTimeout(long)
+	 * RakNetPeer.setSplitTimeout(long)} method.
 	 */
-	public static final int MAX_SPLITS_PER_QUEUE = 4;
+	public static final long SPLIT_TIMEOUT = 10000L;
 
 	/**
-	 * The interval at which not acknowledged packets are automatically resent.
+	 * The interval at which not acknowledged packets are automatically resent
+	 * before the round trip time of the peer is known.
 	 */
 	public static final long RECOVERY_SEND_INTERVAL = 500L;
 
+	/**
+	 * The divisor applied to the {@link #getTimeout() timeout} of the peer to
+	 * get the longest amount of time reliable packets can keep timing out
+	 * before the peer is considered dead.
+	 * <p>
+	 * The time is measured as the sum of the backed-off retransmission
+	 * timeouts the packets have waited through. With the default timeout of
+	 * {@value #PEER_TIMEOUT} milliseconds, this is reached after half of it,
+	 * well before the peer would otherwise time out. For a peer with an
+	 * initial retransmission timeout of
+	 * {@value #RECOVERY_SEND_INTERVAL} milliseconds, this takes
+	 * <code>5</code> timeouts.
+	 */
+	public static final int RETRANSMISSION_BUDGET_DIVISOR = 2;
+
 	/**
 	 * The interval at which pings are sent.
 	 */
@@ -158,10 +167,123 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 	 */
 	public static final long PEER_TIMEOUT = DETECTION_SEND_INTERVAL * 10;
 
+	/**
+	 * The amount of time in milliseconds to wait after a skipped sequence
+	 * number has been detected before reporting it as lost. This gives
+	 * datagrams that were only reordered in transmission a chance to arrive.
+	 */
+	public static final long NACK_SEND_DELAY = 10L;
+
+	/**
+	 * The amount of time in milliseconds to wait after a path MTU probe has
+	 * been acknowledged or lost before sending the next one.
+	 */
+	public static final long MTU_PROBE_INTERVAL = 1000L;
+
+	/**
+	 * The amount of time in milliseconds to wait after the largest maximum
+	 * transfer unit the path allows for has been found before searching for a
+	 * larger one again, in case the path has changed.
+	 */
+	public static final long MTU_PROBE_RAISE_INTERVAL = 600000L;
+
+	/**
+	 * The amount of times a path MTU probe of the same size can be lost
+	 * before the size is considered too large for the path. This is also the
+	 * amount of datagrams larger than the original maximum transfer unit that
+	 * can be lost in a row before the peer falls back to it.
+	 */
+	public static final int MTU_PROBE_ATTEMPTS = 3;
+
+	/**
+	 * The smallest difference in bytes between the largest size known to work
+	 * and the smallest size known not to work at which the search for the path
+	 * MTU is considered complete.
+	 */
+	public static final int MTU_PROBE_GRANULARITY = 16;
+
+	/**
+	 * The maximum amount of streams that can be sent to a peer at once. This
+	 * is also the maximum amount of streams that can be received from a peer
+	 * at once.
+	 */
+	public static final int MAX_STREAMS = 64;
+
+	/**
+	 * The amount of time in milliseconds to wait before reading from the
+	 * source of a stream again after it had no data available.
+	 */
+	public static final long STREAM_POLL_INTERVAL = 10L;
+
+	/**
+	 * The default amount of time in milliseconds to wait after receiving a
+	 * datagram before acknowledging it. This allows for the datagrams received
+	 * in the meantime to be acknowledged in the same ACK packet.
+	 * <p>
+	 * This can be changed in a peer specifically via the
+	 * {@link com.whirvis.jraknet.peer.RakNetPeer#setAcknowledgementDelay(long)
+	 * RakNetPeer.setAcknowledgementDelay(long)} method.
+	 */
+	public static final long ACK_SEND_DELAY = 5L;
+
+	/**
+	 * The default amount of received datagrams that can be waiting to be
+	 * acknowledged before an ACK packet is sent regardless of the
+	 * acknowledgement delay.
+	 * <p>
+	 * This can be changed in a peer specifically via the
+	 * {@link com.whirvis.jraknet.peer.RakNetPeer#setMaxPendingAcknowledgements(int)
+	 * RakNetPeer.setMaxPendingAcknowledgements(int)} method.
+	 */
+	public static final int MAX_PENDING_ACKS = 64;
+
+	/**
+	 * Used to indicate that the amount of bytes a peer can send is not
+	 * limited.
+	 */
+	public static final long UNLIMITED_BANDWIDTH = -1L;
+
+	/**
+	 * The amount of time in milliseconds worth of bytes that can be sent in a
+	 * single burst when the bandwidth of a peer is limited.
+	 */
+	public static final long BANDWIDTH_BURST_TIME = 100L;
+
+	/**
+	 * The default amount of unsent and unacknowledged bytes a peer can have
+	 * before it is no longer writable.
+	 * <p>
+	 * This can be changed in a peer specifically via the
+	 * {@link com.whirvis.jraknet.peer.RakNetPeer#setWaterMarks(long, long)
+	 * RakNetPeer.setWaterMarks(long, long)} method.
+	 */
+	public static final long DEFAULT_HIGH_WATER_MARK = 1024L * 1024L;
+
+	/**
+	 * The default amount of unsent and unacknowledged bytes a peer must go
+	 * down to before it is writable again.
+	 * <p>
+	 * This can be changed in a peer specifically via the
+	 * {@link com.whirvis.jraknet.peer.RakNetPeer#setWaterMarks(long, long)
+	 * RakNetPeer.setWaterMarks(long, long)} method.
+	 */
+	public static final long DEFAULT_LOW_WATER_MARK = 512L * 1024L;
+
 	private final Logger logger;
 	private final InetSocketAddress address;
 	private final long guid;
-	private final int maximumTransferUnit;
+	private final int initialTransferUnit;
+	private volatile int maximumTransferUnit;
+	private volatile int maximumTransferUnitLimit;
+	private volatile boolean transferUnitProbing;
+	private volatile boolean pooledMessages;
+	private int probeLow;
+	private int probeHigh;
+	private int probeSize;
+	private int probeSequenceNumber;
+	private int probeFailures;
+	private long nextProbeTime;
+	private int blackHoleLosses;
 	private final ConnectionType connectionType;
 	private final Channel channel;
 	private RakNetState state;
@@ -172,31 +294,100 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 	private long lastPacketsReceivedThisSecondResetTime;
 	private long lastPacketSendTime;
 	private long lastPacketReceiveTime;
-	private long lastRecoverySendTime;
 	private long lastDetectionSendTime;
 	private long lastPingSendTime;
+	private final Object sendLock;
 	private int messageIndex;
 	private int splitId;
-	private final ConcurrentMessageIndexList reliablePackets;
+	private final MessageIndexWindow reliablePackets;
 	private final ConcurrentIntMap<EncapsulatedPacket.Split> splitQueue;
-	private final ConcurrentLinkedQueue<EncapsulatedPacket> sendQueue;
-	private final ConcurrentIntMap<EncapsulatedPacket[]> recoveryQueue;
-	private final ConcurrentHashMap<EncapsulatedPacket, Integer> ackReceiptPackets;
+	private volatile int maximumSplitCount;
+	private volatile int maximumSplits;
+	private volatile long splitMemoryBudget;
+	private volatile long splitTimeout;
+	private volatile ReassemblyBudget reassemblyBudget;
+	private volatile long reassemblyBytes;
+	private volatile long expiredSplitCount;
+	private final SendQueue sendQueue;
+	private volatile boolean corked;
+	private volatile long coalescingDelay;
+	private volatile long firstQueuedTime;
+	private volatile int immediateChannels;
+	private final AtomicBoolean flushRequested;
+	private volatile TokenBucket bandwidthLimit;
+	private volatile EgressBudget egressBudget;
+	private volatile TokenBucket egressShare;
+	private volatile long highWaterMark;
+	private volatile long lowWaterMark;
+	private final AtomicBoolean writable;
+	private final SentDatagramWindow sentWindow;
+	private final ConcurrentLinkedQueue<Retransmission> resendQueue;
+	private final AtomicLong resendQueueBytes;
+	private final Set<DeliveryReceipt> pendingReceipts;
+	private final RoundTripTimeEstimator roundTripTime;
+	private volatile boolean retransmissionsExhausted;
+	private volatile CongestionControl congestionControl;
 	private int sendSequenceNumber;
-	private int receiveSequenceNumber;
+	private final DatagramReceiveWindow receiveWindow;
+	private final SequenceIntervalSet pendingAcks;
+	private long pendingAckTime;
+	private long ackDelay;
+	private int maxPendingAcks;
 	private final int[] orderSendIndex;
-	private final int[] orderReceiveIndex;
 	private final int[] sequenceSendIndex;
 	private final int[] sequenceReceiveIndex;
-	private final ConcurrentIntMap<ConcurrentIntMap<EncapsulatedPacket>> handleQueue;
+	private final ReorderBuffer[] reorderBuffers;
+	private volatile int maximumOrderingHole;
+	private volatile long orderingMemoryBudget;
 	private boolean latencyEnabled;
-	private int pongsReceived;
-	private long totalLatency;
-	private long latency;
-	private long lastLatency;
-	private long lowestLatency;
-	private long highestLatency;
-	private final ArrayList<Long> latencyTimestamps;
+	private final LatencyTracker latencyTracker;
+	private volatile PayloadCompressor compressor;
+	private final CompressionMetrics compressionMetrics;
+	private final ConcurrentLinkedQueue<OutgoingStream> outgoingStreams;
+	private final AtomicInteger nextStreamId;
+	private final ConcurrentIntMap<IncomingStream> incomingStreams;
+	private volatile StreamSinkFactory streamSinkFactory;
+	volatile PeerScheduler<?> scheduler;
+	final AtomicBoolean dirty;
+
+	/**
+	 * Reliable packets from a lost datagram that are waiting to be resent.
+	 * 
+	 * @author Trent "Whirvis" Summerlin
+	 * @since JRakNet v2.11.9
+	 */
+	private static final class Retransmission {
+
+		private final EncapsulatedPacket[] messages;
+		private final int size;
+		private final int retransmissions;
+
+		private Retransmission(EncapsulatedPacket[] messages, int size, int retransmissions) {
+			this.messages = messages;
+			this.size = size;
+			this.retransmissions = retransmissions;
+		}
+
+	}
+
+	/**
+	 * A stream that is being received from the peer.
+	 * 
+	 * @author Trent "Whirvis" Summerlin
+	 * @since JRakNet v2.11.9
+	 */
+	private static final class IncomingStream {
+
+		private final StreamSink sink;
+		private final long length;
+		private long received;
+
+		private IncomingStream(StreamSink sink, long length) {
+			this.sink = sink;
+			this.length = length;
+		}
+
+	}
 
 	/**
 	 * Creates a RakNet peer.
@@ -216,33 +407,55 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 		this.logger = LogManager.getLogger(RakNetPeer.class.getSimpleName() + "-" + Long.toHexString(guid).toUpperCase());
 		this.address = address;
 		this.guid = guid;
+		this.initialTransferUnit = maximumTransferUnit;
 		this.maximumTransferUnit = maximumTransferUnit;
+		this.maximumTransferUnitLimit = maximumTransferUnit;
+		this.probeSequenceNumber = -1;
 		this.connectionType = connectionType;
 		this.channel = channel;
 		this.state = RakNetState.CONNECTED;
 		this.timeout = PEER_TIMEOUT;
 		this.lastPacketReceiveTime = System.currentTimeMillis();
-		this.reliablePackets = new ConcurrentMessageIndexList();
+		this.reliablePackets = new MessageIndexWindow();
 		this.splitQueue = new ConcurrentIntMap<EncapsulatedPacket.Split>();
-		this.sendQueue = new ConcurrentLinkedQueue<EncapsulatedPacket>();
-		this.recoveryQueue = new ConcurrentIntMap<EncapsulatedPacket[]>();
-		this.ackReceiptPackets = new ConcurrentHashMap<EncapsulatedPacket, Integer>();
-		this.receiveSequenceNumber = -1;
+		this.maximumSplitCount = MAX_SPLIT_COUNT;
+		this.maximumSplits = MAX_SPLITS_PER_QUEUE;
+		this.splitMemoryBudget = SPLIT_MEMORY_BUDGET;
+		this.splitTimeout = SPLIT_TIMEOUT;
+		this.sendQueue = new SendQueue(maximumTransferUnit);
+		this.firstQueuedTime = -1L;
+		this.flushRequested = new AtomicBoolean();
+		this.highWaterMark = DEFAULT_HIGH_WATER_MARK;
+		this.lowWaterMark = DEFAULT_LOW_WATER_MARK;
+		this.writable = new AtomicBoolean(true);
+		this.sentWindow = new SentDatagramWindow();
+		this.resendQueue = new ConcurrentLinkedQueue<Retransmission>();
+		this.resendQueueBytes = new AtomicLong();
+		this.pendingReceipts = ConcurrentHashMap.newKeySet();
+		this.roundTripTime = new RoundTripTimeEstimator();
+		this.congestionControl = new CubicCongestionControl(maximumTransferUnit);
+		this.receiveWindow = new DatagramReceiveWindow();
+		this.pendingAcks = new SequenceIntervalSet();
+		this.pendingAckTime = -1L;
+		this.ackDelay = ACK_SEND_DELAY;
+		this.maxPendingAcks = MAX_PENDING_ACKS;
+		this.sendLock = new Object();
 		this.orderSendIndex = new int[RakNet.CHANNEL_COUNT];
-		this.orderReceiveIndex = new int[RakNet.CHANNEL_COUNT];
 		this.sequenceSendIndex = new int[RakNet.CHANNEL_COUNT];
 		this.sequenceReceiveIndex = new int[RakNet.CHANNEL_COUNT];
-		this.handleQueue = new ConcurrentIntMap<ConcurrentIntMap<EncapsulatedPacket>>();
+		this.reorderBuffers = new ReorderBuffer[RakNet.CHANNEL_COUNT];
+		this.maximumOrderingHole = ReorderBuffer.DEFAULT_MAXIMUM_HOLE_SIZE;
+		this.orderingMemoryBudget = ReorderBuffer.DEFAULT_MEMORY_BUDGET;
 		for (int i = 0; i < RakNet.CHANNEL_COUNT; i++) {
 			sequenceReceiveIndex[i] = -1;
-			handleQueue.put(i, new ConcurrentIntMap<EncapsulatedPacket>());
 		}
 		this.latencyEnabled = true;
-		this.latency = -1;
-		this.lastLatency = -1;
-		this.lowestLatency = -1;
-		this.highestLatency = -1;
-		this.latencyTimestamps = new ArrayList<Long>();
+		this.latencyTracker = new LatencyTracker();
+		this.compressionMetrics = new CompressionMetrics();
+		this.outgoingStreams = new ConcurrentLinkedQueue<OutgoingStream>();
+		this.nextStreamId = new AtomicInteger();
+		this.incomingStreams = new ConcurrentIntMap<IncomingStream>();
+		this.dirty = new AtomicBoolean();
 	}
 
 	/**
@@ -292,13 +505,200 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 
 	/**
 	 * Returns the peer's maximum transfer unit.
+	 * <p>
+	 * If path MTU probing is enabled, this can change while the peer is
+	 * connected. Messages are split and packed into datagrams according to
+	 * the value at the time they are sent.
 	 * 
 	 * @return the peer's maximum transfer unit.
+	 * @see #enableTransferUnitProbing(boolean)
 	 */
 	public final int getMaximumTransferUnit() {
 		return this.maximumTransferUnit;
 	}
 
+	/**
+	 * Returns the maximum transfer unit agreed upon when the connection was
+	 * established.
+	 * 
+	 * @return the initial maximum transfer unit.
+	 */
+	public final int getInitialTransferUnit() {
+		return this.initialTransferUnit;
+	}
+
+	/**
+	 * Returns the largest maximum transfer unit path MTU probing can raise the
+	 * maximum transfer unit of the peer to.
+	 * 
+	 * @return the maximum transfer unit limit.
+	 */
+	public final int getMaximumTransferUnitLimit() {
+		return this.maximumTransferUnitLimit;
+	}
+
+	/**
+	 * Sets the largest maximum transfer unit path MTU probing can raise the
+	 * maximum transfer unit of the peer to. This should be no larger than the
+	 * largest datagram the local socket is able to receive.
+	 * 
+	 * @param maximumTransferUnitLimit
+	 *            the maximum transfer unit limit.
+	 * @throws IllegalArgumentException
+	 *             if the <code>maximumTransferUnitLimit</code> is less than
+	 *             the initial maximum transfer unit of the peer.
+	 */
+	public final void setMaximumTransferUnitLimit(int maximumTransferUnitLimit) throws IllegalArgumentException {
+		if (maximumTransferUnitLimit < initialTransferUnit) {
+			throw new IllegalArgumentException("Maximum transfer unit limit can be no smaller than the initial maximum transfer unit of " + initialTransferUnit);
+		}
+		this.maximumTransferUnitLimit = maximumTransferUnitLimit;
+	}
+
+	/**
+	 * Enables/disables path MTU probing.
+	 * <p>
+	 * When enabled, datagrams padded to a larger size than the current
+	 * maximum transfer unit are sent to the peer every now and then. If the
+	 * peer acknowledges one, the maximum transfer unit is raised to its size.
+	 * The sizes are chosen using a binary search, up to the
+	 * {@link #getMaximumTransferUnitLimit() limit}. Should too many datagrams
+	 * larger than the initial maximum transfer unit be lost in a row after it
+	 * has been raised, such as when the path has changed, the peer falls back
+	 * to the initial maximum transfer unit.
+	 * <p>
+	 * Probes are never resent when lost, and their loss is not treated as a
+	 * sign of congestion.
+	 * 
+	 * @param enabled
+	 *            <code>true</code> to enable path MTU probing,
+	 *            <code>false</code> to disable it.
+	 */
+	public final void enableTransferUnitProbing(boolean enabled) {
+		boolean wasEnabled = this.transferUnitProbing;
+		this.transferUnitProbing = enabled;
+		if (wasEnabled != enabled) {
+			logger.debug((enabled ? "Enabled" : "Disabled") + " path MTU probing");
+			this.wake();
+		}
+	}
+
+	/**
+	 * Returns whether or not path MTU probing is enabled.
+	 * 
+	 * @return <code>true</code> if path MTU probing is enabled,
+	 *         <code>false</code> otherwise.
+	 */
+	public final boolean transferUnitProbingEnabled() {
+		return this.transferUnitProbing;
+	}
+
+	/**
+	 * Enables/disables handing pooled messages to the peer.
+	 * <p>
+	 * Split packets are stitched back together without copying their chunks,
+	 * meaning the stitched packet is backed by the pooled buffers of the
+	 * datagrams it arrived in. When disabled, which is the default, the
+	 * stitched packet is copied before it is passed on to the
+	 * {@link #handleMessage(RakNetPacket, int)} method, so the packet belongs
+	 * to whoever handles it. When enabled, the stitched packet is passed on
+	 * as is and its buffer is released once that method returns. It must then
+	 * be retained or copied in order to be kept around for longer.
+	 * 
+	 * @param enabled
+	 *            <code>true</code> to enable pooled messages,
+	 *            <code>false</code> to disable them.
+	 */
+	public final void enablePooledMessages(boolean enabled) {
+		boolean wasEnabled = this.pooledMessages;
+		this.pooledMessages = enabled;
+		if (wasEnabled != enabled) {
+			logger.debug((enabled ? "Enabled" : "Disabled") + " pooled messages");
+		}
+	}
+
+	/**
+	 * Returns whether or not pooled messages are enabled.
+	 * 
+	 * @return <code>true</code> if pooled messages are enabled,
+	 *         <code>false</code> otherwise.
+	 */
+	public final boolean pooledMessagesEnabled() {
+		return this.pooledMessages;
+	}
+
+	/**
+	 * Returns the congestion control of the peer.
+	 * 
+	 * @return the congestion control of the peer.
+	 */
+	public final CongestionControl getCongestionControl() {
+		return this.congestionControl;
+	}
+
+	/**
+	 * Sets the congestion control of the peer.
+	 * <p>
+	 * This should be done before any messages are sent to the peer, as the
+	 * new congestion control will not know about any of the datagrams that
+	 * were already in flight. It is told about the current maximum transfer
+	 * unit of the peer before it is put to use.
+	 * 
+	 * @param congestionControl
+	 *            the congestion control.
+	 * @throws NullPointerException
+	 *             if the <code>congestionControl</code> is <code>null</code>.
+	 */
+	public final void setCongestionControl(CongestionControl congestionControl) throws NullPointerException {
+		if (congestionControl == null) {
+			throw new NullPointerException("Congestion control cannot be null");
+		}
+		congestionControl.onTransferUnitChanged(maximumTransferUnit);
+		this.congestionControl = congestionControl;
+		logger.debug("Set congestion control to " + congestionControl.getClass().getName());
+	}
+
+	/**
+	 * Returns the congestion window of the peer, which is the maximum amount
+	 * of bytes that can be in flight to the peer at once.
+	 * 
+	 * @return the congestion window of the peer in bytes.
+	 */
+	public final int getCongestionWindow() {
+		return congestionControl.getCongestionWindow();
+	}
+
+	/**
+	 * Returns the amount of bytes that have been sent to the peer but have yet
+	 * to be acknowledged or found to be lost.
+	 * 
+	 * @return the amount of bytes in flight to the peer.
+	 */
+	public final int getBytesInFlight() {
+		return congestionControl.getBytesInFlight();
+	}
+
+	/**
+	 * Returns the smoothed round trip time of the peer, as measured by the
+	 * time it takes for sent datagrams to be acknowledged.
+	 * 
+	 * @return the smoothed round trip time of the peer in milliseconds,
+	 *         <code>-1</code> if no datagrams have been acknowledged yet.
+	 */
+	public final long getRoundTripTime() {
+		return roundTripTime.getSmoothedRoundTripTime();
+	}
+
+	/**
+	 * Returns the retransmission timeout of the peer, which is how long a
+	 * datagram can go without being acknowledged before it is considered lost.
+	 * 
+	 * @return the retransmission timeout of the peer in milliseconds.
+	 */
+	public final long getRetransmissionTimeout() {
+		return roundTripTime.getRetransmissionTimeout();
+	}
+
 	/**
 	 * Returns the connection type of the peer.
 	 * 
@@ -409,118 +809,882 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 	}
 
 	/**
-	 * Returns the peer's timestamp. If login has not yet been completed,
-	 * <code>-1</code> will be returned.
+	 * Returns the amount of time in milliseconds to wait after receiving a
+	 * datagram before acknowledging it.
 	 * 
-	 * @return the peer's timestamp, <code>-1</code> if login has not yet been
-	 *         completed.
+	 * @return the acknowledgement delay.
 	 */
-	public abstract long getTimestamp();
+	public final long getAcknowledgementDelay() {
+		return this.ackDelay;
+	}
 
 	/**
-	 * Returns the amount of packets sent in the last second.
+	 * Sets the amount of time in milliseconds to wait after receiving a
+	 * datagram before acknowledging it.
 	 * 
-	 * @return the amount of packets sent in the last second.
+	 * @param ackDelay
+	 *            the acknowledgement delay. A delay of <code>0</code> will have
+	 *            received datagrams be acknowledged on the next update.
+	 * @throws IllegalArgumentException
+	 *             if the <code>ackDelay</code> is negative.
 	 */
-	public final int getPacketsSentThisSecond() {
-		return this.packetsSentThisSecond;
+	public final void setAcknowledgementDelay(long ackDelay) throws IllegalArgumentException {
+		if (ackDelay < 0) {
+			throw new IllegalArgumentException("Acknowledgement delay cannot be negative");
+		}
+		this.ackDelay = ackDelay;
 	}
 
 	/**
-	 * Returns the amount of packets received in the last second.
+	 * Returns whether or not the peer is corked.
 	 * 
-	 * @return the amount of packets received in the last second.
+	 * @return <code>true</code> if the peer is corked, <code>false</code>
+	 *         otherwise.
+	 * @see #cork()
 	 */
-	public final int getPacketsReceivedThisSecond() {
-		return this.packetsReceivedThisSecond;
+	public final boolean isCorked() {
+		return this.corked;
 	}
 
 	/**
-	 * Returns whether or not the peer has timed out.
+	 * Corks the peer.
 	 * <p>
-	 * Keep in mind this method does not reflect the state of the peer
-	 * whatsoever. The peer state can be {@link RakNetState#HANDSHAKING
-	 * HANDSHAKING}, yet the peer can still have timed out due to
-	 * unresponsiveness.
-	 * 
-	 * @return <code>true</code> if the peer has timed out, <code>false</code>
-	 *         otherwise.
+	 * While the peer is corked, messages that are sent are only added to the
+	 * send queue. They will not be packed into datagrams and sent until either
+	 * {@link #flush()} or {@link #uncork()} are called. This allows for a large
+	 * amount of messages to be sent at once in as few datagrams as possible,
+	 * such as once every tick of a game server. Acknowledgements and
+	 * retransmissions of lost datagrams are not held back.
 	 */
-	public final boolean hasTimedOut() {
-		return System.currentTimeMillis() - lastPacketReceiveTime >= timeout;
+	public final void cork() {
+		this.corked = true;
 	}
 
 	/**
-	 * Returns the last time a packet was sent by the peer.
-	 * 
-	 * @return the last time a packet was sent by the peer.
+	 * Uncorks the peer and flushes the messages that were held back while it
+	 * was corked.
 	 */
-	public final long getLastPacketSendTime() {
-		return this.lastPacketSendTime;
+	public final void uncork() {
+		this.corked = false;
+		this.flush();
 	}
 
 	/**
-	 * Returns the last time a packet was received.
-	 * 
-	 * @return the last time a packet was received.
+	 * Packs the messages waiting in the send queue into datagrams and sends
+	 * them on the next update, regardless of whether or not the peer is corked
+	 * or the coalescing delay has passed.
+	 * <p>
+	 * Messages that cannot be sent right away due to the congestion window
+	 * will still be sent once there is room for them.
 	 */
-	public final long getLastPacketReceiveTime() {
-		return this.lastPacketReceiveTime;
+	public final void flush() {
+		if (!sendQueue.isEmpty()) {
+			flushRequested.set(true);
+			this.wake();
+		}
 	}
 
 	/**
-	 * Returns the message index and bumps it.
-	 * <p>
-	 * This method should only ever be called by the
-	 * {@link EncapsulatedPacket.Split} class. If it is called by anyone else
-	 * and it is set out of sync, all {@link Reliability#RELIABLE RELIABLE}
-	 * based reliabilities will break and the connection will have to be closed.
+	 * Returns the amount of time in milliseconds messages can wait in the send
+	 * queue for more messages to fill up a datagram.
 	 * 
-	 * @return the message index.
+	 * @return the coalescing delay.
 	 */
-	public final int bumpMessageIndex() {
-		logger.trace("Bumped message index from " + messageIndex + " to " + (messageIndex + 1));
-		return this.messageIndex++;
+	public final long getCoalescingDelay() {
+		return this.coalescingDelay;
 	}
 
 	/**
-	 * Enables/disables latency detection.
+	 * Sets the amount of time in milliseconds messages can wait in the send
+	 * queue for more messages to fill up a datagram.
 	 * <p>
-	 * When disabled, all methods relating to latency will report
-	 * <code>-1</code>. If the peer is not yet in the keep alive state then the
-	 * packets needed to detect the latency will not be sent until then.
+	 * If there are enough messages waiting to fill up a datagram, or one of
+	 * them has the {@link Priority#IMMEDIATE IMMEDIATE} priority, they are
+	 * sent without waiting for the delay to pass.
 	 * 
-	 * @param enabled
-	 *            <code>true</code> to enable latency detection,
-	 *            <code>false</code> to disable it.
+	 * @param coalescingDelay
+	 *            the coalescing delay. A delay of <code>0</code> will have
+	 *            messages be sent on the next update.
+	 * @throws IllegalArgumentException
+	 *             if the <code>coalescingDelay</code> is negative.
 	 */
-	public final void enableLatencyDetection(boolean enabled) {
-		boolean wasEnabled = latencyEnabled;
-		this.latencyEnabled = enabled;
-		this.latency = enabled ? latency : -1;
-		this.pongsReceived = enabled ? pongsReceived : 0;
-		if (wasEnabled != enabled) {
-			logger.info((enabled ? "Enabled" : "Disabled") + " latency detection");
+	public final void setCoalescingDelay(long coalescingDelay) throws IllegalArgumentException {
+		if (coalescingDelay < 0) {
+			throw new IllegalArgumentException("Coalescing delay cannot be negative");
 		}
+		this.coalescingDelay = coalescingDelay;
+		this.wake();
 	}
 
 	/**
-	 * Returns whether or not latency detection is enabled.
+	 * Returns whether or not messages sent on the specified channel are sent
+	 * immediately.
 	 * 
-	 * @return <code>true</code> if latency detection is enabled,
-	 *         <code>false</code> otherwise.
+	 * @param channel
+	 *            the channel.
+	 * @return <code>true</code> if messages sent on the <code>channel</code>
+	 *         are sent immediately, <code>false</code> otherwise.
+	 * @throws InvalidChannelException
+	 *             if the <code>channel</code> is greater than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 * @see #setImmediateChannel(int, boolean)
 	 */
-	public final boolean latencyDetectionEnabled() {
-		return this.latencyEnabled;
+	public final boolean isImmediateChannel(int channel) throws InvalidChannelException {
+		if (channel < 0 || channel >= RakNet.CHANNEL_COUNT) {
+			throw new InvalidChannelException(channel);
+		}
+		return (immediateChannels & (1 << channel)) != 0;
 	}
 
 	/**
-	 * Returns the average latency for the peer.
+	 * Enables or disables immediate sending for the specified channel.
+	 * <p>
+	 * Messages sent on an immediate channel are given the
+	 * {@link Priority#IMMEDIATE IMMEDIATE} priority regardless of the priority
+	 * they were sent with. As long as the congestion window has room for them,
+	 * they are packed into a datagram and written as soon as they are sent
+	 * rather than on the next update. This is best suited for small messages
+	 * where every millisecond counts, such as player input.
 	 * 
-	 * @return the average latency for the peer.
+	 * @param channel
+	 *            the channel.
+	 * @param immediate
+	 *            <code>true</code> if messages sent on the
+	 *            <code>channel</code> should be sent immediately,
+	 *            <code>false</code> otherwise.
+	 * @throws InvalidChannelException
+	 *             if the <code>channel</code> is greater than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 */
+	public final synchronized void setImmediateChannel(int channel, boolean immediate) throws InvalidChannelException {
+		if (channel < 0 || channel >= RakNet.CHANNEL_COUNT) {
+			throw new InvalidChannelException(channel);
+		}
+		if (immediate == true) {
+			this.immediateChannels |= 1 << channel;
+		} else {
+			this.immediateChannels &= ~(1 << channel);
+		}
+	}
+
+	/**
+	 * Returns the maximum amount of bytes the peer can send per second.
+	 * 
+	 * @return the bandwidth limit in bytes per second,
+	 *         {@value #UNLIMITED_BANDWIDTH} if the bandwidth is not limited.
+	 */
+	public final long getBandwidthLimit() {
+		TokenBucket bandwidthLimit = this.bandwidthLimit;
+		return bandwidthLimit != null ? bandwidthLimit.getRate() : UNLIMITED_BANDWIDTH;
+	}
+
+	/**
+	 * Sets the maximum amount of bytes the peer can send per second.
+	 * <p>
+	 * This applies to every datagram containing messages, including
+	 * retransmissions. Once the limit has been reached, the messages waiting to
+	 * be sent are held back until there is room for them.
+	 * 
+	 * @param bytesPerSecond
+	 *            the bandwidth limit in bytes per second. A value of
+	 *            {@value #UNLIMITED_BANDWIDTH} will remove the limit.
+	 * @param burst
+	 *            the amount of bytes that can be sent at once after the peer
+	 *            has been idle.
+	 * @throws IllegalArgumentException
+	 *             if the <code>bytesPerSecond</code> is less than
+	 *             <code>1</code> and is not equal to
+	 *             {@value #UNLIMITED_BANDWIDTH}, or if the <code>burst</code>
+	 *             is less than <code>1</code>.
+	 */
+	public final void setBandwidthLimit(long bytesPerSecond, long burst) throws IllegalArgumentException {
+		if (bytesPerSecond < 1 && bytesPerSecond != UNLIMITED_BANDWIDTH) {
+			throw new IllegalArgumentException("Bandwidth limit must be greater than 0 or " + UNLIMITED_BANDWIDTH + " for unlimited bandwidth");
+		} else if (burst < 1) {
+			throw new IllegalArgumentException("Burst must be greater than 0");
+		}
+		TokenBucket bandwidthLimit = this.bandwidthLimit;
+		if (bytesPerSecond == UNLIMITED_BANDWIDTH) {
+			this.bandwidthLimit = null;
+		} else if (bandwidthLimit == null) {
+			this.bandwidthLimit = new TokenBucket(bytesPerSecond, burst);
+		} else {
+			bandwidthLimit.setRate(bytesPerSecond, burst);
+		}
+		this.wake();
+	}
+
+	/**
+	 * Sets the maximum amount of bytes the peer can send per second. The
+	 * amount of bytes that can be sent at once after the peer has been idle is
+	 * enough for {@value #BANDWIDTH_BURST_TIME} milliseconds, or a single
+	 * datagram if that is larger.
+	 * 
+	 * @param bytesPerSecond
+	 *            the bandwidth limit in bytes per second. A value of
+	 *            {@value #UNLIMITED_BANDWIDTH} will remove the limit.
+	 * @throws IllegalArgumentException
+	 *             if the <code>bytesPerSecond</code> is less than
+	 *             <code>1</code> and is not equal to
+	 *             {@value #UNLIMITED_BANDWIDTH}.
+	 */
+	public final void setBandwidthLimit(long bytesPerSecond) throws IllegalArgumentException {
+		this.setBandwidthLimit(bytesPerSecond, Math.max(bytesPerSecond * BANDWIDTH_BURST_TIME / 1000L, maximumTransferUnit));
+	}
+
+	/**
+	 * Returns the egress budget the peer is sharing with other peers.
+	 * 
+	 * @return the egress budget, <code>null</code> if the peer is not sharing
+	 *         one.
+	 */
+	public final EgressBudget getEgressBudget() {
+		return this.egressBudget;
+	}
+
+	/**
+	 * Sets the egress budget the peer is sharing with other peers. The peer is
+	 * given a share of the new budget, and the share it had of its old budget
+	 * is given back.
+	 * <p>
+	 * The egress budget applies on top of the bandwidth limit of the peer.
+	 * 
+	 * @param egressBudget
+	 *            the egress budget, <code>null</code> to stop sharing one.
+	 * @see #setBandwidthLimit(long)
+	 */
+	public final synchronized void setEgressBudget(EgressBudget egressBudget) {
+		EgressBudget oldBudget = this.egressBudget;
+		if (oldBudget == egressBudget) {
+			return; // Already sharing this budget
+		} else if (oldBudget != null) {
+			oldBudget.removeShare(egressShare);
+		}
+		this.egressShare = egressBudget != null ? egressBudget.createShare() : null;
+		this.egressBudget = egressBudget;
+		this.wake();
+	}
+
+	/**
+	 * Returns the amount of time until the bandwidth limit and egress budget
+	 * of the peer allow for another datagram to be sent.
+	 * 
+	 * @param currentTime
+	 *            the current time.
+	 * @return the amount of time in milliseconds until another datagram can
+	 *         be sent, <code>0</code> if one can be sent now.
+	 */
+	private long getBandwidthDelay(long currentTime) {
+		long delay = 0L;
+		TokenBucket bandwidthLimit = this.bandwidthLimit;
+		if (bandwidthLimit != null) {
+			delay = bandwidthLimit.getTimeUntilAvailable(currentTime);
+		}
+		EgressBudget egressBudget = this.egressBudget;
+		TokenBucket egressShare = this.egressShare;
+		if (egressBudget != null && egressShare != null) {
+			delay = Math.max(delay, egressBudget.getTimeUntilAvailable(egressShare, currentTime));
+		}
+		return delay;
+	}
+
+	/**
+	 * Returns the amount of time to wait after reporting lost packets before
+	 * reporting the ones that still have not arrived again.
+	 * <p>
+	 * This is one round trip time, which is how long it takes for the resent
+	 * datagrams to arrive if the NACK packet was not lost. If no round trip
+	 * time has been measured yet, the retransmission timeout is used instead.
+	 * 
+	 * @return the amount of time in milliseconds to wait before reporting lost
+	 *         packets again.
+	 */
+	private long getNackRetryDelay() {
+		long roundTripTime = this.roundTripTime.getSmoothedRoundTripTime();
+		if (roundTripTime < 0) {
+			return this.roundTripTime.getRetransmissionTimeout();
+		}
+		return Math.max(roundTripTime, NACK_SEND_DELAY);
+	}
+
+	/**
+	 * Returns the amount of bytes waiting to be sent, including the datagrams
+	 * that were lost and are waiting to be resent.
+	 * 
+	 * @return the amount of bytes waiting to be sent.
+	 */
+	public final long getUnsentBytes() {
+		return sendQueue.getQueuedBytes() + resendQueueBytes.get();
+	}
+
+	/**
+	 * Returns the amount of bytes that have been sent but not yet
+	 * acknowledged.
+	 * 
+	 * @return the amount of bytes waiting to be acknowledged.
+	 */
+	public final long getUnacknowledgedBytes() {
+		return sentWindow.getBytes();
+	}
+
+	/**
+	 * Returns the amount of unsent and unacknowledged bytes the peer can have
+	 * before it is no longer writable.
+	 * 
+	 * @return the high water mark in bytes.
+	 */
+	public final long getHighWaterMark() {
+		return this.highWaterMark;
+	}
+
+	/**
+	 * Returns the amount of unsent and unacknowledged bytes the peer must go
+	 * down to before it is writable again.
+	 * 
+	 * @return the low water mark in bytes.
+	 */
+	public final long getLowWaterMark() {
+		return this.lowWaterMark;
+	}
+
+	/**
+	 * Sets the water marks of the peer.
+	 * <p>
+	 * Once the amount of unsent and unacknowledged bytes goes over the high
+	 * water mark, the peer is no longer writable. It will not be writable
+	 * again until the amount of unsent and unacknowledged bytes goes back down
+	 * to the low water mark.
+	 * 
+	 * @param lowWaterMark
+	 *            the low water mark in bytes.
+	 * @param highWaterMark
+	 *            the high water mark in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>lowWaterMark</code> is negative or the
+	 *             <code>highWaterMark</code> is less than the
+	 *             <code>lowWaterMark</code>.
+	 * @see #isWritable()
+	 */
+	public final void setWaterMarks(long lowWaterMark, long highWaterMark) throws IllegalArgumentException {
+		if (lowWaterMark < 0) {
+			throw new IllegalArgumentException("Low water mark cannot be negative");
+		} else if (highWaterMark < lowWaterMark) {
+			throw new IllegalArgumentException("High water mark cannot be less than the low water mark");
+		}
+		this.lowWaterMark = lowWaterMark;
+		this.highWaterMark = highWaterMark;
+		this.updateWritability();
+	}
+
+	/**
+	 * Returns whether or not the peer is writable.
+	 * <p>
+	 * A peer that is not writable is not keeping up with the messages being
+	 * sent to it, either because it has a slow connection or because it has
+	 * stalled. Messages can still be sent to it, however it is recommended to
+	 * stop producing them until it is writable again, as otherwise they will
+	 * pile up in memory.
+	 * 
+	 * @return <code>true</code> if the peer is writable, <code>false</code>
+	 *         otherwise.
+	 * @see #setWaterMarks(long, long)
+	 */
+	public final boolean isWritable() {
+		return writable.get();
+	}
+
+	/**
+	 * Checks the amount of unsent and unacknowledged bytes against the water
+	 * marks, calling {@link #onWritabilityChanged(boolean)} if the peer has
+	 * become writable or is no longer writable.
+	 */
+	private final void updateWritability() {
+		long pending = this.getUnsentBytes() + this.getUnacknowledgedBytes();
+		if (pending > highWaterMark && writable.compareAndSet(true, false)) {
+			logger.debug("Peer is no longer writable with " + pending + " bytes pending");
+			this.onWritabilityChanged(false);
+		} else if (pending <= lowWaterMark && writable.compareAndSet(false, true)) {
+			logger.debug("Peer is writable again with " + pending + " bytes pending");
+			this.onWritabilityChanged(true);
+		}
+	}
+
+	/**
+	 * Returns the amount of received datagrams that can be waiting to be
+	 * acknowledged before an ACK packet is sent regardless of the
+	 * acknowledgement delay.
+	 * 
+	 * @return the maximum amount of pending acknowledgements.
+	 */
+	public final int getMaxPendingAcknowledgements() {
+		return this.maxPendingAcks;
+	}
+
+	/**
+	 * Sets the amount of received datagrams that can be waiting to be
+	 * acknowledged before an ACK packet is sent regardless of the
+	 * acknowledgement delay.
+	 * 
+	 * @param maxPendingAcks
+	 *            the maximum amount of pending acknowledgements.
+	 * @throws IllegalArgumentException
+	 *             if the <code>maxPendingAcks</code> is less than
+	 *             <code>1</code>.
+	 */
+	public final void setMaxPendingAcknowledgements(int maxPendingAcks) throws IllegalArgumentException {
+		if (maxPendingAcks < 1) {
+			throw new IllegalArgumentException("Maximum pending acknowledgements must be greater than 0");
+		}
+		this.maxPendingAcks = maxPendingAcks;
+	}
+
+	/**
+	 * Returns the maximum amount of
+	 * {@link com.whirvis.jraknet.protocol.Reliability#RELIABLE_ORDERED ORDERED}
+	 * packets a missing packet can hold back on a single channel.
+	 * 
+	 * @return the maximum ordering hole in packets.
+	 */
+	public final int getMaximumOrderingHole() {
+		return this.maximumOrderingHole;
+	}
+
+	/**
+	 * Sets the maximum amount of
+	 * {@link com.whirvis.jraknet.protocol.Reliability#RELIABLE_ORDERED ORDERED}
+	 * packets a missing packet can hold back on a single channel. If a packet
+	 * arrives further ahead than this, the peer is disconnected.
+	 * 
+	 * @param maximumOrderingHole
+	 *            the maximum ordering hole in packets.
+	 * @throws IllegalArgumentException
+	 *             if the <code>maximumOrderingHole</code> is less than
+	 *             <code>1</code> or greater than
+	 *             {@value SequenceNumber#MAXIMUM_WINDOW}.
+	 */
+	public final void setMaximumOrderingHole(int maximumOrderingHole) throws IllegalArgumentException {
+		if (maximumOrderingHole < 1) {
+			throw new IllegalArgumentException("Maximum ordering hole must be greater than 0");
+		} else if (maximumOrderingHole > SequenceNumber.MAXIMUM_WINDOW) {
+			throw new IllegalArgumentException("Maximum ordering hole can be no greater than " + SequenceNumber.MAXIMUM_WINDOW);
+		}
+		this.maximumOrderingHole = maximumOrderingHole;
+		for (ReorderBuffer reorderBuffer : reorderBuffers) {
+			if (reorderBuffer != null) {
+				reorderBuffer.setMaximumHoleSize(maximumOrderingHole);
+			}
+		}
+	}
+
+	/**
+	 * Returns the maximum amount of memory that can be used by the payloads of
+	 * {@link com.whirvis.jraknet.protocol.Reliability#RELIABLE_ORDERED ORDERED}
+	 * packets being held back on a single channel.
+	 * 
+	 * @return the ordering memory budget in bytes.
+	 */
+	public final long getOrderingMemoryBudget() {
+		return this.orderingMemoryBudget;
+	}
+
+	/**
+	 * Sets the maximum amount of memory that can be used by the payloads of
+	 * {@link com.whirvis.jraknet.protocol.Reliability#RELIABLE_ORDERED ORDERED}
+	 * packets being held back on a single channel. If this is exceeded, the
+	 * peer is disconnected.
+	 * 
+	 * @param orderingMemoryBudget
+	 *            the ordering memory budget in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>orderingMemoryBudget</code> is less than
+	 *             <code>1</code>.
+	 */
+	public final void setOrderingMemoryBudget(long orderingMemoryBudget) throws IllegalArgumentException {
+		if (orderingMemoryBudget < 1) {
+			throw new IllegalArgumentException("Ordering memory budget must be greater than 0");
+		}
+		this.orderingMemoryBudget = orderingMemoryBudget;
+		for (ReorderBuffer reorderBuffer : reorderBuffers) {
+			if (reorderBuffer != null) {
+				reorderBuffer.setMemoryBudget(orderingMemoryBudget);
+			}
+		}
+	}
+
+	/**
+	 * Returns the maximum amount of chunks a single split packet received from
+	 * the peer can be split into.
+	 * 
+	 * @return the maximum split count.
+	 */
+	public final int getMaximumSplitCount() {
+		return this.maximumSplitCount;
+	}
+
+	/**
+	 * Sets the maximum amount of chunks a single split packet received from
+	 * the peer can be split into. If a split packet with more chunks than this
+	 * arrives, the peer is disconnected.
+	 * 
+	 * @param maximumSplitCount
+	 *            the maximum split count.
+	 * @throws IllegalArgumentException
+	 *             if the <code>maximumSplitCount</code> is less than
+	 *             <code>1</code>.
+	 */
+	public final void setMaximumSplitCount(int maximumSplitCount) throws IllegalArgumentException {
+		if (maximumSplitCount < 1) {
+			throw new IllegalArgumentException("Maximum split count must be greater than 0");
+		}
+		this.maximumSplitCount = maximumSplitCount;
+	}
+
+	/**
+	 * Returns the maximum amount of split packets received from the peer that
+	 * can be waiting to be stitched back together at once.
+	 * 
+	 * @return the maximum amount of split packets.
+	 */
+	public final int getMaximumSplits() {
+		return this.maximumSplits;
+	}
+
+	/**
+	 * Sets the maximum amount of split packets received from the peer that can
+	 * be waiting to be stitched back together at once. If the chunk of another
+	 * split packet arrives, the unreliable split packets are discarded to make
+	 * room for it. If there are none, the peer is disconnected.
+	 * 
+	 * @param maximumSplits
+	 *            the maximum amount of split packets.
+	 * @throws IllegalArgumentException
+	 *             if the <code>maximumSplits</code> is less than
+	 *             <code>1</code>.
+	 */
+	public final void setMaximumSplits(int maximumSplits) throws IllegalArgumentException {
+		if (maximumSplits < 1) {
+			throw new IllegalArgumentException("Maximum splits must be greater than 0");
+		}
+		this.maximumSplits = maximumSplits;
+	}
+
+	/**
+	 * Returns the maximum amount of memory that can be used by the chunks of
+	 * split packets received from the peer that are waiting to be stitched
+	 * back together.
+	 * 
+	 * @return the split memory budget in bytes.
+	 */
+	public final long getSplitMemoryBudget() {
+		return this.splitMemoryBudget;
+	}
+
+	/**
+	 * Sets the maximum amount of memory that can be used by the chunks of
+	 * split packets received from the peer that are waiting to be stitched
+	 * back together. If a chunk arrives that would exceed this, the unreliable
+	 * split packets are discarded to make room for it. If that is not enough,
+	 * the peer is disconnected.
+	 * <p>
+	 * This also limits the size of the largest packet that can be received
+	 * from the peer.
+	 * 
+	 * @param splitMemoryBudget
+	 *            the split memory budget in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>splitMemoryBudget</code> is less than
+	 *             <code>1</code>.
+	 */
+	public final void setSplitMemoryBudget(long splitMemoryBudget) throws IllegalArgumentException {
+		if (splitMemoryBudget < 1) {
+			throw new IllegalArgumentException("Split memory budget must be greater than 0");
+		}
+		this.splitMemoryBudget = splitMemoryBudget;
+	}
+
+	/**
+	 * Returns the amount of time in milliseconds a split packet received from
+	 * the peer can go without receiving any of its chunks before it is
+	 * discarded.
+	 * 
+	 * @return the split timeout.
+	 */
+	public final long getSplitTimeout() {
+		return this.splitTimeout;
+	}
+
+	/**
+	 * Sets the amount of time in milliseconds a split packet received from
+	 * the peer can go without receiving any of its chunks before it is
+	 * discarded. This prevents the peer from holding onto memory by sending
+	 * only some of the chunks of a split packet.
+	 * 
+	 * @param splitTimeout
+	 *            the split timeout.
+	 * @throws IllegalArgumentException
+	 *             if the <code>splitTimeout</code> is less than
+	 *             <code>1</code>.
+	 */
+	public final void setSplitTimeout(long splitTimeout) throws IllegalArgumentException {
+		if (splitTimeout < 1) {
+			throw new IllegalArgumentException("Split timeout must be greater than 0");
+		}
+		this.splitTimeout = splitTimeout;
+		this.wake();
+	}
+
+	/**
+	 * Returns the reassembly budget shared by the peer.
+	 * 
+	 * @return the reassembly budget, <code>null</code> if the peer is not
+	 *         sharing one.
+	 */
+	public final ReassemblyBudget getReassemblyBudget() {
+		return this.reassemblyBudget;
+	}
+
+	/**
+	 * Sets the reassembly budget shared by the peer.
+	 * <p>
+	 * The chunks of split packets received from the peer count against both
+	 * its own split memory budget and the reassembly budget. This allows for
+	 * the memory used by a group of peers combined to be capped, such as every
+	 * client connected to a server.
+	 * 
+	 * @param reassemblyBudget
+	 *            the reassembly budget, <code>null</code> to stop sharing
+	 *            one.
+	 * @throws IllegalStateException
+	 *             if split packets received from the peer are currently
+	 *             waiting to be stitched back together.
+	 * @see #setSplitMemoryBudget(long)
+	 */
+	public final synchronized void setReassemblyBudget(ReassemblyBudget reassemblyBudget) throws IllegalStateException {
+		if (reassemblyBytes > 0) {
+			throw new IllegalStateException("Cannot change reassembly budget while split packets are being stitched back together");
+		}
+		this.reassemblyBudget = reassemblyBudget;
+	}
+
+	/**
+	 * Returns the amount of memory currently used by the chunks of split
+	 * packets received from the peer that are waiting to be stitched back
+	 * together.
+	 * 
+	 * @return the amount of memory currently used in bytes.
+	 */
+	public final long getReassemblyBytes() {
+		return this.reassemblyBytes;
+	}
+
+	/**
+	 * Returns the amount of split packets received from the peer that are
+	 * waiting to be stitched back together.
+	 * 
+	 * @return the amount of split packets waiting to be stitched back
+	 *         together.
+	 */
+	public final int getIncompleteSplitCount() {
+		return splitQueue.size();
+	}
+
+	/**
+	 * Returns the amount of split packets received from the peer that have
+	 * been discarded for taking too long to be completed.
+	 * 
+	 * @return the amount of split packets that have expired.
+	 * @see #setSplitTimeout(long)
+	 */
+	public final long getExpiredSplitCount() {
+		return this.expiredSplitCount;
+	}
+
+	/**
+	 * Returns the reorder buffer of the specified channel.
+	 * 
+	 * @param channel
+	 *            the channel.
+	 * @return the reorder buffer of the <code>channel</code>,
+	 *         <code>null</code> if no
+	 *         {@link com.whirvis.jraknet.protocol.Reliability#RELIABLE_ORDERED
+	 *         ORDERED} packets have been received on it yet.
+	 * @throws InvalidChannelException
+	 *             if the <code>channel</code> is greater than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 */
+	public final ReorderBuffer getReorderBuffer(int channel) throws InvalidChannelException {
+		if (channel < 0 || channel >= RakNet.CHANNEL_COUNT) {
+			throw new InvalidChannelException(channel);
+		}
+		return reorderBuffers[channel];
+	}
+
+	/**
+	 * Returns the total amount of time
+	 * {@link com.whirvis.jraknet.protocol.Reliability#RELIABLE_ORDERED ORDERED}
+	 * packets have been held back waiting for a missing packet across all
+	 * channels.
+	 * 
+	 * @return the total head-of-line blocking time in milliseconds.
+	 */
+	public final long getHeadOfLineBlockingTime() {
+		long blockingTime = 0;
+		for (ReorderBuffer reorderBuffer : reorderBuffers) {
+			if (reorderBuffer != null) {
+				blockingTime += reorderBuffer.getHeadOfLineBlockingTime();
+			}
+		}
+		return blockingTime;
+	}
+
+	/**
+	 * Returns the longest amount of time
+	 * {@link com.whirvis.jraknet.protocol.Reliability#RELIABLE_ORDERED ORDERED}
+	 * packets have been held back waiting for a single missing packet on any
+	 * channel.
+	 * 
+	 * @return the longest head-of-line blocking time in milliseconds.
+	 */
+	public final long getMaximumHeadOfLineBlockingTime() {
+		long maximumBlockingTime = 0;
+		for (ReorderBuffer reorderBuffer : reorderBuffers) {
+			if (reorderBuffer != null) {
+				maximumBlockingTime = Math.max(maximumBlockingTime, reorderBuffer.getMaximumHeadOfLineBlockingTime());
+			}
+		}
+		return maximumBlockingTime;
+	}
+
+	/**
+	 * Returns the peer's timestamp. If login has not yet been completed,
+	 * <code>-1</code> will be returned.
+	 * 
+	 * @return the peer's timestamp, <code>-1</code> if login has not yet been
+	 *         completed.
+	 */
+	public abstract long getTimestamp();
+
+	/**
+	 * Returns the amount of packets sent in the last second.
+	 * 
+	 * @return the amount of packets sent in the last second.
+	 */
+	public final int getPacketsSentThisSecond() {
+		return this.packetsSentThisSecond;
+	}
+
+	/**
+	 * Returns the amount of packets received in the last second.
+	 * 
+	 * @return the amount of packets received in the last second.
+	 */
+	public final int getPacketsReceivedThisSecond() {
+		return this.packetsReceivedThisSecond;
+	}
+
+	/**
+	 * Returns whether or not the peer has timed out.
+	 * <p>
+	 * Keep in mind this method does not reflect the state of the peer
+	 * whatsoever. The peer state can be {@link RakNetState#HANDSHAKING
+	 * HANDSHAKING}, yet the peer can still have timed out due to
+	 * unresponsiveness.
+	 * 
+	 * @return <code>true</code> if the peer has timed out, <code>false</code>
+	 *         otherwise.
+	 */
+	public final boolean hasTimedOut() {
+		return retransmissionsExhausted == true || System.currentTimeMillis() - lastPacketReceiveTime >= timeout;
+	}
+
+	/**
+	 * Returns the last time a packet was sent by the peer.
+	 * 
+	 * @return the last time a packet was sent by the peer.
+	 */
+	public final long getLastPacketSendTime() {
+		return this.lastPacketSendTime;
+	}
+
+	/**
+	 * Returns the last time a packet was received.
+	 * 
+	 * @return the last time a packet was received.
+	 */
+	public final long getLastPacketReceiveTime() {
+		return this.lastPacketReceiveTime;
+	}
+
+	/**
+	 * Returns the message index and bumps it.
+	 * <p>
+	 * This method should only ever be called by the
+	 * {@link EncapsulatedPacket.Split} class. If it is called by anyone else
+	 * and it is set out of sync, all {@link Reliability#RELIABLE RELIABLE}
+	 * based reliabilities will break and the connection will have to be closed.
+	 * 
+	 * @return the message index.
+	 */
+	public final int bumpMessageIndex() {
+		synchronized (sendLock) {
+			int messageIndex = this.messageIndex;
+			this.messageIndex = SequenceNumber.next(messageIndex);
+			logger.trace("Bumped message index from " + messageIndex + " to " + this.messageIndex);
+			return messageIndex;
+		}
+	}
+
+	/**
+	 * Enables/disables latency detection.
+	 * <p>
+	 * When disabled, all methods relating to latency will report
+	 * <code>-1</code>. If the peer is not yet in the keep alive state then the
+	 * packets needed to detect the latency will not be sent until then.
+	 * 
+	 * @param enabled
+	 *            <code>true</code> to enable latency detection,
+	 *            <code>false</code> to disable it.
+	 */
+	public final void enableLatencyDetection(boolean enabled) {
+		boolean wasEnabled = latencyEnabled;
+		this.latencyEnabled = enabled;
+		if (enabled == false) {
+			latencyTracker.reset();
+		}
+		if (wasEnabled != enabled) {
+			logger.info((enabled ? "Enabled" : "Disabled") + " latency detection");
+		}
+	}
+
+	/**
+	 * Returns whether or not latency detection is enabled.
+	 * 
+	 * @return <code>true</code> if latency detection is enabled,
+	 *         <code>false</code> otherwise.
+	 */
+	public final boolean latencyDetectionEnabled() {
+		return this.latencyEnabled;
+	}
+
+	/**
+	 * Returns the latency tracker for the peer.
+	 * 
+	 * @return the latency tracker for the peer.
+	 */
+	public final LatencyTracker getLatencyTracker() {
+		return this.latencyTracker;
+	}
+
+	/**
+	 * Returns the average latency for the peer.
+	 * <p>
+	 * This is an exponentially weighted moving average, meaning it follows the
+	 * current latency of the peer rather than the average over its lifetime.
+	 * 
+	 * @return the average latency for the peer.
 	 */
 	public final long getLatency() {
-		return this.latency;
+		return latencyTracker.getAverageLatency();
 	}
 
 	/**
@@ -532,7 +1696,7 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 	 * @return the last calculated latency for the peer.
 	 */
 	public final long getLastLatency() {
-		return this.lastLatency;
+		return latencyTracker.getLastLatency();
 	}
 
 	/**
@@ -541,7 +1705,7 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 	 * @return the lowest recorded latency for the peer.
 	 */
 	public final long getLowestLatency() {
-		return this.lowestLatency;
+		return latencyTracker.getLowestLatency();
 	}
 
 	/**
@@ -550,7 +1714,435 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 	 * @return the highest recorded latency for the peer.
 	 */
 	public final long getHighestLatency() {
-		return this.highestLatency;
+		return latencyTracker.getHighestLatency();
+	}
+
+	/**
+	 * Returns the latency jitter for the peer, which is the smoothed
+	 * difference between consecutive latency samples.
+	 * 
+	 * @return the latency jitter for the peer.
+	 */
+	public final long getLatencyJitter() {
+		return latencyTracker.getJitter();
+	}
+
+	/**
+	 * Returns the specified percentile of the recent latency of the peer.
+	 * 
+	 * @param percentile
+	 *            the percentile, in between <code>0</code> and
+	 *            <code>100</code>.
+	 * @return the latency that the specified percentage of recent samples were
+	 *         at or below.
+	 * @throws IllegalArgumentException
+	 *             if the <code>percentile</code> is not in between
+	 *             <code>0</code> and <code>100</code>.
+	 */
+	public final long getLatencyPercentile(double percentile) throws IllegalArgumentException {
+		return latencyTracker.getPercentile(percentile);
+	}
+
+	/**
+	 * Returns the compressor used to compress the messages sent to and
+	 * decompress the messages received from the peer.
+	 * 
+	 * @return the compressor, <code>null</code> if compression is not used.
+	 */
+	public final PayloadCompressor getPayloadCompressor() {
+		return this.compressor;
+	}
+
+	/**
+	 * Sets the compressor used to compress the messages sent to and
+	 * decompress the messages received from the peer.
+	 * <p>
+	 * This should only be set if the peer has
+	 * {@link PayloadCompressor#isSupportedBy(ConnectionType) advertised}
+	 * support for it in its connection type, as otherwise it will receive
+	 * compressed messages it cannot make sense of.
+	 * 
+	 * @param compressor
+	 *            the compressor, <code>null</code> to not use compression.
+	 */
+	public final void setPayloadCompressor(PayloadCompressor compressor) {
+		this.compressor = compressor;
+		logger.debug((compressor != null ? "Enabled" : "Disabled") + " payload compression");
+	}
+
+	/**
+	 * Returns the compression metrics for the peer.
+	 * 
+	 * @return the compression metrics for the peer.
+	 */
+	public final CompressionMetrics getCompressionMetrics() {
+		return this.compressionMetrics;
+	}
+
+	/**
+	 * Returns the factory used to create the sinks for streams sent by the
+	 * peer.
+	 * 
+	 * @return the factory, <code>null</code> if streams are refused.
+	 */
+	public final StreamSinkFactory getStreamSinkFactory() {
+		return this.streamSinkFactory;
+	}
+
+	/**
+	 * Sets the factory used to create the sinks for streams sent by the peer.
+	 * If there is no factory, every stream sent by the peer is refused.
+	 * 
+	 * @param streamSinkFactory
+	 *            the factory, <code>null</code> to refuse streams.
+	 */
+	public final void setStreamSinkFactory(StreamSinkFactory streamSinkFactory) {
+		this.streamSinkFactory = streamSinkFactory;
+		logger.debug((streamSinkFactory != null ? "Enabled" : "Disabled") + " receiving streams");
+	}
+
+	/**
+	 * Returns the amount of streams currently being sent to the peer.
+	 * 
+	 * @return the amount of streams currently being sent to the peer.
+	 */
+	public final int getOutgoingStreamCount() {
+		return outgoingStreams.size();
+	}
+
+	/**
+	 * Returns the amount of streams currently being received from the peer.
+	 * 
+	 * @return the amount of streams currently being received from the peer.
+	 */
+	public final int getIncomingStreamCount() {
+		return incomingStreams.size();
+	}
+
+	/**
+	 * Sends a stream of data to the peer.
+	 * <p>
+	 * The data is read from the <code>source</code> one chunk at a time, and
+	 * only as room frees up in the congestion window, so streams of any size
+	 * are sent in constant memory. The chunks are sent on the specified
+	 * channel with the {@link Reliability#RELIABLE_ORDERED RELIABLE_ORDERED}
+	 * reliability and the {@link Priority#LOW LOW} priority, and are handed
+	 * to a {@link StreamSink} on the other side as they arrive.
+	 * <p>
+	 * The source is read from the thread that updates the peer. A source that
+	 * blocks for long periods of time, such as a socket, should be put in
+	 * non-blocking mode first. The source is closed once the stream has ended
+	 * or been aborted.
+	 * <p>
+	 * Streams are an extension of JRakNet, meaning they can only be sent to
+	 * peers using the {@link ConnectionType#JRAKNET JRAKNET} connection type.
+	 * 
+	 * @param channel
+	 *            the channel to send the stream on.
+	 * @param source
+	 *            the source of the data.
+	 * @param length
+	 *            the length of the stream in bytes, or <code>-1</code> if it
+	 *            is unknown. If it is known, the stream is aborted should the
+	 *            source end before that many bytes have been read from it.
+	 * @return the stream.
+	 * @throws NullPointerException
+	 *             if the <code>source</code> is <code>null</code>.
+	 * @throws InvalidChannelException
+	 *             if the channel is higher than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 * @throws IllegalArgumentException
+	 *             if the <code>length</code> is less than <code>-1</code>.
+	 * @throws IllegalStateException
+	 *             if the peer is disconnected, does not support streams, or
+	 *             {@value #MAX_STREAMS} streams are already being sent to it.
+	 */
+	public final OutgoingStream sendStream(int channel, ReadableByteChannel source, long length)
+			throws NullPointerException, InvalidChannelException, IllegalArgumentException, IllegalStateException {
+		if (source == null) {
+			throw new NullPointerException("Source cannot be null");
+		} else if (channel >= RakNet.CHANNEL_COUNT) {
+			throw new InvalidChannelException(channel);
+		} else if (length < -1) {
+			throw new IllegalArgumentException("Length must be -1 or greater");
+		} else if (this.isDisconnected()) {
+			throw new IllegalStateException("Peer is disconnected");
+		} else if (!connectionType.is(ConnectionType.JRAKNET)) {
+			throw new IllegalStateException("Peer does not support streams");
+		} else if (outgoingStreams.size() >= MAX_STREAMS) {
+			throw new IllegalStateException("Too many streams are already being sent");
+		}
+		OutgoingStream stream = new OutgoingStream(this, nextStreamId.getAndIncrement() & 0xFFFF, channel, length, source);
+		StreamPacket open = new StreamPacket();
+		open.streamId = stream.getStreamId();
+		open.type = StreamPacket.TYPE_OPEN;
+		open.length = length;
+		open.encode();
+		this.sendMessage(Priority.LOW, Reliability.RELIABLE_ORDERED, channel, open);
+		outgoingStreams.add(stream);
+		logger.debug("Opened stream " + stream.getStreamId() + " on channel " + channel + (length >= 0 ? " with length of " + length + " bytes" : ""));
+		this.wake();
+		return stream;
+	}
+
+	/**
+	 * Sends a stream of data to the peer.
+	 * 
+	 * @param channel
+	 *            the channel to send the stream on.
+	 * @param source
+	 *            the source of the data.
+	 * @param length
+	 *            the length of the stream in bytes, or <code>-1</code> if it
+	 *            is unknown.
+	 * @return the stream.
+	 * @throws NullPointerException
+	 *             if the <code>source</code> is <code>null</code>.
+	 * @throws InvalidChannelException
+	 *             if the channel is higher than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 * @throws IllegalArgumentException
+	 *             if the <code>length</code> is less than <code>-1</code>.
+	 * @throws IllegalStateException
+	 *             if the peer is disconnected, does not support streams, or
+	 *             {@value #MAX_STREAMS} streams are already being sent to it.
+	 * @see #sendStream(int, ReadableByteChannel, long)
+	 */
+	public final OutgoingStream sendStream(int channel, InputStream source, long length)
+			throws NullPointerException, InvalidChannelException, IllegalArgumentException, IllegalStateException {
+		if (source == null) {
+			throw new NullPointerException("Source cannot be null");
+		}
+		return this.sendStream(channel, Channels.newChannel(source), length);
+	}
+
+	/**
+	 * Returns whether or not there is room in the send queue for the next
+	 * chunk of a stream. Chunks are only read while the send queue holds less
+	 * than a congestion window worth of data, which keeps the memory used by
+	 * a stream constant.
+	 * 
+	 * @return <code>true</code> if there is room for the next chunk of a
+	 *         stream, <code>false</code> otherwise.
+	 */
+	private final boolean hasStreamRoom() {
+		return writable.get() == true && sendQueue.getQueuedBytes() < Math.max(congestionControl.getCongestionWindow(), maximumTransferUnit);
+	}
+
+	/**
+	 * Reads the next chunks of the streams being sent to the peer and sends
+	 * them, for as long as there is room for them.
+	 * 
+	 * @param currentTime
+	 *            the current time.
+	 */
+	private final void sendStreams(long currentTime) {
+		if (outgoingStreams.isEmpty()) {
+			return;
+		}
+		for (OutgoingStream stream : outgoingStreams) {
+			if (stream.isCancelled()) {
+				this.abortStream(stream, "cancelled");
+			}
+		}
+		if (state != RakNetState.LOGGED_IN) {
+			return;
+		}
+
+		// Take turns sending a chunk from each stream
+		boolean sent = true;
+		while (sent == true && this.hasStreamRoom()) {
+			sent = false;
+			for (OutgoingStream stream : outgoingStreams) {
+				if (stream.nextReadTime <= currentTime && this.hasStreamRoom() && this.sendStreamChunk(stream, currentTime)) {
+					sent = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the next chunk of a stream from its source and sends it.
+	 * 
+	 * @param stream
+	 *            the stream.
+	 * @param currentTime
+	 *            the current time.
+	 * @return <code>true</code> if a chunk was sent, <code>false</code> if
+	 *         the source had no data available or the stream has ended.
+	 */
+	private final boolean sendStreamChunk(OutgoingStream stream, long currentTime) {
+		long remaining = (stream.getLength() >= 0 ? stream.getLength() - stream.getBytesSent() : Long.MAX_VALUE);
+		int chunkSize = maximumTransferUnit - CustomPacket.MINIMUM_SIZE - EncapsulatedPacket.size(Reliability.RELIABLE_ORDERED, false) - StreamPacket.DATA_HEADER_SIZE;
+		ByteBuffer buffer = stream.getBuffer((int) Math.min(remaining, chunkSize));
+		int read = 0;
+		try {
+			read = stream.getSource().read(buffer);
+		} catch (IOException e) {
+			this.abortStream(stream, "failed to read source: " + e.getMessage());
+			return false;
+		}
+		if (read < 0) {
+			if (stream.getLength() >= 0) {
+				this.abortStream(stream, "source ended after " + stream.getBytesSent() + " of " + stream.getLength() + " bytes");
+			} else {
+				this.endStream(stream);
+			}
+			return false;
+		} else if (read == 0) {
+			stream.nextReadTime = currentTime + STREAM_POLL_INTERVAL;
+			return false; // No data available yet
+		}
+		buffer.flip();
+		StreamPacket data = new StreamPacket();
+		data.streamId = stream.getStreamId();
+		data.type = StreamPacket.TYPE_DATA;
+		data.data = buffer;
+		data.encode();
+		stream.onSent(this.sendMessageWithReceipt(Priority.LOW, Reliability.RELIABLE_ORDERED, stream.getChannel(), data), read);
+		if (stream.getLength() >= 0 && stream.getBytesSent() >= stream.getLength()) {
+			this.endStream(stream);
+		}
+		return true;
+	}
+
+	/**
+	 * Ends a stream once all of its data has been sent.
+	 * 
+	 * @param stream
+	 *            the stream.
+	 */
+	private final void endStream(OutgoingStream stream) {
+		outgoingStreams.remove(stream);
+		StreamPacket end = new StreamPacket();
+		end.streamId = stream.getStreamId();
+		end.type = StreamPacket.TYPE_END;
+		end.encode();
+		stream.onSent(this.sendMessageWithReceipt(Priority.LOW, Reliability.RELIABLE_ORDERED, stream.getChannel(), end), 0);
+		stream.onEnd();
+		logger.debug("Sent all " + stream.getBytesSent() + " bytes of stream " + stream.getStreamId());
+	}
+
+	/**
+	 * Aborts a stream being sent to the peer, and tells the peer to discard
+	 * it.
+	 * 
+	 * @param stream
+	 *            the stream.
+	 * @param reason
+	 *            the reason the stream was aborted.
+	 */
+	private final void abortStream(OutgoingStream stream, String reason) {
+		outgoingStreams.remove(stream);
+		if (!this.isDisconnected()) {
+			StreamPacket abort = new StreamPacket();
+			abort.streamId = stream.getStreamId();
+			abort.type = StreamPacket.TYPE_ABORT;
+			abort.reason = reason;
+			abort.encode();
+			this.sendMessage(Priority.MEDIUM, Reliability.RELIABLE_ORDERED, stream.getChannel(), abort);
+		}
+		stream.fail(reason);
+		logger.debug("Aborted stream " + stream.getStreamId() + " (" + reason + ")");
+	}
+
+	/**
+	 * Handles a <code>STREAM</code> packet sent by the peer.
+	 * 
+	 * @param channel
+	 *            the channel the packet was sent on.
+	 * @param packet
+	 *            the packet.
+	 */
+	private final void handleStream(int channel, StreamPacket packet) {
+		packet.decode();
+		int streamId = packet.streamId;
+		if (packet.type == StreamPacket.TYPE_CANCEL) {
+			for (OutgoingStream stream : outgoingStreams) {
+				if (stream.getStreamId() == streamId) {
+					outgoingStreams.remove(stream);
+					stream.fail("cancelled by peer: " + packet.reason);
+					logger.debug("Peer cancelled stream " + streamId + " (" + packet.reason + ")");
+					break;
+				}
+			}
+			return;
+		}
+
+		IncomingStream stream = incomingStreams.get(streamId);
+		if (packet.type == StreamPacket.TYPE_OPEN) {
+			if (stream != null) {
+				incomingStreams.remove(streamId);
+				stream.sink.onAbort("reopened by peer");
+			}
+			StreamSinkFactory streamSinkFactory = this.streamSinkFactory;
+			StreamSink sink = null;
+			if (streamSinkFactory != null && incomingStreams.size() < MAX_STREAMS) {
+				sink = streamSinkFactory.createSink(this, streamId, channel, packet.length);
+			}
+			if (sink != null) {
+				incomingStreams.put(streamId, new IncomingStream(sink, packet.length));
+				logger.debug("Accepted stream " + streamId + " on channel " + channel);
+			} else {
+				this.cancelStream(channel, streamId, null, "refused");
+			}
+		} else if (stream == null) {
+			return; // Refused or cancelled
+		} else if (packet.type == StreamPacket.TYPE_DATA) {
+			stream.received += packet.data.remaining();
+			if (stream.length >= 0 && stream.received > stream.length) {
+				this.cancelStream(channel, streamId, stream, "longer than " + stream.length + " bytes");
+				return;
+			}
+			try {
+				stream.sink.onData(packet.data);
+			} catch (IOException e) {
+				this.cancelStream(channel, streamId, stream, "failed to handle data: " + e.getMessage());
+			}
+		} else if (packet.type == StreamPacket.TYPE_END) {
+			incomingStreams.remove(streamId);
+			if (stream.length >= 0 && stream.received != stream.length) {
+				stream.sink.onAbort("ended after " + stream.received + " of " + stream.length + " bytes");
+				return;
+			}
+			try {
+				stream.sink.onEnd();
+				logger.debug("Received all " + stream.received + " bytes of stream " + streamId);
+			} catch (IOException e) {
+				logger.warn("Failed to handle end of stream " + streamId + " (" + e.getMessage() + ")");
+			}
+		} else if (packet.type == StreamPacket.TYPE_ABORT) {
+			incomingStreams.remove(streamId);
+			stream.sink.onAbort(packet.reason);
+			logger.debug("Peer aborted stream " + streamId + " (" + packet.reason + ")");
+		}
+	}
+
+	/**
+	 * Cancels a stream being received from the peer, and tells the peer to
+	 * stop sending it.
+	 * 
+	 * @param channel
+	 *            the channel the stream is being sent on.
+	 * @param streamId
+	 *            the ID of the stream.
+	 * @param stream
+	 *            the stream, <code>null</code> if it was never accepted.
+	 * @param reason
+	 *            the reason the stream was cancelled.
+	 */
+	private final void cancelStream(int channel, int streamId, IncomingStream stream, String reason) {
+		if (stream != null) {
+			incomingStreams.remove(streamId);
+			stream.sink.onAbort(reason);
+		}
+		StreamPacket cancel = new StreamPacket();
+		cancel.streamId = streamId;
+		cancel.type = StreamPacket.TYPE_CANCEL;
+		cancel.reason = reason;
+		cancel.encode();
+		this.sendMessage(Priority.MEDIUM, Reliability.RELIABLE_ORDERED, channel, cancel);
+		logger.debug("Cancelled stream " + streamId + " (" + reason + ")");
 	}
 
 	/**
@@ -568,8 +2160,13 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 	 *             if the packet is a {@link CustomPacket CUSTOM_PACKET}, an
 	 *             encapsulated packet found inside of it is split, and adding
 	 *             it to the split queue would cause it to overflow.
+	 * @throws ReorderBufferOverflowException
+	 *             if the packet is a {@link CustomPacket CUSTOM_PACKET}, an
+	 *             encapsulated packet found inside of it is ordered, and
+	 *             holding it back would exceed the maximum ordering hole or
+	 *             the ordering memory budget.
 	 */
-	public final void handleInternal(RakNetPacket packet) throws NullPointerException, InvalidChannelException, SplitQueueOverflowException {
+	public final void handleInternal(RakNetPacket packet) throws NullPointerException, InvalidChannelException, SplitQueueOverflowException, ReorderBufferOverflowException {
 		if (packet == null) {
 			throw new NullPointerException("Packet cannot be null");
 		}
@@ -584,29 +2181,55 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 			custom.decode();
 
 			/*
-			 * We send an ACK packet as soon as we get the packet. This is
-			 * because sometimes handling a packet takes longer than expected
-			 * (or longer than the recovery send interval time). If this
-			 * happens, it will cause the other side to resend a packet that we
-			 * already got. If the resend time is too low, this can end up
-			 * causing the other side to also spam us without meaning to.
+			 * We queue the acknowledgement as soon as we get the packet. This
+			 * is because sometimes handling a packet takes longer than
+			 * expected. If the ACK packet were only sent after handling, it
+			 * could cause the other side to resend a packet that we already
+			 * got. The acknowledgements are sent together once the
+			 * acknowledgement delay has passed, or right away if too many of
+			 * them are waiting.
 			 */
-			this.sendAcknowledge(true, new Record(custom.sequenceId));
+			if (pendingAcks.add(custom.sequenceId) && pendingAckTime < 0) {
+				this.pendingAckTime = currentTime;
+			}
+			if (pendingAcks.size() >= maxPendingAcks) {
+				this.flushAcknowledgements();
+			}
 
 			/*
-			 * NACK must be generated first before the peer data is updated,
-			 * otherwise the data needed to know which packets have been lost
-			 * will have been overwritten.
+			 * Datagrams that arrive late due to reordering are still handled,
+			 * only datagrams that have already been received are discarded.
+			 * The sequence numbers that were skipped over are not reported
+			 * as lost right away, rather they are sent in a single NACK packet
+			 * on the next update if they still have not arrived by then.
+			 * 
+			 * Datagrams that are so late they are older than the receive
+			 * window could have already been received. Only their reliable
+			 * messages are handled, as those have their duplicates discarded
+			 * by message index.
 			 */
-			int skipped = custom.sequenceId - receiveSequenceNumber - 1;
-			if (skipped > 0) {
-				this.sendAcknowledge(false, skipped == 1 ? new Record(custom.sequenceId - 1) : new Record(receiveSequenceNumber + 1, custom.sequenceId - 1));
-			}
-			if (custom.sequenceId > receiveSequenceNumber - 1) {
-				this.receiveSequenceNumber = custom.sequenceId;
-				for (EncapsulatedPacket encapsulated : custom.messages) {
-					this.handleEncapsulated(encapsulated);
+			boolean received = receiveWindow.receive(custom.sequenceId);
+			boolean stale = received == false && receiveWindow.isStale(custom.sequenceId);
+			int handled = 0;
+			try {
+				while ((received == true || stale == true) && handled < custom.messages.length) {
+					EncapsulatedPacket encapsulated = custom.messages[handled++];
+					if (received == true || encapsulated.reliability.isReliable()) {
+						this.handleEncapsulated(encapsulated);
+					} else {
+						encapsulated.release();
+					}
 				}
+			} finally {
+				// Release the split chunks that were never handled
+				while (handled < custom.messages.length) {
+					custom.messages[handled++].release();
+				}
+			}
+			if (stale == true) {
+				logger.trace("Handled only the reliable messages of stale custom packet with sequence number " + custom.sequenceId);
+			} else if (received == false) {
+				logger.trace("Discarded duplicate custom packet with sequence number " + custom.sequenceId);
 			}
 			logger.trace("Handled custom packet with sequence number " + custom.sequenceId);
 		} else if (packet.getId() == ID_NACK) {
@@ -615,66 +2238,71 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 
 			/*
 			 * When a peer realizes they have lost a packet in transmission,
-			 * they only send a NACK packet once. This makes implementation
-			 * easier. However, this can make this code look a bit whacky.
-			 * 
-			 * What's happening here is we are getting the old sequence numbers
-			 * of the lost packets and then creating an array to store the new
-			 * ones in. The new sequence number is found when sending the custom
-			 * packet containing the lost data without updating the recovery
-			 * queue.
-			 * 
-			 * As a final step, we rename the keys in the recovery queue from
-			 * the old sequence number to the new sequence number after all the
-			 * packets that were lost in transmission were resent. We do not
-			 * remove them from the recovery queue until the peer has responded
-			 * with an ACK packet.
+			 * they only send a NACK packet once. The lost datagrams are
+			 * removed from the sent datagram window, the peer is notified of
+			 * any acknowledgement receipts that were lost, and the reliable
+			 * packets are resent in a new datagram with a new sequence number.
+			 * They are not forgotten until the peer has responded with an ACK
+			 * packet for the new datagram.
 			 */
-			for (int i = 0; i < notAcknowledged.records.length; i++) {
-				Record record = notAcknowledged.records[i];
-
-				// Notify peer of packets lost in transmission
-				Iterator<EncapsulatedPacket> ackReceiptPacketsI = ackReceiptPackets.keySet().iterator();
-				while (ackReceiptPacketsI.hasNext()) {
-					EncapsulatedPacket encapsulated = ackReceiptPacketsI.next();
-					int encapsulatedRecordIndex = ackReceiptPackets.get(encapsulated).intValue();
-					if (record.getIndex() == encapsulatedRecordIndex) {
-						this.onNotAcknowledge(record, encapsulated);
-						encapsulated.ackRecord = null;
-						ackReceiptPackets.remove(encapsulated);
-					}
-				}
-
-				// Resend packets lost in transmission
-				EncapsulatedPacket[] lost = recoveryQueue.remove(record.getIndex());
-				if (lost != null) {
-					recoveryQueue.put(this.sendCustomPacket(false, lost), lost);
+			for (Record record : notAcknowledged.records) {
+				for (SentDatagram lost : sentWindow.remove(record.getIndex(), getEndSequenceNumber(record))) {
+					this.handleLost(lost, false);
 				}
 			}
+			this.updateWritability();
+			logger.trace("Handled NACK packet with " + notAcknowledged.records.length + " record" + (notAcknowledged.records.length == 1 ? "" : "s"));
 		} else if (packet.getId() == ID_ACK) {
 			AcknowledgedPacket acknowledged = new AcknowledgedPacket(packet);
 			acknowledged.decode();
+			SentDatagram newest = null;
 			for (Record record : acknowledged.records) {
-				Iterator<EncapsulatedPacket> ackReceiptPacketsI = ackReceiptPackets.keySet().iterator();
-				while (ackReceiptPacketsI.hasNext()) {
-					EncapsulatedPacket encapsulated = ackReceiptPacketsI.next();
-					int encapsulatedRecordIndex = ackReceiptPackets.get(encapsulated).intValue();
-					if (record.getIndex() == encapsulatedRecordIndex) {
-						this.onAcknowledge(record, encapsulated);
-						encapsulated.ackRecord = null;
-						ackReceiptPacketsI.remove();
+				for (SentDatagram received : sentWindow.remove(record.getIndex(), getEndSequenceNumber(record))) {
+					congestionControl.onAcknowledge(received.getSequenceNumber(), received.getSize(), currentTime);
+					if (received.getSequenceNumber() == probeSequenceNumber) {
+						this.handleProbe(true, currentTime);
+					} else if (received.getSize() > initialTransferUnit) {
+						this.blackHoleLosses = 0; // Large datagrams still get through
+					}
+					if (newest == null || SequenceNumber.isNewer(received.getSequenceNumber(), newest.getSequenceNumber())) {
+						newest = received;
+					}
+					for (EncapsulatedPacket encapsulated : received.getMessages()) {
+						if (encapsulated.reliability.requiresAck()) {
+							EncapsulatedPacket clone = encapsulated.getClone();
+							this.onAcknowledge(clone.ackRecord, clone);
+							clone.ackRecord = null;
+						}
+						if (encapsulated.receipt != null && encapsulated.receipt.acknowledge(encapsulated.payload.size())) {
+							pendingReceipts.remove(encapsulated.receipt);
+						}
+						encapsulated.release();
 					}
 				}
-				recoveryQueue.remove(record.getIndex());
 			}
+
+			/*
+			 * Only the newest datagram acknowledged is used as a round trip
+			 * time sample, as the older ones may have been held back by the
+			 * peer to be acknowledged together.
+			 */
+			if (newest != null) {
+				roundTripTime.update(currentTime - newest.getSendTime());
+			}
+			this.updateWritability();
 			logger.trace("Handled ACK packet with " + acknowledged.records.length + " record" + (acknowledged.records.length == 1 ? "" : "s") + " "
 					+ Arrays.toString(acknowledged.records));
 		}
 		logger.trace("Handled " + RakNetPacket.getName(packet));
+		this.wake();
 	}
 
 	/**
 	 * Handles an {@link EncapsulatedPacket}.
+	 * <p>
+	 * If the packet is split, its payload is a retained slice of the datagram
+	 * it arrived in. The payload is either handed over to the split packet it
+	 * belongs to, or released before this method returns.
 	 * 
 	 * @param encapsulated
 	 *            the encapsulated packet.
@@ -686,100 +2314,296 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 	 * @throws SplitQueueOverflowException
 	 *             if the <code>encapsulated</code> packet is split, and adding
 	 *             it to the split queue would cause it to overflow.
+	 * @throws ReorderBufferOverflowException
+	 *             if the <code>encapsulated</code> packet is ordered, and
+	 *             holding it back would exceed the maximum ordering hole or
+	 *             the ordering memory budget.
 	 */
-	private final void handleEncapsulated(EncapsulatedPacket encapsulated) throws InvalidChannelException, SplitQueueOverflowException {
+	private final void handleEncapsulated(EncapsulatedPacket encapsulated) throws InvalidChannelException, SplitQueueOverflowException, ReorderBufferOverflowException {
 		if (encapsulated == null) {
 			throw new NullPointerException("Encapsulated packet cannot be null");
 		} else if (encapsulated.orderChannel >= RakNet.CHANNEL_COUNT) {
+			encapsulated.release();
 			throw new InvalidChannelException(encapsulated.orderChannel);
-		} else if (encapsulated.split == true) {
-			if (!splitQueue.containsKey(encapsulated.splitId)) {
-				splitQueue.put(encapsulated.splitId, new EncapsulatedPacket.Split(encapsulated.splitId, encapsulated.splitCount, encapsulated.reliability));
-
-				/**
-				 * If the split queue is greater than the maximum amount of
-				 * packets that can be split, remove all unreliable split
-				 * packets. If the split queue is still too big, then the queue
-				 * has been overloaded.
+		}
+		try {
+			this.handleEncapsulated0(encapsulated);
+		} finally {
+			encapsulated.release(); // No effect if owned by a split packet
+		}
+		logger.trace("Handled " + (encapsulated.split ? "split " : "") + "encapsulated packet with " + encapsulated.reliability + " reliability on channel "
+				+ encapsulated.orderChannel);
+	}
+
+	/**
+	 * Handles an {@link EncapsulatedPacket} whose channel has already been
+	 * validated by {@link #handleEncapsulated(EncapsulatedPacket)}.
+	 * 
+	 * @param encapsulated
+	 *            the encapsulated packet.
+	 * @throws InvalidChannelException
+	 *             if the channel of the <code>encapsulated</code> packet is
+	 *             greater than or equal to {@value RakNet#CHANNEL_COUNT}.
+	 * @throws SplitQueueOverflowException
+	 *             if the <code>encapsulated</code> packet is split, and adding
+	 *             it to the split queue would cause it to overflow.
+	 * @throws ReorderBufferOverflowException
+	 *             if the <code>encapsulated</code> packet is ordered, and
+	 *             holding it back would exceed the maximum ordering hole or
+	 *             the ordering memory budget.
+	 */
+	private final void handleEncapsulated0(EncapsulatedPacket encapsulated) throws InvalidChannelException, SplitQueueOverflowException, ReorderBufferOverflowException {
+		/*
+		 * Every reliable packet has its own message index, including each
+		 * chunk of a split packet. Duplicates are discarded before anything
+		 * else is done, as otherwise a chunk that was resent would be
+		 * registered to its split packet twice.
+		 */
+		if (encapsulated.reliability.isReliable() && !reliablePackets.add(encapsulated.messageIndex)) {
+			logger.trace("Discarded duplicate encapsulated packet with message index " + encapsulated.messageIndex);
+			return;
+		}
+		if (encapsulated.split == true) {
+			EncapsulatedPacket.Split split = splitQueue.get(encapsulated.splitId);
+			if (split == null) {
+				if (encapsulated.splitCount > maximumSplitCount) {
+					throw new SplitQueueOverflowException("split count of " + encapsulated.splitCount + " is greater than " + maximumSplitCount);
+				}
+
+				/*
+				 * If there are already as many split packets as allowed, make
+				 * room by discarding the unreliable split packets. If there is
+				 * still no room, then the queue has been overloaded.
 				 */
-				if (splitQueue.size() > MAX_SPLITS_PER_QUEUE) {
-					Iterator<EncapsulatedPacket.Split> splitQueueI = splitQueue.values().iterator();
-					int removeCount = 0;
-					while (splitQueueI.hasNext()) {
-						EncapsulatedPacket.Split splitPacket = splitQueueI.next();
-						if (!splitPacket.getReliability().isReliable()) {
-							splitQueueI.remove();
-							removeCount++;
-						}
-					}
-					if (removeCount > 0) {
-						logger.warn("Removed " + removeCount + " unreliable packets from the split queue due to an overflowing split queue");
-					}
-					if (splitQueue.size() > MAX_SPLITS_PER_QUEUE) {
-						throw new SplitQueueOverflowException();
+				if (splitQueue.size() >= maximumSplits) {
+					this.discardUnreliableSplits(null);
+					if (splitQueue.size() >= maximumSplits) {
+						throw new SplitQueueOverflowException("more than " + maximumSplits + " split packets");
 					}
 				}
+				split = new EncapsulatedPacket.Split(encapsulated.splitId, encapsulated.splitCount, encapsulated.reliability);
+				splitQueue.put(encapsulated.splitId, split);
+			}
+			int size = encapsulated.payload.buffer().readableBytes();
+			this.reserveSplitBytes(split, size);
+			EncapsulatedPacket stitched = null;
+			try {
+				stitched = split.update(encapsulated);
+			} catch (IllegalArgumentException e) {
+				this.releaseSplitBytes(size);
+				throw e;
+			}
+			if (stitched != null) {
+				splitQueue.remove(encapsulated.splitId);
+				this.releaseSplitBytes(stitched.payload.buffer().readableBytes());
+				this.handleAssembled(stitched);
+			}
+		} else {
+			this.handleAssembled(encapsulated);
+		}
+	}
+
+	/**
+	 * Reserves memory for a chunk of a split packet in both the split memory
+	 * budget of the peer and the reassembly budget it shares. If either budget
+	 * does not have enough room left, the unreliable split packets are
+	 * discarded to make room for the chunk.
+	 * 
+	 * @param split
+	 *            the split packet the chunk belongs to, which will not be
+	 *            discarded.
+	 * @param size
+	 *            the size of the chunk in bytes.
+	 * @throws SplitQueueOverflowException
+	 *             if there is still not enough room for the chunk after the
+	 *             unreliable split packets have been discarded.
+	 */
+	private final void reserveSplitBytes(EncapsulatedPacket.Split split, int size) throws SplitQueueOverflowException {
+		if (reassemblyBytes + size > splitMemoryBudget) {
+			this.discardUnreliableSplits(split);
+			if (reassemblyBytes + size > splitMemoryBudget) {
+				throw new SplitQueueOverflowException("split packets would use more than " + splitMemoryBudget + " bytes");
+			}
+		}
+		ReassemblyBudget reassemblyBudget = this.reassemblyBudget;
+		if (reassemblyBudget != null && !reassemblyBudget.reserve(size)) {
+			this.discardUnreliableSplits(split);
+			if (!reassemblyBudget.reserve(size)) {
+				throw new SplitQueueOverflowException("shared reassembly budget of " + reassemblyBudget.getLimit() + " bytes is used up");
+			}
+		}
+		this.reassemblyBytes += size;
+	}
+
+	/**
+	 * Releases memory that was reserved for the chunks of a split packet.
+	 * 
+	 * @param size
+	 *            the amount of memory to release in bytes.
+	 */
+	private final void releaseSplitBytes(long size) {
+		this.reassemblyBytes -= size;
+		ReassemblyBudget reassemblyBudget = this.reassemblyBudget;
+		if (reassemblyBudget != null) {
+			reassemblyBudget.release(size);
+		}
+	}
+
+	/**
+	 * Removes a split packet from the split queue and releases the chunks it
+	 * is holding.
+	 * 
+	 * @param split
+	 *            the split packet.
+	 */
+	private final void discardSplit(EncapsulatedPacket.Split split) {
+		this.releaseSplitBytes(split.getReceivedBytes());
+		split.release();
+	}
+
+	/**
+	 * Discards every unreliable split packet in the split queue.
+	 * 
+	 * @param keep
+	 *            the split packet to keep regardless of its reliability,
+	 *            <code>null</code> if none should be kept.
+	 */
+	private final void discardUnreliableSplits(EncapsulatedPacket.Split keep) {
+		Iterator<EncapsulatedPacket.Split> splitQueueI = splitQueue.values().iterator();
+		int removeCount = 0;
+		while (splitQueueI.hasNext()) {
+			EncapsulatedPacket.Split split = splitQueueI.next();
+			if (split != keep && !split.getReliability().isReliable()) {
+				splitQueueI.remove();
+				this.discardSplit(split);
+				removeCount++;
+			}
+		}
+		if (removeCount > 0) {
+			logger.warn("Removed " + removeCount + " unreliable packets from the split queue due to an overflowing split queue");
+		}
+	}
+
+	/**
+	 * Discards the split packets that have gone too long without receiving
+	 * any of their chunks.
+	 * 
+	 * @param currentTime
+	 *            the current time.
+	 */
+	private final void expireSplits(long currentTime) {
+		Iterator<EncapsulatedPacket.Split> splitQueueI = splitQueue.values().iterator();
+		while (splitQueueI.hasNext()) {
+			EncapsulatedPacket.Split split = splitQueueI.next();
+			if (currentTime - split.getLastUpdateTime() >= splitTimeout) {
+				splitQueueI.remove();
+				this.discardSplit(split);
+				this.expiredSplitCount++;
+				logger.debug("Discarded split packet " + split + " after " + splitTimeout + "ms without progress");
+			}
+		}
+	}
+
+	/**
+	 * Handles an {@link EncapsulatedPacket} that is not split, either because
+	 * it was never split to begin with or because it has been stitched back
+	 * together.
+	 * <p>
+	 * The packet is expected to have already been checked for duplication by
+	 * {@link #handleEncapsulated(EncapsulatedPacket)}. If the payload of the
+	 * packet is {@link EncapsulatedPacket#isRetained() retained}, it is
+	 * released once the packet has been handled or discarded.
+	 * 
+	 * @param encapsulated
+	 *            the encapsulated packet.
+	 * @throws InvalidChannelException
+	 *             if the channel of the <code>encapsulated</code> packet is
+	 *             greater than or equal to {@value RakNet#CHANNEL_COUNT}.
+	 * @throws ReorderBufferOverflowException
+	 *             if the <code>encapsulated</code> packet is ordered, and
+	 *             holding it back would exceed the maximum ordering hole or
+	 *             the ordering memory budget.
+	 */
+	private final void handleAssembled(EncapsulatedPacket encapsulated) throws InvalidChannelException, ReorderBufferOverflowException {
+		/*
+		 * Determine if the message should be handled based on its reliability.
+		 * 
+		 * If the message is ordered, only handle it when all the messages
+		 * before it on the channel have also been received and are ready to be
+		 * handled.
+		 * 
+		 * If the message is sequenced, only handle it if it is the newest
+		 * packet on the channel.
+		 * 
+		 * If the message is neither ordered nor sequenced, then it is handled
+		 * regardless.
+		 */
+		if (encapsulated.reliability.isOrdered()) {
+			ReorderBuffer reorderBuffer = reorderBuffers[encapsulated.orderChannel];
+			if (reorderBuffer == null) {
+				reorderBuffer = new ReorderBuffer(encapsulated.orderChannel, maximumOrderingHole, orderingMemoryBudget);
+				reorderBuffers[encapsulated.orderChannel] = reorderBuffer;
+			}
+			long currentTime = System.currentTimeMillis();
+			boolean added = false;
+			try {
+				added = reorderBuffer.add(encapsulated, currentTime);
+			} finally {
+				if (added == false) {
+					encapsulated.release(); // Discarded or overflowed
+				}
 			}
-			EncapsulatedPacket stitched = splitQueue.get(encapsulated.splitId).update(encapsulated);
-			if (stitched != null) {
-				splitQueue.remove(encapsulated.splitId);
-				this.handleEncapsulated(stitched);
+			EncapsulatedPacket ordered = null;
+			while ((ordered = reorderBuffer.poll(currentTime)) != null) {
+				try {
+					this.handleMessage0(ordered.orderChannel, new RakNetPacket(ordered.payload), ordered.isRetained());
+				} finally {
+					ordered.release();
+				}
 			}
-		} else if (!encapsulated.reliability.isReliable() || (encapsulated.reliability.isReliable() && !reliablePackets.contains(encapsulated.messageIndex))) {
-			/*
-			 * Determine if the message should be handled based on its
-			 * reliability.
-			 * 
-			 * If the message is ordered, only handle it when all the messages
-			 * before it on the channel have also been received and are ready to
-			 * be handled.
-			 * 
-			 * If the message is sequenced, only handle it if it is the newest
-			 * packet on the channel.
-			 * 
-			 * If the message is neither ordered nor sequenced, then it is
-			 * handled regardless.
-			 */
-			reliablePackets.add(encapsulated.messageIndex);
-			if (encapsulated.reliability.isOrdered()) {
-				handleQueue.get(encapsulated.orderChannel).put(encapsulated.orderIndex, encapsulated);
-				while (handleQueue.get(encapsulated.orderChannel).containsKey(orderReceiveIndex[encapsulated.orderChannel])) {
-					this.handleMessage0(encapsulated.orderChannel,
-							new RakNetPacket(handleQueue.get(encapsulated.orderChannel).remove(orderReceiveIndex[encapsulated.orderChannel]++).payload));
+		} else {
+			try {
+				if (!encapsulated.reliability.isSequenced()) {
+					this.handleMessage0(encapsulated.orderChannel, new RakNetPacket(encapsulated.payload), encapsulated.isRetained());
+				} else if (SequenceNumber.isNewer(encapsulated.orderIndex, sequenceReceiveIndex[encapsulated.orderChannel])) {
+					sequenceReceiveIndex[encapsulated.orderChannel] = encapsulated.orderIndex;
+					this.handleMessage0(encapsulated.orderChannel, new RakNetPacket(encapsulated.payload), encapsulated.isRetained());
 				}
-			} else if (encapsulated.reliability.isSequenced() && encapsulated.orderIndex > sequenceReceiveIndex[encapsulated.orderChannel]) {
-				sequenceReceiveIndex[encapsulated.orderChannel] = encapsulated.orderIndex;
-				this.handleMessage0(encapsulated.orderChannel, new RakNetPacket(encapsulated.payload));
-			} else {
-				this.handleMessage0(encapsulated.orderChannel, new RakNetPacket(encapsulated.payload));
+			} finally {
+				encapsulated.release();
 			}
 		}
-		logger.trace("Handled " + (encapsulated.split ? "split " : "") + "encapsulated packet with " + encapsulated.reliability + " reliability on channel "
-				+ encapsulated.orderChannel);
 	}
 
 	/**
 	 * Handles an internal packet.
 	 * <p>
 	 * If the ID is unrecognized it is passed on to the extending peer class via
-	 * the {@link #handleMessage(RakNetPacket, int)} method.
+	 * the {@link #handleMessage(RakNetPacket, int)} method. Compressed messages
+	 * are decompressed first, and then handled as if they were sent as they
+	 * are.
 	 * 
 	 * @param channel
 	 *            the channel the packet was sent on.
 	 * @param packet
 	 *            the packet.
+	 * @param pooled
+	 *            <code>true</code> if the packet is backed by pooled buffers
+	 *            that are released once it has been handled,
+	 *            <code>false</code> otherwise.
 	 * @throws InvalidChannelException
 	 *             if the <code>channel</code> is greater than or equal to
 	 *             {@value RakNet#CHANNEL_COUNT}.
 	 * @throws NullPointerException
 	 *             if the <code>packet</code> is <code>null</code>.
 	 */
-	private final void handleMessage0(int channel, RakNetPacket packet) throws InvalidChannelException, NullPointerException {
+	private final void handleMessage0(int channel, RakNetPacket packet, boolean pooled) throws InvalidChannelException, NullPointerException {
 		if (channel >= RakNet.CHANNEL_COUNT) {
 			throw new InvalidChannelException(channel);
 		} else if (packet == null) {
 			throw new NullPointerException("Packet cannot be null");
 		}
+		PayloadCompressor compressor = this.compressor;
 		if (packet.getId() == ID_CONNECTED_PING) {
 			ConnectedPing ping = new ConnectedPing(packet);
 			ping.decode();
@@ -787,40 +2611,38 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 			pong.timestamp = ping.timestamp;
 			pong.timestampPong = this.getTimestamp();
 			pong.encode();
-			this.sendMessage(Reliability.UNRELIABLE, pong);
+			this.sendMessage(Priority.IMMEDIATE, Reliability.UNRELIABLE, pong);
+		} else if (packet.getId() == ID_DETECT_LOST_CONNECTIONS) {
+			// Keep alive packets and path MTU probes need no response
 		} else if (packet.getId() == ID_CONNECTED_PONG) {
 			ConnectedPong pong = new ConnectedPong(packet);
 			pong.decode();
 
 			// Calculate latency
-			if (latencyEnabled == true && latencyTimestamps.contains(pong.timestamp)) {
-				latencyTimestamps.remove(pong.timestamp);
-				long responseTime = lastPacketReceiveTime - lastPingSendTime;
-				this.lastLatency = responseTime;
-				if (this.pongsReceived == 0) {
-					this.lowestLatency = responseTime;
-					this.highestLatency = responseTime;
-				} else if (responseTime < lowestLatency) {
-					this.lowestLatency = responseTime;
-				} else if (responseTime > highestLatency) {
-					this.highestLatency = responseTime;
-				}
-				this.totalLatency += responseTime;
-				this.latency = totalLatency / ++pongsReceived;
-				logger.trace("Updated latency information (last latency timestamp: " + lastLatency + ", lowest latency: " + lowestLatency + ", highest latency: " + highestLatency
-						+ ", total latency: " + totalLatency + ", pongs received: " + pongsReceived + ", average latency: " + latency + ")");
-			}
-
-			// Clear overdue ping responses
-			long currentTimestamp = this.getTimestamp();
-			Iterator<Long> timestampI = latencyTimestamps.iterator();
-			while (timestampI.hasNext()) {
-				long timestamp = timestampI.next().longValue();
-				if (currentTimestamp - timestamp >= PEER_TIMEOUT || latencyTimestamps.size() > 10) {
-					timestampI.remove();
-					logger.debug("Cleared overdue ping response with timestamp " + timestamp);
-				}
+			if (latencyEnabled == true && latencyTracker.onPong(pong.timestamp, this.getTimestamp())) {
+				logger.trace("Updated latency information (" + latencyTracker + ")");
+			}
+		} else if (packet.getId() == StreamPacket.ID_STREAM && connectionType.is(ConnectionType.JRAKNET)) {
+			this.handleStream(channel, new StreamPacket(packet));
+		} else if (packet.getId() == PayloadCompressor.ID_COMPRESSED && compressor != null) {
+			long startTime = System.nanoTime();
+			try {
+				RakNetPacket decompressed = compressor.decompress(packet);
+				compressionMetrics.onDecompress(packet.size(), decompressed.size(), System.nanoTime() - startTime);
+				this.handleMessage0(channel, decompressed, false);
+			} catch (DataFormatException e) {
+				logger.warn("Discarded malformed compressed message on channel " + channel + " (" + e.getMessage() + ")");
 			}
+		} else if (pooled == true && pooledMessages == false) {
+			/*
+			 * The buffers backing the packet are released as soon as it has
+			 * been handled. Unless pooled messages have been enabled, whoever
+			 * handles the packet gets a copy of their own, as they may keep it
+			 * around for longer.
+			 */
+			ByteBuf buffer = packet.buffer();
+			int length = buffer.writerIndex();
+			this.handleMessage(new RakNetPacket(Unpooled.buffer(length).writeBytes(buffer, 0, length)), channel);
 		} else {
 			this.handleMessage(packet, channel);
 		}
@@ -842,6 +2664,7 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 		if (buf == null) {
 			throw new NullPointerException("Buffer cannot be null");
 		}
+		int size = buf.readableBytes(); // Buffer is released once written
 		channel.writeAndFlush(new DatagramPacket(buf, address));
 		long currentTime = System.currentTimeMillis();
 		if (currentTime - lastPacketsSentThisSecondResetTime >= 1000L) {
@@ -850,7 +2673,7 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 		}
 		this.lastPacketSendTime = currentTime;
 		this.packetsSentThisSecond++;
-		logger.trace("Sent netty message with size of " + buf.capacity() + " bytes (" + (buf.capacity() * 8) + " bits) to " + address);
+		logger.trace("Sent netty message with size of " + size + " bytes (" + (size * 8) + " bits) to " + address);
 	}
 
 	/**
@@ -874,14 +2697,17 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 	/**
 	 * Sends a {@link CustomFourPacket} to the peer with the specified
 	 * {@link EncapsulatedPacket encapsulated packets}.
+	 * <p>
+	 * Every datagram is stored in the sent datagram window under the sequence
+	 * number of the {@link CustomFourPacket}, alongside the packets in it that
+	 * are reliable or require an acknowledgement receipt, until the peer either
+	 * acknowledges the datagram or reports that it was lost in transmission.
+	 * This allows for the congestion control to keep track of every byte in
+	 * flight.
 	 * 
-	 * @param updateRecoveryQueue
-	 *            <code>true</code> if the the encapsulated packets should be
-	 *            stored in the recovery queue for later, <code>false</code>
-	 *            otherwise. This should only be <code>true</code> when sending
-	 *            a group of packets for the first time, rather than resending
-	 *            old data that the peer has reported to be lost in
-	 *            transmission.
+	 * @param retransmissions
+	 *            the amount of times the packets have already been
+	 *            retransmitted after timing out.
 	 * @param messages
 	 *            the packets to send.
 	 * @return the sequence number of the {@link CustomFourPacket}.
@@ -890,58 +2716,205 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 	 * @throws IllegalArgumentException
 	 *             if the <code>messages</code> array is empty.
 	 */
-	private final int sendCustomPacket(boolean updateRecoveryQueue, EncapsulatedPacket... messages) throws NullPointerException, IllegalArgumentException {
+	private final int sendCustomPacket(int retransmissions, EncapsulatedPacket... messages) throws NullPointerException, IllegalArgumentException {
 		if (messages == null) {
 			throw new NullPointerException("Messages cannot be null");
 		} else if (messages.length <= 0) {
 			throw new IllegalArgumentException("There must be a message to send");
 		}
 
-		// Encode custom packet
-		CustomFourPacket custom = new CustomFourPacket();
-		custom.sequenceId = this.sendSequenceNumber++;
+		/*
+		 * Encode the custom packet straight into a pooled direct buffer that
+		 * is big enough to hold an entire datagram, so it never has to grow
+		 * and Netty does not have to copy it into a direct buffer of its own
+		 * before writing it to the socket. The buffer is released back to the
+		 * pool by Netty once the write has completed.
+		 */
+		CustomFourPacket custom = new CustomFourPacket(PooledByteBufAllocator.DEFAULT.directBuffer(maximumTransferUnit));
+		custom.sequenceId = this.sendSequenceNumber;
+		this.sendSequenceNumber = SequenceNumber.next(sendSequenceNumber);
 		custom.messages = messages;
-		custom.encode();
+		try {
+			custom.encode();
+		} catch (RuntimeException e) {
+			custom.release();
+			throw e;
+		}
 
-		// Save packets that require acknowledgement receipts for later
+		/*
+		 * The ACK record is given to the packets when they are encoded. Copy
+		 * it over to their clones, as those are what were returned to the
+		 * caller when the packets were sent and what the peer is notified
+		 * with when they are acknowledged or lost.
+		 */
 		for (EncapsulatedPacket packet : custom.ackMessages) {
-			EncapsulatedPacket clone = packet.getClone();
-			if (!clone.reliability.requiresAck()) {
-				throw new IllegalArgumentException("Invalid reliability " + packet.reliability);
-			}
-			clone.ackRecord = packet.ackRecord;
-			ackReceiptPackets.put(clone, clone.ackRecord.getIndex());
+			packet.getClone().ackRecord = packet.ackRecord;
 		}
+		int size = custom.size(); // Buffer is released once written
 
 		// Send packet
 		this.sendNettyMessage(custom);
-		if (updateRecoveryQueue == true) {
-			ArrayList<EncapsulatedPacket> reliable = new ArrayList<EncapsulatedPacket>();
-			for (EncapsulatedPacket packet : custom.messages) {
-				if (packet.reliability.isReliable()) {
-					reliable.add(packet);
+
+		// Log packets before the untracked ones are released
+		if (logger.isTraceEnabled()) {
+			logger.trace("Sent custom packet containing " + custom.messages.length + " encapsulated packet" + (custom.messages.length == 1 ? "" : "s")
+					+ " with sequence number " + custom.sequenceId);
+			for (int i = 0; i < custom.messages.length; i++) {
+				if (custom.messages[i].payload.size() > 0) {
+					logger.trace("\tID of packet " + i + ": " + RakNetPacket.getName(custom.messages[i].payload.buffer().getUnsignedByte(0)));
+				} else {
+					logger.trace("\tID packet " + i + ": none (payload length is 0)");
 				}
 			}
-			if (reliable.size() > 0) {
-				recoveryQueue.put(custom.sequenceId, reliable.toArray(new EncapsulatedPacket[reliable.size()]));
+		}
+
+		// Save packets that must be resent or acknowledged for later
+		int tracked = 0;
+		for (EncapsulatedPacket packet : custom.messages) {
+			if (packet.reliability.isReliable() || packet.reliability.requiresAck() || packet.receipt != null) {
+				tracked++;
 			}
 		}
-		logger.trace("Sent custom packet containing " + custom.messages.length + " encapsulated packet" + (custom.messages.length == 1 ? "" : "s") + " with sequence number "
-				+ custom.sequenceId);
-		for (int i = 0; i < custom.messages.length; i++) {
-			if (custom.messages[i].payload.size() > 0) {
-				logger.trace("\tID of packet " + i + ": " + RakNetPacket.getName(custom.messages[i].payload.array()[0] & 0xFF));
+		EncapsulatedPacket[] sent = new EncapsulatedPacket[tracked];
+		for (int i = 0, j = 0; i < custom.messages.length; i++) {
+			if (custom.messages[i].reliability.isReliable() || custom.messages[i].reliability.requiresAck() || custom.messages[i].receipt != null) {
+				sent[j++] = custom.messages[i];
 			} else {
-				logger.trace("\tID packet " + i + ": none (payload length is 0)");
+				custom.messages[i].release(); // Never needed again
 			}
 		}
+		long currentTime = System.currentTimeMillis();
+		sentWindow.put(custom.sequenceId, sent, size, currentTime, retransmissions);
+		congestionControl.onSend(custom.sequenceId, size, currentTime);
+		TokenBucket bandwidthLimit = this.bandwidthLimit;
+		if (bandwidthLimit != null) {
+			bandwidthLimit.consume(size, currentTime);
+		}
+		EgressBudget egressBudget = this.egressBudget;
+		TokenBucket egressShare = this.egressShare;
+		if (egressBudget != null && egressShare != null) {
+			egressBudget.consume(egressShare, size, currentTime);
+		}
 		return custom.sequenceId;
 	}
 
+	/**
+	 * Returns the last sequence number of the specified record.
+	 * <p>
+	 * Unlike {@link Record#getLastIndex()}, this does not assume the end index
+	 * of a ranged record is higher than its start index. Other implementations
+	 * of RakNet may send a record that wraps around from
+	 * {@value SequenceNumber#MASK} to <code>0</code>, which the
+	 * {@link SentDatagramWindow} is able to handle as is.
+	 * 
+	 * @param record
+	 *            the record.
+	 * @return the last sequence number of the record.
+	 */
+	private static int getEndSequenceNumber(Record record) {
+		return record.isRanged() ? record.getEndIndex() : record.getIndex();
+	}
+
+	/**
+	 * Handles a datagram that was lost in transmission.
+	 * <p>
+	 * The congestion control and the peer are notified of the loss of every
+	 * packet in the datagram that required an acknowledgement receipt, and the
+	 * reliable packets are queued to be resent in a new datagram once the
+	 * congestion window allows for it. If the datagram timed out, the resent
+	 * datagram will wait twice as long before timing out itself. Once the
+	 * reliable packets have waited through more than the
+	 * {@link #RETRANSMISSION_BUDGET_DIVISOR retransmission budget} worth of
+	 * timeouts, the peer is considered to have timed out.
+	 * 
+	 * @param lost
+	 *            the datagram that was lost.
+	 * @param timeout
+	 *            <code>true</code> if the datagram was considered lost after
+	 *            going unacknowledged for too long, <code>false</code> if the
+	 *            peer reported it as lost.
+	 */
+	private final void handleLost(SentDatagram lost, boolean timeout) {
+		long currentTime = System.currentTimeMillis();
+		if (lost.getSequenceNumber() == probeSequenceNumber) {
+			congestionControl.onDiscard(lost.getSequenceNumber(), lost.getSize(), currentTime);
+			this.handleProbe(false, currentTime);
+			return; // Probes only hold padding
+		} else if (lost.getSize() > initialTransferUnit && maximumTransferUnit > initialTransferUnit && ++this.blackHoleLosses >= MTU_PROBE_ATTEMPTS) {
+			logger.debug("Lost " + blackHoleLosses + " datagrams larger than " + initialTransferUnit + " bytes in a row, falling back to initial maximum transfer unit");
+			this.probeLow = initialTransferUnit;
+			this.probeHigh = maximumTransferUnit - 1;
+			this.probeFailures = 0;
+			this.nextProbeTime = currentTime + MTU_PROBE_INTERVAL;
+			this.blackHoleLosses = 0;
+			this.setTransferUnit(initialTransferUnit);
+		}
+		if (timeout == true) {
+			congestionControl.onTimeout(lost.getSequenceNumber(), lost.getSize(), currentTime);
+		} else {
+			congestionControl.onLoss(lost.getSequenceNumber(), lost.getSize(), currentTime);
+		}
+		ArrayList<EncapsulatedPacket> resend = null;
+		int resendLength = CustomPacket.MINIMUM_SIZE;
+		for (EncapsulatedPacket encapsulated : lost.getMessages()) {
+			if (encapsulated.reliability.requiresAck()) {
+				EncapsulatedPacket clone = encapsulated.getClone();
+				this.onNotAcknowledge(clone.ackRecord, clone);
+				clone.ackRecord = null;
+			}
+			if (encapsulated.reliability.isReliable()) {
+				if (resend == null) {
+					resend = new ArrayList<EncapsulatedPacket>();
+				}
+				resend.add(encapsulated);
+				resendLength += encapsulated.size();
+			} else {
+				if (encapsulated.receipt != null && encapsulated.receipt.fail("lost in datagram with sequence number " + lost.getSequenceNumber())) {
+					pendingReceipts.remove(encapsulated.receipt);
+				}
+				encapsulated.release();
+			}
+		}
+		if (resend != null) {
+			int retransmissions = lost.getRetransmissions() + (timeout == true ? 1 : 0);
+			long backoff = 0L;
+			for (int i = 0; i < retransmissions; i++) {
+				backoff += roundTripTime.getRetransmissionTimeout(i);
+			}
+			if (retransmissions > 0 && backoff >= this.timeout / RETRANSMISSION_BUDGET_DIVISOR) {
+				this.retransmissionsExhausted = true;
+				logger.debug("Reliable packets in datagram with sequence number " + lost.getSequenceNumber() + " timed out " + retransmissions
+						+ " times over " + backoff + "ms, considering peer dead");
+				for (EncapsulatedPacket encapsulated : resend) {
+					encapsulated.release();
+				}
+				return;
+			}
+			resendQueue.add(new Retransmission(resend.toArray(new EncapsulatedPacket[resend.size()]), resendLength, retransmissions));
+			resendQueueBytes.addAndGet(resendLength);
+		}
+	}
+
+	/**
+	 * Sends an
+	 * {@link com.whirvis.jraknet.protocol.message.acknowledge.AcknowledgedPacket
+	 * ACK} packet for all of the datagrams that have yet to be acknowledged.
+	 */
+	private final void flushAcknowledgements() {
+		this.pendingAckTime = -1L;
+		Record[] acknowledged = pendingAcks.flush();
+		if (acknowledged != null) {
+			this.sendAcknowledge(true, acknowledged);
+		}
+	}
+
 	/**
 	 * Sends an
 	 * {@link com.whirvis.jraknet.protocol.message.acknowledge.AcknowledgedPacket
 	 * ACK} packet with the specified {@link Record records}.
+	 * <p>
+	 * If the records do not all fit within the maximum transfer unit, they are
+	 * split across multiple packets.
 	 * 
 	 * @param acknowledge
 	 *            <code>true</code> if the records inside the packet are
@@ -960,17 +2933,55 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 		} else if (records.length <= 0) {
 			throw new IllegalArgumentException("There must be a record to send");
 		}
-		AcknowledgedPacket acknowledged = acknowledge == true ? new AcknowledgedPacket() : new NotAcknowledgedPacket();
-		acknowledged.records = records;
-		acknowledged.encode();
-		this.sendNettyMessage(acknowledged);
-		logger.trace("Sent " + acknowledged.records.length + " record" + (acknowledged.records.length == 1 ? "" : "s") + " in "
-				+ (acknowledged.isAcknowledgement() ? "ACK" : "NACK") + " packet");
+		int maxRecords = Math.max(1, (maximumTransferUnit - AcknowledgedPacket.MINIMUM_SIZE) / AcknowledgedPacket.MAXIMUM_RECORD_SIZE);
+		for (int i = 0; i < records.length; i += maxRecords) {
+			AcknowledgedPacket acknowledged = acknowledge == true ? new AcknowledgedPacket() : new NotAcknowledgedPacket();
+			acknowledged.records = i == 0 && records.length <= maxRecords ? records : Arrays.copyOfRange(records, i, Math.min(i + maxRecords, records.length));
+			acknowledged.encode();
+			this.sendNettyMessage(acknowledged);
+			logger.trace("Sent " + acknowledged.records.length + " record" + (acknowledged.records.length == 1 ? "" : "s") + " in "
+					+ (acknowledged.isAcknowledgement() ? "ACK" : "NACK") + " packet");
+		}
+	}
+
+	@Override
+	public final EncapsulatedPacket sendMessage(Priority priority, Reliability reliability, int channel, Packet packet) throws NullPointerException, InvalidChannelException {
+		return this.sendMessage0(priority, reliability, channel, packet, false);
 	}
 
 	@Override
-	public final EncapsulatedPacket sendMessage(Reliability reliability, int channel, Packet packet) throws NullPointerException, InvalidChannelException {
-		if (reliability == null) {
+	public final DeliveryReceipt sendMessageWithReceipt(Priority priority, Reliability reliability, int channel, Packet packet)
+			throws NullPointerException, InvalidChannelException {
+		return this.sendMessage0(priority, reliability, channel, packet, true).receipt;
+	}
+
+	/**
+	 * Sends a message to the peer.
+	 * 
+	 * @param priority
+	 *            the priority of the packet.
+	 * @param reliability
+	 *            the reliability of the packet.
+	 * @param channel
+	 *            the channel to send the packet on.
+	 * @param packet
+	 *            the packet to send.
+	 * @param withReceipt
+	 *            <code>true</code> if a {@link DeliveryReceipt} should be
+	 *            created for the packet, <code>false</code> otherwise.
+	 * @return a clone of the generated encapsulated packet.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>packet</code> are <code>null</code>.
+	 * @throws InvalidChannelException
+	 *             if the channel is higher than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 */
+	private final EncapsulatedPacket sendMessage0(Priority priority, Reliability reliability, int channel, Packet packet, boolean withReceipt)
+			throws NullPointerException, InvalidChannelException {
+		if (priority == null) {
+			throw new NullPointerException("Priority cannot be null");
+		} else if (reliability == null) {
 			throw new NullPointerException("Reliability cannot be null");
 		} else if (packet == null) {
 			throw new NullPointerException("Packet cannot be null");
@@ -978,41 +2989,401 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 			throw new InvalidChannelException(channel);
 		}
 
+		if (channel >= 0 && (immediateChannels & (1 << channel)) != 0) {
+			priority = Priority.IMMEDIATE;
+		}
+
+		// Compress the packet if it is large enough to be worth it
+		PayloadCompressor compressor = this.compressor;
+		if (compressor != null && packet.size() >= compressor.getThreshold()) {
+			long startTime = System.nanoTime();
+			RakNetPacket compressed = compressor.compress(packet);
+			compressionMetrics.onCompress(packet.size(), compressed != null ? compressed.size() : -1, System.nanoTime() - startTime);
+			if (compressed != null) {
+				logger.trace("Compressed packet from " + packet.size() + " bytes to " + compressed.size() + " bytes");
+				packet = compressed;
+			}
+		}
+
 		// Generate encapsulated packet
 		EncapsulatedPacket encapsulated = new EncapsulatedPacket();
 		encapsulated.reliability = reliability;
 		encapsulated.orderChannel = (byte) channel;
 		encapsulated.payload = packet;
-		if (reliability.isReliable()) {
-			encapsulated.messageIndex = this.bumpMessageIndex();
-			logger.trace("Bumped message index from " + encapsulated.messageIndex + " to " + messageIndex);
+		if (withReceipt == true) {
+			encapsulated.receipt = new DeliveryReceipt(reliability, channel, packet.size());
+			if (this.isDisconnected()) {
+				encapsulated.receipt.fail("peer disconnected");
+			} else {
+				pendingReceipts.add(encapsulated.receipt);
+			}
 		}
-		if (reliability.isOrdered() || reliability.isSequenced()) {
-			encapsulated.orderIndex = reliability.isOrdered() ? orderSendIndex[channel]++ : sequenceSendIndex[channel]++;
-			logger.trace("Bumped " + (reliability.isOrdered() ? "order" : "sequence") + " index from "
-					+ ((reliability.isOrdered() ? orderSendIndex[channel] : sequenceSendIndex[channel]) - 1) + " to "
-					+ (reliability.isOrdered() ? orderSendIndex[channel] : sequenceSendIndex[channel]) + " on channel " + channel);
+
+		/*
+		 * Messages are sent from both the application threads and the thread
+		 * updating the peer, for example by streams. The indexes must be
+		 * assigned and the message queued under the same lock, otherwise two
+		 * messages could be given the same index, causing the peer to drop
+		 * one of them as a duplicate or stall the ordered channel.
+		 * 
+		 * The copy of the encapsulated packet returned to the caller is also
+		 * made before the message is queued. Otherwise, the thread sending
+		 * it could make its own copy first to give the ACK record to.
+		 */
+		EncapsulatedPacket clone = null;
+		synchronized (sendLock) {
+			if (reliability.isReliable()) {
+				encapsulated.messageIndex = this.bumpMessageIndex();
+			}
+			if (reliability.isOrdered() || reliability.isSequenced()) {
+				int[] sendIndex = reliability.isOrdered() ? orderSendIndex : sequenceSendIndex;
+				encapsulated.orderIndex = sendIndex[channel];
+				sendIndex[channel] = SequenceNumber.next(sendIndex[channel]);
+				logger.trace("Bumped " + (reliability.isOrdered() ? "order" : "sequence") + " index from " + encapsulated.orderIndex + " to " + sendIndex[channel]
+						+ " on channel " + channel);
+			}
+
+			// Add to send queue
+			int maximumTransferUnit = this.maximumTransferUnit;
+			if (EncapsulatedPacket.Split.needsSplit(maximumTransferUnit, encapsulated)) {
+				this.splitId = (splitId + 1) & 0xFFFF;
+				encapsulated.splitId = splitId;
+				EncapsulatedPacket[] splits = EncapsulatedPacket.Split.split(this, encapsulated, maximumTransferUnit);
+				if (encapsulated.receipt != null) {
+					encapsulated.receipt.setFragmentCount(splits.length);
+				}
+				clone = encapsulated.getClone();
+				for (EncapsulatedPacket split : splits) {
+					sendQueue.add(priority, split);
+				}
+				logger.trace("Split encapsulated packet and added it to the send queue");
+			} else {
+				clone = encapsulated.getClone();
+				sendQueue.add(priority, encapsulated);
+				logger.trace("Added encapsulated packet to the send queue");
+			}
+			if (firstQueuedTime < 0) {
+				this.firstQueuedTime = System.currentTimeMillis();
+			}
 		}
+		this.updateWritability();
+		logger.trace("Sent packet with size of " + packet.size() + " bytes (" + (packet.size() * 8) + " bits) with reliability " + reliability + " and priority " + priority + " on channel " + channel);
 
-		// Add to send queue
-		if (encapsulated.needsSplit(this)) {
-			encapsulated.splitId = ++this.splitId % 65536;
-			for (EncapsulatedPacket split : encapsulated.split(this)) {
-				sendQueue.add(split);
+		/*
+		 * Only the scheduler thread is allowed to send datagrams, as doing so
+		 * updates the state of the congestion control and the sent window.
+		 * Hand the send off to it directly, rather than waiting for the peer
+		 * to come up in the timing wheel. If the peer has not been added to a
+		 * scheduler yet, the message is sent on its first update instead.
+		 */
+		PeerScheduler<?> scheduler = this.scheduler;
+		if (priority == Priority.IMMEDIATE && scheduler != null && !this.isDisconnected()) {
+			if (scheduler.isSchedulerThread()) {
+				this.sendImmediate();
+			} else {
+				scheduler.execute(this::sendImmediate);
 			}
-			logger.trace("Split encapsulated packet and added it to the send queue");
-		} else {
-			sendQueue.add(encapsulated);
-			logger.trace("Added encapsulated packet to the send queue");
 		}
-		logger.trace("Sent packet with size of " + packet.size() + " bytes (" + (packet.size() * 8) + " bits) with reliability " + reliability + " on channel " + channel);
+		this.wake();
 
 		/*
 		 * Return a copy of the encapsulated packet as if a single variable is
 		 * modified in the encapsulated packet before it is sent, the
 		 * communication with the peer could cease to function entirely.
 		 */
-		return encapsulated.getClone();
+		return clone;
+	}
+
+	/**
+	 * Returns whether or not the messages in the send queue should be packed
+	 * into datagrams and sent.
+	 * 
+	 * @param currentTime
+	 *            the current time.
+	 * @return <code>true</code> if the messages in the send queue should be
+	 *         sent, <code>false</code> if they are being held back by the cork
+	 *         or the coalescing delay.
+	 */
+	private boolean isSendQueueReady(long currentTime) {
+		if (flushRequested.get() == true) {
+			return true;
+		} else if (corked == true) {
+			return false;
+		} else if (coalescingDelay <= 0 || sendQueue.size(Priority.IMMEDIATE) > 0) {
+			return true;
+		} else if (sendQueue.getQueuedBytes() >= maximumTransferUnit - CustomPacket.MINIMUM_SIZE) {
+			return true; // Enough to fill a datagram
+		}
+		long firstQueuedTime = this.firstQueuedTime;
+		return firstQueuedTime < 0 || currentTime - firstQueuedTime >= coalescingDelay;
+	}
+
+	/**
+	 * Packs the next messages in the send queue into a datagram and sends it.
+	 * <p>
+	 * The datagram is filled up to the maximum transfer unit, or to the room
+	 * left in the congestion window if it has less room than that.
+	 * 
+	 * @return <code>true</code> if a datagram was sent, <code>false</code> if
+	 *         the send queue is empty or the next message does not fit in the
+	 *         congestion window.
+	 */
+	private final boolean sendQueuedDatagram() {
+		int maximumTransferUnit = this.maximumTransferUnit;
+		int sendLimit = maximumTransferUnit;
+		if (!congestionControl.canSend(sendLimit)) {
+			sendLimit = congestionControl.getCongestionWindow() - congestionControl.getBytesInFlight();
+		}
+		int sendLength = CustomPacket.MINIMUM_SIZE;
+		ArrayList<EncapsulatedPacket> send = new ArrayList<EncapsulatedPacket>();
+		EncapsulatedPacket encapsulated = null;
+		while ((encapsulated = sendQueue.poll(sendLimit - sendLength)) != null) {
+			sendLength += encapsulated.size();
+			send.add(encapsulated);
+		}
+		if (send.isEmpty() && sendLimit >= maximumTransferUnit && (encapsulated = sendQueue.poll(Integer.MAX_VALUE)) != null) {
+			/*
+			 * The message was split before the maximum transfer unit fell
+			 * back to a smaller one, and it is too late to split it again.
+			 * Send it on its own rather than letting it block the queue.
+			 */
+			send.add(encapsulated);
+		}
+		if (send.isEmpty()) {
+			return false; // Nothing fits in a datagram or the congestion window
+		}
+		this.sendCustomPacket(0, send.toArray(new EncapsulatedPacket[send.size()]));
+		return true;
+	}
+
+	/**
+	 * Sets the maximum transfer unit of the peer and updates everything that
+	 * depends on it.
+	 * 
+	 * @param maximumTransferUnit
+	 *            the maximum transfer unit.
+	 */
+	private final void setTransferUnit(int maximumTransferUnit) {
+		int oldTransferUnit = this.maximumTransferUnit;
+		this.maximumTransferUnit = maximumTransferUnit;
+		sendQueue.setQuantum(maximumTransferUnit);
+		congestionControl.onTransferUnitChanged(maximumTransferUnit);
+		logger.debug("Changed maximum transfer unit from " + oldTransferUnit + " to " + maximumTransferUnit + " bytes");
+	}
+
+	/**
+	 * Sends a path MTU probe if one is due.
+	 * <p>
+	 * A probe is a datagram holding a single unreliable
+	 * <code>DETECT_LOST_CONNECTIONS</code> packet, padded to halfway in
+	 * between the largest size known to work and the smallest size known not
+	 * to. Only one probe is in flight at a time.
+	 * 
+	 * @param currentTime
+	 *            the current time.
+	 */
+	private final void sendProbe(long currentTime) {
+		if (transferUnitProbing == false || state != RakNetState.LOGGED_IN || probeSequenceNumber >= 0 || currentTime < nextProbeTime) {
+			return;
+		}
+		this.probeHigh = Math.min(probeHigh, maximumTransferUnitLimit);
+		if (probeHigh - probeLow < MTU_PROBE_GRANULARITY) {
+			/*
+			 * The search has either not started yet or is complete. In the
+			 * latter case, the next one is held off for a while, as it is
+			 * only there to find out if the path now allows for more.
+			 */
+			boolean searched = nextProbeTime > 0;
+			this.probeLow = maximumTransferUnit;
+			this.probeHigh = maximumTransferUnitLimit;
+			if (searched == true || probeHigh - probeLow < MTU_PROBE_GRANULARITY) {
+				this.nextProbeTime = currentTime + MTU_PROBE_RAISE_INTERVAL;
+				return;
+			}
+		}
+		int size = (probeLow + probeHigh + 1) / 2;
+		if (!resendQueue.isEmpty() || packetsSentThisSecond >= RakNet.getMaxPacketsPerSecond() || this.getBandwidthDelay(currentTime) > 0
+				|| !congestionControl.canSend(size)) {
+			this.nextProbeTime = currentTime + MTU_PROBE_INTERVAL;
+			return; // Real traffic comes first
+		}
+		RakNetPacket padding = new RakNetPacket(ID_DETECT_LOST_CONNECTIONS);
+		padding.pad(size - CustomPacket.MINIMUM_SIZE - EncapsulatedPacket.size(Reliability.UNRELIABLE, false) - padding.size());
+		EncapsulatedPacket probe = new EncapsulatedPacket();
+		probe.reliability = Reliability.UNRELIABLE;
+		probe.payload = padding;
+		this.probeSize = size;
+		this.probeSequenceNumber = this.sendCustomPacket(0, probe);
+		logger.debug("Sent path MTU probe with size of " + size + " bytes");
+	}
+
+	/**
+	 * Handles the acknowledgement or loss of the path MTU probe in flight.
+	 * 
+	 * @param acknowledged
+	 *            <code>true</code> if the probe was acknowledged,
+	 *            <code>false</code> if it was lost.
+	 * @param currentTime
+	 *            the current time.
+	 */
+	private final void handleProbe(boolean acknowledged, long currentTime) {
+		this.probeSequenceNumber = -1;
+		this.nextProbeTime = currentTime + MTU_PROBE_INTERVAL;
+		if (acknowledged == true) {
+			this.probeLow = probeSize;
+			this.probeFailures = 0;
+			if (probeSize > maximumTransferUnit) {
+				this.setTransferUnit(probeSize);
+			}
+		} else if (++this.probeFailures >= MTU_PROBE_ATTEMPTS) {
+			this.probeHigh = probeSize - 1;
+			this.probeFailures = 0;
+			logger.debug("Path MTU probe with size of " + probeSize + " bytes was lost " + MTU_PROBE_ATTEMPTS + " times, considering it too large");
+		}
+	}
+
+	/**
+	 * Sends the messages in the send queue with the
+	 * {@link Priority#IMMEDIATE IMMEDIATE} priority without waiting for the
+	 * next update.
+	 * <p>
+	 * Any room left over in the datagrams is filled with the messages of lower
+	 * priorities waiting behind them. If the peer is corked, has lost datagrams
+	 * waiting to be resent, or is being held back by the congestion window or
+	 * bandwidth limit, nothing is sent and the messages are left for the next
+	 * update instead. This must only be called by the thread that updates the
+	 * peer.
+	 */
+	private final void sendImmediate() {
+		if (this.isDisconnected() || corked == true || !resendQueue.isEmpty()) {
+			return;
+		}
+		long currentTime = System.currentTimeMillis();
+		if (currentTime - lastPacketsSentThisSecondResetTime >= 1000L) {
+			this.packetsSentThisSecond = 0;
+			this.lastPacketsSentThisSecondResetTime = currentTime;
+		}
+		while (sendQueue.size(Priority.IMMEDIATE) > 0 && packetsSentThisSecond < RakNet.getMaxPacketsPerSecond() && this.getBandwidthDelay(currentTime) <= 0) {
+			if (!this.sendQueuedDatagram()) {
+				break;
+			}
+		}
+		if (sendQueue.isEmpty()) {
+			this.firstQueuedTime = -1L;
+		}
+	}
+
+	/**
+	 * Notifies the scheduler of the peer that its next update time may have
+	 * changed.
+	 * <p>
+	 * If the peer has not been added to a {@link PeerScheduler}, this method
+	 * does nothing.
+	 */
+	protected final void wake() {
+		PeerScheduler<?> scheduler = this.scheduler;
+		if (scheduler != null) {
+			scheduler.wake(this);
+		}
+	}
+
+	/**
+	 * Returns the next time the peer needs to be updated.
+	 * <p>
+	 * This is used by the {@link PeerScheduler} to determine when to call the
+	 * {@link #update()} method. A peer needs to be updated when it has
+	 * messages in its send queue, when it has to report lost packets, resend
+	 * lost packets, send a ping or keep alive packet, or when it is going to
+	 * time out.
+	 * 
+	 * @return the next time the peer needs to be updated, a value less than or
+	 *         equal to the current time if it needs to be updated right away.
+	 */
+	public final long getNextUpdateTime() {
+		if (this.isDisconnected()) {
+			return Long.MIN_VALUE;
+		}
+		long nextUpdateTime = lastPacketReceiveTime + timeout;
+
+		// Messages waiting to be sent
+		Retransmission resend = resendQueue.peek();
+		EncapsulatedPacket next = sendQueue.peek();
+		if (resend == null && next != null && !this.isSendQueueReady(System.currentTimeMillis())) {
+			if (corked == false) {
+				nextUpdateTime = Math.min(nextUpdateTime, firstQueuedTime + coalescingDelay);
+			}
+			next = null; // Held back until flushed or the delay has passed
+		}
+		if (resend != null || next != null) {
+			long currentTime = System.currentTimeMillis();
+			long bandwidthDelay = this.getBandwidthDelay(currentTime);
+			if (packetsSentThisSecond >= RakNet.getMaxPacketsPerSecond()) {
+				nextUpdateTime = Math.min(nextUpdateTime, lastPacketsSentThisSecondResetTime + 1000L);
+			} else if (bandwidthDelay > 0) {
+				nextUpdateTime = Math.min(nextUpdateTime, currentTime + bandwidthDelay);
+			} else if (congestionControl.canSend(resend != null ? resend.size : CustomPacket.MINIMUM_SIZE + next.size())) {
+				return Long.MIN_VALUE;
+			}
+
+			/*
+			 * If the congestion window is full, the peer will be woken up
+			 * once an acknowledgement frees up room in it. Should that never
+			 * come, the expiry of the oldest datagram will.
+			 */
+		}
+
+		// Streams with chunks to read
+		if (!outgoingStreams.isEmpty()) {
+			boolean room = state == RakNetState.LOGGED_IN && this.hasStreamRoom();
+			for (OutgoingStream stream : outgoingStreams) {
+				if (stream.isCancelled()) {
+					return Long.MIN_VALUE;
+				} else if (room == true) {
+					nextUpdateTime = Math.min(nextUpdateTime, stream.nextReadTime);
+				}
+			}
+		}
+
+		// Received packets to acknowledge
+		if (pendingAckTime >= 0) {
+			nextUpdateTime = Math.min(nextUpdateTime, pendingAckTime + ackDelay);
+		}
+
+		// Path MTU probe
+		if (transferUnitProbing == true && state == RakNetState.LOGGED_IN && probeSequenceNumber < 0) {
+			nextUpdateTime = Math.min(nextUpdateTime, nextProbeTime);
+		}
+
+		// Split packets to expire
+		for (EncapsulatedPacket.Split split : splitQueue.values()) {
+			nextUpdateTime = Math.min(nextUpdateTime, split.getLastUpdateTime() + splitTimeout);
+		}
+
+		// Lost packets to report
+		long holeTime = receiveWindow.getHoleTime();
+		if (holeTime >= 0) {
+			nextUpdateTime = Math.min(nextUpdateTime, holeTime + NACK_SEND_DELAY);
+		}
+		long retryTime = receiveWindow.getRetryTime();
+		if (retryTime >= 0) {
+			nextUpdateTime = Math.min(nextUpdateTime, retryTime + this.getNackRetryDelay());
+		}
+
+		// Unacknowledged packets to resend
+		long expiryTime = sentWindow.getNextExpiryTime(roundTripTime);
+		if (expiryTime >= 0) {
+			nextUpdateTime = Math.min(nextUpdateTime, expiryTime);
+		}
+
+		// Ping and keep alive packets
+		if (state == RakNetState.LOGGED_IN) {
+			if (latencyEnabled == true) {
+				nextUpdateTime = Math.min(nextUpdateTime, lastPingSendTime + PING_SEND_INTERVAL);
+			} else {
+				nextUpdateTime = Math.min(nextUpdateTime, Math.max(lastPacketReceiveTime, lastDetectionSendTime) + DETECTION_SEND_INTERVAL);
+			}
+		}
+		return nextUpdateTime;
 	}
 
 	/**
@@ -1041,7 +3412,7 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 		// Send keep alive packet
 		if (currentTime - lastPacketReceiveTime >= DETECTION_SEND_INTERVAL && currentTime - lastDetectionSendTime >= DETECTION_SEND_INTERVAL && latencyEnabled == false
 				&& state == RakNetState.LOGGED_IN) {
-			this.sendMessage(Reliability.UNRELIABLE, ID_DETECT_LOST_CONNECTIONS);
+			this.sendMessage(Priority.IMMEDIATE, Reliability.UNRELIABLE, ID_DETECT_LOST_CONNECTIONS);
 			this.lastDetectionSendTime = currentTime;
 		}
 
@@ -1050,44 +3421,77 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 			ConnectedPing ping = new ConnectedPing();
 			ping.timestamp = this.getTimestamp();
 			ping.encode();
-			this.sendMessage(Reliability.UNRELIABLE, ping);
+			this.sendMessage(Priority.IMMEDIATE, Reliability.UNRELIABLE, ping);
 			this.lastPingSendTime = currentTime;
-			latencyTimestamps.add(ping.timestamp);
-		}
-
-		// Send next packets in the send queue
-		if (!sendQueue.isEmpty() && packetsSentThisSecond < RakNet.getMaxPacketsPerSecond()) {
-			ArrayList<EncapsulatedPacket> send = new ArrayList<EncapsulatedPacket>();
-			int sendLength = CustomPacket.MINIMUM_SIZE;
-			Iterator<EncapsulatedPacket> sendQueueI = sendQueue.iterator();
-			while (sendQueueI.hasNext()) {
-				EncapsulatedPacket encapsulated = sendQueueI.next();
-				sendLength += encapsulated.size();
-				if (sendLength > maximumTransferUnit) {
-					break; // Adding this packet would cause an overflow
-				}
-				send.add(encapsulated);
-				sendQueueI.remove();
+			latencyTracker.onPing(ping.timestamp);
+		}
+
+		// Notify peer of packets received
+		if (pendingAckTime >= 0 && (currentTime - pendingAckTime >= ackDelay || force == true)) {
+			this.flushAcknowledgements();
+		}
+
+		// Notify peer of packets lost in transmission
+		long holeTime = receiveWindow.getHoleTime();
+		if (holeTime >= 0 && (currentTime - holeTime >= NACK_SEND_DELAY || force == true)) {
+			Record[] holes = receiveWindow.flushHoles();
+			if (holes != null) {
+				this.sendAcknowledge(false, holes);
 			}
-			if (!send.isEmpty()) {
-				this.sendCustomPacket(true, send.toArray(new EncapsulatedPacket[send.size()]));
+		}
+
+		// Report lost packets again in case the NACK packet was lost
+		long retryTime = receiveWindow.getRetryTime();
+		if (retryTime >= 0 && (currentTime - retryTime >= this.getNackRetryDelay() || force == true)) {
+			Record[] holes = receiveWindow.flushRetries();
+			if (holes != null) {
+				this.sendAcknowledge(false, holes);
 			}
 		}
 
-		// Resend lost packets
-		Iterator<EncapsulatedPacket[]> recoveryQueueI = recoveryQueue.values().iterator();
-		if (currentTime - lastRecoverySendTime >= RECOVERY_SEND_INTERVAL && recoveryQueueI.hasNext()) {
-			this.sendCustomPacket(false, recoveryQueueI.next());
-			this.lastRecoverySendTime = currentTime;
-		} else {
-			/*
-			 * Nothing needs to be recovered if there is nothing in the queue.
-			 * Only start counting the time that has been passed since the last
-			 * recovery packet has been sent when there are reliable packets in
-			 * the queue that have yet to be acknowledged.
-			 */
-			this.lastRecoverySendTime = currentTime;
+		// Discard split packets that have stopped making progress
+		this.expireSplits(currentTime);
+
+		// Resend datagrams that have gone unacknowledged for too long
+		for (SentDatagram expired : sentWindow.removeExpired(currentTime, roundTripTime)) {
+			this.handleLost(expired, true);
+		}
+		if (retransmissionsExhausted == true && force == false) {
+			throw new TimeoutException(this);
+		}
+
+		// Read the next chunks of the streams being sent
+		this.sendStreams(currentTime);
+
+		// Send lost packets first, then the next packets in the send queue
+		if (currentTime - lastPacketsSentThisSecondResetTime >= 1000L) {
+			this.packetsSentThisSecond = 0;
+			this.lastPacketsSentThisSecondResetTime = currentTime;
 		}
+		while (!resendQueue.isEmpty() && packetsSentThisSecond < RakNet.getMaxPacketsPerSecond() && this.getBandwidthDelay(currentTime) <= 0) {
+			Retransmission resend = resendQueue.peek();
+			if (!congestionControl.canSend(resend.size)) {
+				break; // Congestion window is full
+			}
+			resendQueue.poll();
+			resendQueueBytes.addAndGet(-resend.size);
+			this.sendCustomPacket(resend.retransmissions, resend.messages);
+		}
+		if (force == false && !this.isSendQueueReady(currentTime)) {
+			return; // Held back by the cork or the coalescing delay
+		}
+		boolean flushing = flushRequested.getAndSet(false);
+		while (resendQueue.isEmpty() && !sendQueue.isEmpty() && packetsSentThisSecond < RakNet.getMaxPacketsPerSecond() && this.getBandwidthDelay(currentTime) <= 0) {
+			if (!this.sendQueuedDatagram()) {
+				break;
+			}
+		}
+		if (sendQueue.isEmpty()) {
+			this.firstQueuedTime = -1L;
+		} else if (flushing == true) {
+			flushRequested.set(true); // Send the rest once there is room
+		}
+		this.sendProbe(currentTime);
 	}
 
 	/**
@@ -1124,8 +3528,49 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 		 * sent out at least once.
 		 */
 		sendQueue.clear();
-		this.sendMessage(Reliability.UNRELIABLE, ID_DISCONNECTION_NOTIFICATION);
+		this.sendMessage(Priority.IMMEDIATE, Reliability.UNRELIABLE, ID_DISCONNECTION_NOTIFICATION);
 		this.update(true);
+
+		// Release the payloads still waiting to be sent, stitched, or handled
+		Retransmission resend = null;
+		while ((resend = resendQueue.poll()) != null) {
+			resendQueueBytes.addAndGet(-resend.size);
+			for (EncapsulatedPacket encapsulated : resend.messages) {
+				encapsulated.release();
+			}
+		}
+		SentDatagram sent = null;
+		while ((sent = sentWindow.poll()) != null) {
+			for (EncapsulatedPacket encapsulated : sent.getMessages()) {
+				encapsulated.release();
+			}
+		}
+		for (EncapsulatedPacket.Split split : splitQueue.values()) {
+			this.discardSplit(split);
+		}
+		splitQueue.clear();
+		for (ReorderBuffer reorderBuffer : reorderBuffers) {
+			if (reorderBuffer != null) {
+				reorderBuffer.clear();
+			}
+		}
+
+		// Abort the streams that will never be finished
+		OutgoingStream outgoing = null;
+		while ((outgoing = outgoingStreams.poll()) != null) {
+			outgoing.fail("peer disconnected");
+		}
+		for (IncomingStream incoming : incomingStreams.values()) {
+			incoming.sink.onAbort("peer disconnected");
+		}
+		incomingStreams.clear();
+
+		// Fail the receipts of the messages that will never be delivered
+		Iterator<DeliveryReceipt> receipts = pendingReceipts.iterator();
+		while (receipts.hasNext()) {
+			receipts.next().fail("peer disconnected");
+			receipts.remove();
+		}
 	}
 
 	/**
@@ -1175,4 +3620,15 @@ public abstract class RakNetPeer implements RakNetPeerMessenger {
 	 */
 	public abstract void onNotAcknowledge(Record record, EncapsulatedPacket packet);
 
+	/**
+	 * Called when the peer has become writable or is no longer writable.
+	 * 
+	 * @param writable
+	 *            <code>true</code> if the peer has become writable,
+	 *            <code>false</code> if it is no longer writable.
+	 * @see #isWritable()
+	 */
+	public void onWritabilityChanged(boolean writable) {
+	}
+
 }
@@ -57,7 +57,8 @@ import io.netty.buffer.ByteBuf;
 public interface RakNetPeerMessenger {
 
 	/**
-	 * Sends a message to the peer.
+	 * Sends a message to the peer with the {@link Priority#MEDIUM MEDIUM}
+	 * priority.
 	 * 
 	 * @param reliability
 	 *            the reliability of the packet.
@@ -77,7 +78,9 @@ public interface RakNetPeerMessenger {
 	 *             if the channel is higher than or equal to
 	 *             {@value RakNet#CHANNEL_COUNT}.
 	 */
-	public EncapsulatedPacket sendMessage(Reliability reliability, int channel, Packet packet) throws NullPointerException, InvalidChannelException;
+	public default EncapsulatedPacket sendMessage(Reliability reliability, int channel, Packet packet) throws NullPointerException, InvalidChannelException {
+		return this.sendMessage(Priority.MEDIUM, reliability, channel, packet);
+	}
 
 	/**
 	 * Sends messages to the peer.
@@ -343,4 +346,410 @@ public interface RakNetPeerMessenger {
 		return this.sendMessage(reliability, RakNet.DEFAULT_CHANNEL, packetIds);
 	}
 
+	/**
+	 * Sends a message to the peer.
+	 * 
+	 * @param priority
+	 *            the priority of the packet.
+	 * @param reliability
+	 *            the reliability of the packet.
+	 * @param channel
+	 *            the channel to send the packet on.
+	 * @param packet
+	 *            the packet to send.
+	 * @return the generated encapsulated packet. This is normally not
+	 *         important, however it can be used for packet acknowledged and not
+	 *         acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>packet</code> are <code>null</code>.
+	 * @throws InvalidChannelException
+	 *             if the channel is higher than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 */
+	public EncapsulatedPacket sendMessage(Priority priority, Reliability reliability, int channel, Packet packet) throws NullPointerException, InvalidChannelException;
+
+	/**
+	 * Sends messages to the peer.
+	 * 
+	 * @param priority
+	 *            the priority of the packets.
+	 * @param reliability
+	 *            the reliability of the packets.
+	 * @param channel
+	 *            the channel to send the packets on.
+	 * @param packets
+	 *            the packets to send.
+	 * @return the generated encapsulated packets. These are normally not
+	 *         important, however they can be used for packet acknowledged and
+	 *         not acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>packets</code> are <code>null</code>.
+	 * @throws InvalidChannelException
+	 *             if the channel is higher than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 */
+	public default EncapsulatedPacket[] sendMessage(Priority priority, Reliability reliability, int channel, Packet... packets) throws NullPointerException, InvalidChannelException {
+		if (packets == null) {
+			throw new NullPointerException("Packets cannot be null");
+		}
+		EncapsulatedPacket[] encapsulated = new EncapsulatedPacket[packets.length];
+		for (int i = 0; i < encapsulated.length; i++) {
+			encapsulated[i] = this.sendMessage(priority, reliability, channel, packets[i]);
+		}
+		return encapsulated;
+	}
+
+	/**
+	 * Sends a message to the peer on the default channel.
+	 * 
+	 * @param priority
+	 *            the priority of the packet.
+	 * @param reliability
+	 *            the reliability of the packet.
+	 * @param packet
+	 *            the packet to send.
+	 * @return the generated encapsulated packet. This is normally not
+	 *         important, however it can be used for packet acknowledged and not
+	 *         acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>packet</code> are <code>null</code>.
+	 */
+	public default EncapsulatedPacket sendMessage(Priority priority, Reliability reliability, Packet packet) throws NullPointerException {
+		return this.sendMessage(priority, reliability, RakNet.DEFAULT_CHANNEL, packet);
+	}
+
+	/**
+	 * Sends messages to the peer on the default channel.
+	 * 
+	 * @param priority
+	 *            the priority of the packets.
+	 * @param reliability
+	 *            the reliability of the packets.
+	 * @param packets
+	 *            the packets to send.
+	 * @return the generated encapsulated packets. These are normally not
+	 *         important, however they can be used for packet acknowledged and
+	 *         not acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>packets</code> are <code>null</code>.
+	 */
+	public default EncapsulatedPacket[] sendMessage(Priority priority, Reliability reliability, Packet... packets) {
+		return this.sendMessage(priority, reliability, RakNet.DEFAULT_CHANNEL, packets);
+	}
+
+	/**
+	 * Sends a message to the peer.
+	 * 
+	 * @param priority
+	 *            the priority of the packet.
+	 * @param reliability
+	 *            the reliability of the packet.
+	 * @param channel
+	 *            the channel to send the packet on.
+	 * @param buf
+	 *            the buffer to send.
+	 * @return the generated encapsulated packet. This is normally not
+	 *         important, however it can be used for packet acknowledged and not
+	 *         acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>buf</code> are <code>null</code>.
+	 * @throws InvalidChannelException
+	 *             if the channel is higher than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 */
+	public default EncapsulatedPacket sendMessage(Priority priority, Reliability reliability, int channel, ByteBuf buf) throws NullPointerException, InvalidChannelException {
+		return this.sendMessage(priority, reliability, channel, new Packet(buf));
+	}
+
+	/**
+	 * Sends messages to the peer.
+	 * 
+	 * @param priority
+	 *            the priority of the packets.
+	 * @param reliability
+	 *            the reliability of the packets.
+	 * @param channel
+	 *            the channel to send the packets on.
+	 * @param bufs
+	 *            the buffers to send.
+	 * @return the generated encapsulated packet. This is normally not
+	 *         important, however it can be used for packet acknowledged and not
+	 *         acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>bufs</code> are <code>null</code>.
+	 * @throws InvalidChannelException
+	 *             if the channel is higher than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 */
+	public default EncapsulatedPacket[] sendMessage(Priority priority, Reliability reliability, int channel, ByteBuf... bufs) throws NullPointerException, InvalidChannelException {
+		if (bufs == null) {
+			throw new NullPointerException("Buffers cannot be null");
+		}
+		EncapsulatedPacket[] encapsulated = new EncapsulatedPacket[bufs.length];
+		for (int i = 0; i < encapsulated.length; i++) {
+			encapsulated[i] = this.sendMessage(priority, reliability, channel, bufs[i]);
+		}
+		return encapsulated;
+	}
+
+	/**
+	 * Sends messages to the peer on the default channel.
+	 * 
+	 * @param priority
+	 *            the priority of the packet.
+	 * @param reliability
+	 *            the reliability of the packet.
+	 * @param buf
+	 *            the buffer to send.
+	 * @return the generated encapsulated packet. This is normally not
+	 *         important, however it can be used for packet acknowledged and not
+	 *         acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>buf</code> are <code>null</code>.
+	 */
+	public default EncapsulatedPacket sendMessage(Priority priority, Reliability reliability, ByteBuf buf) throws NullPointerException {
+		return this.sendMessage(priority, reliability, RakNet.DEFAULT_CHANNEL, buf);
+	}
+
+	/**
+	 * Sends messages to the peer on the default channel.
+	 * 
+	 * @param priority
+	 *            the priority of the packet.
+	 * @param reliability
+	 *            the reliability of the packet.
+	 * @param bufs
+	 *            the buffers to send.
+	 * @return the generated encapsulated packets. These are normally not
+	 *         important, however they can be used for packet acknowledged and
+	 *         not acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>bufs</code> are <code>null</code>.
+	 */
+	public default EncapsulatedPacket[] sendMessage(Priority priority, Reliability reliability, ByteBuf... bufs) throws NullPointerException {
+		return this.sendMessage(priority, reliability, RakNet.DEFAULT_CHANNEL, bufs);
+	}
+
+	/**
+	 * Sends a message identifier to the peer.
+	 * 
+	 * @param priority
+	 *            the priority of the message identifier.
+	 * @param reliability
+	 *            the reliability of the message identifier.
+	 * @param channel
+	 *            the channel to send the message identifier on.
+	 * @param packetId
+	 *            the message identifier to send.
+	 * @return the generated encapsulated packet. This is normally not
+	 *         important, however it can be used for packet acknowledged and not
+	 *         acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code> or <code>reliability</code> are
+	 *             <code>null</code>.
+	 * @throws InvalidChannelException
+	 *             if the channel is higher than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 */
+	public default EncapsulatedPacket sendMessage(Priority priority, Reliability reliability, int channel, int packetId) throws NullPointerException, InvalidChannelException {
+		return this.sendMessage(priority, reliability, channel, new RakNetPacket(packetId));
+	}
+
+	/**
+	 * Sends message identifiers to the peer.
+	 * 
+	 * @param priority
+	 *            the priority of the message identifiers.
+	 * @param reliability
+	 *            the reliability of the message identifiers.
+	 * @param channel
+	 *            the channel to send the message identifiers on.
+	 * @param packetIds
+	 *            the message identifiers to send.
+	 * @return the generated encapsulated packets. These are normally not
+	 *         important, however they can be used for packet acknowledged and
+	 *         not acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>packetIds</code> are <code>null</code>.
+	 * @throws InvalidChannelException
+	 *             if the channel is higher than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 */
+	public default EncapsulatedPacket[] sendMessage(Priority priority, Reliability reliability, int channel, int... packetIds) throws NullPointerException, InvalidChannelException {
+		if (packetIds == null) {
+			throw new NullPointerException("Packet IDs cannot be null");
+		}
+		EncapsulatedPacket[] encapsulated = new EncapsulatedPacket[packetIds.length];
+		for (int i = 0; i < encapsulated.length; i++) {
+			encapsulated[i] = this.sendMessage(priority, reliability, channel, packetIds[i]);
+		}
+		return encapsulated;
+	}
+
+	/**
+	 * Sends a message identifier to the peer on the default channel.
+	 * 
+	 * @param priority
+	 *            the priority of the message identifier.
+	 * @param reliability
+	 *            the reliability of the message identifier.
+	 * @param packetId
+	 *            the message identifier to send.
+	 * @return the generated encapsulated packet. This is normally not
+	 *         important, however it can be used for packet acknowledged and not
+	 *         acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code> or <code>reliability</code> are
+	 *             <code>null</code>.
+	 */
+	public default EncapsulatedPacket sendMessage(Priority priority, Reliability reliability, int packetId) throws NullPointerException {
+		return this.sendMessage(priority, reliability, new RakNetPacket(packetId));
+	}
+
+	/**
+	 * Sends message identifiers to the peer on the default channel.
+	 * 
+	 * @param priority
+	 *            the priority of the message identifiers.
+	 * @param reliability
+	 *            the reliability of the message identifiers.
+	 * @param packetIds
+	 *            the message identifiers to send.
+	 * @return the generated encapsulated packets. These are normally not
+	 *         important, however they can be used for packet acknowledged and
+	 *         not acknowledged events if the reliability is of the
+	 *         {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 *         type.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>packetIds</code> are <code>null</code>.
+	 */
+	public default EncapsulatedPacket[] sendMessage(Priority priority, Reliability reliability, int... packetIds) throws NullPointerException {
+		return this.sendMessage(priority, reliability, RakNet.DEFAULT_CHANNEL, packetIds);
+	}
+
+	/**
+	 * Sends a message to the peer with the {@link Priority#MEDIUM MEDIUM}
+	 * priority and returns a receipt that can be used to find out when it has
+	 * been delivered.
+	 * 
+	 * @param reliability
+	 *            the reliability of the packet.
+	 * @param channel
+	 *            the channel to send the packet on.
+	 * @param packet
+	 *            the packet to send.
+	 * @return the delivery receipt of the packet.
+	 * @throws NullPointerException
+	 *             if the <code>reliability</code> or <code>packet</code> are
+	 *             <code>null</code>.
+	 * @throws InvalidChannelException
+	 *             if the channel is higher than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 * @see DeliveryReceipt
+	 */
+	public default DeliveryReceipt sendMessageWithReceipt(Reliability reliability, int channel, Packet packet) throws NullPointerException, InvalidChannelException {
+		return this.sendMessageWithReceipt(Priority.MEDIUM, reliability, channel, packet);
+	}
+
+	/**
+	 * Sends a message to the peer on the default channel with the
+	 * {@link Priority#MEDIUM MEDIUM} priority and returns a receipt that can
+	 * be used to find out when it has been delivered.
+	 * 
+	 * @param reliability
+	 *            the reliability of the packet.
+	 * @param packet
+	 *            the packet to send.
+	 * @return the delivery receipt of the packet.
+	 * @throws NullPointerException
+	 *             if the <code>reliability</code> or <code>packet</code> are
+	 *             <code>null</code>.
+	 * @see DeliveryReceipt
+	 */
+	public default DeliveryReceipt sendMessageWithReceipt(Reliability reliability, Packet packet) throws NullPointerException {
+		return this.sendMessageWithReceipt(reliability, RakNet.DEFAULT_CHANNEL, packet);
+	}
+
+	/**
+	 * Sends a message to the peer and returns a receipt that can be used to
+	 * find out when it has been delivered.
+	 * <p>
+	 * Unlike with the
+	 * {@link Reliability#UNRELIABLE_WITH_ACK_RECEIPT WITH_ACK_RECEIPT}
+	 * reliabilities, there is no need to match acknowledgement events to the
+	 * packet. The receipt is only completed once every split packet the packet
+	 * was broken up into has been acknowledged, and can be used with any
+	 * reliability.
+	 * 
+	 * @param priority
+	 *            the priority of the packet.
+	 * @param reliability
+	 *            the reliability of the packet.
+	 * @param channel
+	 *            the channel to send the packet on.
+	 * @param packet
+	 *            the packet to send.
+	 * @return the delivery receipt of the packet.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>packet</code> are <code>null</code>.
+	 * @throws InvalidChannelException
+	 *             if the channel is higher than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 * @see DeliveryReceipt
+	 */
+	public DeliveryReceipt sendMessageWithReceipt(Priority priority, Reliability reliability, int channel, Packet packet) throws NullPointerException, InvalidChannelException;
+
+	/**
+	 * Sends a message to the peer on the default channel and returns a receipt
+	 * that can be used to find out when it has been delivered.
+	 * 
+	 * @param priority
+	 *            the priority of the packet.
+	 * @param reliability
+	 *            the reliability of the packet.
+	 * @param packet
+	 *            the packet to send.
+	 * @return the delivery receipt of the packet.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code>, <code>reliability</code>, or
+	 *             <code>packet</code> are <code>null</code>.
+	 * @see DeliveryReceipt
+	 */
+	public default DeliveryReceipt sendMessageWithReceipt(Priority priority, Reliability reliability, Packet packet) throws NullPointerException {
+		return this.sendMessageWithReceipt(priority, reliability, RakNet.DEFAULT_CHANNEL, packet);
+	}
+
 }
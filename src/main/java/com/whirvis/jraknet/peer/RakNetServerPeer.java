@@ -114,9 +114,9 @@ public final class RakNetServerPeer extends RakNetPeer implements RakNetPeerMess
 		} else if (packet.getId() == ID_DISCONNECTION_NOTIFICATION) {
 			client.disconnect("Server disconnected");
 		} else if (packet.getId() >= ID_USER_PACKET_ENUM) {
-			client.callEvent(listener -> listener.handleMessage(client, this, packet, channel));
+			client.callEvent(packet, listener -> listener.handleMessage(client, this, packet, channel));
 		} else {
-			client.callEvent(listener -> listener.handleUnknownMessage(client, this, packet, channel));
+			client.callEvent(packet, listener -> listener.handleUnknownMessage(client, this, packet, channel));
 		}
 	}
 
@@ -136,4 +136,9 @@ public final class RakNetServerPeer extends RakNetPeer implements RakNetPeerMess
 		client.callEvent(listener -> listener.onLoss(client, this, record, packet));
 	}
 
+	@Override
+	public void onWritabilityChanged(boolean writable) {
+		client.callEvent(listener -> listener.onWritabilityChanged(client, this, writable));
+	}
+
 }
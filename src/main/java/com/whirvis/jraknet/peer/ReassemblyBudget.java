@@ -0,0 +1,142 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit on the amount of memory that can be used by the chunks of split
+ * packets that are still waiting to be stitched back together by a group of
+ * peers combined, such as every client connected to a server.
+ * <p>
+ * Every chunk a peer receives reserves its size in the budget until the split
+ * packet it belongs to has been stitched back together or discarded. Should a
+ * chunk not fit, the peer that received it has to make room by discarding its
+ * own unreliable split packets or give up on the connection. This way, the
+ * total amount of memory a group of peers can be made to hold onto stays
+ * capped no matter how many of them are sending split packets at once.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class ReassemblyBudget {
+
+	/**
+	 * The default limit in bytes.
+	 */
+	public static final long DEFAULT_LIMIT = 64L * 1024L * 1024L;
+
+	private final AtomicLong usedBytes;
+	private volatile long limit;
+
+	/**
+	 * Creates a reassembly budget.
+	 *
+	 * @param limit
+	 *            the limit in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>limit</code> is less than <code>1</code>.
+	 */
+	public ReassemblyBudget(long limit) throws IllegalArgumentException {
+		this.usedBytes = new AtomicLong();
+		this.setLimit(limit);
+	}
+
+	/**
+	 * Returns the limit of the budget.
+	 *
+	 * @return the limit in bytes.
+	 */
+	public long getLimit() {
+		return this.limit;
+	}
+
+	/**
+	 * Sets the limit of the budget. If the budget is already using more than
+	 * the new limit, no more bytes can be reserved until enough of them have
+	 * been released.
+	 *
+	 * @param limit
+	 *            the limit in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>limit</code> is less than <code>1</code>.
+	 */
+	public void setLimit(long limit) throws IllegalArgumentException {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Limit must be greater than 0");
+		}
+		this.limit = limit;
+	}
+
+	/**
+	 * Returns the amount of bytes currently reserved.
+	 *
+	 * @return the amount of bytes currently reserved.
+	 */
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	/**
+	 * Reserves the specified amount of bytes, as long as doing so would not
+	 * exceed the limit.
+	 *
+	 * @param bytes
+	 *            the amount of bytes to reserve.
+	 * @return <code>true</code> if the bytes were reserved, <code>false</code>
+	 *         if they would exceed the limit.
+	 */
+	public boolean reserve(long bytes) {
+		while (true) {
+			long used = usedBytes.get();
+			if (used + bytes > limit) {
+				return false;
+			} else if (usedBytes.compareAndSet(used, used + bytes)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Releases the specified amount of bytes that were previously reserved.
+	 *
+	 * @param bytes
+	 *            the amount of bytes to release.
+	 */
+	public void release(long bytes) {
+		usedBytes.addAndGet(-bytes);
+	}
+
+	@Override
+	public String toString() {
+		return "ReassemblyBudget [limit=" + limit + ", usedBytes=" + usedBytes.get() + "]";
+	}
+
+}
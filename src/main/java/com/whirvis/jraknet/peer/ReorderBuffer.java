@@ -0,0 +1,334 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import com.whirvis.jraknet.protocol.message.EncapsulatedPacket;
+
+/**
+ * Used by the {@link RakNetPeer} to hold
+ * {@link com.whirvis.jraknet.protocol.Reliability#RELIABLE_ORDERED ORDERED}
+ * packets that have arrived ahead of the packets before them on the same
+ * channel.
+ * <p>
+ * The packets are stored in a ring addressed by their order index, which
+ * allows for packets to be added and removed without boxing their order index
+ * or searching for them. The distance between the order index of a packet and
+ * the next order index waiting to be handled, also known as the hole, can be no
+ * greater than the maximum hole size. The total size of the payloads being held
+ * can be no greater than the memory budget. If either of these limits are
+ * exceeded, a {@link ReorderBufferOverflowException} is thrown rather than
+ * letting the buffer grow without limit. Order indexes are compared using
+ * {@link SequenceNumber serial number arithmetic}, so the ring keeps working
+ * as they wrap around.
+ * <p>
+ * The time spent waiting for a missing packet while other packets are held
+ * back behind it, known as head-of-line blocking, is also recorded.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class ReorderBuffer {
+
+	/**
+	 * The default maximum hole size in packets.
+	 */
+	public static final int DEFAULT_MAXIMUM_HOLE_SIZE = 1024;
+
+	/**
+	 * The default memory budget in bytes.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 4L * 1024L * 1024L;
+
+	private final int channel;
+	private int maximumHoleSize;
+	private long memoryBudget;
+	private EncapsulatedPacket[] packets;
+	private int mask;
+	private int nextIndex;
+	private int size;
+	private long heldBytes;
+	private long blockedSince;
+	private long blockCount;
+	private long blockingTime;
+	private long maximumBlockingTime;
+
+	/**
+	 * Creates a reorder buffer.
+	 *
+	 * @param channel
+	 *            the channel the buffer holds packets for.
+	 * @param maximumHoleSize
+	 *            the maximum hole size in packets.
+	 * @param memoryBudget
+	 *            the memory budget in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>maximumHoleSize</code> or
+	 *             <code>memoryBudget</code> are less than <code>1</code>, or
+	 *             if the <code>maximumHoleSize</code> is greater than
+	 *             {@value SequenceNumber#MAXIMUM_WINDOW}.
+	 */
+	public ReorderBuffer(int channel, int maximumHoleSize, long memoryBudget) throws IllegalArgumentException {
+		this.channel = channel;
+		this.packets = new EncapsulatedPacket[0];
+		this.setMaximumHoleSize(maximumHoleSize);
+		this.setMemoryBudget(memoryBudget);
+		this.blockedSince = -1L;
+	}
+
+	/**
+	 * Returns the channel the buffer holds packets for.
+	 *
+	 * @return the channel the buffer holds packets for.
+	 */
+	public int getChannel() {
+		return this.channel;
+	}
+
+	/**
+	 * Returns the maximum hole size.
+	 *
+	 * @return the maximum hole size in packets.
+	 */
+	public synchronized int getMaximumHoleSize() {
+		return this.maximumHoleSize;
+	}
+
+	/**
+	 * Sets the maximum hole size. If the maximum hole size is raised past the
+	 * capacity of the ring, the ring is grown to fit it.
+	 *
+	 * @param maximumHoleSize
+	 *            the maximum hole size in packets.
+	 * @throws IllegalArgumentException
+	 *             if the <code>maximumHoleSize</code> is less than
+	 *             <code>1</code> or greater than
+	 *             {@value SequenceNumber#MAXIMUM_WINDOW}.
+	 */
+	public synchronized void setMaximumHoleSize(int maximumHoleSize) throws IllegalArgumentException {
+		if (maximumHoleSize < 1) {
+			throw new IllegalArgumentException("Maximum hole size must be greater than 0");
+		} else if (maximumHoleSize > SequenceNumber.MAXIMUM_WINDOW) {
+			throw new IllegalArgumentException("Maximum hole size can be no greater than " + SequenceNumber.MAXIMUM_WINDOW);
+		}
+		this.maximumHoleSize = maximumHoleSize;
+		if (maximumHoleSize > packets.length) {
+			int capacity = Integer.highestOneBit(maximumHoleSize - 1) << 1;
+			EncapsulatedPacket[] grown = new EncapsulatedPacket[Math.max(capacity, 1)];
+			for (int i = 0; i < packets.length; i++) {
+				EncapsulatedPacket packet = packets[(nextIndex + i) & mask];
+				if (packet != null) {
+					grown[(nextIndex + i) & (grown.length - 1)] = packet;
+				}
+			}
+			this.packets = grown;
+			this.mask = grown.length - 1;
+		}
+	}
+
+	/**
+	 * Returns the memory budget.
+	 *
+	 * @return the memory budget in bytes.
+	 */
+	public synchronized long getMemoryBudget() {
+		return this.memoryBudget;
+	}
+
+	/**
+	 * Sets the memory budget.
+	 *
+	 * @param memoryBudget
+	 *            the memory budget in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>memoryBudget</code> is less than
+	 *             <code>1</code>.
+	 */
+	public synchronized void setMemoryBudget(long memoryBudget) throws IllegalArgumentException {
+		if (memoryBudget < 1) {
+			throw new IllegalArgumentException("Memory budget must be greater than 0");
+		}
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Returns the next order index waiting to be handled.
+	 *
+	 * @return the next order index waiting to be handled.
+	 */
+	public synchronized int getNextIndex() {
+		return this.nextIndex;
+	}
+
+	/**
+	 * Returns the amount of packets being held.
+	 *
+	 * @return the amount of packets being held.
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the total size of the payloads of the packets being held.
+	 *
+	 * @return the total size of the payloads being held in bytes.
+	 */
+	public synchronized long getHeldBytes() {
+		return this.heldBytes;
+	}
+
+	/**
+	 * Returns the amount of times packets were held back waiting for a
+	 * missing packet.
+	 *
+	 * @return the amount of times packets were held back.
+	 */
+	public synchronized long getHeadOfLineBlockCount() {
+		return this.blockCount;
+	}
+
+	/**
+	 * Returns the total amount of time packets were held back waiting for a
+	 * missing packet, not including the time spent waiting for the packet
+	 * that is currently missing.
+	 *
+	 * @return the total head-of-line blocking time in milliseconds.
+	 */
+	public synchronized long getHeadOfLineBlockingTime() {
+		return this.blockingTime;
+	}
+
+	/**
+	 * Returns the longest amount of time packets were held back waiting for a
+	 * single missing packet.
+	 *
+	 * @return the longest head-of-line blocking time in milliseconds.
+	 */
+	public synchronized long getMaximumHeadOfLineBlockingTime() {
+		return this.maximumBlockingTime;
+	}
+
+	/**
+	 * Adds a packet to the buffer.
+	 *
+	 * @param encapsulated
+	 *            the packet.
+	 * @param currentTime
+	 *            the current time.
+	 * @return <code>true</code> if the packet was added, <code>false</code>
+	 *         if it was discarded for having already been handled or for
+	 *         having the same order index as a packet that is already being
+	 *         held.
+	 * @throws NullPointerException
+	 *             if the <code>encapsulated</code> packet is
+	 *             <code>null</code>.
+	 * @throws ReorderBufferOverflowException
+	 *             if adding the packet would exceed the maximum hole size or
+	 *             the memory budget.
+	 */
+	public synchronized boolean add(EncapsulatedPacket encapsulated, long currentTime) throws NullPointerException, ReorderBufferOverflowException {
+		if (encapsulated == null) {
+			throw new NullPointerException("Encapsulated packet cannot be null");
+		}
+		int distance = SequenceNumber.difference(encapsulated.orderIndex, nextIndex);
+		if (distance < 0) {
+			return false; // Already handled
+		} else if (distance >= maximumHoleSize) {
+			throw new ReorderBufferOverflowException(channel, "hole of " + distance + " packets exceeds the maximum of " + maximumHoleSize);
+		} else if (packets[encapsulated.orderIndex & mask] != null) {
+			return false; // Already being held
+		}
+		int payloadSize = encapsulated.payload.size();
+		if (heldBytes + payloadSize > memoryBudget) {
+			throw new ReorderBufferOverflowException(channel, (heldBytes + payloadSize) + " bytes held exceeds the memory budget of " + memoryBudget + " bytes");
+		}
+		packets[encapsulated.orderIndex & mask] = encapsulated;
+		this.size++;
+		this.heldBytes += payloadSize;
+		if (distance > 0 && blockedSince < 0) {
+			this.blockedSince = currentTime;
+			this.blockCount++;
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the next packet in order from the buffer.
+	 *
+	 * @param currentTime
+	 *            the current time.
+	 * @return the next packet in order, <code>null</code> if it has not
+	 *         arrived yet.
+	 */
+	public synchronized EncapsulatedPacket poll(long currentTime) {
+		int slot = nextIndex & mask;
+		EncapsulatedPacket encapsulated = packets[slot];
+		if (encapsulated == null) {
+			if (size > 0 && blockedSince < 0) {
+				this.blockedSince = currentTime; // Blocked by another hole
+				this.blockCount++;
+			}
+			return null;
+		}
+		packets[slot] = null;
+		this.nextIndex = SequenceNumber.next(nextIndex);
+		this.size--;
+		this.heldBytes -= encapsulated.payload.size();
+		if (blockedSince >= 0) {
+			long blocked = Math.max(currentTime - blockedSince, 0L);
+			this.blockingTime += blocked;
+			this.maximumBlockingTime = Math.max(maximumBlockingTime, blocked);
+			this.blockedSince = -1L;
+		}
+		return encapsulated;
+	}
+
+	/**
+	 * Releases and removes every packet being held.
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < packets.length; i++) {
+			if (packets[i] != null) {
+				packets[i].release();
+				packets[i] = null;
+			}
+		}
+		this.size = 0;
+		this.heldBytes = 0;
+		this.blockedSince = -1L;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ReorderBuffer [channel=" + channel + ", nextIndex=" + nextIndex + ", size=" + size + ", heldBytes=" + heldBytes + ", blockCount=" + blockCount
+				+ ", blockingTime=" + blockingTime + ", maximumBlockingTime=" + maximumBlockingTime + "]";
+	}
+
+}
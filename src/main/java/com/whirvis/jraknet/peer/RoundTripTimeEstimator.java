@@ -0,0 +1,156 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+/**
+ * Used to estimate the round trip time of a {@link RakNetPeer} and the
+ * retransmission timeout derived from it.
+ * <p>
+ * Every time a sent datagram is acknowledged, the time between sending it
+ * and receiving the acknowledgement is used as a sample. The smoothed round
+ * trip time and round trip time variation are then updated the same way TCP
+ * does, and the retransmission timeout is set to the smoothed round trip time
+ * plus four times its variation. Until the first sample arrives, the
+ * retransmission timeout is {@value #INITIAL_RETRANSMISSION_TIMEOUT}
+ * milliseconds.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class RoundTripTimeEstimator {
+
+	/**
+	 * The retransmission timeout in milliseconds used before any round trip
+	 * time samples have been taken.
+	 */
+	public static final long INITIAL_RETRANSMISSION_TIMEOUT = RakNetPeer.RECOVERY_SEND_INTERVAL;
+
+	/**
+	 * The lowest the retransmission timeout can be in milliseconds.
+	 */
+	public static final long MINIMUM_RETRANSMISSION_TIMEOUT = 100L;
+
+	/**
+	 * The highest the retransmission timeout can be in milliseconds, including
+	 * any backoff that has been applied to it.
+	 */
+	public static final long MAXIMUM_RETRANSMISSION_TIMEOUT = 8000L;
+
+	/**
+	 * The granularity of the clock used to take samples in milliseconds.
+	 */
+	private static final long CLOCK_GRANULARITY = 10L;
+
+	private long smoothedRoundTripTime;
+	private long roundTripTimeVariation;
+	private long retransmissionTimeout;
+
+	/**
+	 * Creates a round trip time estimator.
+	 */
+	public RoundTripTimeEstimator() {
+		this.smoothedRoundTripTime = -1L;
+		this.roundTripTimeVariation = -1L;
+		this.retransmissionTimeout = INITIAL_RETRANSMISSION_TIMEOUT;
+	}
+
+	/**
+	 * Returns the smoothed round trip time.
+	 *
+	 * @return the smoothed round trip time in milliseconds, <code>-1</code>
+	 *         if no samples have been taken yet.
+	 */
+	public synchronized long getSmoothedRoundTripTime() {
+		return this.smoothedRoundTripTime;
+	}
+
+	/**
+	 * Returns the round trip time variation.
+	 *
+	 * @return the round trip time variation in milliseconds, <code>-1</code>
+	 *         if no samples have been taken yet.
+	 */
+	public synchronized long getRoundTripTimeVariation() {
+		return this.roundTripTimeVariation;
+	}
+
+	/**
+	 * Returns the retransmission timeout.
+	 *
+	 * @return the retransmission timeout in milliseconds.
+	 */
+	public synchronized long getRetransmissionTimeout() {
+		return this.retransmissionTimeout;
+	}
+
+	/**
+	 * Returns the retransmission timeout with the specified amount of
+	 * exponential backoff applied to it.
+	 *
+	 * @param retransmissions
+	 *            the amount of times the data has already been retransmitted.
+	 * @return the retransmission timeout with backoff applied in milliseconds,
+	 *         never higher than {@value #MAXIMUM_RETRANSMISSION_TIMEOUT}.
+	 */
+	public synchronized long getRetransmissionTimeout(int retransmissions) {
+		if (retransmissions <= 0) {
+			return this.retransmissionTimeout;
+		}
+		return Math.min(retransmissionTimeout << Math.min(retransmissions, 16), MAXIMUM_RETRANSMISSION_TIMEOUT);
+	}
+
+	/**
+	 * Updates the estimates with a round trip time sample.
+	 *
+	 * @param sample
+	 *            the round trip time sample in milliseconds. Negative samples
+	 *            are ignored.
+	 */
+	public synchronized void update(long sample) {
+		if (sample < 0) {
+			return; // Clock went backwards
+		} else if (smoothedRoundTripTime < 0) {
+			this.smoothedRoundTripTime = sample;
+			this.roundTripTimeVariation = sample / 2;
+		} else {
+			this.roundTripTimeVariation = (3 * roundTripTimeVariation + Math.abs(smoothedRoundTripTime - sample)) / 4;
+			this.smoothedRoundTripTime = (7 * smoothedRoundTripTime + sample) / 8;
+		}
+		long timeout = smoothedRoundTripTime + Math.max(CLOCK_GRANULARITY, 4 * roundTripTimeVariation);
+		this.retransmissionTimeout = Math.max(MINIMUM_RETRANSMISSION_TIMEOUT, Math.min(timeout, MAXIMUM_RETRANSMISSION_TIMEOUT));
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "RoundTripTimeEstimator [smoothedRoundTripTime=" + smoothedRoundTripTime + ", roundTripTimeVariation=" + roundTripTimeVariation + ", retransmissionTimeout="
+				+ retransmissionTimeout + "]";
+	}
+
+}
@@ -0,0 +1,338 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.util.ArrayDeque;
+
+import com.whirvis.jraknet.RakNet;
+import com.whirvis.jraknet.protocol.message.EncapsulatedPacket;
+
+/**
+ * Used by the {@link RakNetPeer} to hold messages that are waiting to be
+ * packed into datagrams and sent.
+ * <p>
+ * Each {@link Priority} has its own queue for each channel. Priorities are
+ * served strictly in order, meaning a message will never be taken out of the
+ * queue while there is a message of a higher priority waiting. The channels of
+ * the same priority are served using deficit round-robin. Every time a channel
+ * comes up in the rotation it is credited a quantum of bytes, and it can only
+ * have as many bytes taken out of it as it has been credited. This way, every
+ * channel with messages waiting gets an equal share of the bytes being sent
+ * no matter the size of its messages.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class SendQueue {
+
+	private static final Priority[] PRIORITIES = Priority.values();
+
+	private final Level[] levels;
+	private int quantum;
+	private int size;
+	private long queuedBytes;
+
+	/**
+	 * Creates a send queue.
+	 *
+	 * @param quantum
+	 *            the amount of bytes a channel is credited every time it comes
+	 *            up in the rotation. This should be no smaller than the largest
+	 *            message that can be queued, which is usually the maximum
+	 *            transfer unit.
+	 * @throws IllegalArgumentException
+	 *             if the <code>quantum</code> is less than <code>1</code>.
+	 */
+	public SendQueue(int quantum) throws IllegalArgumentException {
+		this.levels = new Level[PRIORITIES.length];
+		for (int i = 0; i < levels.length; i++) {
+			levels[i] = new Level();
+		}
+		this.setQuantum(quantum);
+	}
+
+	/**
+	 * Returns the amount of bytes a channel is credited every time it comes up
+	 * in the rotation.
+	 *
+	 * @return the quantum in bytes.
+	 */
+	public synchronized int getQuantum() {
+		return this.quantum;
+	}
+
+	/**
+	 * Sets the amount of bytes a channel is credited every time it comes up in
+	 * the rotation.
+	 *
+	 * @param quantum
+	 *            the quantum in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>quantum</code> is less than <code>1</code>.
+	 */
+	public synchronized void setQuantum(int quantum) throws IllegalArgumentException {
+		if (quantum < 1) {
+			throw new IllegalArgumentException("Quantum must be greater than 0");
+		}
+		this.quantum = quantum;
+	}
+
+	/**
+	 * Returns the amount of messages in the queue.
+	 *
+	 * @return the amount of messages in the queue.
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the amount of messages in the queue with the specified priority.
+	 *
+	 * @param priority
+	 *            the priority.
+	 * @return the amount of messages in the queue with the priority.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code> is <code>null</code>.
+	 */
+	public synchronized int size(Priority priority) throws NullPointerException {
+		if (priority == null) {
+			throw new NullPointerException("Priority cannot be null");
+		}
+		return levels[priority.ordinal()].size;
+	}
+
+	/**
+	 * Returns whether or not the queue is empty.
+	 *
+	 * @return <code>true</code> if the queue is empty, <code>false</code>
+	 *         otherwise.
+	 */
+	public synchronized boolean isEmpty() {
+		return size <= 0;
+	}
+
+	/**
+	 * Returns the total size of the messages in the queue.
+	 *
+	 * @return the total size of the messages in the queue in bytes.
+	 */
+	public synchronized long getQueuedBytes() {
+		return this.queuedBytes;
+	}
+
+	/**
+	 * Adds a message to the queue.
+	 *
+	 * @param priority
+	 *            the priority of the message.
+	 * @param encapsulated
+	 *            the message.
+	 * @throws NullPointerException
+	 *             if the <code>priority</code> or <code>encapsulated</code>
+	 *             packet are <code>null</code>.
+	 */
+	public synchronized void add(Priority priority, EncapsulatedPacket encapsulated) throws NullPointerException {
+		if (priority == null) {
+			throw new NullPointerException("Priority cannot be null");
+		} else if (encapsulated == null) {
+			throw new NullPointerException("Encapsulated packet cannot be null");
+		}
+		Level level = levels[priority.ordinal()];
+		int channel = encapsulated.orderChannel % RakNet.CHANNEL_COUNT;
+		ChannelQueue queue = level.queues[channel];
+		if (queue.packets.isEmpty()) {
+			level.activate(channel);
+		}
+		queue.packets.add(encapsulated);
+		level.size++;
+		this.size++;
+		this.queuedBytes += encapsulated.size();
+	}
+
+	/**
+	 * Returns the message that is most likely to be taken out of the queue
+	 * next without removing it.
+	 * <p>
+	 * This is the message at the front of the channel that is currently up in
+	 * the rotation of the highest priority with messages waiting. If that
+	 * channel has not been credited enough bytes to send it, the rotation will
+	 * move on to the next channel instead.
+	 *
+	 * @return the message, <code>null</code> if the queue is empty.
+	 */
+	public synchronized EncapsulatedPacket peek() {
+		for (Level level : levels) {
+			if (level.size > 0) {
+				return level.queues[level.active[level.head]].packets.peek();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the next message from the queue.
+	 *
+	 * @param maximumSize
+	 *            the maximum size of the message in bytes.
+	 * @return the next message, <code>null</code> if the queue is empty or if
+	 *         the next message is larger than the <code>maximumSize</code>.
+	 */
+	public synchronized EncapsulatedPacket poll(int maximumSize) {
+		for (Level level : levels) {
+			if (level.size <= 0) {
+				continue;
+			}
+			while (true) {
+				ChannelQueue queue = level.queues[level.active[level.head]];
+				EncapsulatedPacket next = queue.packets.peek();
+				int nextSize = next.size();
+				if (nextSize > queue.deficit) {
+					queue.deficit += quantum;
+					level.rotate(); // Give the other channels their turn
+					continue;
+				} else if (nextSize > maximumSize) {
+					return null; // Does not fit
+				}
+				queue.packets.poll();
+				queue.deficit -= nextSize;
+				if (queue.packets.isEmpty()) {
+					queue.deficit = 0;
+					level.deactivateHead();
+				}
+				level.size--;
+				this.size--;
+				this.queuedBytes -= nextSize;
+				return next;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Releases and removes every message in the queue.
+	 */
+	public synchronized void clear() {
+		for (Level level : levels) {
+			for (ChannelQueue queue : level.queues) {
+				EncapsulatedPacket encapsulated = null;
+				while ((encapsulated = queue.packets.poll()) != null) {
+					encapsulated.release();
+				}
+				queue.deficit = 0;
+			}
+			level.head = 0;
+			level.count = 0;
+			level.size = 0;
+		}
+		this.size = 0;
+		this.queuedBytes = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sizes = new StringBuilder();
+		for (int i = 0; i < levels.length; i++) {
+			sizes.append(i > 0 ? ", " : "").append(PRIORITIES[i]).append('=').append(levels[i].size);
+		}
+		return "SendQueue [quantum=" + quantum + ", size=" + size + ", queuedBytes=" + queuedBytes + ", sizes={" + sizes + "}]";
+	}
+
+	/**
+	 * The messages of a single channel waiting to be sent and the amount of
+	 * bytes it has been credited.
+	 *
+	 * @author Trent "Whirvis" Summerlin
+	 * @since JRakNet v2.11.9
+	 */
+	private static final class ChannelQueue {
+
+		private final ArrayDeque<EncapsulatedPacket> packets;
+		private int deficit;
+
+		private ChannelQueue() {
+			this.packets = new ArrayDeque<EncapsulatedPacket>();
+		}
+
+	}
+
+	/**
+	 * The channel queues of a single priority and the rotation of the channels
+	 * with messages waiting.
+	 *
+	 * @author Trent "Whirvis" Summerlin
+	 * @since JRakNet v2.11.9
+	 */
+	private static final class Level {
+
+		private final ChannelQueue[] queues;
+		private final int[] active;
+		private int head;
+		private int count;
+		private int size;
+
+		private Level() {
+			this.queues = new ChannelQueue[RakNet.CHANNEL_COUNT];
+			for (int i = 0; i < queues.length; i++) {
+				queues[i] = new ChannelQueue();
+			}
+			this.active = new int[RakNet.CHANNEL_COUNT];
+		}
+
+		/**
+		 * Adds a channel to the end of the rotation.
+		 *
+		 * @param channel
+		 *            the channel.
+		 */
+		private void activate(int channel) {
+			active[(head + count) % active.length] = channel;
+			this.count++;
+		}
+
+		/**
+		 * Moves the channel at the front of the rotation to the end.
+		 */
+		private void rotate() {
+			active[(head + count) % active.length] = active[head];
+			this.head = (head + 1) % active.length;
+		}
+
+		/**
+		 * Removes the channel at the front of the rotation.
+		 */
+		private void deactivateHead() {
+			this.head = (head + 1) % active.length;
+			this.count--;
+		}
+
+	}
+
+}
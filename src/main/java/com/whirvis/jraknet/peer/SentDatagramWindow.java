@@ -0,0 +1,437 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.whirvis.jraknet.protocol.message.EncapsulatedPacket;
+
+/**
+ * Used to keep track of sent {@link com.whirvis.jraknet.protocol.message.CustomPacket
+ * CUSTOM} packets that are waiting to be acknowledged.
+ * <p>
+ * Since sequence numbers are assigned in increasing order, the datagrams are
+ * stored in a ring indexed by their sequence number, starting at the oldest
+ * datagram that has yet to be acknowledged. This allows for a ranged
+ * {@link com.whirvis.jraknet.protocol.message.acknowledge.Record Record} in an
+ * {@link com.whirvis.jraknet.protocol.message.acknowledge.AcknowledgedPacket
+ * ACK} or
+ * {@link com.whirvis.jraknet.protocol.message.acknowledge.NotAcknowledgedPacket
+ * NACK} packet to release a contiguous run of datagrams in a single pass,
+ * rather than searching through every outstanding datagram for each sequence
+ * number. Sequence numbers are compared using {@link SequenceNumber serial
+ * number arithmetic}, so the ring keeps working as they wrap around.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class SentDatagramWindow {
+
+	/**
+	 * The default initial capacity of the window in datagrams.
+	 */
+	public static final int DEFAULT_INITIAL_CAPACITY = 256;
+
+	/**
+	 * A sent datagram that is waiting to be acknowledged.
+	 *
+	 * @author Trent "Whirvis" Summerlin
+	 * @since JRakNet v2.11.9
+	 */
+	public static final class SentDatagram {
+
+		private final int sequenceNumber;
+		private final EncapsulatedPacket[] messages;
+		private final int size;
+		private final long sendTime;
+		private final int retransmissions;
+
+		private SentDatagram(int sequenceNumber, EncapsulatedPacket[] messages, int size, long sendTime, int retransmissions) {
+			this.sequenceNumber = sequenceNumber;
+			this.messages = messages;
+			this.size = size;
+			this.sendTime = sendTime;
+			this.retransmissions = retransmissions;
+		}
+
+		/**
+		 * Returns the sequence number of the datagram.
+		 *
+		 * @return the sequence number of the datagram.
+		 */
+		public int getSequenceNumber() {
+			return this.sequenceNumber;
+		}
+
+		/**
+		 * Returns the messages that were sent in the datagram that must either
+		 * be resent if lost or require an acknowledgement receipt.
+		 *
+		 * @return the messages that were sent in the datagram.
+		 */
+		public EncapsulatedPacket[] getMessages() {
+			return this.messages;
+		}
+
+		/**
+		 * Returns the size of the datagram.
+		 *
+		 * @return the size of the datagram in bytes.
+		 */
+		public int getSize() {
+			return this.size;
+		}
+
+		/**
+		 * Returns the time the datagram was sent.
+		 *
+		 * @return the time the datagram was sent.
+		 */
+		public long getSendTime() {
+			return this.sendTime;
+		}
+
+		/**
+		 * Returns the amount of times the messages in the datagram had already
+		 * been retransmitted before it was sent.
+		 *
+		 * @return the amount of times the messages in the datagram had already
+		 *         been retransmitted.
+		 */
+		public int getRetransmissions() {
+			return this.retransmissions;
+		}
+
+		/**
+		 * Returns the time the datagram expires, at which point it is
+		 * considered lost if it has yet to be acknowledged.
+		 *
+		 * @param estimator
+		 *            the estimator used to determine the retransmission
+		 *            timeout.
+		 * @return the time the datagram expires.
+		 */
+		public long getExpiryTime(RoundTripTimeEstimator estimator) {
+			return sendTime + estimator.getRetransmissionTimeout(retransmissions);
+		}
+
+		@Override
+		public String toString() {
+			return "SentDatagram [sequenceNumber=" + sequenceNumber + ", messages=" + messages.length + ", size=" + size + ", sendTime=" + sendTime + ", retransmissions="
+					+ retransmissions + "]";
+		}
+
+	}
+
+	private SentDatagram[] ring;
+	private int mask;
+	private int oldest;
+	private int next;
+	private int size;
+	private long bytes;
+
+	/**
+	 * Creates a sent datagram window.
+	 *
+	 * @param initialCapacity
+	 *            the initial capacity of the window in datagrams. This will be
+	 *            rounded up to the nearest power of two.
+	 * @throws IllegalArgumentException
+	 *             if the <code>initialCapacity</code> is less than
+	 *             <code>1</code>.
+	 */
+	public SentDatagramWindow(int initialCapacity) throws IllegalArgumentException {
+		if (initialCapacity < 1) {
+			throw new IllegalArgumentException("Initial capacity must be greater than 0");
+		}
+		int capacity = 1;
+		while (capacity < initialCapacity) {
+			capacity <<= 1;
+		}
+		this.ring = new SentDatagram[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Creates a sent datagram window with an initial capacity of
+	 * {@value #DEFAULT_INITIAL_CAPACITY}.
+	 */
+	public SentDatagramWindow() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Returns the amount of datagrams waiting to be acknowledged.
+	 *
+	 * @return the amount of datagrams waiting to be acknowledged.
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns whether or not there are no datagrams waiting to be
+	 * acknowledged.
+	 *
+	 * @return <code>true</code> if there are no datagrams waiting to be
+	 *         acknowledged, <code>false</code> otherwise.
+	 */
+	public synchronized boolean isEmpty() {
+		return size <= 0;
+	}
+
+	/**
+	 * Returns the total size of the datagrams waiting to be acknowledged.
+	 *
+	 * @return the total size of the datagrams waiting to be acknowledged in
+	 *         bytes.
+	 */
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+
+	/**
+	 * Stores a sent datagram.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number of the datagram. This must be newer than
+	 *            that of every datagram stored before it.
+	 * @param messages
+	 *            the messages sent in the datagram that must either be resent
+	 *            if lost or require an acknowledgement receipt.
+	 * @param size
+	 *            the size of the datagram in bytes.
+	 * @param sendTime
+	 *            the time the datagram was sent.
+	 * @param retransmissions
+	 *            the amount of times the messages in the datagram had already
+	 *            been retransmitted.
+	 * @throws NullPointerException
+	 *             if the <code>messages</code> are <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             if the <code>sequenceNumber</code> is not newer than that
+	 *             of every datagram stored before it.
+	 */
+	public synchronized void put(int sequenceNumber, EncapsulatedPacket[] messages, int size, long sendTime, int retransmissions) throws NullPointerException, IllegalArgumentException {
+		if (messages == null) {
+			throw new NullPointerException("Messages cannot be null");
+		} else if (this.size > 0 && SequenceNumber.difference(sequenceNumber, next) < 0) {
+			throw new IllegalArgumentException("Sequence number " + sequenceNumber + " was stored out of order");
+		}
+		if (this.size <= 0) {
+			this.oldest = sequenceNumber;
+		} else {
+			while (SequenceNumber.difference(sequenceNumber, oldest) > mask) {
+				this.grow();
+			}
+		}
+		ring[sequenceNumber & mask] = new SentDatagram(sequenceNumber, messages, size, sendTime, retransmissions);
+		this.next = SequenceNumber.next(sequenceNumber);
+		this.size++;
+		this.bytes += size;
+	}
+
+	/**
+	 * Doubles the capacity of the window.
+	 */
+	private void grow() {
+		SentDatagram[] newRing = new SentDatagram[ring.length << 1];
+		int newMask = newRing.length - 1;
+		for (int i = oldest; i != next; i = SequenceNumber.next(i)) {
+			newRing[i & newMask] = ring[i & mask];
+		}
+		this.ring = newRing;
+		this.mask = newMask;
+	}
+
+	/**
+	 * Removes the datagrams with sequence numbers in between the specified
+	 * start and end sequence numbers.
+	 *
+	 * @param start
+	 *            the first sequence number, inclusive.
+	 * @param end
+	 *            the last sequence number, inclusive.
+	 * @return the removed datagrams in order of their sequence number.
+	 */
+	public synchronized List<SentDatagram> remove(int start, int end) {
+		if (size <= 0 || SequenceNumber.difference(end, oldest) < 0 || SequenceNumber.difference(start, next) >= 0
+				|| SequenceNumber.difference(end, start) < 0) {
+			return Collections.emptyList();
+		}
+		if (SequenceNumber.difference(start, oldest) < 0) {
+			start = oldest;
+		}
+		if (SequenceNumber.difference(end, next) >= 0) {
+			end = SequenceNumber.add(next, -1);
+		}
+		ArrayList<SentDatagram> removed = new ArrayList<SentDatagram>();
+		for (int i = start; SequenceNumber.difference(i, end) <= 0; i = SequenceNumber.next(i)) {
+			SentDatagram datagram = ring[i & mask];
+			if (datagram != null) {
+				ring[i & mask] = null;
+				removed.add(datagram);
+				this.size--;
+				this.bytes -= datagram.size;
+			}
+		}
+		this.advance();
+		return removed;
+	}
+
+	/**
+	 * Removes the datagram with the specified sequence number.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number.
+	 * @return the removed datagram, <code>null</code> if there is none.
+	 */
+	public synchronized SentDatagram remove(int sequenceNumber) {
+		if (size <= 0 || SequenceNumber.difference(sequenceNumber, oldest) < 0 || SequenceNumber.difference(sequenceNumber, next) >= 0) {
+			return null;
+		}
+		SentDatagram datagram = ring[sequenceNumber & mask];
+		if (datagram != null) {
+			ring[sequenceNumber & mask] = null;
+			this.size--;
+			this.bytes -= datagram.size;
+			this.advance();
+		}
+		return datagram;
+	}
+
+	/**
+	 * Removes the datagrams that have expired.
+	 * <p>
+	 * Since datagrams are stored in the order they were sent and backoff only
+	 * ever delays expiry, the search stops at the first datagram that could
+	 * not have expired even without backoff.
+	 *
+	 * @param currentTime
+	 *            the current time.
+	 * @param estimator
+	 *            the estimator used to determine the retransmission timeout.
+	 * @return the expired datagrams in order of their sequence number.
+	 */
+	public synchronized List<SentDatagram> removeExpired(long currentTime, RoundTripTimeEstimator estimator) {
+		long timeout = estimator.getRetransmissionTimeout();
+		ArrayList<SentDatagram> expired = null;
+		for (int i = oldest; i != next; i = SequenceNumber.next(i)) {
+			SentDatagram datagram = ring[i & mask];
+			if (datagram == null) {
+				continue;
+			} else if (datagram.sendTime + timeout > currentTime) {
+				break; // No newer datagrams can have expired
+			} else if (datagram.getExpiryTime(estimator) <= currentTime) {
+				if (expired == null) {
+					expired = new ArrayList<SentDatagram>();
+				}
+				ring[i & mask] = null;
+				expired.add(datagram);
+				this.size--;
+				this.bytes -= datagram.size;
+			}
+		}
+		if (expired == null) {
+			return Collections.emptyList();
+		}
+		this.advance();
+		return expired;
+	}
+
+	/**
+	 * Returns the time the next datagram expires.
+	 *
+	 * @param estimator
+	 *            the estimator used to determine the retransmission timeout.
+	 * @return the time the next datagram expires, <code>-1</code> if there
+	 *         are no datagrams waiting to be acknowledged.
+	 */
+	public synchronized long getNextExpiryTime(RoundTripTimeEstimator estimator) {
+		long timeout = estimator.getRetransmissionTimeout();
+		long nextExpiryTime = -1L;
+		for (int i = oldest; i != next; i = SequenceNumber.next(i)) {
+			SentDatagram datagram = ring[i & mask];
+			if (datagram == null) {
+				continue;
+			} else if (nextExpiryTime >= 0 && datagram.sendTime + timeout >= nextExpiryTime) {
+				break; // No newer datagrams can expire sooner
+			}
+			long expiryTime = datagram.getExpiryTime(estimator);
+			if (nextExpiryTime < 0 || expiryTime < nextExpiryTime) {
+				nextExpiryTime = expiryTime;
+			}
+		}
+		return nextExpiryTime;
+	}
+
+	/**
+	 * Returns the oldest datagram waiting to be acknowledged without removing
+	 * it.
+	 *
+	 * @return the oldest datagram waiting to be acknowledged,
+	 *         <code>null</code> if there is none.
+	 */
+	public synchronized SentDatagram peek() {
+		return size > 0 ? ring[oldest & mask] : null;
+	}
+
+	/**
+	 * Removes the oldest datagram waiting to be acknowledged.
+	 *
+	 * @return the oldest datagram waiting to be acknowledged,
+	 *         <code>null</code> if there is none.
+	 */
+	public synchronized SentDatagram poll() {
+		return size > 0 ? this.remove(oldest) : null;
+	}
+
+	/**
+	 * Moves the oldest sequence number forward over the datagrams that have
+	 * already been removed.
+	 */
+	private void advance() {
+		if (size <= 0) {
+			this.oldest = next;
+			return;
+		}
+		while (ring[oldest & mask] == null) {
+			this.oldest = SequenceNumber.next(oldest);
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SentDatagramWindow [oldest=" + oldest + ", next=" + next + ", size=" + size + ", bytes=" + bytes + ", capacity=" + ring.length + "]";
+	}
+
+}
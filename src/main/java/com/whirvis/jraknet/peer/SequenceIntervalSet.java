@@ -0,0 +1,213 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.util.Arrays;
+
+import com.whirvis.jraknet.protocol.message.acknowledge.Record;
+
+/**
+ * Used to collect the sequence numbers of received
+ * {@link com.whirvis.jraknet.protocol.message.CustomPacket CUSTOM} packets that
+ * have yet to be acknowledged.
+ * <p>
+ * The sequence numbers are stored as sorted, non-overlapping intervals in
+ * primitive arrays. Since sequence numbers mostly arrive in increasing order,
+ * adding one usually only extends the last interval. This allows for the set
+ * to be turned into condensed {@link Record records} for an
+ * {@link com.whirvis.jraknet.protocol.message.acknowledge.AcknowledgedPacket
+ * ACK} packet without having to sort or condense anything.
+ * <p>
+ * Sequence numbers are ordered using {@link SequenceNumber serial number
+ * arithmetic}, meaning an interval can wrap around from
+ * {@value SequenceNumber#MASK} to <code>0</code>. This assumes the set is
+ * flushed often enough that it never spans more than
+ * {@value SequenceNumber#MAXIMUM_WINDOW} sequence numbers.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class SequenceIntervalSet {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private int[] starts;
+	private int[] ends;
+	private int intervals;
+	private int size;
+
+	/**
+	 * Creates a sequence interval set.
+	 */
+	public SequenceIntervalSet() {
+		this.starts = new int[INITIAL_CAPACITY];
+		this.ends = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Returns the amount of sequence numbers in the set.
+	 *
+	 * @return the amount of sequence numbers in the set.
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the amount of intervals in the set. This is the amount of
+	 * records that would be returned by {@link #flush()}, not counting the
+	 * extra record needed for an interval that wraps around.
+	 *
+	 * @return the amount of intervals in the set.
+	 */
+	public synchronized int getIntervalCount() {
+		return this.intervals;
+	}
+
+	/**
+	 * Returns whether or not the set is empty.
+	 *
+	 * @return <code>true</code> if the set is empty, <code>false</code>
+	 *         otherwise.
+	 */
+	public synchronized boolean isEmpty() {
+		return size <= 0;
+	}
+
+	/**
+	 * Adds a sequence number to the set.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number.
+	 * @return <code>true</code> if the sequence number was added,
+	 *         <code>false</code> if it was already in the set.
+	 */
+	public synchronized boolean add(int sequenceNumber) {
+		// Extend or append to the last interval, the most common case
+		if (intervals <= 0 || SequenceNumber.difference(sequenceNumber, ends[intervals - 1]) > 1) {
+			this.insert(intervals, sequenceNumber);
+			return true;
+		} else if (sequenceNumber == SequenceNumber.next(ends[intervals - 1])) {
+			ends[intervals - 1] = sequenceNumber;
+			this.size++;
+			return true;
+		}
+
+		// Find the first interval starting after the sequence number
+		int low = 0;
+		int high = intervals;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (SequenceNumber.difference(starts[middle], sequenceNumber) > 0) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		int previous = low - 1;
+		if (previous >= 0 && SequenceNumber.difference(sequenceNumber, ends[previous]) <= 0) {
+			return false; // Already in the set
+		}
+		boolean joinsPrevious = previous >= 0 && SequenceNumber.next(ends[previous]) == sequenceNumber;
+		boolean joinsNext = low < intervals && SequenceNumber.next(sequenceNumber) == starts[low];
+		if (joinsPrevious == true && joinsNext == true) {
+			ends[previous] = ends[low];
+			System.arraycopy(starts, low + 1, starts, low, intervals - low - 1);
+			System.arraycopy(ends, low + 1, ends, low, intervals - low - 1);
+			this.intervals--;
+		} else if (joinsPrevious == true) {
+			ends[previous] = sequenceNumber;
+		} else if (joinsNext == true) {
+			starts[low] = sequenceNumber;
+		} else {
+			this.insert(low, sequenceNumber);
+			return true;
+		}
+		this.size++;
+		return true;
+	}
+
+	/**
+	 * Inserts a new interval containing only the specified sequence number.
+	 *
+	 * @param position
+	 *            the position to insert the interval at.
+	 * @param sequenceNumber
+	 *            the sequence number.
+	 */
+	private void insert(int position, int sequenceNumber) {
+		if (intervals >= starts.length) {
+			this.starts = Arrays.copyOf(starts, starts.length << 1);
+			this.ends = Arrays.copyOf(ends, ends.length << 1);
+		}
+		System.arraycopy(starts, position, starts, position + 1, intervals - position);
+		System.arraycopy(ends, position, ends, position + 1, intervals - position);
+		starts[position] = sequenceNumber;
+		ends[position] = sequenceNumber;
+		this.intervals++;
+		this.size++;
+	}
+
+	/**
+	 * Returns the contents of the set as condensed records and clears it.
+	 *
+	 * @return the records, <code>null</code> if the set is empty.
+	 */
+	public synchronized Record[] flush() {
+		if (intervals <= 0) {
+			return null;
+		}
+		int count = intervals;
+		for (int i = 0; i < intervals; i++) {
+			if (ends[i] < starts[i]) {
+				count++; // Wraps around, split in two
+			}
+		}
+		Record[] records = new Record[count];
+		int index = 0;
+		for (int i = 0; i < intervals; i++) {
+			if (ends[i] < starts[i]) {
+				records[index++] = starts[i] == SequenceNumber.MASK ? new Record(starts[i]) : new Record(starts[i], SequenceNumber.MASK);
+				records[index++] = ends[i] == 0 ? new Record(0) : new Record(0, ends[i]);
+			} else {
+				records[index++] = starts[i] == ends[i] ? new Record(starts[i]) : new Record(starts[i], ends[i]);
+			}
+		}
+		this.intervals = 0;
+		this.size = 0;
+		return records;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SequenceIntervalSet [intervals=" + intervals + ", size=" + size + "]";
+	}
+
+}
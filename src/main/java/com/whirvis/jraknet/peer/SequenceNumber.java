@@ -0,0 +1,149 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+/**
+ * Utilities for working with the sequence numbers, message indexes and order
+ * indexes sent between peers.
+ * <p>
+ * These are all sent as <code>triad</code>s, meaning they are only
+ * {@value #BITS} bits wide and wrap back around to <code>0</code> after
+ * {@value #MASK}. At high packet rates this will happen within hours, so they
+ * can never be compared directly. Instead, they are compared using serial
+ * number arithmetic as described in RFC 1982. A sequence number is considered
+ * newer than another if it is less than {@value #MAXIMUM_WINDOW} ahead of it
+ * when counting forward with wrapping, and older otherwise. As long as the
+ * sequence numbers being compared are never this far apart, the result is
+ * always correct no matter how many times they have wrapped.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class SequenceNumber {
+
+	/**
+	 * The amount of bits in a sequence number.
+	 */
+	public static final int BITS = 24;
+
+	/**
+	 * The amount of unique sequence numbers.
+	 */
+	public static final int MODULUS = 1 << BITS;
+
+	/**
+	 * The mask of a sequence number, which is also the highest sequence number
+	 * before wrapping back around to <code>0</code>.
+	 */
+	public static final int MASK = MODULUS - 1;
+
+	/**
+	 * The amount of consecutive sequence numbers that can be compared with
+	 * each other, which is half of the sequence number space. No window, queue
+	 * or buffer indexed by sequence numbers should ever span more than this.
+	 */
+	public static final int MAXIMUM_WINDOW = MODULUS >>> 1;
+
+	private SequenceNumber() {
+		// Static class
+	}
+
+	/**
+	 * Wraps the specified value into the sequence number space.
+	 *
+	 * @param value
+	 *            the value.
+	 * @return the wrapped sequence number.
+	 */
+	public static int wrap(int value) {
+		return value & MASK;
+	}
+
+	/**
+	 * Returns the sequence number that comes after the specified sequence
+	 * number.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number.
+	 * @return the next sequence number.
+	 */
+	public static int next(int sequenceNumber) {
+		return (sequenceNumber + 1) & MASK;
+	}
+
+	/**
+	 * Adds the specified amount to a sequence number.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number.
+	 * @param amount
+	 *            the amount to add, this can be negative.
+	 * @return the resulting sequence number.
+	 */
+	public static int add(int sequenceNumber, int amount) {
+		return (sequenceNumber + amount) & MASK;
+	}
+
+	/**
+	 * Returns the distance from one sequence number to another.
+	 * <p>
+	 * This is the serial number equivalent of <code>a - b</code>, meaning the
+	 * result is positive if <code>a</code> is newer than <code>b</code>,
+	 * negative if it is older, and <code>0</code> if they are the same. A
+	 * value of <code>-1</code> can be used in place of the sequence number
+	 * before <code>0</code>.
+	 *
+	 * @param a
+	 *            the first sequence number.
+	 * @param b
+	 *            the second sequence number.
+	 * @return the distance from <code>b</code> to <code>a</code>, between
+	 *         <code>-{@value #MAXIMUM_WINDOW}</code> and
+	 *         <code>{@value #MAXIMUM_WINDOW} - 1</code>.
+	 */
+	public static int difference(int a, int b) {
+		return ((a - b) << (Integer.SIZE - BITS)) >> (Integer.SIZE - BITS);
+	}
+
+	/**
+	 * Returns whether or not a sequence number is newer than another.
+	 *
+	 * @param a
+	 *            the first sequence number.
+	 * @param b
+	 *            the second sequence number.
+	 * @return <code>true</code> if <code>a</code> is newer than
+	 *         <code>b</code>, <code>false</code> otherwise.
+	 */
+	public static boolean isNewer(int a, int b) {
+		return difference(a, b) > 0;
+	}
+
+}
@@ -46,4 +46,14 @@ public final class SplitQueueOverflowException extends RuntimeException {
 		super("Too many split packets in a single queue");
 	}
 
+	/**
+	 * Constructs a <code>SplitQueueOverflowException</code>.
+	 * 
+	 * @param reason
+	 *            the reason the split queue overflowed.
+	 */
+	public SplitQueueOverflowException(String reason) {
+		super("Too many split packets in a single queue (" + reason + ")");
+	}
+
 }
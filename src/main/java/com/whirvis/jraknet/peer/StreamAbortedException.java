@@ -0,0 +1,70 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import com.whirvis.jraknet.RakNetException;
+
+/**
+ * Signals that an {@link OutgoingStream} was aborted before all of its data
+ * could be delivered to the peer.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ * @see OutgoingStream
+ */
+public final class StreamAbortedException extends RakNetException {
+
+	private static final long serialVersionUID = -2281645029731165876L;
+
+	private final OutgoingStream stream;
+
+	/**
+	 * Constructs a <code>StreamAbortedException</code>.
+	 *
+	 * @param stream
+	 *            the stream that was aborted.
+	 * @param reason
+	 *            the reason the stream was aborted.
+	 */
+	public StreamAbortedException(OutgoingStream stream, String reason) {
+		super("Stream " + stream.getStreamId() + " on channel " + stream.getChannel() + " aborted (" + reason + ")");
+		this.stream = stream;
+	}
+
+	/**
+	 * Returns the stream that was aborted.
+	 *
+	 * @return the stream that was aborted.
+	 */
+	public OutgoingStream getStream() {
+		return this.stream;
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Receives the data of a stream sent by a {@link RakNetPeer}, one chunk at a
+ * time and in the order it was sent.
+ * <p>
+ * Every chunk is handed to the sink as soon as it arrives, and nothing is
+ * kept by the peer afterwards. As a result, a stream of any size can be
+ * received in constant memory, so long as the sink does not hold onto the
+ * chunks itself.
+ * <p>
+ * The methods of a sink are called on the thread that updates the peer. Any
+ * work done by them that could block should be done asynchronously, lest it
+ * hold back the peer and every other peer updated by the same thread.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ * @see StreamSinkFactory
+ */
+public interface StreamSink {
+
+	/**
+	 * Creates a sink that writes the data of a stream to the specified
+	 * channel. The channel is closed once the stream has ended or been
+	 * aborted.
+	 *
+	 * @param channel
+	 *            the channel to write to.
+	 * @return the sink.
+	 * @throws NullPointerException
+	 *             if the <code>channel</code> is <code>null</code>.
+	 */
+	public static StreamSink to(WritableByteChannel channel) throws NullPointerException {
+		if (channel == null) {
+			throw new NullPointerException("Channel cannot be null");
+		}
+		return new StreamSink() {
+
+			@Override
+			public void onData(ByteBuffer data) throws IOException {
+				while (data.hasRemaining()) {
+					channel.write(data);
+				}
+			}
+
+			@Override
+			public void onEnd() throws IOException {
+				channel.close();
+			}
+
+			@Override
+			public void onAbort(String reason) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					// Already given up on the stream
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * Called when the next chunk of the stream has been received.
+	 *
+	 * @param data
+	 *            the data of the chunk. This is only valid until the method
+	 *            returns.
+	 * @throws IOException
+	 *             if the data could not be handled. This will cause the
+	 *             stream to be cancelled.
+	 */
+	public void onData(ByteBuffer data) throws IOException;
+
+	/**
+	 * Called when all of the data of the stream has been received.
+	 *
+	 * @throws IOException
+	 *             if the end of the stream could not be handled.
+	 */
+	public void onEnd() throws IOException;
+
+	/**
+	 * Called when the stream was aborted by the sender, cancelled because the
+	 * sink failed to handle its data, or the peer disconnected before it
+	 * ended. No more methods of the sink will be called afterwards.
+	 *
+	 * @param reason
+	 *            the reason the stream was aborted.
+	 */
+	public void onAbort(String reason);
+
+}
@@ -0,0 +1,185 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer;
+
+/**
+ * A token bucket used to limit the amount of bytes sent over time.
+ * <p>
+ * Tokens are added to the bucket at a fixed rate, up until the bucket holds
+ * as many tokens as its burst size. Each byte sent takes one token out of the
+ * bucket. Rather than refusing datagrams that are larger than the tokens
+ * left, the bucket is allowed to go into debt. Nothing else can be sent until
+ * the debt is paid off, which keeps the average rate accurate without a
+ * datagram ever getting stuck because the burst size is too small to hold it.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class TokenBucket {
+
+	private long rate;
+	private long burst;
+	private double tokens;
+	private long lastRefillTime;
+
+	/**
+	 * Creates a token bucket that starts out full.
+	 *
+	 * @param rate
+	 *            the rate tokens are added to the bucket in bytes per second.
+	 * @param burst
+	 *            the maximum amount of tokens the bucket can hold in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>rate</code> or <code>burst</code> are less than
+	 *             <code>1</code>.
+	 */
+	public TokenBucket(long rate, long burst) throws IllegalArgumentException {
+		this.setRate(rate, burst);
+		this.tokens = burst;
+		this.lastRefillTime = -1L;
+	}
+
+	/**
+	 * Returns the rate tokens are added to the bucket.
+	 *
+	 * @return the rate in bytes per second.
+	 */
+	public synchronized long getRate() {
+		return this.rate;
+	}
+
+	/**
+	 * Returns the maximum amount of tokens the bucket can hold.
+	 *
+	 * @return the burst size in bytes.
+	 */
+	public synchronized long getBurst() {
+		return this.burst;
+	}
+
+	/**
+	 * Sets the rate tokens are added to the bucket and the maximum amount of
+	 * tokens it can hold. If the bucket holds more tokens than the new burst
+	 * size, the extra tokens are discarded.
+	 *
+	 * @param rate
+	 *            the rate in bytes per second.
+	 * @param burst
+	 *            the burst size in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>rate</code> or <code>burst</code> are less than
+	 *             <code>1</code>.
+	 */
+	public synchronized void setRate(long rate, long burst) throws IllegalArgumentException {
+		if (rate < 1) {
+			throw new IllegalArgumentException("Rate must be greater than 0");
+		} else if (burst < 1) {
+			throw new IllegalArgumentException("Burst must be greater than 0");
+		}
+		this.rate = rate;
+		this.burst = burst;
+		this.tokens = Math.min(tokens, burst);
+	}
+
+	/**
+	 * Adds the tokens that have accumulated since the last refill.
+	 *
+	 * @param currentTime
+	 *            the current time.
+	 */
+	private void refill(long currentTime) {
+		if (lastRefillTime >= 0 && currentTime > lastRefillTime) {
+			this.tokens = Math.min(burst, tokens + (currentTime - lastRefillTime) * rate / 1000.0D);
+		}
+		this.lastRefillTime = Math.max(lastRefillTime, currentTime);
+	}
+
+	/**
+	 * Returns the amount of tokens in the bucket.
+	 *
+	 * @param currentTime
+	 *            the current time.
+	 * @return the amount of tokens in the bucket, a negative value if the
+	 *         bucket is in debt.
+	 */
+	public synchronized long getTokens(long currentTime) {
+		this.refill(currentTime);
+		return (long) Math.floor(tokens);
+	}
+
+	/**
+	 * Returns whether or not a datagram can be sent.
+	 *
+	 * @param currentTime
+	 *            the current time.
+	 * @return <code>true</code> if the bucket is not empty or in debt,
+	 *         <code>false</code> otherwise.
+	 */
+	public synchronized boolean isAvailable(long currentTime) {
+		this.refill(currentTime);
+		return tokens > 0.0D;
+	}
+
+	/**
+	 * Returns the amount of time until a datagram can be sent.
+	 *
+	 * @param currentTime
+	 *            the current time.
+	 * @return the amount of time in milliseconds until a datagram can be sent,
+	 *         <code>0</code> if one can be sent now.
+	 */
+	public synchronized long getTimeUntilAvailable(long currentTime) {
+		this.refill(currentTime);
+		if (tokens > 0.0D) {
+			return 0L;
+		}
+		return (long) Math.floor(-tokens * 1000.0D / rate) + 1L;
+	}
+
+	/**
+	 * Takes tokens out of the bucket for a datagram that is being sent. The
+	 * bucket will go into debt if it does not hold enough tokens.
+	 *
+	 * @param size
+	 *            the size of the datagram in bytes.
+	 * @param currentTime
+	 *            the current time.
+	 */
+	public synchronized void consume(int size, long currentTime) {
+		this.refill(currentTime);
+		this.tokens -= size;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "TokenBucket [rate=" + rate + ", burst=" + burst + ", tokens=" + (long) Math.floor(tokens) + "]";
+	}
+
+}
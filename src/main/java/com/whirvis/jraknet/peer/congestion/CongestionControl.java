@@ -0,0 +1,167 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer.congestion;
+
+/**
+ * Used by a {@link com.whirvis.jraknet.peer.RakNetPeer RakNetPeer} to decide
+ * how much data can be in flight to the other side of the connection at once.
+ * <p>
+ * The peer notifies the congestion control of every
+ * {@link com.whirvis.jraknet.protocol.message.CustomPacket CUSTOM} packet it
+ * sends, and of when each of them is either acknowledged or found to be lost.
+ * Before sending a new datagram, the peer asks the congestion control whether
+ * or not the datagram fits within the current congestion window. Each peer has
+ * its own instance, so implementations do not need to be thread-safe beyond
+ * the guarantees given by the peer.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ * @see CubicCongestionControl
+ */
+public interface CongestionControl {
+
+	/**
+	 * Returns the congestion window, which is the maximum amount of bytes that
+	 * can be in flight at once.
+	 *
+	 * @return the congestion window in bytes.
+	 */
+	public int getCongestionWindow();
+
+	/**
+	 * Returns the amount of bytes that have been sent but have yet to be
+	 * acknowledged or found to be lost.
+	 *
+	 * @return the amount of bytes in flight.
+	 */
+	public int getBytesInFlight();
+
+	/**
+	 * Returns whether or not a datagram of the specified size can be sent
+	 * without going over the congestion window.
+	 * <p>
+	 * A datagram can always be sent if there is nothing in flight, as
+	 * otherwise a congestion window smaller than a single datagram would stall
+	 * the connection.
+	 *
+	 * @param size
+	 *            the size of the datagram in bytes.
+	 * @return <code>true</code> if the datagram can be sent,
+	 *         <code>false</code> otherwise.
+	 */
+	public default boolean canSend(int size) {
+		int bytesInFlight = this.getBytesInFlight();
+		return bytesInFlight <= 0 || bytesInFlight + size <= this.getCongestionWindow();
+	}
+
+	/**
+	 * Called when a datagram has been sent.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number of the datagram.
+	 * @param size
+	 *            the size of the datagram in bytes.
+	 * @param time
+	 *            the time the datagram was sent.
+	 */
+	public void onSend(int sequenceNumber, int size, long time);
+
+	/**
+	 * Called when a datagram has been acknowledged.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number of the datagram.
+	 * @param size
+	 *            the size of the datagram in bytes.
+	 * @param time
+	 *            the time the acknowledgement was received.
+	 */
+	public void onAcknowledge(int sequenceNumber, int size, long time);
+
+	/**
+	 * Called when the other side has reported a datagram as lost.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number of the datagram.
+	 * @param size
+	 *            the size of the datagram in bytes.
+	 * @param time
+	 *            the time the loss was reported.
+	 */
+	public void onLoss(int sequenceNumber, int size, long time);
+
+	/**
+	 * Called when a datagram has gone unacknowledged for so long that it is
+	 * considered lost without the other side having reported it.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number of the datagram.
+	 * @param size
+	 *            the size of the datagram in bytes.
+	 * @param time
+	 *            the time the datagram timed out.
+	 */
+	public void onTimeout(int sequenceNumber, int size, long time);
+
+	/**
+	 * Called when a datagram is no longer in flight without having been
+	 * acknowledged, but its loss is not a sign of congestion. This is the
+	 * case for datagrams used to probe the path MTU, which are expected to be
+	 * lost when they are larger than the path allows for.
+	 * <p>
+	 * By default, this treats the datagram as lost.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number of the datagram.
+	 * @param size
+	 *            the size of the datagram in bytes.
+	 * @param time
+	 *            the time the datagram was discarded.
+	 */
+	public default void onDiscard(int sequenceNumber, int size, long time) {
+		this.onLoss(sequenceNumber, size, time);
+	}
+
+	/**
+	 * Called when the maximum transfer unit of the peer has changed, such as
+	 * after a path MTU probe succeeds or a black hole is detected.
+	 * Congestion controls that measure their window in datagrams should use
+	 * the new size for any datagrams sent from now on.
+	 * <p>
+	 * By default, this does nothing.
+	 *
+	 * @param maximumTransferUnit
+	 *            the new maximum transfer unit in bytes.
+	 */
+	public default void onTransferUnitChanged(int maximumTransferUnit) {
+		// Nothing to do
+	}
+
+}
@@ -0,0 +1,287 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.peer.congestion;
+
+import com.whirvis.jraknet.peer.SequenceNumber;
+
+/**
+ * A {@link CongestionControl} based on CUBIC, the default congestion control
+ * used by most TCP implementations.
+ * <p>
+ * The congestion window starts at {@value #INITIAL_WINDOW} datagrams and
+ * grows by the amount of bytes acknowledged during slow start. Once a loss is
+ * detected, the window is reduced by a factor of {@value #BETA} and then
+ * grows along a cubic curve, flattening out as it approaches the size it was
+ * when the loss occurred before probing past it. A timeout collapses the
+ * window back down to {@value #MINIMUM_WINDOW} datagrams. Only one reduction
+ * is made for all of the datagrams that were in flight when a loss was
+ * detected, so a burst of losses does not shrink the window more than once.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class CubicCongestionControl implements CongestionControl {
+
+	/**
+	 * The initial congestion window in datagrams.
+	 */
+	public static final int INITIAL_WINDOW = 4;
+
+	/**
+	 * The minimum congestion window in datagrams.
+	 */
+	public static final int MINIMUM_WINDOW = 2;
+
+	/**
+	 * The scaling constant of the cubic function.
+	 */
+	public static final double C = 0.4D;
+
+	/**
+	 * The multiplicative decrease factor applied to the congestion window when
+	 * a loss is detected.
+	 */
+	public static final double BETA = 0.7D;
+
+	private int maximumTransferUnit;
+	private double minimumWindow;
+	private double congestionWindow;
+	private double slowStartThreshold;
+	private double lastMaximumWindow;
+	private double maximumWindow;
+	private long epochStart;
+	private double k;
+	private int bytesInFlight;
+	private int highestSequenceNumber;
+	private int recoverySequenceNumber;
+
+	/**
+	 * Creates a CUBIC congestion control.
+	 *
+	 * @param maximumTransferUnit
+	 *            the maximum transfer unit of the peer, which is used as the
+	 *            size of a single datagram.
+	 * @throws IllegalArgumentException
+	 *             if the <code>maximumTransferUnit</code> is less than
+	 *             <code>1</code>.
+	 */
+	public CubicCongestionControl(int maximumTransferUnit) throws IllegalArgumentException {
+		if (maximumTransferUnit < 1) {
+			throw new IllegalArgumentException("Maximum transfer unit must be greater than 0");
+		}
+		this.maximumTransferUnit = maximumTransferUnit;
+		this.minimumWindow = MINIMUM_WINDOW * maximumTransferUnit;
+		this.congestionWindow = INITIAL_WINDOW * maximumTransferUnit;
+		this.slowStartThreshold = Double.MAX_VALUE;
+		this.epochStart = -1L;
+		this.highestSequenceNumber = -1;
+	}
+
+	@Override
+	public int getCongestionWindow() {
+		return (int) Math.min(congestionWindow, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int getBytesInFlight() {
+		return this.bytesInFlight;
+	}
+
+	/**
+	 * Returns the slow start threshold. While the congestion window is below
+	 * this threshold, it grows by the amount of bytes acknowledged.
+	 *
+	 * @return the slow start threshold in bytes, <code>-1</code> if no loss
+	 *         has occurred yet.
+	 */
+	public int getSlowStartThreshold() {
+		return slowStartThreshold == Double.MAX_VALUE ? -1 : (int) slowStartThreshold;
+	}
+
+	/**
+	 * Returns whether or not the congestion window is in slow start.
+	 *
+	 * @return <code>true</code> if the congestion window is in slow start,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isSlowStart() {
+		return congestionWindow < slowStartThreshold;
+	}
+
+	@Override
+	public void onSend(int sequenceNumber, int size, long time) {
+		this.bytesInFlight += size;
+		if (highestSequenceNumber < 0 || SequenceNumber.isNewer(sequenceNumber, highestSequenceNumber)) {
+			this.highestSequenceNumber = sequenceNumber;
+		}
+
+		/*
+		 * Drag the recovery point along once it has fallen far behind. If it
+		 * were left alone, it would appear to be ahead again after enough
+		 * datagrams were sent for the sequence numbers to wrap around, causing
+		 * every loss to be ignored.
+		 */
+		if (SequenceNumber.difference(sequenceNumber, recoverySequenceNumber) > SequenceNumber.MAXIMUM_WINDOW >>> 1) {
+			this.recoverySequenceNumber = SequenceNumber.add(sequenceNumber, -(SequenceNumber.MAXIMUM_WINDOW >>> 1));
+		}
+	}
+
+	@Override
+	public void onAcknowledge(int sequenceNumber, int size, long time) {
+		boolean limited = bytesInFlight * 2 >= congestionWindow;
+		this.release(size);
+		if (limited == false) {
+			return; // Window is not being used, do not grow it
+		} else if (this.isSlowStart()) {
+			this.congestionWindow += size;
+			return;
+		}
+
+		// Start a new epoch if this is the first increase since a reduction
+		if (epochStart < 0) {
+			this.epochStart = time;
+			if (congestionWindow < maximumWindow) {
+				this.k = Math.cbrt((maximumWindow - congestionWindow) / maximumTransferUnit / C);
+			} else {
+				this.k = 0.0D;
+				this.maximumWindow = congestionWindow;
+			}
+		}
+
+		// Move the window towards the cubic curve
+		double t = (time - epochStart) / 1000.0D;
+		double target = maximumWindow + C * (t - k) * (t - k) * (t - k) * maximumTransferUnit;
+		if (target > congestionWindow) {
+			this.congestionWindow += Math.min((target - congestionWindow) * size / congestionWindow, size);
+		} else {
+			this.congestionWindow += (double) maximumTransferUnit * size / (100.0D * congestionWindow);
+		}
+	}
+
+	@Override
+	public void onLoss(int sequenceNumber, int size, long time) {
+		this.release(size);
+		if (this.startRecovery(sequenceNumber)) {
+			this.congestionWindow = Math.max(congestionWindow * BETA, minimumWindow);
+			this.slowStartThreshold = congestionWindow;
+		}
+	}
+
+	@Override
+	public void onTimeout(int sequenceNumber, int size, long time) {
+		this.release(size);
+		if (this.startRecovery(sequenceNumber)) {
+			this.slowStartThreshold = Math.max(congestionWindow * BETA, minimumWindow);
+			this.congestionWindow = minimumWindow;
+		}
+	}
+
+	@Override
+	public void onDiscard(int sequenceNumber, int size, long time) {
+		this.release(size);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The minimum window is moved to {@value #MINIMUM_WINDOW} datagrams of the
+	 * new size, and the congestion window and slow start threshold are raised
+	 * to it if they are below it. If no acknowledgement or loss has grown or
+	 * shrunk the window yet, it is moved to {@value #INITIAL_WINDOW} datagrams
+	 * of the new size. The current epoch of the cubic curve is ended, so the
+	 * curve is recalculated in datagrams of the new size.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the <code>maximumTransferUnit</code> is less than
+	 *             <code>1</code>.
+	 */
+	@Override
+	public void onTransferUnitChanged(int maximumTransferUnit) throws IllegalArgumentException {
+		if (maximumTransferUnit < 1) {
+			throw new IllegalArgumentException("Maximum transfer unit must be greater than 0");
+		}
+		boolean initial = congestionWindow == INITIAL_WINDOW * (double) this.maximumTransferUnit;
+		this.maximumTransferUnit = maximumTransferUnit;
+		this.minimumWindow = MINIMUM_WINDOW * maximumTransferUnit;
+		if (initial == true) {
+			this.congestionWindow = INITIAL_WINDOW * maximumTransferUnit;
+		}
+		this.congestionWindow = Math.max(congestionWindow, minimumWindow);
+		if (slowStartThreshold != Double.MAX_VALUE) {
+			this.slowStartThreshold = Math.max(slowStartThreshold, minimumWindow);
+		}
+		this.epochStart = -1L;
+	}
+
+	/**
+	 * Removes the specified amount of bytes from the bytes in flight.
+	 *
+	 * @param size
+	 *            the amount of bytes.
+	 */
+	private void release(int size) {
+		this.bytesInFlight = Math.max(bytesInFlight - size, 0);
+	}
+
+	/**
+	 * Starts a recovery period for a loss of the datagram with the specified
+	 * sequence number, unless the datagram was sent before the current
+	 * recovery period started.
+	 *
+	 * @param sequenceNumber
+	 *            the sequence number of the lost datagram.
+	 * @return <code>true</code> if a new recovery period was started and the
+	 *         congestion window should be reduced, <code>false</code>
+	 *         otherwise.
+	 */
+	private boolean startRecovery(int sequenceNumber) {
+		if (SequenceNumber.difference(sequenceNumber, recoverySequenceNumber) < 0) {
+			return false; // Already reduced for this loss
+		}
+		this.recoverySequenceNumber = SequenceNumber.next(highestSequenceNumber);
+
+		// Fast convergence, release bandwidth for newer flows
+		if (congestionWindow < lastMaximumWindow) {
+			this.maximumWindow = congestionWindow * (1.0D + BETA) / 2.0D;
+		} else {
+			this.maximumWindow = congestionWindow;
+		}
+		this.lastMaximumWindow = maximumWindow;
+		this.epochStart = -1L;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "CubicCongestionControl [congestionWindow=" + this.getCongestionWindow() + ", slowStartThreshold=" + this.getSlowStartThreshold() + ", bytesInFlight="
+				+ bytesInFlight + "]";
+	}
+
+}
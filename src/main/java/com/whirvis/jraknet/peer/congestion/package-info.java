@@ -0,0 +1,11 @@
+/**
+ * Components used to control how much data a RakNet peer can have in flight
+ * at once.
+ * 
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ * @see com.whirvis.jraknet.peer.congestion.CongestionControl CongestionControl
+ * @see com.whirvis.jraknet.peer.congestion.CubicCongestionControl
+ *      CubicCongestionControl
+ */
+package com.whirvis.jraknet.peer.congestion;
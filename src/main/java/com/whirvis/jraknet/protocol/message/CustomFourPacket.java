@@ -29,6 +29,8 @@
  */
 package com.whirvis.jraknet.protocol.message;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * A <code>CUSTOM_4</code> packet.
  *
@@ -46,4 +48,18 @@ public final class CustomFourPacket extends CustomPacket {
 		super(ID_CUSTOM_4);
 	}
 
+	/**
+	 * Creates a <code>CUSTOM_4</code> packet to be encoded into the specified
+	 * buffer.
+	 * 
+	 * @param buffer
+	 *            the buffer to encode the packet into.
+	 * @throws NullPointerException
+	 *             if the <code>buffer</code> is <code>null</code>.
+	 * @see #encode()
+	 */
+	public CustomFourPacket(ByteBuf buffer) throws NullPointerException {
+		super(ID_CUSTOM_4, buffer);
+	}
+
 }
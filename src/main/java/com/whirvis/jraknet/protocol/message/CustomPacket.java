@@ -35,6 +35,8 @@ import com.whirvis.jraknet.Packet;
 import com.whirvis.jraknet.RakNetPacket;
 import com.whirvis.jraknet.protocol.message.acknowledge.Record;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * A <code>CUSTOM_0</code>, <code>CUSTOM_1</code>, <code>CUSTOM_2</code>,
  * <code>CUSTOM_3</code>, <code>CUSTOM_4</code>, <code>CUSTOM_5</code>,
@@ -112,6 +114,28 @@ public class CustomPacket extends RakNetPacket {
 		}
 	}
 
+	/**
+	 * Creates a custom packet to be encoded into the specified buffer.
+	 * 
+	 * @param type
+	 *            the type of custom packet being in between
+	 *            <code>ID_CUSTOM_0</code> and <code>ID_CUSTOM_F</code>.
+	 * @param buffer
+	 *            the buffer to encode the packet into.
+	 * @throws NullPointerException
+	 *             if the <code>buffer</code> is <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             if the <code>type</code> is not in between code
+	 *             <code>ID_CUSTOM_0</code> and <code>ID_CUSTOM_F</code>.
+	 * @see #encode()
+	 */
+	protected CustomPacket(int type, ByteBuf buffer) throws NullPointerException, IllegalArgumentException {
+		super(type, buffer);
+		if (type < ID_CUSTOM_0 || type > ID_CUSTOM_F) {
+			throw new IllegalArgumentException("Custom packet ID must be in between ID_CUSTOM_0 and ID_CUSTOM_F");
+		}
+	}
+
 	/**
 	 * Creates a <code>CUSTOM</code> packet to be decoded.
 	 * 
@@ -141,7 +165,7 @@ public class CustomPacket extends RakNetPacket {
 
 	@Override
 	public void decode() {
-		this.sequenceId = this.readTriadLE();
+		this.sequenceId = this.readUnsignedTriadLE();
 		ArrayList<EncapsulatedPacket> messages = new ArrayList<EncapsulatedPacket>();
 		ArrayList<EncapsulatedPacket> ackMessages = new ArrayList<EncapsulatedPacket>();
 		while (this.remaining() >= EncapsulatedPacket.MINIMUM_SIZE) {
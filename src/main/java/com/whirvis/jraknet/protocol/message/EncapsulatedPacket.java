@@ -32,11 +32,15 @@ package com.whirvis.jraknet.protocol.message;
 import java.util.Arrays;
 
 import com.whirvis.jraknet.Packet;
-import com.whirvis.jraknet.map.IntMap;
+import com.whirvis.jraknet.peer.DeliveryReceipt;
 import com.whirvis.jraknet.peer.RakNetPeer;
 import com.whirvis.jraknet.protocol.Reliability;
 import com.whirvis.jraknet.protocol.message.acknowledge.Record;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+
 /**
  * An encapsulated packet.
  * <p>
@@ -51,6 +55,11 @@ public final class EncapsulatedPacket implements Cloneable {
 	/**
 	 * Used to easily split and reassemble {@link EncapsulatedPacket
 	 * encapsulated packets}.
+	 * <p>
+	 * When reassembling, the payload of each chunk is kept as is in a slot
+	 * addressed by its split index. Once every chunk has arrived, the payloads
+	 * are joined together into a single {@link CompositeByteBuf} without
+	 * copying any of their data.
 	 * 
 	 * @author Trent "Whirvis" Summerlin
 	 * @since JRakNet v1.0.0
@@ -75,16 +84,41 @@ public final class EncapsulatedPacket implements Cloneable {
 		public static boolean needsSplit(RakNetPeer peer, EncapsulatedPacket encapsulated) throws NullPointerException, IllegalArgumentException {
 			if (peer == null) {
 				throw new NullPointerException("Peer cannot be null");
-			} else if (encapsulated == null) {
+			}
+			return needsSplit(peer.getMaximumTransferUnit(), encapsulated);
+		}
+
+		/**
+		 * Returns whether or not the packet needs to be split.
+		 * 
+		 * @param maximumTransferUnit
+		 *            the maximum transfer unit of the peer the packet is being
+		 *            sent to.
+		 * @param encapsulated
+		 *            the encapsulated packet.
+		 * @return <code>true</code> if the packet needs to be split,
+		 *         <code>false</code> otherwise.
+		 * @throws NullPointerException
+		 *             if the <code>encapsulated</code> is <code>null</code>.
+		 * @throws IllegalArgumentException
+		 *             if the <code>encapsulated</code> is already split.
+		 */
+		public static boolean needsSplit(int maximumTransferUnit, EncapsulatedPacket encapsulated) throws NullPointerException, IllegalArgumentException {
+			if (encapsulated == null) {
 				throw new NullPointerException("Encapsulated packet cannot be null");
 			} else if (encapsulated.split == true) {
 				throw new IllegalArgumentException("Encapsulated packet is already split");
 			}
-			return CustomPacket.MINIMUM_SIZE + encapsulated.size() > peer.getMaximumTransferUnit();
+			return CustomPacket.MINIMUM_SIZE + encapsulated.size() > maximumTransferUnit;
 		}
 
 		/**
 		 * Splits the packet.
+		 * <p>
+		 * The payload of each chunk is a retained, read-only slice of the
+		 * payload of the original packet, so no data is copied. The chunks
+		 * must be {@link EncapsulatedPacket#release() released} once they are
+		 * no longer needed.
 		 * 
 		 * @param peer
 		 *            the peer.
@@ -101,45 +135,67 @@ public final class EncapsulatedPacket implements Cloneable {
 		 *             {@link #needsSplit(RakNetPeer, EncapsulatedPacket)}.
 		 */
 		public static EncapsulatedPacket[] split(RakNetPeer peer, EncapsulatedPacket encapsulated) throws NullPointerException, IllegalArgumentException {
+			if (peer == null) {
+				throw new NullPointerException("Peer cannot be null");
+			}
+			return split(peer, encapsulated, peer.getMaximumTransferUnit());
+		}
+
+		/**
+		 * Splits the packet using the specified maximum transfer unit rather
+		 * than the current one of the peer.
+		 * <p>
+		 * The maximum transfer unit of a peer can change while it is
+		 * connected, so this should be used when the same value must be used
+		 * to decide whether or not to split the packet.
+		 * 
+		 * @param peer
+		 *            the peer.
+		 * @param encapsulated
+		 *            the packet to split.
+		 * @param maximumTransferUnit
+		 *            the maximum transfer unit.
+		 * @return the split up encapsulated packet.
+		 * 
+		 * @throws NullPointerException
+		 *             if the <code>peer</code> or <code>encapsulated</code> is
+		 *             <code>null</code>.
+		 * @throws IllegalArgumentException
+		 *             if the <code>encapsulated</code> is already split or if
+		 *             the packet is too small to be split according to
+		 *             {@link #needsSplit(int, EncapsulatedPacket)}.
+		 */
+		public static EncapsulatedPacket[] split(RakNetPeer peer, EncapsulatedPacket encapsulated, int maximumTransferUnit)
+				throws NullPointerException, IllegalArgumentException {
 			if (peer == null) {
 				throw new NullPointerException("Peer cannot be null");
 			} else if (encapsulated == null) {
 				throw new NullPointerException("Encapsulated packet cannot be null");
 			} else if (encapsulated.split == true) {
-				throw new NullPointerException("Encapsulated packet is already split");
-			} else if (!needsSplit(peer, encapsulated)) {
+				throw new IllegalArgumentException("Encapsulated packet is already split");
+			} else if (!needsSplit(maximumTransferUnit, encapsulated)) {
 				throw new IllegalArgumentException("Encapsulated packet is too small to be split");
 			}
 
-			// Split packet payload
-			int size = peer.getMaximumTransferUnit() - CustomPacket.MINIMUM_SIZE - EncapsulatedPacket.size(encapsulated.reliability, true);
-			byte[] src = encapsulated.payload.array();
-			int payloadIndex = 0;
-			int splitIndex = 0;
-			byte[][] split = new byte[(int) Math.ceil((float) src.length / (float) size)][size];
-			while (payloadIndex < src.length) {
-				if (payloadIndex + size <= src.length) {
-					split[splitIndex++] = Arrays.copyOfRange(src, payloadIndex, payloadIndex + size);
-					payloadIndex += size;
-				} else {
-					split[splitIndex++] = Arrays.copyOfRange(src, payloadIndex, src.length);
-					payloadIndex = src.length;
-				}
-			}
-
 			// Generate split encapsulated packets
-			EncapsulatedPacket[] splitPackets = new EncapsulatedPacket[split.length];
-			for (int i = 0; i < split.length; i++) {
+			int size = maximumTransferUnit - CustomPacket.MINIMUM_SIZE - EncapsulatedPacket.size(encapsulated.reliability, true);
+			ByteBuf src = encapsulated.payload.buffer();
+			int length = encapsulated.payload.size();
+			EncapsulatedPacket[] splitPackets = new EncapsulatedPacket[(length + size - 1) / size];
+			for (int i = 0; i < splitPackets.length; i++) {
+				int index = i * size;
 				EncapsulatedPacket encapsulatedSplit = new EncapsulatedPacket();
 				encapsulatedSplit.reliability = encapsulated.reliability;
-				encapsulatedSplit.payload = new Packet(split[i]);
+				encapsulatedSplit.receipt = encapsulated.receipt;
+				encapsulatedSplit.payload = new Packet(src.retainedSlice(index, Math.min(size, length - index)).asReadOnly());
+				encapsulatedSplit.retained = true;
 				encapsulatedSplit.messageIndex = encapsulated.reliability.isReliable() ? peer.bumpMessageIndex() : 0;
 				if (encapsulated.reliability.isOrdered() || encapsulated.reliability.isSequenced()) {
 					encapsulatedSplit.orderChannel = encapsulated.orderChannel;
 					encapsulatedSplit.orderIndex = encapsulated.orderIndex;
 				}
 				encapsulatedSplit.split = true;
-				encapsulatedSplit.splitCount = split.length;
+				encapsulatedSplit.splitCount = splitPackets.length;
 				encapsulatedSplit.splitId = encapsulated.splitId;
 				encapsulatedSplit.splitIndex = i;
 				splitPackets[i] = encapsulatedSplit;
@@ -150,7 +206,10 @@ public final class EncapsulatedPacket implements Cloneable {
 		private final int splitId;
 		private final int splitCount;
 		private final Reliability reliability;
-		private final IntMap<Packet> payloads;
+		private final ByteBuf[] payloads;
+		private int received;
+		private long receivedBytes;
+		private long lastUpdateTime;
 
 		/**
 		 * Creates a split packet container.
@@ -163,23 +222,23 @@ public final class EncapsulatedPacket implements Cloneable {
 		 *            the reliability.
 		 * @throws IllegalArgumentException
 		 *             if the <code>splitId</code> is negative or if the
-		 *             <code>splitCount</code> is greater than
-		 *             {@value RakNetPeer#MAX_SPLIT_COUNT}.
+		 *             <code>splitCount</code> is less than <code>1</code>.
 		 * @throws NullPointerException
 		 *             if the <code>reliability</code> is <code>null</code>.
 		 */
 		public Split(int splitId, int splitCount, Reliability reliability) {
 			if (splitId < 0) {
 				throw new IllegalArgumentException("Split ID cannot be negative");
-			} else if (splitCount > RakNetPeer.MAX_SPLIT_COUNT) {
-				throw new IllegalArgumentException("Split count can be no greater than " + RakNetPeer.MAX_SPLIT_COUNT);
+			} else if (splitCount < 1) {
+				throw new IllegalArgumentException("Split count must be greater than 0");
 			} else if (reliability == null) {
 				throw new NullPointerException("Reliability cannot be null");
 			}
 			this.splitId = splitId;
 			this.splitCount = splitCount;
 			this.reliability = reliability;
-			this.payloads = new IntMap<Packet>();
+			this.payloads = new ByteBuf[splitCount];
+			this.lastUpdateTime = System.currentTimeMillis();
 		}
 
 		/**
@@ -191,9 +250,46 @@ public final class EncapsulatedPacket implements Cloneable {
 			return this.reliability;
 		}
 
+		/**
+		 * Returns the amount of chunks that have been received so far.
+		 * 
+		 * @return the amount of chunks that have been received so far.
+		 */
+		public int getReceived() {
+			return this.received;
+		}
+
+		/**
+		 * Returns the total size of the payloads of the chunks that have been
+		 * received so far.
+		 * 
+		 * @return the total size of the payloads of the chunks that have been
+		 *         received so far in bytes.
+		 */
+		public long getReceivedBytes() {
+			return this.receivedBytes;
+		}
+
+		/**
+		 * Returns the last time a chunk was received.
+		 * 
+		 * @return the last time a chunk was received, or the time the split
+		 *         packet was created if none have been received yet.
+		 */
+		public long getLastUpdateTime() {
+			return this.lastUpdateTime;
+		}
+
 		/**
 		 * Updates the data for the split packet while also verifying that the
 		 * <code>EncapsulatedPacket</code> belongs to this split packet.
+		 * <p>
+		 * The split packet takes ownership of the payload of the chunk. If
+		 * the payload is {@link EncapsulatedPacket#isRetained() retained}, it
+		 * is taken over as is. Otherwise, its reference count is increased so
+		 * the caller can keep using it. The payload of the returned packet is
+		 * retained, and must be {@link EncapsulatedPacket#release() released}
+		 * once it is no longer needed.
 		 * 
 		 * @param encapsulated
 		 *            the encapsulated packet chunk.
@@ -219,17 +315,25 @@ public final class EncapsulatedPacket implements Cloneable {
 				throw new IllegalArgumentException("This split packet does not belong to this one");
 			} else if (encapsulated.splitIndex < 0 || encapsulated.splitIndex >= encapsulated.splitCount) {
 				throw new IllegalArgumentException("Encapsulated packet split index out of range");
-			} else if (payloads.containsKey(encapsulated.splitIndex)) {
+			} else if (payloads[encapsulated.splitIndex] != null) {
 				throw new IllegalArgumentException("Encapsulated packet with split index has already been registered");
 			}
-			payloads.put(encapsulated.splitIndex, encapsulated.payload);
-			if (payloads.size() >= splitCount) {
-				// Stitch payload
-				Packet payload = new Packet();
-				for (int i = 0; i < payloads.size(); i++) {
-					payload.write(payloads.get(i).array());
-				}
-				payloads.clear();
+			ByteBuf fragment = encapsulated.payload.buffer();
+			if (encapsulated.retained == true) {
+				encapsulated.retained = false; // Now owned by the split packet
+			} else {
+				fragment.retain();
+			}
+			payloads[encapsulated.splitIndex] = fragment;
+			this.receivedBytes += fragment.readableBytes();
+			this.lastUpdateTime = System.currentTimeMillis();
+			if (++this.received >= splitCount) {
+				// Stitch payload without copying
+				CompositeByteBuf payload = Unpooled.compositeBuffer(splitCount);
+				payload.addComponents(true, payloads);
+				Arrays.fill(payloads, null);
+				this.received = 0;
+				this.receivedBytes = 0;
 
 				// Create stitched encapsulated packet
 				EncapsulatedPacket stitched = new EncapsulatedPacket();
@@ -242,15 +346,32 @@ public final class EncapsulatedPacket implements Cloneable {
 				stitched.splitCount = encapsulated.splitCount;
 				stitched.splitId = encapsulated.splitId;
 				stitched.splitIndex = -1; // No longer split
-				stitched.payload = payload;
+				stitched.payload = new Packet(payload);
+				stitched.retained = true;
 				return stitched;
 			}
 			return null;
 		}
 
+		/**
+		 * Releases the payloads of the chunks that have been received so far.
+		 * This must be called if the split packet is discarded before all of
+		 * its chunks have arrived.
+		 */
+		public void release() {
+			for (int i = 0; i < payloads.length; i++) {
+				if (payloads[i] != null) {
+					payloads[i].release();
+					payloads[i] = null;
+				}
+			}
+			this.received = 0;
+			this.receivedBytes = 0;
+		}
+
 		@Override
 		public String toString() {
-			return "Split [splitId=" + splitId + ", splitCount=" + splitCount + ", reliability=" + reliability + "]";
+			return "Split [splitId=" + splitId + ", splitCount=" + splitCount + ", reliability=" + reliability + ", received=" + received + ", receivedBytes=" + receivedBytes + "]";
 		}
 
 	}
@@ -303,6 +424,7 @@ public final class EncapsulatedPacket implements Cloneable {
 
 	private boolean isClone;
 	private EncapsulatedPacket clone;
+	private boolean retained;
 
 	/**
 	 * The acknowledgement record. This is only used if the reliability is of
@@ -324,6 +446,17 @@ public final class EncapsulatedPacket implements Cloneable {
 	 */
 	public Record ackRecord;
 
+	/**
+	 * The delivery receipt. This is only used if the packet was sent through
+	 * one of the <code>sendMessageWithReceipt()</code> methods, in which case
+	 * it is shared by every split packet the original packet was broken up
+	 * into.
+	 * <p>
+	 * Like the <code>ackRecord</code>, this is <i>not</i> used for packet
+	 * encoding.
+	 */
+	public DeliveryReceipt receipt;
+
 	/**
 	 * The packet reliability.
 	 */
@@ -466,11 +599,17 @@ public final class EncapsulatedPacket implements Cloneable {
 			buffer.writeUnsignedShort(splitId);
 			buffer.writeInt(splitIndex);
 		}
-		buffer.write(payload.array());
+		buffer.buffer().writeBytes(payload.buffer(), 0, payload.size());
 	}
 
 	/**
 	 * Decodes the packet.
+	 * <p>
+	 * If the packet is split, the payload is a retained slice of the
+	 * <code>buffer</code> rather than a copy of it. This allows for the chunks
+	 * to be stitched back together without copying their data, but it also
+	 * means the payload must be {@link #release() released} once it is no
+	 * longer needed.
 	 * 
 	 * @param buffer
 	 *            the buffer to read from.
@@ -491,10 +630,10 @@ public final class EncapsulatedPacket implements Cloneable {
 		this.split = (flags & FLAG_SPLIT) > 0;
 		int length = buffer.readUnsignedShort() / Byte.SIZE;
 		if (reliability.isReliable()) {
-			this.messageIndex = buffer.readTriadLE();
+			this.messageIndex = buffer.readUnsignedTriadLE();
 		}
 		if (reliability.isOrdered() || reliability.isSequenced()) {
-			this.orderIndex = buffer.readTriadLE();
+			this.orderIndex = buffer.readUnsignedTriadLE();
 			this.orderChannel = buffer.readByte();
 		}
 		if (split == true) {
@@ -502,7 +641,41 @@ public final class EncapsulatedPacket implements Cloneable {
 			this.splitId = buffer.readUnsignedShort();
 			this.splitIndex = buffer.readInt();
 		}
-		this.payload = new Packet(buffer.read(length));
+		if (split == true) {
+			this.payload = new Packet(buffer.buffer().readRetainedSlice(length));
+			this.retained = true;
+		} else {
+			this.payload = new Packet(buffer.read(length));
+		}
+	}
+
+	/**
+	 * Returns whether or not the payload is retained, meaning it references a
+	 * pooled buffer that must be {@link #release() released} once the packet
+	 * is no longer needed.
+	 * 
+	 * @return <code>true</code> if the payload is retained, <code>false</code>
+	 *         otherwise.
+	 */
+	public boolean isRetained() {
+		return this.retained;
+	}
+
+	/**
+	 * Releases the payload if it is {@link #isRetained() retained}. Calling
+	 * this method more than once, or on a packet whose payload is not
+	 * retained, has no effect.
+	 * 
+	 * @return <code>true</code> if the payload was released,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean release() {
+		if (retained == false) {
+			return false;
+		}
+		this.retained = false;
+		payload.release();
+		return true;
 	}
 
 	/**
@@ -593,6 +766,7 @@ public final class EncapsulatedPacket implements Cloneable {
 		}
 		this.clone = (EncapsulatedPacket) super.clone();
 		clone.isClone = true;
+		clone.retained = false; // Only the original can release the payload
 		return this.clone;
 	}
 
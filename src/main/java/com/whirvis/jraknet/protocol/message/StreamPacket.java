@@ -0,0 +1,172 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet.protocol.message;
+
+import java.nio.ByteBuffer;
+
+import com.whirvis.jraknet.Packet;
+import com.whirvis.jraknet.RakNetPacket;
+
+/**
+ * A <code>STREAM</code> packet.
+ * <p>
+ * This packet is used to send a stream of data between two JRakNet peers in
+ * chunks, rather than as a single message. Every chunk of a stream is sent on
+ * the same ordered channel, so they arrive in the order they were sent.
+ * <p>
+ * Vanilla RakNet has no such packet. Its ID is that of the otherwise unused
+ * {@link RakNetPacket#ID_RESERVED_4 RESERVED_4} packet, and it is only ever
+ * sent to and handled from peers using the
+ * {@link com.whirvis.jraknet.protocol.ConnectionType#JRAKNET JRAKNET}
+ * connection type.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class StreamPacket extends RakNetPacket {
+
+	/**
+	 * The ID of the <code>STREAM</code> packet.
+	 */
+	public static final short ID_STREAM = RakNetPacket.ID_RESERVED_4;
+
+	/**
+	 * Sent by the sender to open a stream.
+	 */
+	public static final int TYPE_OPEN = 0x00;
+
+	/**
+	 * Sent by the sender with the next chunk of a stream.
+	 */
+	public static final int TYPE_DATA = 0x01;
+
+	/**
+	 * Sent by the sender once all of the data of a stream has been sent.
+	 */
+	public static final int TYPE_END = 0x02;
+
+	/**
+	 * Sent by the sender when it gives up on a stream.
+	 */
+	public static final int TYPE_ABORT = 0x03;
+
+	/**
+	 * Sent by the receiver when it does not want, or can no longer handle, the
+	 * rest of a stream.
+	 */
+	public static final int TYPE_CANCEL = 0x04;
+
+	/**
+	 * The size of the header that comes before the data of a
+	 * {@link #TYPE_DATA} packet.
+	 */
+	public static final int DATA_HEADER_SIZE = 4;
+
+	/**
+	 * The ID of the stream.
+	 */
+	public int streamId;
+
+	/**
+	 * The type of the packet.
+	 */
+	public int type;
+
+	/**
+	 * The length of the stream in bytes, or <code>-1</code> if it is unknown.
+	 * <p>
+	 * This is only used for {@link #TYPE_OPEN} packets.
+	 */
+	public long length;
+
+	/**
+	 * The data of the chunk.
+	 * <p>
+	 * This is only used for {@link #TYPE_DATA} packets. When decoded, this is
+	 * a read-only view of the packet buffer.
+	 */
+	public ByteBuffer data;
+
+	/**
+	 * The reason the stream was aborted or cancelled.
+	 * <p>
+	 * This is only used for {@link #TYPE_ABORT} and {@link #TYPE_CANCEL}
+	 * packets.
+	 */
+	public String reason;
+
+	/**
+	 * Creates a <code>STREAM</code> packet to be encoded.
+	 *
+	 * @see #encode()
+	 */
+	public StreamPacket() {
+		super(ID_STREAM);
+	}
+
+	/**
+	 * Creates a <code>STREAM</code> packet to be decoded.
+	 *
+	 * @param packet
+	 *            the original packet whose data will be read from in the
+	 *            {@link #decode()} method.
+	 */
+	public StreamPacket(Packet packet) {
+		super(packet);
+	}
+
+	@Override
+	public void encode() {
+		this.writeUnsignedShort(streamId);
+		this.writeUnsignedByte(type);
+		if (type == TYPE_OPEN) {
+			this.writeLong(length);
+		} else if (type == TYPE_DATA) {
+			this.buffer().writeBytes(data.duplicate());
+		} else if (type == TYPE_ABORT || type == TYPE_CANCEL) {
+			this.writeString(reason != null ? reason : "");
+		}
+	}
+
+	@Override
+	public void decode() {
+		this.streamId = this.readUnsignedShort();
+		this.type = this.readUnsignedByte();
+		if (type == TYPE_OPEN) {
+			this.length = this.readLong();
+		} else if (type == TYPE_DATA) {
+			this.data = this.buffer().nioBuffer(this.buffer().readerIndex(), this.remaining()).asReadOnlyBuffer();
+			this.skip(this.remaining());
+		} else if (type == TYPE_ABORT || type == TYPE_CANCEL) {
+			this.reason = this.readString();
+		}
+	}
+
+}
@@ -29,8 +29,6 @@
  */
 package com.whirvis.jraknet.protocol.message.acknowledge;
 
-import java.util.ArrayList;
-
 import com.whirvis.jraknet.Packet;
 import com.whirvis.jraknet.RakNetPacket;
 
@@ -57,6 +55,18 @@ public class AcknowledgedPacket extends RakNetPacket {
 	 */
 	public static final int UNRANGED = 0x01;
 
+	/**
+	 * The size of an <code>ACK</code> packet with no records in
+	 * <code>byte</code>s.
+	 */
+	public static final int MINIMUM_SIZE = 3;
+
+	/**
+	 * The maximum size of a single encoded record in <code>byte</code>s, which
+	 * is the size of a ranged record.
+	 */
+	public static final int MAXIMUM_RECORD_SIZE = 7;
+
 	/**
 	 * The records containing the sequence IDs.
 	 */
@@ -130,24 +140,24 @@ public class AcknowledgedPacket extends RakNetPacket {
 	/**
 	 * {@inheritDoc}
 	 * <p>
-	 * After decoding is finished, all records will be expanded. This means that
-	 * all ranged records will be converted to single records, making it easier
-	 * to cycle through them. The <code>records</code> field will be updated
-	 * with these expanded records.
+	 * The records are left as they were sent, meaning that ranged records are
+	 * <i>not</i> expanded into single records. This allows for a ranged record
+	 * to be handled in a single pass, rather than one sequence ID at a time.
+	 * Use {@link Record#getSequenceIds(Record...)} to expand them if needed.
 	 */
 	@Override
 	public void decode() {
-		ArrayList<Record> records = new ArrayList<Record>();
 		int size = this.readUnsignedShort();
+		Record[] records = new Record[size];
 		for (int i = 0; i < size; i++) {
 			boolean ranged = this.readUnsignedByte() == RANGED;
 			if (ranged == false) {
-				records.add(new Record(this.readTriadLE()));
+				records[i] = new Record(this.readUnsignedTriadLE());
 			} else {
-				records.add(new Record(this.readTriadLE(), this.readTriadLE()));
+				records[i] = new Record(this.readUnsignedTriadLE(), this.readUnsignedTriadLE());
 			}
 		}
-		this.records = Record.simplify(records);
+		this.records = records;
 	}
 
 }
@@ -56,26 +56,32 @@ public final class Record {
 	 * 
 	 * @param records
 	 *            the records to get the sequence IDs from.
-	 * @return the sequence IDs contained within the specified records.
+	 * @return the sequence IDs contained within the specified records, sorted
+	 *         in ascending order with no duplicates.
 	 */
 	public static int[] getSequenceIds(Record... records) {
 		// Get sequence IDs from records
-		ArrayList<Integer> sequenceIdsList = new ArrayList<Integer>();
+		int count = 0;
 		for (Record record : records) {
-			for (int recordId : record.getSequenceIds()) {
-				if (!sequenceIdsList.contains(recordId)) {
-					sequenceIdsList.add(recordId);
-				}
-			}
+			count += record.getSequenceIds().length;
+		}
+		int[] sequenceIds = new int[count];
+		int offset = 0;
+		for (Record record : records) {
+			int[] recordIds = record.getSequenceIds();
+			System.arraycopy(recordIds, 0, sequenceIds, offset, recordIds.length);
+			offset += recordIds.length;
 		}
 
-		// Convert boxed values to sorted native array
-		int[] sequenceIds = new int[sequenceIdsList.size()];
+		// Sort and remove duplicates
+		Arrays.sort(sequenceIds);
+		int unique = 0;
 		for (int i = 0; i < sequenceIds.length; i++) {
-			sequenceIds[i] = sequenceIdsList.get(i);
+			if (unique == 0 || sequenceIds[i] != sequenceIds[unique - 1]) {
+				sequenceIds[unique++] = sequenceIds[i];
+			}
 		}
-		Arrays.sort(sequenceIds);
-		return sequenceIds;
+		return unique == sequenceIds.length ? sequenceIds : Arrays.copyOf(sequenceIds, unique);
 	}
 
 	/**
@@ -144,26 +150,22 @@ public final class Record {
 	 */
 	public static Record[] condense(Record... records) {
 		/*
-		 * Get sequence IDs and sort them in ascending order. This is crucial in
-		 * order for condensing to occur.
+		 * Sort the records by their starting index in ascending order. This is
+		 * crucial in order for condensing to occur. Ranged records are merged
+		 * as they are, rather than being expanded into their sequence IDs.
 		 */
-		int[] sequenceIds = Record.getSequenceIds(records);
-		Arrays.sort(sequenceIds);
+		Record[] sorted = records.clone();
+		Arrays.sort(sorted, (r1, r2) -> Integer.compare(r1.getIndex(), r2.getIndex()));
 
 		// Condense records
 		ArrayList<Record> condensed = new ArrayList<Record>();
-		for (int i = 0; i < sequenceIds.length; i++) {
-			int startIndex = sequenceIds[i];
-			int endIndex = startIndex;
-			if (i + 1 < sequenceIds.length) {
-				while (endIndex + 1 == sequenceIds[i + 1]) {
-					endIndex = sequenceIds[++i]; // This value is sequential
-					if (i + 1 >= sequenceIds.length) {
-						break;
-					}
-				}
+		for (int i = 0; i < sorted.length; i++) {
+			int startIndex = sorted[i].getIndex();
+			int endIndex = sorted[i].getLastIndex();
+			while (i + 1 < sorted.length && sorted[i + 1].getIndex() <= endIndex + 1) {
+				endIndex = Math.max(endIndex, sorted[++i].getLastIndex());
 			}
-			condensed.add(new Record(startIndex, endIndex == startIndex ? -1 : endIndex));
+			condensed.add(new Record(startIndex, endIndex == startIndex ? NOT_RANGED : endIndex));
 		}
 		return condensed.toArray(new Record[condensed.size()]);
 	}
@@ -189,11 +191,18 @@ public final class Record {
 	 * @return the condensed records.
 	 */
 	public static Record[] condense(int... sequenceIds) {
-		Record[] records = new Record[sequenceIds.length];
-		for (int i = 0; i < records.length; i++) {
-			records[i] = new Record(sequenceIds[i]);
+		int[] sorted = sequenceIds.clone();
+		Arrays.sort(sorted);
+		ArrayList<Record> condensed = new ArrayList<Record>();
+		for (int i = 0; i < sorted.length; i++) {
+			int startIndex = sorted[i];
+			int endIndex = startIndex;
+			while (i + 1 < sorted.length && sorted[i + 1] <= endIndex + 1) {
+				endIndex = sorted[++i];
+			}
+			condensed.add(new Record(startIndex, endIndex == startIndex ? NOT_RANGED : endIndex));
 		}
-		return condense(records);
+		return condensed.toArray(new Record[condensed.size()]);
 	}
 
 	private int index;
@@ -234,8 +243,19 @@ public final class Record {
 
 	/**
 	 * Updates the sequence IDs within the record.
+	 * <p>
+	 * The sequence IDs are only generated once they are requested through
+	 * {@link #getSequenceIds()}, as a ranged record can span a large amount of
+	 * sequence IDs that are never needed individually.
 	 */
 	private void updateSequenceIds() {
+		this.sequenceIds = null;
+	}
+
+	/**
+	 * Generates the sequence IDs within the record.
+	 */
+	private void generateSequenceIds() {
 		if (!this.isRanged()) {
 			this.sequenceIds = new int[] { this.getIndex() };
 		} else {
@@ -299,6 +319,16 @@ public final class Record {
 		this.updateSequenceIds();
 	}
 
+	/**
+	 * Returns the last sequence ID contained within the record.
+	 * 
+	 * @return the ending index of the record if it is ranged, the starting
+	 *         index otherwise.
+	 */
+	public int getLastIndex() {
+		return this.isRanged() ? Math.max(index, endIndex) : index;
+	}
+
 	/**
 	 * Returns whether or not the record is ranged.
 	 * 
@@ -334,6 +364,9 @@ public final class Record {
 	 * @see #getSequenceId()
 	 */
 	public int[] getSequenceIds() {
+		if (sequenceIds == null) {
+			this.generateSequenceIds();
+		}
 		return this.sequenceIds;
 	}
 
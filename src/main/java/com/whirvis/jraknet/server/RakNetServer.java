@@ -33,7 +33,6 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -44,6 +43,7 @@ import java.util.function.Consumer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.whirvis.jraknet.EventDispatcher;
 import com.whirvis.jraknet.InvalidChannelException;
 import com.whirvis.jraknet.Packet;
 import com.whirvis.jraknet.RakNet;
@@ -52,7 +52,14 @@ import com.whirvis.jraknet.RakNetPacket;
 import com.whirvis.jraknet.ThreadedListener;
 import com.whirvis.jraknet.client.RakNetClient;
 import com.whirvis.jraknet.identifier.Identifier;
+import com.whirvis.jraknet.peer.EgressBudget;
+import com.whirvis.jraknet.peer.PeerSchedulerGroup;
 import com.whirvis.jraknet.peer.RakNetClientPeer;
+import com.whirvis.jraknet.peer.RakNetPeer;
+import com.whirvis.jraknet.peer.PayloadCompressor;
+import com.whirvis.jraknet.peer.ReassemblyBudget;
+import com.whirvis.jraknet.peer.StreamSinkFactory;
+import com.whirvis.jraknet.protocol.ConnectionType;
 import com.whirvis.jraknet.protocol.Reliability;
 import com.whirvis.jraknet.protocol.connection.ConnectionBanned;
 import com.whirvis.jraknet.protocol.connection.IncompatibleProtocolVersion;
@@ -67,6 +74,7 @@ import com.whirvis.jraknet.protocol.status.UnconnectedPong;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.FixedRecvByteBufAllocator;
@@ -107,7 +115,7 @@ public class RakNetServer implements RakNetServerListener {
 	private int maxConnections;
 	private boolean broadcastingEnabled;
 	private Identifier identifier;
-	private int eventThreadCount;
+	private final EventDispatcher eventDispatcher;
 	private final ConcurrentLinkedQueue<RakNetServerListener> listeners;
 	private final ConcurrentHashMap<InetSocketAddress, RakNetClientPeer> clients;
 	private final ConcurrentLinkedQueue<InetAddress> banned;
@@ -116,7 +124,18 @@ public class RakNetServer implements RakNetServerListener {
 	private RakNetServerHandler handler;
 	private Channel channel;
 	private InetSocketAddress bindAddress;
-	private Thread peerThread;
+	private int workerThreadCount;
+	private volatile boolean corked;
+	private volatile long coalescingDelay;
+	private volatile int immediateChannels;
+	private volatile long clientBandwidthLimit;
+	private volatile EgressBudget egressBudget;
+	private final ReassemblyBudget reassemblyBudget;
+	private volatile boolean transferUnitProbing;
+	private volatile boolean pooledMessages;
+	private volatile PayloadCompressor compressor;
+	private volatile StreamSinkFactory streamSinkFactory;
+	private volatile PeerSchedulerGroup<RakNetClientPeer> scheduler;
 	private volatile boolean running;
 
 	/**
@@ -174,7 +193,11 @@ public class RakNetServer implements RakNetServerListener {
 		this.maximumTransferUnit = maximumTransferUnit == AUTOMATIC_MTU ? RakNet.getMaximumTransferUnit(address) : maximumTransferUnit;
 		this.broadcastingEnabled = true;
 		this.identifier = identifier;
+		this.workerThreadCount = PeerSchedulerGroup.DEFAULT_THREAD_COUNT;
+		this.clientBandwidthLimit = RakNetPeer.UNLIMITED_BANDWIDTH;
+		this.reassemblyBudget = new ReassemblyBudget(ReassemblyBudget.DEFAULT_LIMIT);
 		this.listeners = new ConcurrentLinkedQueue<RakNetServerListener>();
+		this.eventDispatcher = new EventDispatcher(RakNetServer.class.getSimpleName());
 		this.clients = new ConcurrentHashMap<InetSocketAddress, RakNetClientPeer>();
 		this.banned = new ConcurrentLinkedQueue<InetAddress>();
 		if (this.getClass() != RakNetServer.class && RakNetServerListener.class.isAssignableFrom(this.getClass())) {
@@ -771,6 +794,39 @@ public class RakNetServer implements RakNetServerListener {
 		}
 	}
 
+	/**
+	 * Returns the amount of worker threads used to process clients.
+	 * 
+	 * @return the amount of worker threads used to process clients.
+	 */
+	public final int getWorkerThreadCount() {
+		return this.workerThreadCount;
+	}
+
+	/**
+	 * Sets the amount of worker threads used to process clients.
+	 * <p>
+	 * Each client is pinned to a single worker thread based on its address,
+	 * which handles all of the packets it sends and all of its updates. This
+	 * only takes effect the next time the server is started.
+	 * 
+	 * @param workerThreadCount
+	 *            the amount of worker threads.
+	 * @throws IllegalArgumentException
+	 *             if the <code>workerThreadCount</code> is less than
+	 *             <code>1</code>.
+	 */
+	public final void setWorkerThreadCount(int workerThreadCount) throws IllegalArgumentException {
+		if (workerThreadCount < 1) {
+			throw new IllegalArgumentException("Worker thread count must be greater than 0");
+		}
+		boolean updated = this.workerThreadCount != workerThreadCount;
+		this.workerThreadCount = workerThreadCount;
+		if (updated == true) {
+			logger.info("Set worker thread count to " + workerThreadCount);
+		}
+	}
+
 	/**
 	 * Enables/disables server broadcasting.
 	 * 
@@ -796,6 +852,435 @@ public class RakNetServer implements RakNetServerListener {
 		return this.broadcastingEnabled;
 	}
 
+	/**
+	 * Returns whether or not the server is corked.
+	 * 
+	 * @return <code>true</code> if the server is corked, <code>false</code>
+	 *         otherwise.
+	 * @see #cork()
+	 */
+	public final boolean isCorked() {
+		return this.corked;
+	}
+
+	/**
+	 * Corks every client connected to the server, as well as every client that
+	 * connects until the server is uncorked.
+	 * <p>
+	 * While a client is corked, messages sent to it are only added to its send
+	 * queue. They will not be packed into datagrams and sent until either
+	 * {@link #flush()} or {@link #uncork()} are called. This allows for a
+	 * server that runs on ticks to send all of the messages for a client in a
+	 * single burst at the end of each tick.
+	 * 
+	 * @see RakNetClientPeer#cork()
+	 */
+	public final void cork() {
+		this.corked = true;
+		for (RakNetClientPeer peer : clients.values()) {
+			peer.cork();
+		}
+	}
+
+	/**
+	 * Uncorks every client connected to the server and flushes the messages
+	 * that were held back while they were corked.
+	 * 
+	 * @see RakNetClientPeer#uncork()
+	 */
+	public final void uncork() {
+		this.corked = false;
+		for (RakNetClientPeer peer : clients.values()) {
+			peer.uncork();
+		}
+	}
+
+	/**
+	 * Flushes the messages waiting to be sent to every client connected to
+	 * the server.
+	 * 
+	 * @see RakNetClientPeer#flush()
+	 */
+	public final void flush() {
+		for (RakNetClientPeer peer : clients.values()) {
+			peer.flush();
+		}
+	}
+
+	/**
+	 * Returns the amount of time in milliseconds messages can wait in the send
+	 * queue of a client for more messages to fill up a datagram.
+	 * 
+	 * @return the coalescing delay.
+	 */
+	public final long getCoalescingDelay() {
+		return this.coalescingDelay;
+	}
+
+	/**
+	 * Sets the amount of time in milliseconds messages can wait in the send
+	 * queue of a client for more messages to fill up a datagram. This applies
+	 * to every client connected to the server, as well as every client that
+	 * connects afterwards.
+	 * 
+	 * @param coalescingDelay
+	 *            the coalescing delay. A delay of <code>0</code> will have
+	 *            messages be sent on the next update.
+	 * @throws IllegalArgumentException
+	 *             if the <code>coalescingDelay</code> is negative.
+	 * @see RakNetClientPeer#setCoalescingDelay(long)
+	 */
+	public final void setCoalescingDelay(long coalescingDelay) throws IllegalArgumentException {
+		if (coalescingDelay < 0) {
+			throw new IllegalArgumentException("Coalescing delay cannot be negative");
+		}
+		boolean updated = this.coalescingDelay != coalescingDelay;
+		this.coalescingDelay = coalescingDelay;
+		for (RakNetClientPeer peer : clients.values()) {
+			peer.setCoalescingDelay(coalescingDelay);
+		}
+		if (updated == true) {
+			logger.info("Set coalescing delay to " + coalescingDelay + "ms");
+		}
+	}
+
+	/**
+	 * Returns whether or not messages sent on the specified channel are sent
+	 * immediately.
+	 * 
+	 * @param channel
+	 *            the channel.
+	 * @return <code>true</code> if messages sent on the <code>channel</code>
+	 *         are sent immediately, <code>false</code> otherwise.
+	 * @throws InvalidChannelException
+	 *             if the <code>channel</code> is greater than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 * @see RakNetClientPeer#isImmediateChannel(int)
+	 */
+	public final boolean isImmediateChannel(int channel) throws InvalidChannelException {
+		if (channel < 0 || channel >= RakNet.CHANNEL_COUNT) {
+			throw new InvalidChannelException(channel);
+		}
+		return (immediateChannels & (1 << channel)) != 0;
+	}
+
+	/**
+	 * Enables or disables immediate sending for messages sent to clients on
+	 * the specified channel. This applies
+	 * to every client connected to the server, as well as every client that
+	 * connects afterwards.
+	 * 
+	 * @param channel
+	 *            the channel.
+	 * @param immediate
+	 *            <code>true</code> if messages sent on the
+	 *            <code>channel</code> should be sent immediately,
+	 *            <code>false</code> otherwise.
+	 * @throws InvalidChannelException
+	 *             if the <code>channel</code> is greater than or equal to
+	 *             {@value RakNet#CHANNEL_COUNT}.
+	 * @see RakNetClientPeer#setImmediateChannel(int, boolean)
+	 */
+	public final synchronized void setImmediateChannel(int channel, boolean immediate) throws InvalidChannelException {
+		if (channel < 0 || channel >= RakNet.CHANNEL_COUNT) {
+			throw new InvalidChannelException(channel);
+		}
+		boolean updated = this.isImmediateChannel(channel) != immediate;
+		if (immediate == true) {
+			this.immediateChannels |= 1 << channel;
+		} else {
+			this.immediateChannels &= ~(1 << channel);
+		}
+		for (RakNetClientPeer peer : clients.values()) {
+			peer.setImmediateChannel(channel, immediate);
+		}
+		if (updated == true) {
+			logger.info((immediate == true ? "Enabled" : "Disabled") + " immediate sending on channel " + channel);
+		}
+	}
+
+	/**
+	 * Returns the maximum amount of bytes each client can be sent per second.
+	 * 
+	 * @return the client bandwidth limit in bytes per second,
+	 *         {@value RakNetPeer#UNLIMITED_BANDWIDTH} if the bandwidth is not
+	 *         limited.
+	 */
+	public final long getClientBandwidthLimit() {
+		return this.clientBandwidthLimit;
+	}
+
+	/**
+	 * Sets the maximum amount of bytes each client can be sent per second. This
+	 * applies to every client connected to the server, as well as every client
+	 * that connects afterwards.
+	 * 
+	 * @param bytesPerSecond
+	 *            the client bandwidth limit in bytes per second. A value of
+	 *            {@value RakNetPeer#UNLIMITED_BANDWIDTH} will remove the limit.
+	 * @throws IllegalArgumentException
+	 *             if the <code>bytesPerSecond</code> is less than
+	 *             <code>1</code> and is not equal to
+	 *             {@value RakNetPeer#UNLIMITED_BANDWIDTH}.
+	 * @see RakNetClientPeer#setBandwidthLimit(long)
+	 */
+	public final void setClientBandwidthLimit(long bytesPerSecond) throws IllegalArgumentException {
+		if (bytesPerSecond < 1 && bytesPerSecond != RakNetPeer.UNLIMITED_BANDWIDTH) {
+			throw new IllegalArgumentException(
+					"Client bandwidth limit must be greater than 0 or " + RakNetPeer.UNLIMITED_BANDWIDTH + " for unlimited bandwidth");
+		}
+		boolean updated = this.clientBandwidthLimit != bytesPerSecond;
+		this.clientBandwidthLimit = bytesPerSecond;
+		for (RakNetClientPeer peer : clients.values()) {
+			peer.setBandwidthLimit(bytesPerSecond);
+		}
+		if (updated == true) {
+			logger.info("Set client bandwidth limit to " + (bytesPerSecond == RakNetPeer.UNLIMITED_BANDWIDTH ? "unlimited" : bytesPerSecond + " bytes per second"));
+		}
+	}
+
+	/**
+	 * Returns the maximum amount of bytes the server can send per second to
+	 * all of its clients combined.
+	 * 
+	 * @return the egress bandwidth in bytes per second,
+	 *         {@value RakNetPeer#UNLIMITED_BANDWIDTH} if the bandwidth is not
+	 *         limited.
+	 */
+	public final long getEgressBandwidth() {
+		EgressBudget egressBudget = this.egressBudget;
+		return egressBudget != null ? egressBudget.getRate() : RakNetPeer.UNLIMITED_BANDWIDTH;
+	}
+
+	/**
+	 * Sets the maximum amount of bytes the server can send per second to all
+	 * of its clients combined.
+	 * <p>
+	 * Each client is guaranteed an equal share of the egress bandwidth. The
+	 * part of a share that a client leaves unused can be borrowed by the
+	 * clients that have used up their own. This allows for the uplink of the
+	 * server to be capped without a single client being able to starve the
+	 * others.
+	 * 
+	 * @param bytesPerSecond
+	 *            the egress bandwidth in bytes per second. A value of
+	 *            {@value RakNetPeer#UNLIMITED_BANDWIDTH} will remove the limit.
+	 * @throws IllegalArgumentException
+	 *             if the <code>bytesPerSecond</code> is less than
+	 *             <code>1</code> and is not equal to
+	 *             {@value RakNetPeer#UNLIMITED_BANDWIDTH}.
+	 * @see EgressBudget
+	 */
+	public final synchronized void setEgressBandwidth(long bytesPerSecond) throws IllegalArgumentException {
+		if (bytesPerSecond < 1 && bytesPerSecond != RakNetPeer.UNLIMITED_BANDWIDTH) {
+			throw new IllegalArgumentException("Egress bandwidth must be greater than 0 or " + RakNetPeer.UNLIMITED_BANDWIDTH + " for unlimited bandwidth");
+		}
+		long burst = Math.max(bytesPerSecond * RakNetPeer.BANDWIDTH_BURST_TIME / 1000L, maximumTransferUnit);
+		EgressBudget egressBudget = this.egressBudget;
+		if (bytesPerSecond == RakNetPeer.UNLIMITED_BANDWIDTH) {
+			this.egressBudget = null;
+			for (RakNetClientPeer peer : clients.values()) {
+				peer.setEgressBudget(null);
+			}
+		} else if (egressBudget == null) {
+			this.egressBudget = egressBudget = new EgressBudget(bytesPerSecond, burst);
+			for (RakNetClientPeer peer : clients.values()) {
+				peer.setEgressBudget(egressBudget);
+			}
+		} else {
+			egressBudget.setRate(bytesPerSecond, burst);
+		}
+		logger.info("Set egress bandwidth to " + (bytesPerSecond == RakNetPeer.UNLIMITED_BANDWIDTH ? "unlimited" : bytesPerSecond + " bytes per second"));
+	}
+
+	/**
+	 * Returns the maximum amount of memory that can be used by the chunks of
+	 * split packets waiting to be stitched back together for all clients
+	 * combined.
+	 * 
+	 * @return the reassembly memory limit in bytes.
+	 */
+	public final long getReassemblyMemoryLimit() {
+		return reassemblyBudget.getLimit();
+	}
+
+	/**
+	 * Sets the maximum amount of memory that can be used by the chunks of
+	 * split packets waiting to be stitched back together for all clients
+	 * combined.
+	 * <p>
+	 * When a chunk arrives that would exceed this limit, the client that sent
+	 * it has its unreliable split packets discarded to make room for it. If
+	 * that is not enough, the client is disconnected. This is on top of the
+	 * split memory budget of each client, and keeps the memory that can be
+	 * held onto by split packets capped no matter how many clients are
+	 * connected.
+	 * 
+	 * @param limit
+	 *            the reassembly memory limit in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the <code>limit</code> is less than <code>1</code>.
+	 * @see RakNetClientPeer#setSplitMemoryBudget(long)
+	 */
+	public final void setReassemblyMemoryLimit(long limit) throws IllegalArgumentException {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Reassembly memory limit must be greater than 0");
+		}
+		boolean updated = reassemblyBudget.getLimit() != limit;
+		reassemblyBudget.setLimit(limit);
+		if (updated == true) {
+			logger.info("Set reassembly memory limit to " + limit + " bytes");
+		}
+	}
+
+	/**
+	 * Returns the amount of memory currently used by the chunks of split
+	 * packets waiting to be stitched back together for all clients combined.
+	 * 
+	 * @return the amount of memory currently used in bytes.
+	 */
+	public final long getReassemblyBytes() {
+		return reassemblyBudget.getUsedBytes();
+	}
+
+	/**
+	 * Enables/disables path MTU probing for clients. This applies to every
+	 * client connected to the server, as well as every client that connects
+	 * afterwards.
+	 * <p>
+	 * When enabled, the maximum transfer unit of a client can be raised above
+	 * the one agreed upon when it connected, up to the maximum transfer unit
+	 * of the server.
+	 * 
+	 * @param enabled
+	 *            <code>true</code> to enable path MTU probing,
+	 *            <code>false</code> to disable it.
+	 * @see RakNetClientPeer#enableTransferUnitProbing(boolean)
+	 */
+	public final void enableTransferUnitProbing(boolean enabled) {
+		boolean updated = this.transferUnitProbing != enabled;
+		this.transferUnitProbing = enabled;
+		for (RakNetClientPeer peer : clients.values()) {
+			peer.enableTransferUnitProbing(enabled);
+		}
+		if (updated == true) {
+			logger.info((enabled ? "Enabled" : "Disabled") + " path MTU probing");
+		}
+	}
+
+	/**
+	 * Returns whether or not path MTU probing is enabled for clients.
+	 * 
+	 * @return <code>true</code> if path MTU probing is enabled,
+	 *         <code>false</code> otherwise.
+	 */
+	public final boolean transferUnitProbingEnabled() {
+		return this.transferUnitProbing;
+	}
+
+	/**
+	 * Enables/disables pooled messages for clients. This applies to every
+	 * client connected to the server, as well as every client that connects
+	 * afterwards.
+	 * <p>
+	 * When enabled, split packets that were stitched back together are handed
+	 * to the listeners without being copied first, and are released once the
+	 * listeners return. This saves a copy for every large message received,
+	 * but listeners must retain or copy the packets they keep around.
+	 * 
+	 * @param enabled
+	 *            <code>true</code> to enable pooled messages,
+	 *            <code>false</code> to disable them.
+	 * @see RakNetClientPeer#enablePooledMessages(boolean)
+	 * @see RakNetServerListener#handleMessage(RakNetServer, RakNetClientPeer,
+	 *      RakNetPacket, int)
+	 */
+	public final void enablePooledMessages(boolean enabled) {
+		boolean updated = this.pooledMessages != enabled;
+		this.pooledMessages = enabled;
+		for (RakNetClientPeer peer : clients.values()) {
+			peer.enablePooledMessages(enabled);
+		}
+		if (updated == true) {
+			logger.info((enabled ? "Enabled" : "Disabled") + " pooled messages");
+		}
+	}
+
+	/**
+	 * Returns whether or not pooled messages are enabled for clients.
+	 * 
+	 * @return <code>true</code> if pooled messages are enabled,
+	 *         <code>false</code> otherwise.
+	 */
+	public final boolean pooledMessagesEnabled() {
+		return this.pooledMessages;
+	}
+
+	/**
+	 * Returns the compressor used for clients that support payload
+	 * compression.
+	 * 
+	 * @return the compressor, <code>null</code> if payload compression is
+	 *         disabled.
+	 */
+	public final PayloadCompressor getPayloadCompressor() {
+		return this.compressor;
+	}
+
+	/**
+	 * Sets the compressor used for clients that support payload compression.
+	 * <p>
+	 * When set, the server advertises payload compression to every client
+	 * that connects afterwards. Only clients that advertise compatible payload
+	 * compression themselves have their messages compressed, meaning vanilla
+	 * clients are unaffected. Clients that are already connected keep using
+	 * what was negotiated when they connected.
+	 * 
+	 * @param compressor
+	 *            the compressor, <code>null</code> to disable payload
+	 *            compression.
+	 * @see PayloadCompressor#advertise(ConnectionType)
+	 */
+	public final void setPayloadCompressor(PayloadCompressor compressor) {
+		boolean updated = this.compressor != compressor;
+		this.compressor = compressor;
+		if (updated == true) {
+			logger.info((compressor != null ? "Enabled" : "Disabled") + " payload compression");
+		}
+	}
+
+	/**
+	 * Returns the factory used to create the sinks for streams sent by
+	 * clients.
+	 * 
+	 * @return the factory, <code>null</code> if streams are refused.
+	 */
+	public final StreamSinkFactory getStreamSinkFactory() {
+		return this.streamSinkFactory;
+	}
+
+	/**
+	 * Sets the factory used to create the sinks for streams sent by clients.
+	 * This applies to every client connected to the server, as well as every
+	 * client that connects afterwards. If there is no factory, every stream
+	 * sent by a client is refused.
+	 * 
+	 * @param streamSinkFactory
+	 *            the factory, <code>null</code> to refuse streams.
+	 * @see RakNetClientPeer#sendStream(int, java.nio.channels.ReadableByteChannel,
+	 *      long)
+	 */
+	public final void setStreamSinkFactory(StreamSinkFactory streamSinkFactory) {
+		boolean updated = this.streamSinkFactory != streamSinkFactory;
+		this.streamSinkFactory = streamSinkFactory;
+		for (RakNetClientPeer peer : clients.values()) {
+			peer.setStreamSinkFactory(streamSinkFactory);
+		}
+		if (updated == true) {
+			logger.info((streamSinkFactory != null ? "Enabled" : "Disabled") + " receiving streams from clients");
+		}
+	}
+
 	/**
 	 * Returns the identifier sent back to clients who ping the server.
 	 * 
@@ -907,18 +1392,135 @@ public class RakNetServer implements RakNetServerListener {
 		if (event == null) {
 			throw new NullPointerException("Event cannot be null");
 		}
+		this.callEvent0(this, null, event);
+	}
+
+	/**
+	 * Calls an event for a peer.
+	 * <p>
+	 * Listeners annotated with {@link ThreadedListener} handle the events for
+	 * the same address in the order they were called, while the events for
+	 * different addresses can be handled in parallel.
+	 * 
+	 * @param address
+	 *            the address of the peer the event is for.
+	 * @param event
+	 *            the event to call.
+	 * @throws NullPointerException
+	 *             if the <code>address</code> or <code>event</code> are
+	 *             <code>null</code>.
+	 * @see RakNetServerListener
+	 */
+	public final void callEvent(InetSocketAddress address, Consumer<? super RakNetServerListener> event) throws NullPointerException {
+		if (address == null) {
+			throw new NullPointerException("Address cannot be null");
+		} else if (event == null) {
+			throw new NullPointerException("Event cannot be null");
+		}
+		this.callEvent0(address, null, event);
+	}
+
+	/**
+	 * Calls an event that hands a packet to the listeners.
+	 * <p>
+	 * The packet buffer is retained for every listener annotated with
+	 * {@link ThreadedListener}, and released once that listener has finished
+	 * handling the event. This keeps the packet readable on the listener's
+	 * own thread even if the buffer is released by the caller as soon as this
+	 * method returns, as is the case for split packets that have been
+	 * stitched back together.
+	 * 
+	 * @param packet
+	 *            the packet handed to the listeners.
+	 * @param event
+	 *            the event to call.
+	 * @throws NullPointerException
+	 *             if the <code>packet</code> or <code>event</code> are
+	 *             <code>null</code>.
+	 * @see RakNetServerListener
+	 */
+	public final void callEvent(Packet packet, Consumer<? super RakNetServerListener> event) throws NullPointerException {
+		if (packet == null) {
+			throw new NullPointerException("Packet cannot be null");
+		} else if (event == null) {
+			throw new NullPointerException("Event cannot be null");
+		}
+		this.callEvent0(this, packet, event);
+	}
+
+	/**
+	 * Calls an event for a peer that hands a packet to the listeners.
+	 * <p>
+	 * Listeners annotated with {@link ThreadedListener} handle the events for
+	 * the same address in the order they were called, while the events for
+	 * different addresses can be handled in parallel.
+	 * 
+	 * @param address
+	 *            the address of the peer the event is for.
+	 * @param packet
+	 *            the packet handed to the listeners.
+	 * @param event
+	 *            the event to call.
+	 * @throws NullPointerException
+	 *             if the <code>address</code>, <code>packet</code> or
+	 *             <code>event</code> are <code>null</code>.
+	 * @see #callEvent(Packet, Consumer)
+	 */
+	public final void callEvent(InetSocketAddress address, Packet packet, Consumer<? super RakNetServerListener> event) throws NullPointerException {
+		if (address == null) {
+			throw new NullPointerException("Address cannot be null");
+		} else if (packet == null) {
+			throw new NullPointerException("Packet cannot be null");
+		} else if (event == null) {
+			throw new NullPointerException("Event cannot be null");
+		}
+		this.callEvent0(address, packet, event);
+	}
+
+	/**
+	 * Returns the event dispatcher of the server, used to call the event methods
+	 * of listeners annotated with {@link ThreadedListener}. This can be used
+	 * to configure how these events are handled, and to keep track of how
+	 * many are waiting to be handled.
+	 * 
+	 * @return the event dispatcher of the server.
+	 */
+	public final EventDispatcher getEventDispatcher() {
+		return this.eventDispatcher;
+	}
+
+	/**
+	 * Calls an event.
+	 * 
+	 * @param key
+	 *            the key used to keep the events handled by listeners
+	 *            annotated with {@link ThreadedListener} in order.
+	 * @param packet
+	 *            the packet handed to the listeners, <code>null</code> if
+	 *            there is none.
+	 * @param event
+	 *            the event to call.
+	 */
+	private void callEvent0(Object key, Packet packet, Consumer<? super RakNetServerListener> event) {
 		logger.trace("Called event of class " + event.getClass().getName() + " for " + listeners.size() + " listeners");
 		for (RakNetServerListener listener : listeners) {
 			if (listener.getClass().isAnnotationPresent(ThreadedListener.class)) {
 				ThreadedListener threadedListener = listener.getClass().getAnnotation(ThreadedListener.class);
-				new Thread(RakNetServer.class.getSimpleName() + (threadedListener.name().length() > 0 ? "-" : "") + threadedListener.name() + "-Thread-" + ++eventThreadCount) {
-
-					@Override
-					public void run() {
+				if (packet != null) {
+					packet.buffer().retain();
+				}
+				boolean dispatched = eventDispatcher.dispatch(threadedListener.ordered() == true ? key : null, threadedListener.name(), () -> {
+					try {
 						event.accept(listener);
+					} finally {
+						if (packet != null) {
+							packet.release();
+						}
 					}
-
-				}.start();
+				});
+				if (dispatched == false && packet != null) {
+					packet.release();
+				}
 			} else {
 				event.accept(listener);
 			}
@@ -2006,9 +2608,28 @@ public class RakNetServer implements RakNetServerListener {
 		if (peer == null) {
 			return false; // No client to disconnect
 		}
-		peer.disconnect();
+
+		/*
+		 * Only the scheduler thread that owns the peer is allowed to modify
+		 * it, and it could be handling a packet from the peer at this very
+		 * moment. The peer is removed and disconnected on that thread
+		 * instead, so its buffers are not released out from under it.
+		 */
+		PeerSchedulerGroup<RakNetClientPeer> scheduler = this.scheduler;
+		Runnable disconnect = () -> {
+			if (scheduler != null) {
+				scheduler.remove(peer);
+			}
+			peer.disconnect();
+			peer.setEgressBudget(null);
+		};
+		if (scheduler != null) {
+			scheduler.invoke(address, disconnect);
+		} else {
+			disconnect.run();
+		}
 		logger.debug("Disconnected client with address " + address + " for \"" + (reason == null ? "Disconnected" : reason) + "\"");
-		this.callEvent(listener -> listener.onDisconnect(this, address, peer, reason == null ? "Disconnected" : reason));
+		this.callEvent(address, listener -> listener.onDisconnect(this, address, peer, reason == null ? "Disconnected" : reason));
 		return true;
 	}
 
@@ -2457,7 +3078,7 @@ public class RakNetServer implements RakNetServerListener {
 			this.disconnect(address, RakNet.getStackTrace(cause));
 		}
 		logger.warn("Handled exception " + cause.getClass().getName() + " caused by address " + address);
-		this.callEvent(listener -> listener.onHandlerException(this, address, cause));
+		this.callEvent(address, listener -> listener.onHandlerException(this, address, cause));
 	}
 
 	/**
@@ -2476,15 +3097,39 @@ public class RakNetServer implements RakNetServerListener {
 			throw new NullPointerException("Sender cannot be null");
 		} else if (packet == null) {
 			throw new NullPointerException("Packet cannot be null");
+		}
+		PeerSchedulerGroup<RakNetClientPeer> scheduler = this.scheduler;
+		if (scheduler == null) {
+			return; // Server is starting up or shutting down
 		} else if (clients.containsKey(sender)) {
-			clients.get(sender).handleInternal(packet);
+			/*
+			 * Hand the packet off to the worker thread that owns the client,
+			 * so all of its protocol processing is done by a single thread.
+			 * The buffer is retained here, as the handler releases the
+			 * datagram as soon as this method returns.
+			 */
+			RakNetClientPeer peer = clients.get(sender);
+			ByteBuf content = packet.buffer().retainedDuplicate();
+			content.readerIndex(0);
+			scheduler.execute(sender, () -> {
+				try {
+					if (peer.isDisconnected()) {
+						return; // Disconnected before the packet was handled
+					}
+					peer.handleInternal(new RakNetPacket(content));
+				} catch (Throwable cause) {
+					this.handleHandlerException(sender, cause);
+				} finally {
+					content.release();
+				}
+			});
 		} else if (packet.getId() == RakNetPacket.ID_UNCONNECTED_PING || packet.getId() == RakNetPacket.ID_UNCONNECTED_PING_OPEN_CONNECTIONS) {
 			UnconnectedPing ping = new UnconnectedPing(packet);
 			ping.decode();
 			if (!ping.failed() && (packet.getId() == RakNetPacket.ID_UNCONNECTED_PING || (clients.size() < maxConnections || maxConnections < 0)) && broadcastingEnabled == true
 					&& ping.magic == true) {
 				ServerPing pingEvent = new ServerPing(sender, ping.connectionType, identifier);
-				this.callEvent(listener -> listener.onPing(this, pingEvent));
+				this.callEvent(sender, listener -> listener.onPing(this, pingEvent));
 				if (pingEvent.getIdentifier() != null) {
 					UnconnectedPong pong = new UnconnectedPong();
 					pong.timestamp = ping.timestamp;
@@ -2532,15 +3177,38 @@ public class RakNetServer implements RakNetServerListener {
 			if (!connectionRequestTwo.failed() && connectionRequestTwo.magic == true && connectionRequestTwo.maximumTransferUnit >= RakNet.MINIMUM_MTU_SIZE) {
 				RakNetPacket errorPacket = this.validateSender(sender, connectionRequestTwo.clientGuid);
 				if (errorPacket == null) {
+					PayloadCompressor compressor = this.compressor;
 					OpenConnectionResponseTwo connectionResponseTwo = new OpenConnectionResponseTwo();
 					connectionResponseTwo.serverGuid = this.guid;
 					connectionResponseTwo.clientAddress = sender;
 					connectionResponseTwo.maximumTransferUnit = Math.min(connectionRequestTwo.maximumTransferUnit, maximumTransferUnit);
+					if (compressor != null) {
+						connectionResponseTwo.connectionType = compressor.advertise(ConnectionType.JRAKNET);
+					}
 					connectionResponseTwo.encode();
 					if (!connectionResponseTwo.failed()) {
-						this.callEvent(listener -> listener.onConnect(this, sender, connectionRequestTwo.connectionType));
-						clients.put(sender, new RakNetClientPeer(this, connectionRequestTwo.connectionType, connectionRequestTwo.clientGuid,
-								connectionResponseTwo.maximumTransferUnit, channel, sender));
+						this.callEvent(sender, listener -> listener.onConnect(this, sender, connectionRequestTwo.connectionType));
+						RakNetClientPeer peer = new RakNetClientPeer(this, connectionRequestTwo.connectionType, connectionRequestTwo.clientGuid,
+								connectionResponseTwo.maximumTransferUnit, channel, sender);
+						peer.setCoalescingDelay(coalescingDelay);
+						for (int i = 0; i < RakNet.CHANNEL_COUNT; i++) {
+							peer.setImmediateChannel(i, this.isImmediateChannel(i));
+						}
+						peer.setBandwidthLimit(clientBandwidthLimit);
+						peer.setEgressBudget(egressBudget);
+						peer.setReassemblyBudget(reassemblyBudget);
+						peer.setMaximumTransferUnitLimit(Math.max(maximumTransferUnit, peer.getInitialTransferUnit()));
+						peer.enableTransferUnitProbing(transferUnitProbing);
+						peer.enablePooledMessages(pooledMessages);
+						if (compressor != null && compressor.isSupportedBy(connectionRequestTwo.connectionType)) {
+							peer.setPayloadCompressor(compressor);
+						}
+						peer.setStreamSinkFactory(streamSinkFactory);
+						if (corked == true) {
+							peer.cork();
+						}
+						clients.put(sender, peer);
+						scheduler.add(peer);
 						this.sendNettyMessage(connectionResponseTwo, sender);
 					}
 				} else {
@@ -2696,60 +3364,21 @@ public class RakNetServer implements RakNetServerListener {
 			this.running = true;
 			logger.debug("Created and bound bootstrap");
 
-			// Create and start peer update thread
+			// Create and start peer schedulers
 			RakNetServer server = this;
-			this.peerThread = new Thread(RakNetServer.class.getSimpleName() + "-Peer-Thread-" + Long.toHexString(guid).toUpperCase()) {
-
-				@Override
-				public void run() {
-					HashMap<RakNetClientPeer, Throwable> disconnected = new HashMap<RakNetClientPeer, Throwable>();
-					while (server.running == true && !this.isInterrupted()) {
-						try {
-							Thread.sleep(0, 1); // Lower CPU usage
-						} catch (InterruptedException e) {
-							this.interrupt(); // Interrupted during sleep
-							continue;
-						}
-						for (RakNetClientPeer peer : clients.values()) {
-							if (!peer.isDisconnected()) {
-								try {
-									peer.update();
-									if (peer.getPacketsReceivedThisSecond() >= RakNet.getMaxPacketsPerSecond()) {
-										server.blockAddress(peer.getInetAddress(), "Too many packets", RakNet.MAX_PACKETS_PER_SECOND_BLOCK);
-									}
-								} catch (Throwable throwable) {
-									server.callEvent(listener -> listener.onPeerException(server, peer, throwable));
-									disconnected.put(peer, throwable);
-								}
-							}
-						}
-
-						/*
-						 * Disconnect peers.
-						 * 
-						 * This must be done here as simply removing a client
-						 * from the clients map would be an incorrect way of
-						 * disconnecting a client. This means that calling the
-						 * disconnect() method is required. However, calling it
-						 * while in the loop would cause a
-						 * ConcurrentModifactionException. To get around this,
-						 * the clients that need to be disconnected are properly
-						 * disconnected after the loop is finished. This is done
-						 * simply by having them and their disconnect reason be
-						 * put in a disconnection map.
-						 */
-						if (disconnected.size() > 0) {
-							for (RakNetClientPeer peer : disconnected.keySet()) {
-								server.disconnect(peer, disconnected.get(peer));
-							}
-							disconnected.clear();
-						}
+			this.scheduler = new PeerSchedulerGroup<RakNetClientPeer>(RakNetServer.class.getSimpleName() + "-Peer-Thread-" + Long.toHexString(guid).toUpperCase(), workerThreadCount, peer -> {
+				try {
+					peer.update();
+					if (peer.getPacketsReceivedThisSecond() >= RakNet.getMaxPacketsPerSecond()) {
+						server.blockAddress(peer.getInetAddress(), "Too many packets", RakNet.MAX_PACKETS_PER_SECOND_BLOCK);
 					}
+				} catch (Throwable throwable) {
+					server.callEvent(peer.getAddress(), listener -> listener.onPeerException(server, peer, throwable));
+					server.disconnect(peer, throwable);
 				}
-
-			};
-			peerThread.start();
-			logger.debug("Created and started peer update thread");
+			});
+			scheduler.start();
+			logger.debug("Created and started " + workerThreadCount + " peer scheduler" + (workerThreadCount != 1 ? "s" : ""));
 			this.callEvent(listener -> listener.onStart(this));
 		} catch (InterruptedException e) {
 			this.running = false;
@@ -2779,15 +3408,24 @@ public class RakNetServer implements RakNetServerListener {
 		for (RakNetClientPeer client : clients.values()) {
 			this.disconnect(client, reason == null ? "Server shutdown" : reason);
 		}
-		clients.clear();
 
-		// Stop server
+		/*
+		 * The channel is closed before the schedulers are shutdown, so no
+		 * more packets can be handed off to them while they are stopping. If
+		 * this is the event loop of the channel, no more packets will be read
+		 * once this method returns, and waiting would never finish.
+		 */
 		this.running = false;
-		peerThread.interrupt();
+		ChannelFuture closeFuture = channel.close();
+		if (!channel.eventLoop().inEventLoop()) {
+			closeFuture.awaitUninterruptibly();
+		}
+		clients.clear();
+		scheduler.shutdown();
+		this.scheduler = null;
 		logger.info("Shutdown server" + (reason != null ? " for \"" + reason + "\"" : ""));
 
 		// Shutdown networking
-		channel.close();
 		group.shutdownGracefully(0L, 1000L, TimeUnit.MILLISECONDS);
 		this.channel = null;
 		this.handler = null;
@@ -158,7 +158,7 @@ public final class RakNetServerHandler extends ChannelInboundHandlerAdapter {
 			if (datagram.release() /* No longer needed */) {
 				logger.trace("Released datagram");
 			} else {
-				logger.error("Memory leak: Failed to deallocate datagram when releasing it");
+				logger.trace("Released datagram, buffer is still held by peer worker");
 			}
 
 			// No exceptions occurred, release the suspect
@@ -240,9 +240,38 @@ public interface RakNetServerListener {
 	public default void onLoss(RakNetServer server, RakNetClientPeer peer, Record record, EncapsulatedPacket packet) {
 	}
 
+	/**
+	 * Called when a client has become writable or is no longer writable.
+	 * <p>
+	 * A client that is no longer writable has more unsent and unacknowledged
+	 * data than its high water mark allows. The server should stop producing
+	 * messages for it until it has become writable again.
+	 * 
+	 * @param server
+	 *            the server.
+	 * @param peer
+	 *            the client whose writability changed.
+	 * @param writable
+	 *            <code>true</code> if the client has become writable,
+	 *            <code>false</code> if it is no longer writable.
+	 * @see RakNetClientPeer#isWritable()
+	 */
+	public default void onWritabilityChanged(RakNetServer server, RakNetClientPeer peer, boolean writable) {
+	}
+
 	/**
 	 * Called when a packet has been received from a client and is ready to be
 	 * handled.
+	 * <p>
+	 * The packet belongs to the listener and can be kept around for as long
+	 * as needed, unless pooled messages have been enabled through
+	 * {@link RakNetServer#enablePooledMessages(boolean)}. In that case, the
+	 * buffer of a split packet that was stitched back together is released
+	 * once this method returns. To keep the packet around for longer, either
+	 * retain its buffer or copy it.
+	 * Listeners annotated with {@link com.whirvis.jraknet.ThreadedListener
+	 * ThreadedListener} can read the packet until they return, as the buffer
+	 * is retained for them until then.
 	 * 
 	 * @param server
 	 *            the server.
@@ -0,0 +1,148 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet;
+
+import java.util.Random;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.whirvis.jraknet.peer.MessageIndexWindow;
+
+/**
+ * Benchmarks the {@link MessageIndexWindow} used by the
+ * {@link com.whirvis.jraknet.peer.RakNetPeer RakNetPeer} to discard duplicate
+ * reliable packets.
+ * <p>
+ * This benchmark simulates a peer receiving reliable packets at a rate well
+ * over 10,000 messages a second for several minutes of traffic, with a portion
+ * of the packets arriving late or being duplicated due to resends. The average
+ * time spent per message index is printed periodically. If the
+ * window is working correctly, this time should stay flat no matter how many
+ * message indexes have been received in total.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class MessageIndexWindowBenchmark {
+
+	private static final Logger LOG = LogManager.getLogger(MessageIndexWindowBenchmark.class);
+	private static final int MESSAGES_PER_SECOND = 20000;
+	private static final int SIMULATED_SECONDS = 300;
+	private static final int REPORT_INTERVAL = 30;
+	private static final int DELAY_CHANCE = 50;
+	private static final int DUPLICATE_CHANCE = 100;
+	private static final int MAXIMUM_DELAY = 256;
+
+	private MessageIndexWindowBenchmark() {
+		// Static class
+	}
+
+	/**
+	 * The entry point for the benchmark.
+	 *
+	 * @param args
+	 *            the program arguments. These values are ignored.
+	 */
+	public static void main(String[] args) {
+		LOG.info("Warming up...");
+		run(new MessageIndexWindow(), 30, false);
+		LOG.info("Simulating " + SIMULATED_SECONDS + " seconds of traffic at " + MESSAGES_PER_SECOND + " messages per second...");
+		MessageIndexWindow window = new MessageIndexWindow();
+		long duplicates = run(window, SIMULATED_SECONDS, true);
+		LOG.info("Finished benchmark with " + duplicates + " duplicates discarded, final window state is " + window);
+	}
+
+	/**
+	 * Runs the simulation.
+	 *
+	 * @param window
+	 *            the window to benchmark.
+	 * @param seconds
+	 *            the amount of seconds of traffic to simulate.
+	 * @param report
+	 *            <code>true</code> if the results should be logged,
+	 *            <code>false</code> otherwise.
+	 * @return the amount of duplicates that were discarded.
+	 * @throws IllegalStateException
+	 *             if the window fails to detect a duplicate or reports a new
+	 *             message index as a duplicate.
+	 */
+	private static long run(MessageIndexWindow window, int seconds, boolean report) throws IllegalStateException {
+		Random random = new Random(0x4A52414B4E4554L);
+		int[] delayed = new int[MAXIMUM_DELAY];
+		boolean[] pending = new boolean[MAXIMUM_DELAY];
+		long duplicates = 0;
+		long elapsed = 0;
+		int messageIndex = 0;
+		for (int second = 1; second <= seconds; second++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < MESSAGES_PER_SECOND; i++) {
+				int slot = messageIndex % MAXIMUM_DELAY;
+
+				// Release delayed message that was due now
+				if (pending[slot] == true) {
+					pending[slot] = false;
+					if (!window.add(delayed[slot])) {
+						throw new IllegalStateException("Delayed message index " + delayed[slot] + " reported as duplicate");
+					}
+				}
+
+				// Receive, delay, or duplicate the next message
+				int index = messageIndex++;
+				int roll = random.nextInt(1000);
+				if (roll < DELAY_CHANCE) {
+					int due = (slot + 1 + random.nextInt(MAXIMUM_DELAY - 1)) % MAXIMUM_DELAY;
+					if (pending[due] == false) {
+						pending[due] = true;
+						delayed[due] = index;
+						continue;
+					}
+				}
+				if (!window.add(index)) {
+					throw new IllegalStateException("Message index " + index + " reported as duplicate");
+				} else if (roll >= 1000 - DUPLICATE_CHANCE) {
+					if (window.add(index)) {
+						throw new IllegalStateException("Duplicate message index " + index + " was not detected");
+					}
+					duplicates++;
+				}
+			}
+			long taken = System.nanoTime() - start;
+			elapsed += taken;
+			if (report == true && second % REPORT_INTERVAL == 0) {
+				LOG.info("Second " + second + ": " + (taken / MESSAGES_PER_SECOND) + "ns per message (average " + (elapsed / ((long) second * MESSAGES_PER_SECOND))
+						+ "ns, " + messageIndex + " message indexes total, capacity " + window.getCapacity() + ")");
+			}
+		}
+		return duplicates;
+	}
+
+}
@@ -0,0 +1,442 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.whirvis.jraknet.peer.DatagramReceiveWindow;
+import com.whirvis.jraknet.peer.MessageIndexWindow;
+import com.whirvis.jraknet.peer.ReorderBuffer;
+import com.whirvis.jraknet.peer.SentDatagramWindow;
+import com.whirvis.jraknet.peer.SentDatagramWindow.SentDatagram;
+import com.whirvis.jraknet.peer.SequenceIntervalSet;
+import com.whirvis.jraknet.peer.SequenceNumber;
+import com.whirvis.jraknet.peer.congestion.CubicCongestionControl;
+import com.whirvis.jraknet.protocol.Reliability;
+import com.whirvis.jraknet.protocol.message.EncapsulatedPacket;
+import com.whirvis.jraknet.protocol.message.acknowledge.Record;
+
+/**
+ * Tests the handling of sequence numbers, message indexes and order indexes
+ * wrapping around by the structures used by the
+ * {@link com.whirvis.jraknet.peer.RakNetPeer RakNetPeer}.
+ * <p>
+ * Since these wrap around after {@value SequenceNumber#MODULUS} packets, a
+ * real session would take hours to wrap around even once. Instead, this test
+ * fast-forwards through a session by simulating both ends of it without a
+ * network in between. Every datagram carries a single
+ * {@link Reliability#RELIABLE_ORDERED RELIABLE_ORDERED} message, and a portion
+ * of the datagrams are lost, delayed or duplicated along the way. The session
+ * is run through {@value #WRAPS} wraps at full speed, during which every
+ * message must be handled exactly once and in order, every lost datagram must
+ * be resent, and the congestion control must keep reacting to losses.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class SequenceWrapTest {
+
+	private static final Logger LOG = LogManager.getLogger(SequenceWrapTest.class);
+	private static final int WRAPS = 3;
+	private static final long MESSAGE_COUNT = (long) WRAPS * SequenceNumber.MODULUS + 1000L;
+	private static final int MAXIMUM_TRANSFER_UNIT = 1464;
+	private static final int DATAGRAM_SIZE = 64;
+	private static final int DATAGRAMS_PER_MILLISECOND = 100;
+	private static final int ACK_INTERVAL = 32;
+	private static final int LOSS_CHANCE = 5;
+	private static final int DELAY_CHANCE = 20;
+	private static final int DUPLICATE_CHANCE = 5;
+	private static final int MAXIMUM_DELAY = 128;
+
+	private SequenceWrapTest() {
+		// Static class
+	}
+
+	/**
+	 * The entry point for the test.
+	 *
+	 * @param args
+	 *            the program arguments. These values are ignored.
+	 * @throws IllegalStateException
+	 *             if the test fails.
+	 */
+	public static void main(String[] args) throws IllegalStateException {
+		LOG.info("Checking serial number arithmetic...");
+		checkArithmetic();
+		LOG.info("Checking triad encoding...");
+		checkTriads();
+		LOG.info("Checking datagram receive window...");
+		checkReceiveWindow();
+		LOG.info("Fast-forwarding through " + MESSAGE_COUNT + " messages, " + WRAPS + " wraps...");
+		long start = System.currentTimeMillis();
+		Session session = new Session();
+		session.run();
+		LOG.info("Finished test in " + (System.currentTimeMillis() - start) + "ms, final session state is " + session);
+	}
+
+	/**
+	 * Checks the serial number arithmetic around the points where it wraps.
+	 *
+	 * @throws IllegalStateException
+	 *             if any of the checks fail.
+	 */
+	private static void checkArithmetic() throws IllegalStateException {
+		check(SequenceNumber.next(SequenceNumber.MASK) == 0, "Sequence number after " + SequenceNumber.MASK + " is not 0");
+		check(SequenceNumber.add(0, -1) == SequenceNumber.MASK, "Sequence number before 0 is not " + SequenceNumber.MASK);
+		check(SequenceNumber.difference(0, SequenceNumber.MASK) == 1, "Distance from " + SequenceNumber.MASK + " to 0 is not 1");
+		check(SequenceNumber.difference(SequenceNumber.MASK, 0) == -1, "Distance from 0 to " + SequenceNumber.MASK + " is not -1");
+		check(SequenceNumber.difference(0, -1) == 1, "Distance from -1 to 0 is not 1");
+		check(SequenceNumber.isNewer(10, SequenceNumber.MASK - 10), "Wrapped sequence number is not newer");
+		check(!SequenceNumber.isNewer(SequenceNumber.MASK - 10, 10), "Sequence number before wrapping is newer");
+		check(SequenceNumber.difference(SequenceNumber.MAXIMUM_WINDOW - 1, 0) == SequenceNumber.MAXIMUM_WINDOW - 1, "Largest forward distance is wrong");
+		check(SequenceNumber.difference(SequenceNumber.MAXIMUM_WINDOW, 0) == -SequenceNumber.MAXIMUM_WINDOW, "Largest backward distance is wrong");
+	}
+
+	/**
+	 * Checks that <code>triad</code>s at the edges of the sequence number
+	 * space are read back the same as they were written.
+	 *
+	 * @throws IllegalStateException
+	 *             if any of the checks fail.
+	 */
+	private static void checkTriads() throws IllegalStateException {
+		int[] values = new int[] { 0, 1, SequenceNumber.MAXIMUM_WINDOW - 1, SequenceNumber.MAXIMUM_WINDOW, SequenceNumber.MASK - 1, SequenceNumber.MASK };
+		Packet packet = new Packet();
+		for (int value : values) {
+			packet.writeTriadLE(value);
+		}
+		for (int value : values) {
+			int read = packet.readUnsignedTriadLE();
+			check(read == value, "Triad " + value + " was read back as " + read);
+		}
+		packet.release();
+	}
+
+	/**
+	 * Checks that the datagram receive window discards datagrams older than
+	 * the window, and that it reports the holes that are still open one more
+	 * time after they were first reported.
+	 *
+	 * @throws IllegalStateException
+	 *             if any of the checks fail.
+	 */
+	private static void checkReceiveWindow() throws IllegalStateException {
+		DatagramReceiveWindow window = new DatagramReceiveWindow();
+		check(window.receive(0), "First datagram reported as duplicate");
+		check(window.receive(4), "Datagram after hole reported as duplicate");
+		Record[] holes = window.flushHoles();
+		check(holes != null && holes.length == 1 && holes[0].getIndex() == 1 && holes[0].getLastIndex() == 3, "Hole was not reported");
+		check(window.getRetryTime() >= 0, "Reported hole is not waiting to be reported again");
+		check(window.receive(2), "Late datagram reported as duplicate");
+		Record[] retries = window.flushRetries();
+		check(retries != null && retries.length == 2 && retries[0].getIndex() == 1 && retries[1].getIndex() == 3, "Hole that was filled was reported again");
+		check(window.flushRetries() == null, "Holes were reported again more than once");
+
+		int highest = DatagramReceiveWindow.WINDOW_SIZE + 4;
+		check(window.receive(highest), "Datagram far ahead reported as duplicate");
+		check(window.isStale(3), "Datagram older than the window is not stale");
+		check(!window.receive(3), "Datagram older than the window was handled");
+		check(!window.isStale(SequenceNumber.add(highest, 1 - DatagramReceiveWindow.WINDOW_SIZE)), "Oldest datagram in the window is stale");
+	}
+
+	/**
+	 * Checks the specified condition.
+	 *
+	 * @param condition
+	 *            the condition.
+	 * @param message
+	 *            the message describing the failure.
+	 * @throws IllegalStateException
+	 *             if the <code>condition</code> is <code>false</code>.
+	 */
+	private static void check(boolean condition, String message) throws IllegalStateException {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+
+	/**
+	 * Checks that the specified record is within the sequence number space
+	 * and does not wrap around, as records cannot be encoded otherwise.
+	 *
+	 * @param record
+	 *            the record.
+	 * @throws IllegalStateException
+	 *             if the record is invalid.
+	 */
+	private static void checkRecord(Record record) throws IllegalStateException {
+		check(record.getIndex() >= 0 && record.getIndex() <= SequenceNumber.MASK, "Record " + record + " starts outside of the sequence number space");
+		if (record.isRanged()) {
+			check(record.getEndIndex() > record.getIndex() && record.getEndIndex() <= SequenceNumber.MASK, "Record " + record + " wraps around");
+		}
+	}
+
+	/**
+	 * A simulated session, with a sender on one end and a receiver on the
+	 * other.
+	 *
+	 * @author Trent "Whirvis" Summerlin
+	 * @since JRakNet v2.11.9
+	 */
+	private static final class Session {
+
+		private final Random random;
+		private final Packet payload;
+		private long tick;
+		private long time;
+
+		// Sender
+		private final SentDatagramWindow sentWindow;
+		private final CubicCongestionControl congestionControl;
+		private final ArrayDeque<EncapsulatedPacket> resends;
+		private int sendSequenceNumber;
+		private int messageIndex;
+		private int orderIndex;
+		private long sentMessages;
+		private int wraps;
+		private long reductions;
+		private long wrapReductions;
+
+		// Link
+		private final int[] delayedSequenceNumbers;
+		private final EncapsulatedPacket[] delayedMessages;
+		private int delayed;
+		private long lost;
+		private long duplicates;
+
+		// Receiver
+		private final DatagramReceiveWindow receiveWindow;
+		private final SequenceIntervalSet pendingAcks;
+		private final MessageIndexWindow reliablePackets;
+		private final ReorderBuffer reorderBuffer;
+		private int expectedOrderIndex;
+		private long handled;
+
+		private Session() {
+			this.random = new Random(0x4A52414B4E4554L);
+			this.payload = new Packet();
+			payload.writeLong(random.nextLong());
+			this.sentWindow = new SentDatagramWindow();
+			this.congestionControl = new CubicCongestionControl(MAXIMUM_TRANSFER_UNIT);
+			this.resends = new ArrayDeque<EncapsulatedPacket>();
+			this.delayedSequenceNumbers = new int[MAXIMUM_DELAY];
+			this.delayedMessages = new EncapsulatedPacket[MAXIMUM_DELAY];
+			this.receiveWindow = new DatagramReceiveWindow();
+			this.pendingAcks = new SequenceIntervalSet();
+			this.reliablePackets = new MessageIndexWindow();
+			this.reorderBuffer = new ReorderBuffer(0, ReorderBuffer.DEFAULT_MAXIMUM_HOLE_SIZE, ReorderBuffer.DEFAULT_MEMORY_BUDGET);
+		}
+
+		/**
+		 * Runs the session until every message has been handled.
+		 *
+		 * @throws IllegalStateException
+		 *             if the session fails.
+		 */
+		private void run() throws IllegalStateException {
+			while (handled < MESSAGE_COUNT) {
+				this.time = tick / DATAGRAMS_PER_MILLISECOND;
+				int slot = (int) (tick % MAXIMUM_DELAY);
+
+				// Deliver the delayed datagram that is due now
+				if (delayedMessages[slot] != null) {
+					this.receive(delayedSequenceNumbers[slot], delayedMessages[slot]);
+					delayedMessages[slot] = null;
+					this.delayed--;
+				}
+
+				// Send the next datagram, resends go first
+				EncapsulatedPacket message = resends.poll();
+				if (message == null && sentMessages < MESSAGE_COUNT) {
+					message = new EncapsulatedPacket();
+					message.reliability = Reliability.RELIABLE_ORDERED;
+					message.messageIndex = messageIndex;
+					message.orderIndex = orderIndex;
+					message.payload = payload;
+					this.messageIndex = SequenceNumber.next(messageIndex);
+					this.orderIndex = SequenceNumber.next(orderIndex);
+					this.sentMessages++;
+				}
+				if (message != null) {
+					this.send(message, slot);
+				} else if (delayed <= 0) {
+					// Nothing left that could reveal a hole, time out the rest
+					this.exchange();
+					SentDatagram timedOut = null;
+					while ((timedOut = sentWindow.poll()) != null) {
+						congestionControl.onTimeout(timedOut.getSequenceNumber(), timedOut.getSize(), time);
+						resends.add(timedOut.getMessages()[0]);
+					}
+				}
+
+				if (tick % ACK_INTERVAL == 0) {
+					this.exchange();
+				}
+				this.tick++;
+			}
+
+			// Make sure nothing was left behind
+			this.exchange();
+			check(handled == MESSAGE_COUNT, "Handled " + handled + " messages out of " + MESSAGE_COUNT);
+			check(wraps >= WRAPS, "Sequence numbers only wrapped " + wraps + " times");
+			check(messageIndex == orderIndex && messageIndex == SequenceNumber.wrap((int) MESSAGE_COUNT), "Message index and order index are out of sync");
+			check(reorderBuffer.size() == 0, "Reorder buffer is still holding " + reorderBuffer.size() + " messages");
+			check(resends.isEmpty(), resends.size() + " messages are still waiting to be resent");
+		}
+
+		/**
+		 * Sends a datagram containing the specified message.
+		 *
+		 * @param message
+		 *            the message.
+		 * @param slot
+		 *            the current slot of the delayed datagrams.
+		 * @throws IllegalStateException
+		 *             if the datagram is not handled correctly.
+		 */
+		private void send(EncapsulatedPacket message, int slot) throws IllegalStateException {
+			int sequenceNumber = sendSequenceNumber;
+			this.sendSequenceNumber = SequenceNumber.next(sendSequenceNumber);
+			if (sendSequenceNumber == 0) {
+				check(reductions > wrapReductions, "Congestion control stopped reacting to losses before wrap " + (wraps + 1));
+				this.wrapReductions = reductions;
+				this.wraps++;
+				LOG.info("Wrapped sequence numbers " + wraps + " time" + (wraps == 1 ? "" : "s") + " after " + tick + " datagrams (" + handled + " messages handled, "
+						+ lost + " datagrams lost)");
+			}
+			sentWindow.put(sequenceNumber, new EncapsulatedPacket[] { message }, DATAGRAM_SIZE, time, 0);
+			congestionControl.onSend(sequenceNumber, DATAGRAM_SIZE, time);
+
+			// Lose, delay or duplicate the datagram
+			int roll = random.nextInt(1000);
+			if (roll < LOSS_CHANCE) {
+				this.lost++;
+				return;
+			} else if (roll < LOSS_CHANCE + DELAY_CHANCE) {
+				int due = (slot + 1 + random.nextInt(MAXIMUM_DELAY - 1)) % MAXIMUM_DELAY;
+				if (delayedMessages[due] == null) {
+					delayedSequenceNumbers[due] = sequenceNumber;
+					delayedMessages[due] = message;
+					this.delayed++;
+					return;
+				}
+			}
+			check(this.receive(sequenceNumber, message), "Datagram " + sequenceNumber + " reported as duplicate");
+			if (roll >= 1000 - DUPLICATE_CHANCE) {
+				check(!this.receive(sequenceNumber, message), "Duplicate datagram " + sequenceNumber + " was not detected");
+				this.duplicates++;
+			}
+		}
+
+		/**
+		 * Receives a datagram containing the specified message.
+		 *
+		 * @param sequenceNumber
+		 *            the sequence number of the datagram.
+		 * @param message
+		 *            the message.
+		 * @return <code>true</code> if the datagram was handled,
+		 *         <code>false</code> if it was a duplicate.
+		 * @throws IllegalStateException
+		 *             if a message is handled out of order.
+		 */
+		private boolean receive(int sequenceNumber, EncapsulatedPacket message) throws IllegalStateException {
+			if (!receiveWindow.receive(sequenceNumber)) {
+				return false; // Duplicate datagram
+			}
+			pendingAcks.add(sequenceNumber);
+			if (!reliablePackets.add(message.messageIndex)) {
+				return true; // Duplicate message from a resend
+			}
+			check(reorderBuffer.add(message, time), "Message with order index " + message.orderIndex + " was discarded by the reorder buffer");
+			EncapsulatedPacket ordered = null;
+			while ((ordered = reorderBuffer.poll(time)) != null) {
+				check(ordered.orderIndex == expectedOrderIndex, "Expected order index " + expectedOrderIndex + " but got " + ordered.orderIndex);
+				this.expectedOrderIndex = SequenceNumber.next(expectedOrderIndex);
+				this.handled++;
+			}
+			return true;
+		}
+
+		/**
+		 * Sends the pending ACK and NACK records from the receiver to the
+		 * sender, which releases the acknowledged datagrams and queues the
+		 * messages of the lost ones to be resent.
+		 *
+		 * @throws IllegalStateException
+		 *             if an invalid record is sent.
+		 */
+		private void exchange() throws IllegalStateException {
+			Record[] acknowledged = pendingAcks.flush();
+			if (acknowledged != null) {
+				for (Record record : acknowledged) {
+					checkRecord(record);
+					for (SentDatagram received : sentWindow.remove(record.getIndex(), record.getLastIndex())) {
+						congestionControl.onAcknowledge(received.getSequenceNumber(), received.getSize(), time);
+					}
+				}
+			}
+			Record[] retries = receiveWindow.flushRetries();
+			if (retries != null) {
+				for (Record record : retries) {
+					checkRecord(record);
+					check(sentWindow.remove(record.getIndex(), record.getLastIndex()).isEmpty(), "Record " + record + " was reported lost again after it was resent");
+				}
+			}
+			Record[] holes = receiveWindow.flushHoles();
+			if (holes != null) {
+				for (Record record : holes) {
+					checkRecord(record);
+					for (SentDatagram lost : sentWindow.remove(record.getIndex(), record.getLastIndex())) {
+						int congestionWindow = congestionControl.getCongestionWindow();
+						congestionControl.onLoss(lost.getSequenceNumber(), lost.getSize(), time);
+						if (congestionControl.getCongestionWindow() < congestionWindow) {
+							this.reductions++;
+						}
+						resends.add(lost.getMessages()[0]);
+					}
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Session [datagrams=" + tick + ", handled=" + handled + ", wraps=" + wraps + ", lost=" + lost + ", duplicates=" + duplicates + ", reductions="
+					+ reductions + ", sentWindow=" + sentWindow + ", receiveWindow=" + receiveWindow + ", reliablePackets=" + reliablePackets + ", reorderBuffer="
+					+ reorderBuffer + "]";
+		}
+
+	}
+
+}
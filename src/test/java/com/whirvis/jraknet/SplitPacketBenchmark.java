@@ -0,0 +1,254 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.whirvis.jraknet.peer.RakNetPeer;
+import com.whirvis.jraknet.protocol.ConnectionType;
+import com.whirvis.jraknet.protocol.Reliability;
+import com.whirvis.jraknet.protocol.message.CustomFourPacket;
+import com.whirvis.jraknet.protocol.message.CustomPacket;
+import com.whirvis.jraknet.protocol.message.EncapsulatedPacket;
+import com.whirvis.jraknet.protocol.message.acknowledge.Record;
+
+/**
+ * Benchmarks the splitting of large packets on the send path of the
+ * {@link RakNetPeer}.
+ * <p>
+ * Payloads between 100 KB and 2 MB are split and encoded into datagrams, the
+ * same way the peer does when sending them. This is done once by copying each
+ * chunk of the payload into its own <code>byte[]</code>, the way packets used
+ * to be split, and once with
+ * {@link EncapsulatedPacket.Split#split(RakNetPeer, EncapsulatedPacket)}, which
+ * uses slices of the original payload. The throughput and the amount of memory
+ * allocated per payload are logged for both, allowing them to be compared.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class SplitPacketBenchmark {
+
+	private static final Logger LOG = LogManager.getLogger(SplitPacketBenchmark.class);
+	private static final int MAXIMUM_TRANSFER_UNIT = 1464;
+	private static final int[] PAYLOAD_SIZES = new int[] { 100 * 1024, 250 * 1024, 500 * 1024, 1024 * 1024, 2048 * 1024 };
+	private static final int BYTES_PER_RUN = 256 * 1024 * 1024;
+	private static final int WARMUP_RUNS = 3;
+
+	private SplitPacketBenchmark() {
+		// Static class
+	}
+
+	/**
+	 * The entry point for the benchmark.
+	 *
+	 * @param args
+	 *            the program arguments. These values are ignored.
+	 */
+	public static void main(String[] args) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			LOG.warn("Thread allocated memory is not supported by this JVM, allocation rates will be reported as 0");
+		}
+		RakNetPeer peer = new BenchmarkPeer();
+		Random random = new Random(0x4A52414B4E4554L);
+		for (int size : PAYLOAD_SIZES) {
+			byte[] data = new byte[size];
+			random.nextBytes(data);
+			Packet payload = new Packet(data);
+			int iterations = Math.max(1, BYTES_PER_RUN / size);
+			for (int i = 0; i < WARMUP_RUNS; i++) {
+				run(peer, payload, iterations, false);
+				run(peer, payload, iterations, true);
+			}
+			Result copied = measure(threads, peer, payload, iterations, false);
+			Result sliced = measure(threads, peer, payload, iterations, true);
+			LOG.info("Payload of " + (size / 1024) + " KB (" + iterations + " iterations):");
+			LOG.info("\tCopied: " + copied);
+			LOG.info("\tSliced: " + sliced);
+		}
+	}
+
+	/**
+	 * Measures the time taken and memory allocated while splitting and
+	 * encoding the payload.
+	 *
+	 * @param threads
+	 *            the thread bean used to measure allocations.
+	 * @param peer
+	 *            the peer the payload is being split for.
+	 * @param payload
+	 *            the payload.
+	 * @param iterations
+	 *            the amount of times to split the payload.
+	 * @param slice
+	 *            <code>true</code> if the payload should be sliced,
+	 *            <code>false</code> if it should be copied.
+	 * @return the result.
+	 */
+	private static Result measure(com.sun.management.ThreadMXBean threads, RakNetPeer peer, Packet payload, int iterations, boolean slice) {
+		long threadId = Thread.currentThread().getId();
+		long allocatedStart = threads.isThreadAllocatedMemorySupported() ? threads.getThreadAllocatedBytes(threadId) : 0L;
+		long start = System.nanoTime();
+		long datagrams = run(peer, payload, iterations, slice);
+		long elapsed = System.nanoTime() - start;
+		long allocated = threads.isThreadAllocatedMemorySupported() ? threads.getThreadAllocatedBytes(threadId) - allocatedStart : 0L;
+		return new Result((long) payload.size() * iterations, datagrams, elapsed, allocated, iterations);
+	}
+
+	/**
+	 * Splits and encodes the payload the specified amount of times.
+	 *
+	 * @param peer
+	 *            the peer the payload is being split for.
+	 * @param payload
+	 *            the payload.
+	 * @param iterations
+	 *            the amount of times to split the payload.
+	 * @param slice
+	 *            <code>true</code> if the payload should be sliced,
+	 *            <code>false</code> if it should be copied.
+	 * @return the amount of datagrams encoded.
+	 */
+	private static long run(RakNetPeer peer, Packet payload, int iterations, boolean slice) {
+		long datagrams = 0;
+		for (int i = 0; i < iterations; i++) {
+			EncapsulatedPacket encapsulated = new EncapsulatedPacket();
+			encapsulated.reliability = Reliability.RELIABLE_ORDERED;
+			encapsulated.payload = payload;
+			EncapsulatedPacket[] split = slice == true ? EncapsulatedPacket.Split.split(peer, encapsulated) : copySplit(peer, encapsulated);
+			for (EncapsulatedPacket chunk : split) {
+				CustomFourPacket custom = new CustomFourPacket();
+				custom.sequenceId = (int) datagrams++;
+				custom.messages = new EncapsulatedPacket[] { chunk };
+				custom.encode();
+				custom.release();
+				chunk.release();
+			}
+		}
+		return datagrams;
+	}
+
+	/**
+	 * Splits the packet by copying each chunk of the payload into its own
+	 * <code>byte[]</code>.
+	 *
+	 * @param peer
+	 *            the peer the packet is being split for.
+	 * @param encapsulated
+	 *            the packet to split.
+	 * @return the split up encapsulated packet.
+	 */
+	private static EncapsulatedPacket[] copySplit(RakNetPeer peer, EncapsulatedPacket encapsulated) {
+		int size = peer.getMaximumTransferUnit() - CustomPacket.MINIMUM_SIZE - EncapsulatedPacket.size(encapsulated.reliability, true);
+		byte[] src = encapsulated.payload.array();
+		EncapsulatedPacket[] splitPackets = new EncapsulatedPacket[(src.length + size - 1) / size];
+		for (int i = 0; i < splitPackets.length; i++) {
+			EncapsulatedPacket encapsulatedSplit = new EncapsulatedPacket();
+			encapsulatedSplit.reliability = encapsulated.reliability;
+			encapsulatedSplit.payload = new Packet(Arrays.copyOfRange(src, i * size, Math.min((i + 1) * size, src.length)));
+			encapsulatedSplit.messageIndex = peer.bumpMessageIndex();
+			encapsulatedSplit.split = true;
+			encapsulatedSplit.splitCount = splitPackets.length;
+			encapsulatedSplit.splitIndex = i;
+			splitPackets[i] = encapsulatedSplit;
+		}
+		return splitPackets;
+	}
+
+	/**
+	 * The result of a measurement.
+	 *
+	 * @author Trent "Whirvis" Summerlin
+	 * @since JRakNet v2.11.9
+	 */
+	private static final class Result {
+
+		private final long bytes;
+		private final long datagrams;
+		private final long elapsed;
+		private final long allocated;
+		private final int iterations;
+
+		private Result(long bytes, long datagrams, long elapsed, long allocated, int iterations) {
+			this.bytes = bytes;
+			this.datagrams = datagrams;
+			this.elapsed = elapsed;
+			this.allocated = allocated;
+			this.iterations = iterations;
+		}
+
+		@Override
+		public String toString() {
+			double seconds = Math.max(elapsed, 1L) / 1000000000.0D;
+			return String.format("%.1f MB/s, %.0f datagrams/s, %d KB allocated per payload, %.1f MB/s allocation rate", bytes / seconds / (1024 * 1024), datagrams / seconds,
+					allocated / iterations / 1024, allocated / seconds / (1024 * 1024));
+		}
+
+	}
+
+	/**
+	 * A peer that is only used to split packets.
+	 *
+	 * @author Trent "Whirvis" Summerlin
+	 * @since JRakNet v2.11.9
+	 */
+	private static final class BenchmarkPeer extends RakNetPeer {
+
+		private BenchmarkPeer() {
+			super(new InetSocketAddress("localhost", RakNetTest.WHIRVIS_DEVELOPMENT_PORT), 0L, MAXIMUM_TRANSFER_UNIT, ConnectionType.JRAKNET, null);
+		}
+
+		@Override
+		public long getTimestamp() {
+			return 0L;
+		}
+
+		@Override
+		public void handleMessage(RakNetPacket packet, int channel) {
+		}
+
+		@Override
+		public void onAcknowledge(Record record, EncapsulatedPacket packet) {
+		}
+
+		@Override
+		public void onNotAcknowledge(Record record, EncapsulatedPacket packet) {
+		}
+
+	}
+
+}
@@ -0,0 +1,303 @@
+/*
+ *    __     ______     ______     __  __     __   __     ______     ______  
+ *   /\ \   /\  == \   /\  __ \   /\ \/ /    /\ "-.\ \   /\  ___\   /\__  _\
+ *  _\_\ \  \ \  __<   \ \  __ \  \ \  _"-.  \ \ \-.  \  \ \  __\   \/_/\ \/  
+ * /\_____\  \ \_\ \_\  \ \_\ \_\  \ \_\ \_\  \ \_\\"\_\  \ \_____\    \ \_\ 
+ * \/_____/   \/_/ /_/   \/_/\/_/   \/_/\/_/   \/_/ \/_/   \/_____/     \/_/                                                                          
+ *
+ * the MIT License (MIT)
+ *
+ * Copyright (c) 2016-2019 Trent "Whirvis" Summerlin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * the above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.whirvis.jraknet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.whirvis.jraknet.client.RakNetClient;
+import com.whirvis.jraknet.client.RakNetClientListener;
+import com.whirvis.jraknet.peer.OutgoingStream;
+import com.whirvis.jraknet.peer.RakNetClientPeer;
+import com.whirvis.jraknet.peer.RakNetServerPeer;
+import com.whirvis.jraknet.peer.StreamSink;
+import com.whirvis.jraknet.protocol.Reliability;
+import com.whirvis.jraknet.server.RakNetServer;
+import com.whirvis.jraknet.server.RakNetServerListener;
+
+/**
+ * Tests the streaming feature of the
+ * {@link com.whirvis.jraknet.peer.RakNetPeer RakNetPeer} while messages are
+ * sent on the same channel by other threads.
+ * <p>
+ * The chunks of a stream are sent by the thread updating the peer, while the
+ * application is free to keep sending messages from its own threads. This
+ * test sends a stream of {@value #STREAM_LENGTH} bytes while
+ * {@value #SENDER_COUNT} threads each send {@value #MESSAGE_COUNT}
+ * {@link Reliability#RELIABLE_ORDERED RELIABLE_ORDERED} messages on the same
+ * channel. Every message must arrive exactly once and in the order its thread
+ * sent it, and every byte of the stream must arrive intact. If two messages
+ * were ever given the same message index or order index, the server would
+ * either drop one of them as a duplicate or stall the channel.
+ *
+ * @author Trent "Whirvis" Summerlin
+ * @since JRakNet v2.11.9
+ */
+public final class StreamTest {
+
+	private static final Logger LOG = LogManager.getLogger(StreamTest.class);
+	private static final short MESSAGE_ID = 0xFE;
+	private static final int CHANNEL = 0;
+	private static final long STREAM_LENGTH = 16L * 1024L * 1024L;
+	private static final int SENDER_COUNT = 4;
+	private static final int MESSAGE_COUNT = 5000;
+	private static final long TIMEOUT = 60000L;
+	private static final int[] received = new int[SENDER_COUNT];
+	private static long streamReceived;
+	private static boolean streamEnded;
+	private static long startSend = -1;
+
+	private StreamTest() {
+		// Static class
+	}
+
+	/**
+	 * The entry point for the test.
+	 * 
+	 * @param args
+	 *            the program arguments. These values are ignored.
+	 * @throws RakNetException
+	 *             if a RakNet error occurs.
+	 * @throws InterruptedException
+	 *             if any thread has interrupted the current thread. The
+	 *             <i>interrupted status</i> of the current thread is cleared
+	 *             when this exception is thrown.
+	 * @throws UnknownHostException
+	 *             if the <code>localhost</code> address could not be found.
+	 */
+	public static void main(String[] args) throws RakNetException, InterruptedException, UnknownHostException {
+		LOG.info("Creating server, sleeping 3000MS, and then creating the client...");
+		createServer();
+		RakNet.sleep(3000L);
+		createClient();
+
+		// Wait for either a result or for a timeout
+		while (true) {
+			Thread.sleep(100L);
+			synchronized (StreamTest.class) {
+				if (startSend > -1 && System.currentTimeMillis() - startSend >= TIMEOUT) {
+					LOG.error("Failed to complete test due to timeout (received " + streamReceived + " stream bytes and " + messageCount() + " messages)");
+					System.exit(1);
+				} else if (streamEnded == true && messageCount() == SENDER_COUNT * MESSAGE_COUNT) {
+					LOG.info("Stream test passed (Took " + (System.currentTimeMillis() - startSend) + "MS)");
+					System.exit(0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the amount of messages the server has received.
+	 * 
+	 * @return the amount of messages the server has received.
+	 */
+	private static synchronized int messageCount() {
+		int count = 0;
+		for (int i = 0; i < SENDER_COUNT; i++) {
+			count += received[i];
+		}
+		return count;
+	}
+
+	/**
+	 * Fails the test.
+	 * 
+	 * @param message
+	 *            the reason the test failed.
+	 */
+	private static void fail(String message) {
+		LOG.error(message);
+		System.exit(1);
+	}
+
+	/**
+	 * Creates the server for the test.
+	 * 
+	 * @return the server that will receive the stream and the messages.
+	 * @throws RakNetException
+	 *             if a RakNet error occurs.
+	 */
+	private static RakNetServer createServer() throws RakNetException {
+		RakNetServer server = new RakNetServer(RakNetTest.WHIRVIS_DEVELOPMENT_PORT, 1);
+		server.setStreamSinkFactory((peer, streamId, channel, length) -> new StreamSink() {
+
+			@Override
+			public void onData(ByteBuffer data) throws IOException {
+				synchronized (StreamTest.class) {
+					while (data.hasRemaining()) {
+						if ((data.get() & 0xFF) != (int) (streamReceived & 0xFF)) {
+							fail("Server - Stream byte " + streamReceived + " is corrupted");
+						}
+						streamReceived++;
+					}
+				}
+			}
+
+			@Override
+			public void onEnd() throws IOException {
+				synchronized (StreamTest.class) {
+					if (streamReceived != STREAM_LENGTH) {
+						fail("Server - Stream ended after " + streamReceived + " bytes when it should have been " + STREAM_LENGTH + " bytes");
+					}
+					LOG.info("Server - Received all " + streamReceived + " bytes of the stream");
+					streamEnded = true;
+				}
+			}
+
+			@Override
+			public void onAbort(String reason) {
+				fail("Server - Stream was aborted (" + reason + ")");
+			}
+
+		});
+		server.addListener(new RakNetServerListener() {
+
+			@Override
+			public void onDisconnect(RakNetServer server, InetSocketAddress address, RakNetClientPeer peer, String reason) {
+				fail("Server - Client from " + address + " disconnected (" + reason + ")");
+			}
+
+			@Override
+			public void handleMessage(RakNetServer server, RakNetClientPeer peer, RakNetPacket packet, int channel) {
+				if (packet.getId() != MESSAGE_ID) {
+					return;
+				}
+				int sender = packet.readUnsignedByte();
+				int index = packet.readInt();
+				synchronized (StreamTest.class) {
+					if (index != received[sender]) {
+						fail("Server - Expected message " + received[sender] + " from sender " + sender + " but got message " + index);
+					}
+					received[sender]++;
+				}
+			}
+
+			@Override
+			public void onHandlerException(RakNetServer server, InetSocketAddress address, Throwable cause) {
+				cause.printStackTrace();
+				System.exit(1);
+			}
+
+		});
+		server.start();
+		return server;
+	}
+
+	/**
+	 * Creates the client for the test.
+	 * 
+	 * @return the client that will be sending the stream and the messages.
+	 * @throws RakNetException
+	 *             if a RakNet error occurs.
+	 * @throws UnknownHostException
+	 *             if the <code>localhost</code> address cannot be found.
+	 */
+	private static RakNetClient createClient() throws RakNetException, UnknownHostException {
+		RakNetClient client = new RakNetClient();
+		client.addListener(new RakNetClientListener() {
+
+			@Override
+			public void onLogin(RakNetClient client, RakNetServerPeer peer) {
+				LOG.info("Client - Logged in to server, sending stream of " + STREAM_LENGTH + " bytes and " + (SENDER_COUNT * MESSAGE_COUNT) + " messages...");
+				synchronized (StreamTest.class) {
+					startSend = System.currentTimeMillis();
+				}
+
+				// Send the stream
+				OutgoingStream stream = peer.sendStream(CHANNEL, new InputStream() {
+
+					private long position;
+
+					@Override
+					public int read() {
+						if (position >= STREAM_LENGTH) {
+							return -1;
+						}
+						return (int) (position++ & 0xFF);
+					}
+
+					@Override
+					public int read(byte[] b, int off, int len) {
+						if (position >= STREAM_LENGTH) {
+							return -1;
+						}
+						int read = (int) Math.min(len, STREAM_LENGTH - position);
+						for (int i = 0; i < read; i++) {
+							b[off + i] = (byte) (position++ & 0xFF);
+						}
+						return read;
+					}
+
+				}, STREAM_LENGTH);
+				stream.getFuture().whenComplete((sent, cause) -> {
+					if (cause != null) {
+						fail("Client - Failed to send stream (" + cause.getMessage() + ")");
+					}
+					LOG.info("Client - All " + sent.getBytesAcknowledged() + " bytes of the stream have been acknowledged");
+				});
+
+				// Send messages on the same channel from other threads
+				for (int i = 0; i < SENDER_COUNT; i++) {
+					final int sender = i;
+					new Thread(() -> {
+						for (int j = 0; j < MESSAGE_COUNT; j++) {
+							RakNetPacket packet = new RakNetPacket(MESSAGE_ID);
+							packet.writeUnsignedByte(sender);
+							packet.writeInt(j);
+							peer.sendMessage(Reliability.RELIABLE_ORDERED, CHANNEL, packet);
+						}
+						LOG.info("Client - Sender " + sender + " has sent all of its messages");
+					}, StreamTest.class.getSimpleName() + "-Sender-" + sender).start();
+				}
+			}
+
+			@Override
+			public void onDisconnect(RakNetClient client, InetSocketAddress address, RakNetServerPeer peer, String reason) {
+				fail("Client - Lost connection to server (" + reason + ")");
+			}
+
+			@Override
+			public void onHandlerException(RakNetClient client, InetSocketAddress address, Throwable cause) {
+				cause.printStackTrace();
+				System.exit(1);
+			}
+
+		});
+		client.connect("localhost", RakNetTest.WHIRVIS_DEVELOPMENT_PORT);
+		return client;
+	}
+
+}